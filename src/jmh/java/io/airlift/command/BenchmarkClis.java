@@ -0,0 +1,125 @@
+package io.airlift.command;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.airlift.command.Git.Add;
+import io.airlift.command.Git.RemoteAdd;
+import io.airlift.command.Git.RemoteShow;
+import io.airlift.command.model.ArgumentsMetadata;
+import io.airlift.command.model.CommandGroupMetadata;
+import io.airlift.command.model.CommandMetadata;
+import io.airlift.command.model.GlobalMetadata;
+import io.airlift.command.model.MetadataLoader;
+import io.airlift.command.model.OptionMetadata;
+
+import java.lang.reflect.Field;
+import java.util.List;
+
+/**
+ * The command line interfaces the benchmarks run against.
+ */
+public final class BenchmarkClis
+{
+    public static final int SYNTHETIC_GROUPS = 50;
+    public static final int SYNTHETIC_COMMANDS_PER_GROUP = 20;
+    public static final int SYNTHETIC_GLOBAL_OPTIONS = 40;
+    public static final int SYNTHETIC_COMMAND_OPTIONS = 360;
+
+    private BenchmarkClis()
+    {
+    }
+
+    /**
+     * The git like CLI of the tests.
+     */
+    public static Cli<Runnable> git()
+    {
+        Cli.CliBuilder<Runnable> builder = Cli.<Runnable>builder("git")
+                .withDescription("the stupid content tracker")
+                .withDefaultCommand(Help.class)
+                .withCommands(Help.class, Add.class);
+
+        builder.withGroup("remote")
+                .withDescription("Manage set of tracked repositories")
+                .withDefaultCommand(RemoteShow.class)
+                .withCommands(RemoteShow.class, RemoteAdd.class);
+
+        return builder.build();
+    }
+
+    /**
+     * A CLI made of the single {@link BenchmarkCommand}, which is also its default command.
+     */
+    public static Cli<Runnable> bench()
+    {
+        return Cli.<Runnable>builder("bench")
+                .withDefaultCommand(BenchmarkCommand.class)
+                .withCommand(BenchmarkCommand.class)
+                .build();
+    }
+
+    /**
+     * A CLI of 1000 commands in 50 groups; every command accepts 40 global options named {@code --global-<n>} and
+     * 360 options of its own named {@code --option-<n>}, for 400 options in all.  The commands are named
+     * {@code command-<n>} and numbered across the groups, which are named {@code group-<n>}.
+     */
+    public static GlobalMetadata synthetic()
+    {
+        Field values = field("values");
+        ArgumentsMetadata arguments = new ArgumentsMetadata(ImmutableList.of("arguments"), "Arguments", "", false, ImmutableList.of(field("arguments")));
+
+        List<OptionMetadata> globalOptions = options(OptionType.GLOBAL, "--global-", SYNTHETIC_GLOBAL_OPTIONS, values);
+        List<OptionMetadata> commandOptions = options(OptionType.COMMAND, "--option-", SYNTHETIC_COMMAND_OPTIONS, values);
+
+        ImmutableList.Builder<CommandGroupMetadata> groups = ImmutableList.builder();
+        for (int group = 0; group < SYNTHETIC_GROUPS; group++) {
+            ImmutableList.Builder<CommandMetadata> commands = ImmutableList.builder();
+            for (int command = 0; command < SYNTHETIC_COMMANDS_PER_GROUP; command++) {
+                String name = "command-" + (group * SYNTHETIC_COMMANDS_PER_GROUP + command);
+                commands.add(new CommandMetadata(name,
+                        "Synthetic command " + name,
+                        null,
+                        ImmutableList.<String>of(),
+                        false,
+                        globalOptions,
+                        ImmutableList.<OptionMetadata>of(),
+                        commandOptions,
+                        arguments,
+                        ImmutableList.<Accessor>of(),
+                        SyntheticCommand.class,
+                        ImmutableList.<String>of(),
+                        ImmutableList.<Group>of()));
+            }
+            groups.add(MetadataLoader.loadCommandGroup("group-" + group, "Synthetic group " + group, null, null, commands.build()));
+        }
+
+        return MetadataLoader.loadGlobal("synthetic", null, "A synthetic CLI", null, ImmutableList.<CommandMetadata>of(), groups.build());
+    }
+
+    private static List<OptionMetadata> options(OptionType optionType, String prefix, int count, Field field)
+    {
+        ImmutableList.Builder<OptionMetadata> options = ImmutableList.builder();
+        for (int i = 0; i < count; i++) {
+            options.add(new OptionMetadata(optionType,
+                    ImmutableSet.of(prefix + i),
+                    "value",
+                    "Synthetic option " + prefix + i,
+                    1,
+                    false,
+                    false,
+                    null,
+                    ImmutableList.of(field)));
+        }
+        return options.build();
+    }
+
+    private static Field field(String name)
+    {
+        try {
+            return SyntheticCommand.class.getField(name);
+        }
+        catch (NoSuchFieldException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package io.airlift.command;
+
+import java.util.List;
+
+/**
+ * A command exercising every parsing style: clustered short flags, a short option taking a value, a high arity option
+ * and positional arguments.
+ */
+@Command(name = "bench", description = "A command used by the benchmarks")
+public class BenchmarkCommand
+        implements Runnable
+{
+    @Option(name = "-a", description = "Flag a")
+    public boolean a;
+
+    @Option(name = "-b", description = "Flag b")
+    public boolean b;
+
+    @Option(name = "-c", description = "Flag c")
+    public boolean c;
+
+    @Option(name = "-d", description = "Flag d")
+    public boolean d;
+
+    @Option(name = {"-n", "--name"}, description = "A name")
+    public String name;
+
+    @Option(name = "--count", description = "A count")
+    public int count;
+
+    @Option(name = "--coordinates", arity = 8, description = "Eight coordinates")
+    public List<Integer> coordinates;
+
+    @Arguments(description = "Files")
+    public List<String> files;
+
+    @Override
+    public void run()
+    {
+    }
+}
@@ -0,0 +1,80 @@
+package io.airlift.command;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.command.model.BkTree;
+import io.airlift.command.model.GlobalMetadata;
+import io.airlift.command.model.OptionMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Completes a partial option of a command of the synthetic CLI, by filtering every suggestion and by the prefix trie,
+ * and finds the options closest to a misspelled one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompletionBenchmark
+{
+    private static final String PREFIX = "--option-12";
+
+    private CommandSuggester suggester;
+    private BkTree options;
+
+    @Setup
+    public void setup()
+    {
+        GlobalMetadata synthetic = BenchmarkClis.synthetic();
+        suggester = new CommandSuggester();
+        suggester.command = synthetic.getCommandGroup("group-31").getCommand("command-625");
+        suggester.suggest(PREFIX);
+
+        ImmutableList.Builder<String> names = ImmutableList.builder();
+        for (OptionMetadata option : suggester.command.getAllOptions()) {
+            names.addAll(option.getOptions());
+        }
+        options = new BkTree(names.build());
+    }
+
+    @Benchmark
+    public int filter()
+    {
+        int matches = 0;
+        for (String suggestion : suggester.suggest()) {
+            if (suggestion.startsWith(PREFIX)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int trie()
+    {
+        int matches = 0;
+        for (String suggestion : suggester.suggest(PREFIX)) {
+            matches++;
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public List<String> misspelled()
+    {
+        return options.nearest("--optoin-125", 3, 3);
+    }
+}
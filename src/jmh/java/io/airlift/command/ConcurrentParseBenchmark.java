@@ -0,0 +1,55 @@
+package io.airlift.command;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses with a single {@link Cli} shared by every benchmark thread.  Compare the throughput of the single threaded and
+ * the {@code Threads.MAX} runs: a contention free parser scales it with the number of cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentParseBenchmark
+{
+    private Cli<Runnable> cli;
+
+    @Setup
+    public void setup()
+    {
+        cli = BenchmarkClis.git();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Runnable parseSingleThreaded()
+    {
+        return parse();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Runnable parseAllThreads()
+    {
+        return parse();
+    }
+
+    private Runnable parse()
+    {
+        return cli.parse("-v", "remote", "add", "-t", "master", "origin", "git@github.com:airlift/airline.git");
+    }
+}
@@ -0,0 +1,72 @@
+package io.airlift.command;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.command.model.CommandMetadata;
+import io.airlift.command.model.MetadataLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the metadata of a command by reflection, and injects an already parsed command line into a new command, from
+ * the parsed options as parsed and from their boxed multimap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InjectionBenchmark
+{
+    private CommandMetadata command;
+    private ParseState state;
+
+    @Setup
+    public void setup()
+    {
+        command = MetadataLoader.loadCommand(BenchmarkCommand.class);
+        state = new Parser().parseCommand(command, ImmutableList.of(
+                "-abd", "-n", "name", "--count", "42",
+                "--coordinates", "1", "2", "3", "4", "5", "6", "7", "8",
+                "a.txt", "b.txt", "c.txt"));
+    }
+
+    @Benchmark
+    public CommandMetadata loadCommand()
+    {
+        return MetadataLoader.loadCommand(BenchmarkCommand.class);
+    }
+
+    @Benchmark
+    public BenchmarkCommand injectOptions()
+    {
+        return ParserUtil.injectOptions(new BenchmarkCommand(),
+                command,
+                state.getOptionValues(),
+                state.getParsedArguments(),
+                ImmutableMap.<Class<?>, Object>of(CommandMetadata.class, command));
+    }
+
+    @Benchmark
+    public BenchmarkCommand injectOptionsMultimap()
+    {
+        return ParserUtil.injectOptions(new BenchmarkCommand(),
+                command.getAllOptions(),
+                state.getParsedOptions(),
+                command.getArguments(),
+                state.getParsedArguments(),
+                command.getMetadataInjections(),
+                ImmutableMap.<Class<?>, Object>of(CommandMetadata.class, command));
+    }
+}
@@ -0,0 +1,144 @@
+package io.airlift.command;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.command.model.GlobalMetadata;
+import io.airlift.command.model.MetadataSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses command lines of different shapes, both with the bare {@link Parser} and with {@link Cli#parse}, which also
+ * validates the result and injects it into a new command.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark
+{
+    public enum Shape
+    {
+        // the git CLI of the tests, a global option, a group and a command with an option and arguments
+        GIT {
+            @Override
+            List<String> args()
+            {
+                return ImmutableList.of("-v", "remote", "add", "-t", "master", "origin", "git@github.com:airlift/airline.git");
+            }
+        },
+        // a command in the middle of the 1000 command, 400 option synthetic CLI
+        SYNTHETIC {
+            @Override
+            List<String> args()
+            {
+                return ImmutableList.of("--global-7", "a", "group-31", "command-625", "--option-12", "b", "--option-345", "c", "--global-39", "d", "file");
+            }
+        },
+        // a thousand positional arguments
+        LONG_ARGUMENTS {
+            @Override
+            List<String> args()
+            {
+                ImmutableList.Builder<String> args = ImmutableList.<String>builder().add("bench", "-n", "name", "--");
+                for (int i = 0; i < 1000; i++) {
+                    args.add("file-" + i + ".txt");
+                }
+                return args.build();
+            }
+        },
+        // clustered short flags, the second cluster ending with an option taking a value
+        CLUSTERED_SHORT_OPTIONS {
+            @Override
+            List<String> args()
+            {
+                return ImmutableList.of("bench", "-abc", "-dnname", "file");
+            }
+        },
+        // an option taking eight values, given several times
+        HIGH_ARITY_OPTIONS {
+            @Override
+            List<String> args()
+            {
+                ImmutableList.Builder<String> args = ImmutableList.<String>builder().add("bench");
+                for (int i = 0; i < 8; i++) {
+                    args.add("--coordinates");
+                    for (int j = 0; j < 8; j++) {
+                        args.add(String.valueOf(i * 8 + j));
+                    }
+                }
+                return args.add("--count", "42", "file").build();
+            }
+        };
+
+        abstract List<String> args();
+    }
+
+    @Param
+    public Shape shape;
+
+    private Cli<Runnable> cli;
+    private GlobalMetadata metadata;
+    private List<String> args;
+    private Path snapshot;
+
+    @Setup(Level.Trial)
+    public void setup()
+            throws IOException
+    {
+        switch (shape) {
+            case GIT:
+                cli = BenchmarkClis.git();
+                break;
+            case SYNTHETIC:
+                // a Cli can only be built from command classes or from a snapshot, so round trip the generated metadata
+                snapshot = Files.createTempFile("synthetic", ".snapshot");
+                MetadataSnapshot.write(BenchmarkClis.synthetic(), snapshot);
+                cli = Cli.fromSnapshot(snapshot);
+                break;
+            default:
+                cli = BenchmarkClis.bench();
+        }
+        metadata = cli.getMetadata();
+        args = shape.args();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+            throws IOException
+    {
+        if (snapshot != null) {
+            Files.delete(snapshot);
+        }
+    }
+
+    @Benchmark
+    public Object parser()
+    {
+        return new Parser().parse(metadata, args);
+    }
+
+    @Benchmark
+    public Runnable cli()
+    {
+        return cli.parse(args);
+    }
+}
@@ -0,0 +1,20 @@
+package io.airlift.command;
+
+import java.util.List;
+
+/**
+ * The command class behind every command of {@link BenchmarkClis#synthetic()}; all the generated options write to
+ * {@link #values}.
+ */
+public class SyntheticCommand
+        implements Runnable
+{
+    public List<String> values;
+
+    public List<String> arguments;
+
+    @Override
+    public void run()
+    {
+    }
+}
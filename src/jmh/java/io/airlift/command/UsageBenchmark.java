@@ -0,0 +1,94 @@
+package io.airlift.command;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.CharStreams;
+import io.airlift.command.model.CommandMetadata;
+import io.airlift.command.model.GlobalMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders the text help of a command and the markdown help of a whole CLI, for the git CLI of the tests and for the
+ * synthetic 1000 command CLI, serves the help of a synthetic command from a {@link HelpCache}, and writes the text
+ * manual of the synthetic CLI to a writer discarding it, which measures the word wrapping rather than the output.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UsageBenchmark
+{
+    private GlobalMetadata git;
+    private CommandMetadata gitRemoteAdd;
+    private GlobalMetadata synthetic;
+    private CommandMetadata syntheticCommand;
+    private HelpCache syntheticHelp;
+    private final Writer nullWriter = CharStreams.nullWriter();
+    private final List<String> syntheticCommandNames = ImmutableList.of("group-31", "command-625");
+
+    @Setup
+    public void setup()
+    {
+        git = BenchmarkClis.git().getMetadata();
+        gitRemoteAdd = git.getCommandGroup("remote").getCommand("add");
+        synthetic = BenchmarkClis.synthetic();
+        syntheticCommand = synthetic.getCommandGroup("group-31").getCommand("command-625");
+        syntheticHelp = new HelpCache(synthetic);
+    }
+
+    @Benchmark
+    public String gitCommandUsage()
+    {
+        StringBuilder out = new StringBuilder();
+        new CommandUsage().usage(git.getName(), "remote", "add", gitRemoteAdd, out);
+        return out.toString();
+    }
+
+    @Benchmark
+    public String syntheticCommandUsage()
+    {
+        StringBuilder out = new StringBuilder();
+        new CommandUsage().usage(synthetic.getName(), "group-31", "command-625", syntheticCommand, out);
+        return out.toString();
+    }
+
+    @Benchmark
+    public String gitGlobalUsageMD()
+    {
+        return new GlobalUsage().usageMD(git);
+    }
+
+    @Benchmark
+    public String syntheticGlobalUsageMD()
+    {
+        return new GlobalUsage().usageMD(synthetic);
+    }
+
+    @Benchmark
+    public String syntheticCachedCommandUsage()
+    {
+        return syntheticHelp.help(syntheticCommandNames, UsageFormat.TEXT);
+    }
+
+    @Benchmark
+    public void syntheticTextManual()
+            throws IOException
+    {
+        Help.manual(synthetic, UsageFormat.TEXT, HelpCache.DEFAULT_COLUMN_SIZE, nullWriter);
+    }
+}
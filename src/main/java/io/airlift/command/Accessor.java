@@ -3,27 +3,57 @@ package io.airlift.command;
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class Accessor
 {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodHandle FIELD_GET;
+    private static final MethodHandle FIELD_SET;
+
+    static {
+        try {
+            FIELD_GET = LOOKUP.findVirtual(Field.class, "get", GETTER_TYPE);
+            FIELD_SET = LOOKUP.findVirtual(Field.class, "set", SETTER_TYPE);
+        }
+        catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     private final String name;
-    private final Class<?> javaType;
-    private final List<Field> path;
-    private boolean multiValued;
+    private final List<String> declaringClassNames;
+    private final List<String> fieldNames;
+    private final boolean multiValued;
+
+    // the fields of the path and the handles compiled for them; resolved on first use for accessors loaded from a snapshot
+    private final Supplier<Binding> binding;
 
     public Accessor(Field... path)
     {
@@ -35,8 +65,8 @@ public class Accessor
         Preconditions.checkNotNull(path, "path is null");
         Preconditions.checkArgument(!Iterables.isEmpty(path), "path is empty");
 
-        this.path = ImmutableList.copyOf(path);
-        this.name = this.path.get(0).getDeclaringClass().getSimpleName() + "." + Joiner.on('.').join(Iterables.transform(this.path, new Function<Field, String>()
+        List<Field> fields = ImmutableList.copyOf(path);
+        this.name = fields.get(0).getDeclaringClass().getSimpleName() + "." + Joiner.on('.').join(Iterables.transform(fields, new Function<Field, String>()
         {
             public String apply(Field field)
             {
@@ -44,10 +74,42 @@ public class Accessor
             }
         }));
 
+        ImmutableList.Builder<String> declaringClassNames = ImmutableList.builder();
+        ImmutableList.Builder<String> fieldNames = ImmutableList.builder();
+        for (Field field : fields) {
+            declaringClassNames.add(field.getDeclaringClass().getName());
+            fieldNames.add(field.getName());
+        }
+        this.declaringClassNames = declaringClassNames.build();
+        this.fieldNames = fieldNames.build();
+
+        multiValued = Collection.class.isAssignableFrom(fields.get(fields.size() - 1).getType());
+        binding = Suppliers.ofInstance(new Binding(name, fields));
+    }
 
-        Field field = this.path.get(this.path.size() - 1);
-        multiValued = Collection.class.isAssignableFrom(field.getType());
-        javaType = getItemType(name, field.getGenericType());
+    /**
+     * Creates an accessor for the path named by the given declaring classes and fields, which are only loaded when the
+     * accessor is first used to read or write a value.
+     */
+    public Accessor(String name, List<String> declaringClassNames, List<String> fieldNames, boolean multiValued, final ClassLoader classLoader)
+    {
+        Preconditions.checkNotNull(name, "name is null");
+        Preconditions.checkNotNull(declaringClassNames, "declaringClassNames is null");
+        Preconditions.checkNotNull(fieldNames, "fieldNames is null");
+        Preconditions.checkArgument(!fieldNames.isEmpty(), "path is empty");
+        Preconditions.checkArgument(declaringClassNames.size() == fieldNames.size(), "declaringClassNames and fieldNames differ in size");
+
+        this.name = name;
+        this.declaringClassNames = ImmutableList.copyOf(declaringClassNames);
+        this.fieldNames = ImmutableList.copyOf(fieldNames);
+        this.multiValued = multiValued;
+        this.binding = Suppliers.memoize(new Supplier<Binding>()
+        {
+            public Binding get()
+            {
+                return new Binding(Accessor.this.name, resolve(Accessor.this.declaringClassNames, Accessor.this.fieldNames, classLoader));
+            }
+        });
     }
 
     public String getName()
@@ -57,7 +119,7 @@ public class Accessor
 
     public Class<?> getJavaType()
     {
-        return javaType;
+        return binding.get().javaType;
     }
 
     public boolean isMultiValued()
@@ -65,25 +127,46 @@ public class Accessor
         return multiValued;
     }
 
-    public Object getValue(Object instance)
+    /**
+     * Returns the binary names of the classes declaring each field of the path.
+     */
+    public List<String> getDeclaringClassNames()
     {
-        StringBuilder pathName = new StringBuilder();
-        for (Field intermediateField : path.subList(0, path.size() - 1)) {
-            if (pathName.length() != 0) {
-                pathName.append(".");
-            }
-            pathName.append(intermediateField.getName());
+        return declaringClassNames;
+    }
+
+    /**
+     * Returns the names of the fields of the path.
+     */
+    public List<String> getFieldNames()
+    {
+        return fieldNames;
+    }
+
+    /**
+     * Returns whether the field is an {@link Iterator}, a {@link Stream} or a {@link Consumer}, which the values are
+     * streamed to rather than collected into.
+     */
+    public boolean isStreaming()
+    {
+        return binding.get().streaming;
+    }
 
+    public Object getValue(Object instance)
+    {
+        Binding binding = this.binding.get();
+        List<Field> path = binding.path;
+        for (int i = 0; i < path.size() - 1; i++) {
             try {
-                Object nextInstance = intermediateField.get(instance);
+                Object nextInstance = (Object) binding.getters[i].invokeExact(instance);
                 if (nextInstance == null) {
-                    nextInstance = ParserUtil.createInstance(intermediateField.getType());
-                    intermediateField.set(instance, nextInstance);
+                    nextInstance = ParserUtil.createInstance(path.get(i).getType());
+                    binding.setters[i].invokeExact(instance, nextInstance);
                 }
                 instance = nextInstance;
             }
-            catch (Exception e) {
-                throw new ParseException(e, "Error getting value of %s", pathName);
+            catch (Throwable e) {
+                throw new ParseException(asException(e), "Error getting value of %s", pathName(i));
             }
         }
         return instance;
@@ -95,6 +178,11 @@ public class Accessor
 
     public void addValues(Object commandInstance, Iterable<?> values, String argTitle)
     {
+        if (binding.get().streaming) {
+            streamValues(getValue(commandInstance), values);
+            return;
+        }
+
         if (Iterables.isEmpty(values)) {
             return;
         }
@@ -102,10 +190,11 @@ public class Accessor
         // get the actual instance
         Object instance = getValue(commandInstance);
 
-        Field field = path.get(path.size() - 1);
-        field.setAccessible(true);
-        if (Collection.class.isAssignableFrom(field.getType())) {
-            Collection<Object> collection = getOrCreateCollectionField(name, instance, field);
+        Binding binding = this.binding.get();
+        int last = binding.path.size() - 1;
+        Field field = binding.path.get(last);
+        if (multiValued) {
+            Collection<Object> collection = getOrCreateCollectionField(name, instance, field, binding.getters[last], binding.setters[last]);
             Iterables.addAll(collection, values);
         }
         else {
@@ -113,13 +202,127 @@ public class Accessor
                 throw new ParseException("Maximum of one argument allowed for argument \"%s\". Actual arguments: %s", argTitle, values);
             }
             try {
-                field.set(instance, Iterables.getLast(values));
+                binding.setters[last].invokeExact(instance, (Object) Iterables.getLast(values));
+            }
+            catch (Throwable e) {
+                throw new ParseException(asException(e), "Error setting %s for argument %s", field.getName(), name);
+            }
+        }
+
+    }
+
+    /**
+     * Sets an int field to a value kept unboxed by {@link ParsedOptions}; a field of another type gets the value as
+     * {@link #addValues(Object, Iterable)} would.
+     */
+    void setInt(Object commandInstance, int value)
+    {
+        MethodHandle setter = binding.get().primitiveSetter(int.class);
+        if (setter == null) {
+            addValues(commandInstance, Collections.singletonList(value));
+            return;
+        }
+        Object instance = getValue(commandInstance);
+        try {
+            setter.invokeExact(instance, value);
+        }
+        catch (Throwable e) {
+            throw setError(e);
+        }
+    }
+
+    void setLong(Object commandInstance, long value)
+    {
+        MethodHandle setter = binding.get().primitiveSetter(long.class);
+        if (setter == null) {
+            addValues(commandInstance, Collections.singletonList(value));
+            return;
+        }
+        Object instance = getValue(commandInstance);
+        try {
+            setter.invokeExact(instance, value);
+        }
+        catch (Throwable e) {
+            throw setError(e);
+        }
+    }
+
+    void setDouble(Object commandInstance, double value)
+    {
+        MethodHandle setter = binding.get().primitiveSetter(double.class);
+        if (setter == null) {
+            addValues(commandInstance, Collections.singletonList(value));
+            return;
+        }
+        Object instance = getValue(commandInstance);
+        try {
+            setter.invokeExact(instance, value);
+        }
+        catch (Throwable e) {
+            throw setError(e);
+        }
+    }
+
+    void setBoolean(Object commandInstance, boolean value)
+    {
+        MethodHandle setter = binding.get().primitiveSetter(boolean.class);
+        if (setter == null) {
+            addValues(commandInstance, Collections.singletonList(value));
+            return;
+        }
+        Object instance = getValue(commandInstance);
+        try {
+            setter.invokeExact(instance, value);
+        }
+        catch (Throwable e) {
+            throw setError(e);
+        }
+    }
+
+    private ParseException setError(Throwable e)
+    {
+        Binding binding = this.binding.get();
+        return new ParseException(asException(e), "Error setting %s for argument %s", binding.path.get(binding.path.size() - 1).getName(), name);
+    }
+
+    /**
+     * Hands the values to a streaming field, iterating them only once, and only when the field is a consumer; iterator
+     * and stream fields are set to iterate the values themselves.
+     */
+    private void streamValues(Object instance, Iterable<?> values)
+    {
+        Binding binding = this.binding.get();
+        int last = binding.path.size() - 1;
+        Field field = binding.path.get(last);
+        Class<?> type = field.getType();
+
+        if (Consumer.class.equals(type)) {
+            Object target;
+            try {
+                target = (Object) binding.getters[last].invokeExact(instance);
+            }
+            catch (Throwable e) {
+                throw new ParseException(asException(e), "Error getting consumer field %s for argument %s", field.getName(), name);
             }
-            catch (Exception e) {
-                throw new ParseException(e, "Error setting %s for argument %s", field.getName(), name);
+            if (target == null) {
+                throw new ParseException("Consumer field %s for argument %s is null", field.getName(), name);
             }
+            // the values are converted to the item type of the consumer, see getItemType
+            @SuppressWarnings("unchecked")
+            Consumer<Object> consumer = (Consumer<Object>) target;
+            for (Object value : values) {
+                consumer.accept(value);
+            }
+            return;
         }
 
+        Object stream = Iterator.class.equals(type) ? values.iterator() : StreamSupport.stream(values.spliterator(), false);
+        try {
+            binding.setters[last].invokeExact(instance, stream);
+        }
+        catch (Throwable e) {
+            throw new ParseException(asException(e), "Error setting %s for argument %s", field.getName(), name);
+        }
     }
 
     @Override
@@ -134,7 +337,10 @@ public class Accessor
 
         Accessor accessor = (Accessor) o;
 
-        if (!path.equals(accessor.path)) {
+        if (!fieldNames.equals(accessor.fieldNames)) {
+            return false;
+        }
+        if (!declaringClassNames.equals(accessor.declaringClassNames)) {
             return false;
         }
 
@@ -144,7 +350,13 @@ public class Accessor
     @Override
     public int hashCode()
     {
-        return path.hashCode();
+        // same as the hash code of the list of fields, so the iteration order of accessor sets does not depend on
+        // whether the fields have been loaded
+        int hashCode = 1;
+        for (int i = 0; i < fieldNames.size(); i++) {
+            hashCode = 31 * hashCode + (declaringClassNames.get(i).hashCode() ^ fieldNames.get(i).hashCode());
+        }
+        return hashCode;
     }
 
     @Override
@@ -153,6 +365,42 @@ public class Accessor
         return name;
     }
 
+    /**
+     * The resolved fields of an accessor path, with the method handles used to read and write them.
+     */
+    private static class Binding
+    {
+        private final List<Field> path;
+        private final Class<?> javaType;
+        private final MethodHandle[] getters;
+        private final MethodHandle[] setters;
+        private final boolean streaming;
+        // writes the last field without boxing when it is of a primitive type; null otherwise
+        private final MethodHandle primitiveSetter;
+
+        private Binding(String name, List<Field> path)
+        {
+            this.path = path;
+
+            Field field = path.get(path.size() - 1);
+            javaType = getItemType(name, field.getGenericType());
+            streaming = isStreamingType(field.getType());
+
+            getters = new MethodHandle[path.size()];
+            setters = new MethodHandle[path.size()];
+            for (int i = 0; i < path.size(); i++) {
+                getters[i] = getter(path.get(i));
+                setters[i] = setter(path.get(i));
+            }
+            primitiveSetter = field.getType().isPrimitive() ? unboxedSetter(field) : null;
+        }
+
+        private MethodHandle primitiveSetter(Class<?> type)
+        {
+            return primitiveSetter != null && primitiveSetter.type().parameterType(1).equals(type) ? primitiveSetter : null;
+        }
+    }
+
     //
     // Private reflection helper methods
     //
@@ -179,28 +427,104 @@ public class Accessor
         throw new ParseException("Parameters of Collection type '%s' are not supported. Please use List or Set instead.", type.getSimpleName());
     }
 
-    private static Collection<Object> getOrCreateCollectionField(String name, Object object, Field field)
+    private static Collection<Object> getOrCreateCollectionField(String name, Object object, Field field, MethodHandle getter, MethodHandle setter)
     {
         Collection<Object> collection;
         try {
-            collection = (Collection<Object>) field.get(object);
+            collection = (Collection<Object>) (Object) getter.invokeExact(object);
         }
-        catch (Exception e) {
-            throw new ParseException(e, "Error getting collection field %s for argument %s", field.getName(), name);
+        catch (Throwable e) {
+            throw new ParseException(asException(e), "Error getting collection field %s for argument %s", field.getName(), name);
         }
 
         if (collection == null) {
             collection = newCollection(field.getType());
             try {
-                field.set(object, collection);
+                setter.invokeExact(object, (Object) collection);
             }
-            catch (Exception e) {
-                throw new ParseException(e, "Error setting collection field %s for argument %s", field.getName(), name);
+            catch (Throwable e) {
+                throw new ParseException(asException(e), "Error setting collection field %s for argument %s", field.getName(), name);
             }
         }
         return collection;
     }
 
+    private String pathName(int index)
+    {
+        return Joiner.on('.').join(fieldNames.subList(0, index + 1));
+    }
+
+    private static List<Field> resolve(List<String> declaringClassNames, List<String> fieldNames, ClassLoader classLoader)
+    {
+        ImmutableList.Builder<Field> path = ImmutableList.builder();
+        for (int i = 0; i < fieldNames.size(); i++) {
+            try {
+                path.add(Class.forName(declaringClassNames.get(i), false, classLoader).getDeclaredField(fieldNames.get(i)));
+            }
+            catch (ClassNotFoundException | NoSuchFieldException e) {
+                throw new IllegalStateException(String.format("Unable to resolve field %s.%s", declaringClassNames.get(i), fieldNames.get(i)), e);
+            }
+        }
+        return path.build();
+    }
+
+    private static MethodHandle getter(Field field)
+    {
+        makeAccessible(field);
+        try {
+            return LOOKUP.unreflectGetter(field).asType(GETTER_TYPE);
+        }
+        catch (IllegalAccessException e) {
+            // fall back to reflection, which reports the access failure when the field is used
+            return FIELD_GET.bindTo(field);
+        }
+    }
+
+    private static MethodHandle setter(Field field)
+    {
+        makeAccessible(field);
+        try {
+            return LOOKUP.unreflectSetter(field).asType(SETTER_TYPE);
+        }
+        catch (IllegalAccessException e) {
+            // final fields can not be written through a method handle on every JVM, but reflection allows it
+            return FIELD_SET.bindTo(field);
+        }
+    }
+
+    private static MethodHandle unboxedSetter(Field field)
+    {
+        try {
+            return LOOKUP.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, field.getType()));
+        }
+        catch (IllegalAccessException e) {
+            // the boxed setter falls back to reflection
+            return null;
+        }
+    }
+
+    private static void makeAccessible(Field field)
+    {
+        try {
+            field.setAccessible(true);
+        }
+        catch (SecurityException ignored) {
+        }
+    }
+
+    private static Exception asException(Throwable e)
+    {
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return e instanceof Exception ? (Exception) e : new Exception(e);
+    }
+
+    private static boolean isStreamingType(Class<?> type)
+    {
+        return Iterator.class.equals(type) || Stream.class.equals(type) || Consumer.class.equals(type);
+    }
+
     private static Class<?> getItemType(String name, Type type)
     {
         Class<?> rawClass = getRawType(type);
@@ -208,6 +532,25 @@ public class Accessor
             throw new ParseException("Type of option %s be an exact type", name);
         }
 
+        if (isStreamingType(rawClass)) {
+            Type[] types = getTypeParameters(rawClass, type);
+            if ((types == null) || (types.length != 1)) {
+                throw new ParseException("Unable to get item type of %s option %s", rawClass.getSimpleName(), name);
+            }
+
+            // a consumer is usually declared as Consumer<? super T>
+            Type itemType = types[0];
+            if (itemType instanceof WildcardType) {
+                WildcardType wildcard = (WildcardType) itemType;
+                itemType = wildcard.getLowerBounds().length == 1 ? wildcard.getLowerBounds()[0] : wildcard.getUpperBounds()[0];
+            }
+            if (!(itemType instanceof Class)) {
+                throw new ParseException("%s type option %s must be an exact type", rawClass.getSimpleName(), name);
+            }
+
+            return (Class<?>) itemType;
+        }
+
         if (!Collection.class.isAssignableFrom(rawClass)) {
             return rawClass;
         }
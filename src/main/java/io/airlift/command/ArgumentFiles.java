@@ -0,0 +1,222 @@
+package io.airlift.command;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Expands {@code @file} arguments into the arguments read from the file, as javac does.  The files are memory mapped
+ * and tokenized as the parser consumes the arguments, so an argument file is never held in memory as a whole.
+ * <p>
+ * Arguments in a file are separated by whitespace.  Like in a shell, single quotes keep everything up to the next
+ * single quote, double quotes keep everything up to the next double quote except that a backslash escapes a double
+ * quote or a backslash, a backslash outside of quotes escapes the next character, or the line break it precedes, and
+ * a {@code #} starting an argument comments out the rest of the line.  Argument files may name other argument files,
+ * up to a maximum depth; relative paths are resolved against the working directory.
+ */
+final class ArgumentFiles
+{
+    public static final int DEFAULT_MAX_DEPTH = 8;
+
+    // the largest region a single buffer can map
+    private static final long MAX_REGION_SIZE = Integer.MAX_VALUE;
+
+    private ArgumentFiles()
+    {
+    }
+
+    /**
+     * Returns the arguments with every argument file expanded, expanding lazily as the returned iterator is consumed.
+     *
+     * @param maxDepth how deep argument files may be nested, 1 allowing argument files only among the arguments
+     */
+    public static Iterable<String> expand(final Iterable<String> args, final int maxDepth)
+    {
+        Preconditions.checkNotNull(args, "args is null");
+        Preconditions.checkArgument(maxDepth > 0, "maxDepth must be greater than 0");
+        return () -> new Expander(args.iterator(), maxDepth);
+    }
+
+    private static class Expander
+            extends AbstractIterator<String>
+    {
+        private final Deque<Iterator<String>> sources = new ArrayDeque<>();
+        private final int maxDepth;
+
+        private Expander(Iterator<String> args, int maxDepth)
+        {
+            this.sources.push(args);
+            this.maxDepth = maxDepth;
+        }
+
+        @Override
+        protected String computeNext()
+        {
+            while (!sources.isEmpty()) {
+                Iterator<String> source = sources.peek();
+                if (!source.hasNext()) {
+                    sources.pop();
+                    continue;
+                }
+
+                String arg = source.next();
+                if (arg.length() > 1 && arg.charAt(0) == '@') {
+                    // the arguments themselves are not counted as a level
+                    if (sources.size() > maxDepth) {
+                        throw new ParseException("Argument file %s is nested more than %d levels deep", arg.substring(1), maxDepth);
+                    }
+                    sources.push(new Tokenizer(Paths.get(arg.substring(1))));
+                    continue;
+                }
+                return arg;
+            }
+            return endOfData();
+        }
+    }
+
+    /**
+     * Reads the arguments of a file from its memory mapped regions, one argument per call.
+     */
+    private static class Tokenizer
+            extends AbstractIterator<String>
+    {
+        private final Path file;
+        private final List<ByteBuffer> regions;
+        private int region;
+
+        private byte[] token = new byte[64];
+        private int length;
+
+        private Tokenizer(Path file)
+        {
+            this.file = file;
+            this.regions = map(file);
+        }
+
+        private static List<ByteBuffer> map(Path file)
+        {
+            // the mappings stay valid once the channel is closed, so nothing is left open if the parse stops early
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                ImmutableList.Builder<ByteBuffer> regions = ImmutableList.builder();
+                long size = channel.size();
+                for (long position = 0; position < size; position += MAX_REGION_SIZE) {
+                    regions.add(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAX_REGION_SIZE, size - position)));
+                }
+                return regions.build();
+            }
+            catch (IOException e) {
+                throw new ParseException(e, "Unable to read argument file %s", file);
+            }
+        }
+
+        @Override
+        protected String computeNext()
+        {
+            int c = skipWhitespaceAndComments();
+            if (c == -1) {
+                return endOfData();
+            }
+
+            length = 0;
+            while (c != -1 && !isWhitespace(c)) {
+                if (c == '\'') {
+                    while ((c = read()) != '\'') {
+                        append(checkQuoted(c));
+                    }
+                }
+                else if (c == '"') {
+                    while ((c = read()) != '"') {
+                        if (checkQuoted(c) == '\\') {
+                            int next = checkQuoted(read());
+                            if (next != '"' && next != '\\') {
+                                append('\\');
+                            }
+                            c = next;
+                        }
+                        append(c);
+                    }
+                }
+                else if (c == '\\') {
+                    c = read();
+                    if (c == '\r') {
+                        // a line continuation, possibly a windows one
+                        c = read();
+                        if (c != '\n') {
+                            continue;
+                        }
+                    }
+                    else if (c != '\n' && c != -1) {
+                        append(c);
+                    }
+                }
+                else {
+                    append(c);
+                }
+                c = read();
+            }
+            return new String(token, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private int skipWhitespaceAndComments()
+        {
+            int c = read();
+            while (true) {
+                while (c != -1 && isWhitespace(c)) {
+                    c = read();
+                }
+                if (c != '#') {
+                    return c;
+                }
+                while (c != -1 && c != '\n') {
+                    c = read();
+                }
+            }
+        }
+
+        private int checkQuoted(int c)
+        {
+            if (c == -1) {
+                throw new ParseException("Unterminated quote in argument file %s", file);
+            }
+            return c;
+        }
+
+        private void append(int c)
+        {
+            if (length == token.length) {
+                token = Arrays.copyOf(token, length * 2);
+            }
+            token[length++] = (byte) c;
+        }
+
+        private int read()
+        {
+            while (region < regions.size()) {
+                ByteBuffer buffer = regions.get(region);
+                if (buffer.hasRemaining()) {
+                    return buffer.get() & 0xFF;
+                }
+                region++;
+            }
+            return -1;
+        }
+
+        private static boolean isWhitespace(int c)
+        {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+        }
+    }
+}
@@ -18,11 +18,23 @@
 
 package io.airlift.command;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
-
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
@@ -32,12 +44,18 @@ import io.airlift.command.model.CommandGroupMetadata;
 import io.airlift.command.model.CommandMetadata;
 import io.airlift.command.model.GlobalMetadata;
 import io.airlift.command.model.MetadataLoader;
+import io.airlift.command.model.MetadataSnapshot;
 import io.airlift.command.model.OptionMetadata;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Maps.newHashMap;
 import static io.airlift.command.ParserUtil.createInstance;
 
+/**
+ * A command line interface built by a {@link CliBuilder}.  A built Cli, and the metadata it exposes, is immutable, so a
+ * single instance can parse concurrently from any number of threads provided its {@link CommandFactory} is thread-safe,
+ * as the default one is.  A {@link TypeConverter} is immutable too and can be shared between several Cli instances.
+ */
 public class Cli<C>
 {
     public static <T> CliBuilder<T> builder(String name)
@@ -46,6 +64,30 @@ public class Cli<C>
         return new CliBuilder<>(name);
     }
 
+    /**
+     * Creates a Cli from a metadata snapshot written by {@link #writeSnapshot(Path)}.  Command classes are loaded with the
+     * context class loader, and only when the command is invoked or its metadata is otherwise needed.  To configure
+     * the Cli further, build it with {@link CliBuilder#fromSnapshot(Path)}.
+     */
+    public static <T> Cli<T> fromSnapshot(Path snapshot)
+            throws IOException
+    {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        return fromSnapshot(snapshot, classLoader != null ? classLoader : Cli.class.getClassLoader());
+    }
+
+    public static <T> Cli<T> fromSnapshot(Path snapshot, ClassLoader classLoader)
+            throws IOException
+    {
+        return fromSnapshot(snapshot, classLoader, new CommandFactoryDefault<T>());
+    }
+
+    public static <T> Cli<T> fromSnapshot(Path snapshot, ClassLoader classLoader, CommandFactory<T> commandFactory)
+            throws IOException
+    {
+        return new Cli<>(MetadataSnapshot.read(snapshot, classLoader), new TypeConverter(), commandFactory, 0);
+    }
+
     @Deprecated
     public static CliBuilder<Object> buildCli(String name)
     {
@@ -58,39 +100,72 @@ public class Cli<C>
         return builder(name);
     }
 
+    // the parser state reused by the batch parses of each thread, reset after every command line so it holds on to
+    // neither the metadata nor the values of the last one
+    private static final ThreadLocal<ParseStateBuilder> BATCH_STATE = ThreadLocal.withInitial(ParseStateBuilder::new);
+
     private final GlobalMetadata metadata;
 
     private final CommandFactory<C> mCommandFactory;
 
+    private final TypeConverter typeConverter;
+
+    private final int argumentFileDepth;
+
+    private final SpellingSuggestions spellingSuggestions = new SpellingSuggestions();
+
+    private final HelpCache helpCache;
+
     private Cli(String name,
                 Integer navOrder,
                 String description,
                 TypeConverter typeConverter,
                 Class<? extends C> defaultCommand,
                 CommandFactory<C> theCommandFactory,
-                Iterable<Class<? extends C>> defaultGroupCommands,
-                Iterable<GroupBuilder<C>> groups) {
-        Preconditions.checkNotNull(name, "name is null");
+                Iterable<CommandRegistration> defaultGroupCommands,
+                Iterable<GroupBuilder<C>> groups,
+                boolean lazyLoading,
+                int argumentFileDepth) {
+        this(loadMetadata(name, navOrder, description, defaultCommand, defaultGroupCommands, groups, lazyLoading), typeConverter, theCommandFactory, argumentFileDepth);
+    }
+
+    private Cli(GlobalMetadata metadata, TypeConverter typeConverter, CommandFactory<C> theCommandFactory, int argumentFileDepth)
+    {
         Preconditions.checkNotNull(typeConverter, "typeConverter is null");
         Preconditions.checkNotNull(theCommandFactory);
 
+        this.metadata = metadata;
         mCommandFactory = theCommandFactory;
+        this.typeConverter = typeConverter;
+        this.argumentFileDepth = argumentFileDepth;
+        this.helpCache = new HelpCache(metadata);
+    }
+
+    private static <C> GlobalMetadata loadMetadata(String name,
+                                                   Integer navOrder,
+                                                   String description,
+                                                   Class<? extends C> defaultCommand,
+                                                   Iterable<CommandRegistration> defaultGroupCommands,
+                                                   Iterable<GroupBuilder<C>> groups,
+                                                   boolean lazyLoading)
+    {
+        Preconditions.checkNotNull(name, "name is null");
 
         CommandMetadata defaultCommandMetadata = null;
         if (defaultCommand != null) {
-            defaultCommandMetadata = MetadataLoader.loadCommand(defaultCommand);
+            defaultCommandMetadata = new CommandRegistration(defaultCommand).load(lazyLoading);
         }
 
         final List<CommandMetadata> allCommands = new ArrayList<>();
         
-        List<CommandMetadata> defaultCommandGroup = Lists.newArrayList(MetadataLoader.loadCommands(defaultGroupCommands));
+        List<CommandMetadata> defaultCommandGroup = loadCommands(defaultGroupCommands, lazyLoading);
 
         // currently the default command is required to be in the commands list. If that changes, we'll need to add it here and add checks for existence
         allCommands.addAll(defaultCommandGroup);
         
         List<CommandGroupMetadata> commandGroups = Lists.newArrayList(Iterables.transform(groups, group -> {
-            CommandMetadata groupDefault = MetadataLoader.loadCommand(group.defaultCommand);
-            List<CommandMetadata> groupCommands = MetadataLoader.loadCommands(group.commands);
+            CommandMetadata groupDefault = group.defaultCommand == null ? null : group.defaultCommand.load(lazyLoading);
+            List<CommandMetadata> groupCommands = loadCommands(group.commands, lazyLoading);
 
             // currentlly the default command is required to be in the commands list. If that changes, we'll need to add it here and add checks for existence
             allCommands.addAll(groupCommands);
@@ -102,7 +177,16 @@ public class Cli<C>
         // rather than change the entire way metadata is loaded, I figured just post-processing was an easier, yet uglier, way to go
         MetadataLoader.loadCommandsIntoGroupsByAnnotation(allCommands,commandGroups, defaultCommandGroup);
         
-        this.metadata = MetadataLoader.loadGlobal(name, navOrder, description, defaultCommandMetadata, ImmutableList.copyOf(defaultCommandGroup), ImmutableList.copyOf(commandGroups));
+        return MetadataLoader.loadGlobal(name, navOrder, description, defaultCommandMetadata, ImmutableList.copyOf(defaultCommandGroup), ImmutableList.copyOf(commandGroups));
+    }
+
+    private static List<CommandMetadata> loadCommands(Iterable<CommandRegistration> commands, boolean lazyLoading)
+    {
+        List<CommandMetadata> metadata = newArrayList();
+        for (CommandRegistration command : commands) {
+            metadata.add(command.load(lazyLoading));
+        }
+        return metadata;
     }
 
     public GlobalMetadata getMetadata()
@@ -110,6 +194,24 @@ public class Cli<C>
         return metadata;
     }
 
+    /**
+     * Returns the help of this Cli, rendered once per command, format and column size.
+     */
+    public HelpCache getHelpCache()
+    {
+        return helpCache;
+    }
+
+    /**
+     * Writes the metadata of this Cli to a snapshot which {@link #fromSnapshot(Path)} can start from without loading
+     * the command classes.  The snapshot must be rewritten whenever the commands change.
+     */
+    public void writeSnapshot(Path snapshot)
+            throws IOException
+    {
+        MetadataSnapshot.write(metadata, snapshot);
+    }
+
     public C parse(CommandFactory<C> commandFactory, String... args)
     {
         return parse(commandFactory, ImmutableList.copyOf(args));
@@ -128,9 +230,116 @@ public class Cli<C>
     public C parse(CommandFactory<C> commandFactory, Iterable<String> args)
     {
         Preconditions.checkNotNull(args, "args is null");
-        
-        Parser parser = new Parser();
-        ParseState state = parser.parse(metadata, args);
+
+        ParseState state = parseState(args, new ParseStateBuilder());
+        validate(state);
+        return createCommand(commandFactory, state);
+    }
+
+    public ParseResult<C> tryParse(String... args)
+    {
+        return tryParse(ImmutableList.copyOf(args));
+    }
+
+    /**
+     * Parses the command line like {@link #parse(Iterable)}, but returns an invalid command line as a
+     * {@link ParseResult} holding the {@link ParseException} rather than throwing it.  The exception describes the
+     * error through its type and getters, and has no stack trace, which is the costly part of creating it.  Any other
+     * exception thrown while parsing the command line or creating the command is returned as the cause of a
+     * {@link ParseException}.
+     */
+    public ParseResult<C> tryParse(Iterable<String> args)
+    {
+        Preconditions.checkNotNull(args, "args is null");
+
+        return tryParse(args instanceof List ? (List<String>) args : ImmutableList.copyOf(args), new ParseStateBuilder());
+    }
+
+    private ParseResult<C> tryParse(final List<String> args, final ParseStateBuilder scratch)
+    {
+        return ParseException.withoutStackTraces(() -> {
+            try {
+                ParseState state = parseState(args, scratch);
+                ParseException error = validationError(state);
+                if (error != null) {
+                    return ParseResult.failure(args, error);
+                }
+                return ParseResult.success(args, createCommand(mCommandFactory, state));
+            }
+            catch (ParseException e) {
+                return ParseResult.failure(args, e);
+            }
+            catch (RuntimeException e) {
+                return ParseResult.failure(args, new ParseException(e, "Error parsing command line: %s", e));
+            }
+        });
+    }
+
+    /**
+     * Parses each command line lazily, as the returned stream is consumed, without throwing for invalid command lines;
+     * see {@link #parseBatch(Iterable, ParseStatistics)}.
+     */
+    public Stream<ParseResult<C>> parseBatch(Iterable<? extends List<String>> commandLines)
+    {
+        return parseBatch(commandLines, new ParseStatistics());
+    }
+
+    /**
+     * Parses each command line lazily, as the returned stream is consumed, recording the outcome in the statistics.
+     * An invalid command line, or one that fails otherwise, results in a {@link ParseResult} holding its
+     * {@link ParseException} rather than ending the batch, see {@link #tryParse(Iterable)}.  The stream is sequential; made parallel, it parses on the fork join pool its terminal operation runs
+     * in, see {@link #parseBatch(Iterable, ForkJoinPool, Consumer)}.  Each thread reuses its parser state across the
+     * command lines it parses.
+     */
+    public Stream<ParseResult<C>> parseBatch(Iterable<? extends List<String>> commandLines, final ParseStatistics statistics)
+    {
+        Preconditions.checkNotNull(commandLines, "commandLines is null");
+        Preconditions.checkNotNull(statistics, "statistics is null");
+
+        return StreamSupport.stream(commandLines.spliterator(), false).map(commandLine -> {
+            long start = System.nanoTime();
+            ParseStateBuilder scratch = BATCH_STATE.get();
+            ParseResult<C> result;
+            try {
+                result = tryParse(commandLine, scratch);
+            }
+            finally {
+                scratch.reset();
+            }
+            statistics.record(result.isSuccess(), System.nanoTime() - start);
+            return result;
+        });
+    }
+
+    /**
+     * Parses the command lines in parallel on the given pool, handing each result to the consumer, which must be
+     * thread-safe, and returns once all of them are parsed.  Results are handed over in no particular order.
+     */
+    public ParseStatistics parseBatch(Iterable<? extends List<String>> commandLines, ForkJoinPool pool, final Consumer<? super ParseResult<C>> results)
+    {
+        Preconditions.checkNotNull(pool, "pool is null");
+        Preconditions.checkNotNull(results, "results is null");
+
+        final ParseStatistics statistics = new ParseStatistics();
+        final Stream<ParseResult<C>> batch = parseBatch(commandLines, statistics).parallel();
+        try {
+            pool.submit(() -> batch.forEach(results)).get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+        return statistics;
+    }
+
+    private ParseState parseState(Iterable<String> args, ParseStateBuilder scratch)
+    {
+        Parser parser = new Parser(typeConverter);
+        ParseState state = parser.parse(metadata, expandArgumentFiles(args), scratch);
 
         if (state.getCommand() == null) {
             if (state.getGroup() != null) {
@@ -140,12 +349,16 @@ public class Cli<C>
                 state = state.withCommand(metadata.getDefaultCommand());
             }
         }
+        return state;
+    }
 
-        validate(state);
-
+    private C createCommand(CommandFactory<C> commandFactory, ParseState state)
+    {
         CommandMetadata command = state.getCommand();
 
-        ImmutableMap.Builder<Class<?>, Object> bindings = ImmutableMap.<Class<?>, Object>builder().put(GlobalMetadata.class, metadata);
+        ImmutableMap.Builder<Class<?>, Object> bindings = ImmutableMap.<Class<?>, Object>builder()
+                .put(GlobalMetadata.class, metadata)
+                .put(HelpCache.class, helpCache);
 
         if (state.getGroup() != null) {
             bindings.put(CommandGroupMetadata.class, state.getGroup());
@@ -155,22 +368,15 @@ public class Cli<C>
             bindings.put(CommandMetadata.class, state.getCommand());
         }
 
-        return createInstance(command.getType(),
-                command.getAllOptions(),
-                state.getParsedOptions(),
-                command.getArguments(),
-                state.getParsedArguments(),
-                command.getMetadataInjections(),
-                bindings.build(),
-                commandFactory);
+        return createInstance(command, state.getOptionValues(), state.getArguments(), bindings.build(), commandFactory);
     }
 
     public C parse(C commandInstance, String... args)
     {
         Preconditions.checkNotNull(args, "args is null");
         
-        Parser parser = new Parser();
-        ParseState state = parser.parse(metadata, args);
+        Parser parser = new Parser(typeConverter);
+        ParseState state = parser.parse(metadata, expandArgumentFiles(ImmutableList.copyOf(args)));
 
         CommandMetadata command = MetadataLoader.loadCommand(commandInstance.getClass());
 
@@ -178,7 +384,9 @@ public class Cli<C>
 
         validate(state);
 
-        ImmutableMap.Builder<Class<?>, Object> bindings = ImmutableMap.<Class<?>, Object>builder().put(GlobalMetadata.class, metadata);
+        ImmutableMap.Builder<Class<?>, Object> bindings = ImmutableMap.<Class<?>, Object>builder()
+                .put(GlobalMetadata.class, metadata)
+                .put(HelpCache.class, helpCache);
 
         if (state.getGroup() != null) {
             bindings.put(CommandGroupMetadata.class, state.getGroup());
@@ -186,53 +394,67 @@ public class Cli<C>
 
         bindings.put(CommandMetadata.class, command);
 
-	    return ParserUtil.injectOptions(commandInstance,
-		                                command.getAllOptions(),
-		                                state.getParsedOptions(),
-		                                command.getArguments(),
-		                                state.getParsedArguments(),
-		                                command.getMetadataInjections(),
-		                                bindings.build());
+        return ParserUtil.injectOptions(commandInstance, command, state.getOptionValues(), state.getArguments(), bindings.build());
     }
     
+    private Iterable<String> expandArgumentFiles(Iterable<String> args)
+    {
+        return argumentFileDepth > 0 ? ArgumentFiles.expand(args, argumentFileDepth) : args;
+    }
+
     private void validate(ParseState state)
+    {
+        ParseException error = validationError(state);
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Returns why the parsed command line is invalid, or null if it is valid.
+     */
+    private ParseException validationError(ParseState state)
     {
         CommandMetadata command = state.getCommand();
         if (command == null) {
             List<String> unparsedInput = state.getUnparsedInput();
             if (unparsedInput.isEmpty()) {
-                throw new ParseCommandMissingException();
+                return new ParseCommandMissingException();
             }
             else {
-                throw new ParseCommandUnrecognizedException(unparsedInput);
+                return new ParseCommandUnrecognizedException(unparsedInput, spellingSuggestions.suggestCommands(metadata, state.getGroup(), unparsedInput.get(0)));
             }
         }
 
         ArgumentsMetadata arguments = command.getArguments();
-        if (state.getParsedArguments().isEmpty() && arguments != null && arguments.isRequired()) {
-            throw new ParseArgumentsMissingException(arguments.getTitle());
+        if (!state.hasArguments() && arguments != null && arguments.isRequired()) {
+            return new ParseArgumentsMissingException(arguments.getTitle());
         }
         
         if (!state.getUnparsedInput().isEmpty()) {
-            throw new ParseArgumentsUnexpectedException(state.getUnparsedInput());
+            List<String> unparsedInput = state.getUnparsedInput();
+            return new ParseArgumentsUnexpectedException(unparsedInput, spellingSuggestions.suggestOptions(command, unparsedInput.get(0)));
         }
 
         if (state.getLocation() == Context.OPTION) {
-            throw new ParseOptionMissingValueException(state.getCurrentOption().getTitle());
+            return new ParseOptionMissingValueException(state.getCurrentOption().getTitle());
         }
 
-        for (OptionMetadata option : command.getAllOptions()) {
-            if (option.isRequired() && !state.getParsedOptions().containsKey(option)) {
-                throw new ParseOptionMissingException(option.getOptions().iterator().next());
+        // the values of the state are bound to its command, so the options are checked by ordinal
+        ParsedOptions parsedOptions = state.getOptionValues();
+        List<OptionMetadata> allOptions = command.getAllOptions();
+        for (int ordinal = 0; ordinal < allOptions.size(); ordinal++) {
+            OptionMetadata option = allOptions.get(ordinal);
+            if (option.isRequired() && !parsedOptions.containsOrdinal(ordinal)) {
+                return new ParseOptionMissingException(option.getOptions().iterator().next());
             }
         }
 
-        for (OptionMetadata optionMetadata : state.getParsedOptions().keys()) {
-            List<OptionMetadata> allOptions = command.getAllOptions();
-            if (!allOptions.contains(optionMetadata)) {
-                throw new ParseGlobalOptionUnexpectedException(optionMetadata);
-            }
+        int unknown = parsedOptions.indexOfUnknownOption();
+        if (unknown >= 0) {
+            return new ParseGlobalOptionUnexpectedException(parsedOptions.getOption(unknown));
         }
+        return null;
     }
 
     //
@@ -247,9 +469,13 @@ public class Cli<C>
         protected TypeConverter typeConverter = new TypeConverter();
         protected String optionSeparators;
         private Class<? extends C> defaultCommand;
-        private final List<Class<? extends C>> defaultCommandGroupCommands = newArrayList();
+        private final List<CommandRegistration> defaultCommandGroupCommands = newArrayList();
         protected final Map<String, GroupBuilder<C>> groups = newHashMap();
         protected CommandFactory<C> commandFactory = new CommandFactoryDefault<>();
+        protected boolean lazyLoading;
+        protected int argumentFileDepth;
+        protected final Set<UsageFormat> prewarmedHelpFormats = EnumSet.noneOf(UsageFormat.class);
+        private GlobalMetadata snapshot;
 
         public CliBuilder(String name)
         {
@@ -281,12 +507,18 @@ public class Cli<C>
             return this;
         }
 
-//        public CliBuilder<C> withTypeConverter(TypeConverter typeConverter)
-//        {
-//            Preconditions.checkNotNull(typeConverter, "typeConverter is null");
-//            this.typeConverter = typeConverter;
-//            return this;
-//        }
+        public CliBuilder<C> withTypeConverter(TypeConverter typeConverter)
+        {
+            Preconditions.checkNotNull(typeConverter, "typeConverter is null");
+            this.typeConverter = typeConverter;
+            return this;
+        }
+
+        public <T> CliBuilder<C> withTypeConverter(Class<T> type, Function<String, ? extends T> converter)
+        {
+            this.typeConverter = typeConverter.withConverter(type, converter);
+            return this;
+        }
 
 //        public CliBuilder<C> withOptionSeparators(String optionsSeparator)
 //        {
@@ -295,6 +527,73 @@ public class Cli<C>
 //            return this;
 //        }
 
+        /**
+         * Defers loading the command options and arguments of the commands registered by class, in the CLI and in its
+         * groups, until a command is invoked or its help is shown; only the {@code @Command} annotations and the global
+         * and group options are read when the CLI is built.  Lazily loaded commands are not placed into groups by their
+         * annotations, so those groups must be declared with {@link #withGroup(String)}.
+         */
+        public CliBuilder<C> withLazyLoading()
+        {
+            this.lazyLoading = true;
+            return this;
+        }
+
+        /**
+         * Expands the {@code @file} arguments given to the CLI into the arguments read from the file, see
+         * {@link #withArgumentFiles(int)}; argument files may be nested 8 levels deep.
+         */
+        public CliBuilder<C> withArgumentFiles()
+        {
+            return withArgumentFiles(ArgumentFiles.DEFAULT_MAX_DEPTH);
+        }
+
+        /**
+         * Expands the {@code @file} arguments given to the CLI into the arguments read from the file, which is
+         * tokenized with shell like quoting while the arguments are parsed.  Argument files may name other argument
+         * files, nested up to the given depth; a depth of 1 only allows argument files among the arguments themselves.
+         */
+        public CliBuilder<C> withArgumentFiles(int maxDepth)
+        {
+            Preconditions.checkArgument(maxDepth > 0, "maxDepth must be greater than 0");
+            this.argumentFileDepth = maxDepth;
+            return this;
+        }
+
+        /**
+         * Renders the help of the CLI, its groups and commands in the formats when the CLI is built, in parallel on
+         * the common pool, so even the first request for help is served from the {@link HelpCache}.  Prewarming loads
+         * the commands registered lazily.
+         */
+        public CliBuilder<C> withPrewarmedHelp(UsageFormat format, UsageFormat... moreFormats)
+        {
+            this.prewarmedHelpFormats.addAll(Lists.asList(format, moreFormats));
+            return this;
+        }
+
+        /**
+         * Builds the CLI from a metadata snapshot written by {@link Cli#writeSnapshot(Path)} rather than from
+         * registered commands, see {@link Cli#fromSnapshot(Path)}; the other settings of this builder still apply.
+         */
+        public CliBuilder<C> fromSnapshot(Path snapshot)
+                throws IOException
+        {
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            return fromSnapshot(snapshot, classLoader != null ? classLoader : Cli.class.getClassLoader());
+        }
+
+        public CliBuilder<C> fromSnapshot(Path snapshot, ClassLoader classLoader)
+                throws IOException
+        {
+            Preconditions.checkNotNull(snapshot, "snapshot is null");
+            Preconditions.checkNotNull(classLoader, "classLoader is null");
+
+            GlobalMetadata metadata = MetadataSnapshot.read(snapshot, classLoader);
+            Preconditions.checkArgument(name.equals(metadata.getName()), "Snapshot %s is of CLI %s, not %s", snapshot, metadata.getName(), name);
+            this.snapshot = metadata;
+            return this;
+        }
+
         public CliBuilder<C> withDefaultCommand(Class<? extends C> defaultCommand)
         {
             this.defaultCommand = defaultCommand;
@@ -303,21 +602,44 @@ public class Cli<C>
 
         public CliBuilder<C> withCommand(Class<? extends C> command)
         {
-            this.defaultCommandGroupCommands.add(command);
+            this.defaultCommandGroupCommands.add(new CommandRegistration(command));
+            return this;
+        }
+
+        /**
+         * Registers a command by name; the named class is only loaded, with the context class loader, when the command
+         * is invoked or its metadata is otherwise needed.  The command is always loaded lazily, see
+         * {@link #withLazyLoading()}.
+         */
+        public CliBuilder<C> withCommand(String name, String className)
+        {
+            this.defaultCommandGroupCommands.add(new CommandRegistration(name, className));
+            return this;
+        }
+
+        /**
+         * Registers a command by name; the supplier is only asked for the command class when the command is invoked
+         * or its metadata is otherwise needed.
+         *
+         * @see #withCommand(String, String)
+         */
+        public CliBuilder<C> withCommand(String name, Supplier<Class<? extends C>> command)
+        {
+            this.defaultCommandGroupCommands.add(new CommandRegistration(name, command));
             return this;
         }
 
         @SafeVarargs
         public final CliBuilder<C> withCommands(Class<? extends C> command, Class<? extends C>... moreCommands)
         {
-            this.defaultCommandGroupCommands.add(command);
-            this.defaultCommandGroupCommands.addAll(ImmutableList.copyOf(moreCommands));
-            return this;
+            return withCommands(Lists.asList(command, moreCommands));
         }
 
         public CliBuilder<C> withCommands(Iterable<Class<? extends C>> commands)
         {
-            this.defaultCommandGroupCommands.addAll(ImmutableList.copyOf(commands));
+            for (Class<? extends C> command : commands) {
+                withCommand(command);
+            }
             return this;
         }
 
@@ -345,7 +667,19 @@ public class Cli<C>
 
         public Cli<C> build()
         {
-            return new Cli<>(name, navOrder, description, typeConverter, defaultCommand, commandFactory, defaultCommandGroupCommands, groups.values());
+            Cli<C> cli;
+            if (snapshot != null) {
+                Preconditions.checkState(navOrder == null && description == null && defaultCommand == null && defaultCommandGroupCommands.isEmpty() && groups.isEmpty(),
+                        "CLI %s is built from a snapshot, which already holds its description and commands", name);
+                cli = new Cli<>(snapshot, typeConverter, commandFactory, argumentFileDepth);
+            }
+            else {
+                cli = new Cli<>(name, navOrder, description, typeConverter, defaultCommand, commandFactory, defaultCommandGroupCommands, groups.values(), lazyLoading, argumentFileDepth);
+            }
+            if (!prewarmedHelpFormats.isEmpty()) {
+                cli.helpCache.prewarm(prewarmedHelpFormats, HelpCache.DEFAULT_COLUMN_SIZE, ForkJoinPool.commonPool());
+            }
+            return cli;
         }
     }
 
@@ -354,9 +688,9 @@ public class Cli<C>
         private final String name;
         private String description = null;
         private String markdownDescription = null;
-        private Class<? extends C> defaultCommand = null;
+        private CommandRegistration defaultCommand = null;
 
-        private final List<Class<? extends C>> commands = newArrayList();
+        private final List<CommandRegistration> commands = newArrayList();
 
         private GroupBuilder(String name)
         {
@@ -385,31 +719,110 @@ public class Cli<C>
         public GroupBuilder<C> withDefaultCommand(Class<? extends C> defaultCommand)
         {
             Preconditions.checkNotNull(defaultCommand, "defaultCommand for group %s is null", name);
-            String existingName = this.defaultCommand == null ? null : this.defaultCommand.getName();
-            Preconditions.checkState(this.defaultCommand == null, "defaultCommand for group %s is already set to %s", name, existingName);
-            this.defaultCommand = defaultCommand;
+            Preconditions.checkState(this.defaultCommand == null, "defaultCommand for group %s is already set to %s", name, this.defaultCommand);
+            this.defaultCommand = new CommandRegistration(defaultCommand);
             return this;
         }
 
         public GroupBuilder<C> withCommand(Class<? extends C> command)
         {
             Preconditions.checkNotNull(command, "command for group %s is null", name);
-            commands.add(command);
+            commands.add(new CommandRegistration(command));
+            return this;
+        }
+
+        /**
+         * Registers a command of this group by name, see {@link CliBuilder#withCommand(String, String)}.
+         */
+        public GroupBuilder<C> withCommand(String name, String className)
+        {
+            commands.add(new CommandRegistration(name, className));
+            return this;
+        }
+
+        /**
+         * Registers a command of this group by name, see {@link CliBuilder#withCommand(String, Supplier)}.
+         */
+        public GroupBuilder<C> withCommand(String name, Supplier<Class<? extends C>> command)
+        {
+            commands.add(new CommandRegistration(name, command));
             return this;
         }
 
         @SafeVarargs
         public final GroupBuilder<C> withCommands(Class<? extends C> command, Class<? extends C>... moreCommands)
         {
-            this.commands.add(command);
-            this.commands.addAll(ImmutableList.copyOf(moreCommands));
-            return this;
+            return withCommands(Lists.asList(command, moreCommands));
         }
 
         public GroupBuilder<C> withCommands(Iterable<Class<? extends C>> commands)
         {
-            this.commands.addAll(ImmutableList.copyOf(commands));
+            for (Class<? extends C> command : commands) {
+                withCommand(command);
+            }
             return this;
         }
     }
+
+    /**
+     * A command registered with a builder, either by class or by name.  Commands registered by name are always
+     * loaded lazily, commands registered by class only when the CLI is built with lazy loading.
+     */
+    private static class CommandRegistration
+    {
+        private final String name;
+        private final Class<?> type;
+        private final Supplier<? extends Class<?>> lazyType;
+
+        private CommandRegistration(Class<?> type)
+        {
+            this.name = null;
+            this.type = type;
+            this.lazyType = null;
+        }
+
+        private CommandRegistration(String name, Supplier<? extends Class<?>> type)
+        {
+            Preconditions.checkNotNull(name, "name is null");
+            Preconditions.checkArgument(!name.isEmpty(), "name is empty");
+            Preconditions.checkNotNull(type, "command for %s is null", name);
+            this.name = name;
+            this.type = null;
+            this.lazyType = type;
+        }
+
+        private CommandRegistration(String name, final String className)
+        {
+            this(name, classSupplier(className));
+        }
+
+        private static Supplier<Class<?>> classSupplier(final String className)
+        {
+            Preconditions.checkNotNull(className, "className is null");
+            ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+            final ClassLoader classLoader = contextClassLoader != null ? contextClassLoader : Cli.class.getClassLoader();
+            return () -> {
+                try {
+                    return Class.forName(className, true, classLoader);
+                }
+                catch (ClassNotFoundException e) {
+                    throw new IllegalArgumentException("Command class " + className + " not found", e);
+                }
+            };
+        }
+
+        private CommandMetadata load(boolean lazyLoading)
+        {
+            if (type == null) {
+                return MetadataLoader.loadCommandLazily(name, lazyType);
+            }
+            return lazyLoading ? MetadataLoader.loadCommandLazily(type) : MetadataLoader.loadCommand(type);
+        }
+
+        @Override
+        public String toString()
+        {
+            return type != null ? type.getName() : name;
+        }
+    }
 }
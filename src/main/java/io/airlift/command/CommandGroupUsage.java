@@ -1,6 +1,7 @@
 package io.airlift.command;
 
-import java.util.Collections;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
@@ -56,9 +57,7 @@ public class CommandGroupUsage
      */
     public void usage(@Nullable GlobalMetadata global, CommandGroupMetadata group)
     {
-        StringBuilder stringBuilder = new StringBuilder();
-        usage(global, group, stringBuilder);
-        System.out.println(stringBuilder);
+        UsageHelper.println(out -> usage(global, group, out));
     }
 
     /**
@@ -69,6 +68,20 @@ public class CommandGroupUsage
         usage(global, group, new UsagePrinter(out, columnSize));
     }
 
+    /**
+     * Write the help to the passed-in appendable, such as a buffered writer.
+     */
+    public void usage(@Nullable GlobalMetadata global, CommandGroupMetadata group, Appendable out)
+            throws IOException
+    {
+        try {
+            usage(global, group, new UsagePrinter(out, columnSize));
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
     public void usage(@Nullable GlobalMetadata global, CommandGroupMetadata group, UsagePrinter out)
     {
         //
@@ -90,8 +103,7 @@ public class CommandGroupUsage
         out.append("SYNOPSIS").newline();
         UsagePrinter synopsis = out.newIndentedPrinter(8).newPrinterWithHangingIndent(8);
 
-        List<CommandMetadata> commands = newArrayList(group.getCommands());
-        Collections.sort(commands, commandComparator);
+        List<CommandMetadata> commands = group.getSortedCommands(commandComparator);
 
         // Populate group info via an extra for loop through commands
         String defaultCommand = "";
@@ -190,16 +202,21 @@ public class CommandGroupUsage
         //
         // OPTIONS
         //
-        List<OptionMetadata> options = newArrayList();
-        options.addAll(group.getOptions());
-        if (global != null && !hideGlobalOptions) {
-            options.addAll(global.getOptions());
+        boolean globalOptions = global != null && !hideGlobalOptions;
+        List<OptionMetadata> options;
+        if (optionComparator == null) {
+            options = newArrayList(group.getOptions());
+            if (globalOptions) {
+                options.addAll(global.getOptions());
+            }
+        }
+        else if (globalOptions) {
+            options = UsageHelper.merge(group.getSortedOptions(optionComparator), global.getSortedOptions(optionComparator), optionComparator);
+        }
+        else {
+            options = group.getSortedOptions(optionComparator);
         }
         if (!options.isEmpty()) {
-            if (optionComparator != null) {
-                options.sort(optionComparator);
-            }
-
             out.append("OPTIONS").newline();
 
             for (OptionMetadata option : options) {
@@ -234,11 +251,18 @@ public class CommandGroupUsage
     }
 
     public String usageMD(GlobalMetadata global, CommandGroupMetadata group) {
+        return UsageHelper.render(out -> usageMD(global, group, out));
+    }
+
+    /**
+     * Write the help to the passed-in appendable, such as a buffered writer.
+     */
+    public void usageMD(GlobalMetadata global, CommandGroupMetadata group, Appendable builder)
+            throws IOException
+    {
         List<CommandMetadata> commands = ImmutableList.sortedCopyOf(Comparator.comparing(CommandMetadata::getName),
                                                                     group.getCommands());
 
-        StringBuilder builder = new StringBuilder();
-
         // for jekyll to pick up these pages on the website
         builder.append("---\n");
         builder.append("layout: default\n");
@@ -250,7 +274,7 @@ public class CommandGroupUsage
         else {
             builder.append("parent: Stardog Admin CLI Reference\n");
         }
-        builder.append("has_children: ").append(!commands.isEmpty()).append("\n");
+        builder.append("has_children: ").append(String.valueOf(!commands.isEmpty())).append("\n");
         builder.append("has_toc: false\n");
         builder.append("description: This page contains the commands available in the ")
                .append(global.getName())
@@ -282,7 +306,5 @@ public class CommandGroupUsage
                        .append(" |\n");
             }
         }
-
-        return builder.toString();
     }
 }
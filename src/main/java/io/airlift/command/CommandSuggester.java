@@ -10,7 +10,7 @@ import static com.google.common.collect.Iterables.concat;
 import static com.google.common.collect.Iterables.transform;
 
 public class CommandSuggester
-        implements Suggester
+        implements PrefixSuggester
 {
     @Inject
     public CommandMetadata command;
@@ -27,4 +27,10 @@ public class CommandSuggester
 
         return suggestions.build();
     }
+
+    @Override
+    public Iterable<String> suggest(String prefix)
+    {
+        return command.getCompletions().complete(prefix);
+    }
 }
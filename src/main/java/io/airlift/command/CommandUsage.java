@@ -11,7 +11,8 @@ import io.airlift.command.model.ArgumentsMetadata;
 import io.airlift.command.model.CommandMetadata;
 import io.airlift.command.model.OptionMetadata;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Comparator;
 import java.util.List;
 
@@ -48,9 +49,7 @@ public class CommandUsage
      */
     public void usage(@Nullable String programName, @Nullable String groupName, String commandName, CommandMetadata command)
     {
-        StringBuilder stringBuilder = new StringBuilder();
-        usage(programName, groupName, commandName, command, stringBuilder);
-        System.out.println(stringBuilder);
+        UsageHelper.println(out -> usage(programName, groupName, commandName, command, out));
     }
 
     /**
@@ -61,6 +60,20 @@ public class CommandUsage
         usage(programName, groupName, commandName, command, new UsagePrinter(out, columnSize));
     }
 
+    /**
+     * Write the help to the passed-in appendable, such as a buffered writer.
+     */
+    public void usage(@Nullable String programName, @Nullable String groupName, String commandName, CommandMetadata command, Appendable out)
+            throws IOException
+    {
+        try {
+            usage(programName, groupName, commandName, command, new UsagePrinter(out, columnSize));
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
     public void usage(@Nullable String programName, @Nullable String groupName, String commandName, CommandMetadata command, UsagePrinter out)
     {
         //
@@ -84,14 +97,14 @@ public class CommandUsage
         UsagePrinter synopsis = out.newIndentedPrinter(8).newPrinterWithHangingIndent(8);
         List<OptionMetadata> options = newArrayList();
         if (programName != null) {
-            synopsis.append(programName).appendWords(toSynopsisUsage(sortOptions(command.getGlobalOptions())));
+            synopsis.append(programName).appendWords(toSynopsisUsage(sortOptions(command, OptionType.GLOBAL)));
             options.addAll(command.getGlobalOptions());
         }
         if (groupName != null) {
-            synopsis.append(groupName).appendWords(toSynopsisUsage(sortOptions(command.getGroupOptions())));
+            synopsis.append(groupName).appendWords(toSynopsisUsage(sortOptions(command, OptionType.GROUP)));
             options.addAll(command.getGroupOptions());
         }
-        synopsis.append(commandName).appendWords(toSynopsisUsage(sortOptions(command.getCommandOptions())));
+        synopsis.append(commandName).appendWords(toSynopsisUsage(sortOptions(command, OptionType.COMMAND)));
         options.addAll(command.getCommandOptions());
 
         // command arguments (optional)
@@ -107,7 +120,7 @@ public class CommandUsage
         // OPTIONS
         //
         if (!options.isEmpty() || arguments != null) {
-            options = sortOptions(options);
+            options = sortOptions(command, programName != null, groupName != null, options);
 
             out.append("OPTIONS").newline();
 
@@ -165,41 +178,66 @@ public class CommandUsage
         }
     }
 
-    private List<OptionMetadata> sortOptions(List<OptionMetadata> options) {
+    private List<OptionMetadata> sortOptions(CommandMetadata command, OptionType type)
+    {
         if (optionComparator != null) {
-            options = new ArrayList<>(options);
-            options.sort(optionComparator);
+            return command.getSortedOptions(type, optionComparator);
+        }
+        switch (type) {
+            case GLOBAL:
+                return command.getGlobalOptions();
+            case GROUP:
+                return command.getGroupOptions();
+            default:
+                return command.getCommandOptions();
         }
-        return options;
+    }
+
+    private List<OptionMetadata> sortOptions(CommandMetadata command, boolean globalOptions, boolean groupOptions, List<OptionMetadata> options)
+    {
+        if (optionComparator == null) {
+            return options;
+        }
+        return command.getSortedOptions(globalOptions, groupOptions, optionComparator);
     }
 
     public String usageRonn(@Nullable String programName, @Nullable String groupName, CommandMetadata command) {
-        final StringBuilder aBuilder = new StringBuilder();
+        return UsageHelper.render(out -> usageRonn(programName, groupName, command, out));
+    }
 
+    /**
+     * Write the help to the passed-in appendable, such as a buffered writer.
+     */
+    public void usageRonn(@Nullable String programName, @Nullable String groupName, CommandMetadata command, Appendable aBuilder)
+            throws IOException
+    {
         final String NEW_PARA = "\n\n";
 
-        aBuilder.append(programName).append("_");
-        aBuilder.append(groupName).append("_");
+        // the name line is measured, so it is built before it is written
+        final StringBuilder aName = new StringBuilder();
+        aName.append(programName).append("_");
+        aName.append(groupName).append("_");
         // stardog-admin commands go in section 8 (sysadmin commands), all others in section 1 (user commands)
-        aBuilder.append(command.getName())
+        aName.append(command.getName())
                 .append(programName != null && programName.equals("stardog-admin") ? "(8) -" : "(1) -");
         String aDescription = command.getDescription();
         String aLongDesc = null;
-        if (aBuilder.length() + aDescription.length() >= 255) { // some arbitrary length
+        if (aName.length() + aDescription.length() >= 255) { // some arbitrary length
             // if description is too long, we'll try to get the first sentence then put the whole
             // thing in the DESCRIPTION section
             final int aFirstPeriod= aDescription.indexOf('.');
             if (aFirstPeriod != -1) {
                 String aShortDesc = aDescription.substring(0, aFirstPeriod + 1);
-                if (aBuilder.length() + aShortDesc.length() < 255) {
-                    aBuilder.append(aShortDesc).append("\n");
+                if (aName.length() + aShortDesc.length() < 255) {
+                    aName.append(aShortDesc).append("\n");
                 }
             }
             aLongDesc = aDescription;
         }
         else {
-            aBuilder.append(aDescription).append("\n");
+            aName.append(aDescription).append("\n");
         }
+        aBuilder.append(aName);
         aBuilder.append("==========");
 
         aBuilder.append(NEW_PARA).append("## SYNOPSIS").append(NEW_PARA);
@@ -209,7 +247,7 @@ public class CommandUsage
             aBuilder.append("`").append(programName).append("`");
             aOptions = command.getGlobalOptions();
             if (aOptions != null && !aOptions.isEmpty()) {
-                aBuilder.append(" ").append(Joiner.on(" ").join(toSynopsisUsage(sortOptions(aOptions))));
+                aBuilder.append(" ").append(Joiner.on(" ").join(toSynopsisUsage(sortOptions(command, OptionType.GLOBAL))));
                 options.addAll(aOptions);
             }
         }
@@ -217,12 +255,12 @@ public class CommandUsage
             aBuilder.append(" `").append(groupName).append("`");
             aOptions = command.getGroupOptions();
             if (aOptions != null && !aOptions.isEmpty()) {
-                aBuilder.append(" ").append(Joiner.on(" ").join(toSynopsisUsage(sortOptions(aOptions))));
+                aBuilder.append(" ").append(Joiner.on(" ").join(toSynopsisUsage(sortOptions(command, OptionType.GROUP))));
                 options.addAll(aOptions);
             }
         }
         aOptions = command.getCommandOptions();
-        aBuilder.append(" `").append(command.getName()).append("` ").append(Joiner.on(" ").join(toSynopsisUsage(sortOptions(aOptions))));
+        aBuilder.append(" `").append(command.getName()).append("` ").append(Joiner.on(" ").join(toSynopsisUsage(sortOptions(command, OptionType.COMMAND))));
         options.addAll(aOptions);
 
         // command arguments (optional)
@@ -238,7 +276,7 @@ public class CommandUsage
 
         if (!options.isEmpty() || arguments != null) {
             aBuilder.append(NEW_PARA).append("## OPTIONS");
-            options = sortOptions(options);
+            options = sortOptions(command, programName != null, groupName != null, options);
 
             for (OptionMetadata option : options) {
                 // skip hidden options
@@ -290,13 +328,18 @@ public class CommandUsage
                 aBuilder.append(aEx);
             }
         }
-
-        return aBuilder.toString();
     }
 
     public String usageHTML(@Nullable String programName, @Nullable String groupName, CommandMetadata command) {
-        final StringBuilder aBuilder = new StringBuilder();
+        return UsageHelper.render(out -> usageHTML(programName, groupName, command, out));
+    }
 
+    /**
+     * Write the help to the passed-in appendable, such as a buffered writer.
+     */
+    public void usageHTML(@Nullable String programName, @Nullable String groupName, CommandMetadata command, Appendable aBuilder)
+            throws IOException
+    {
         final String NEWLINE = "<br/>\n";
         // TODO need boostrap css
 
@@ -334,16 +377,16 @@ public class CommandUsage
         aBuilder.append("<div class=\"span8 offset1\">\n");
 
         if (programName != null) {
-            aBuilder.append(programName).append(" ").append(htmlize(Joiner.on(" ").join(toSynopsisUsage(sortOptions(command.getGlobalOptions())))));
+            aBuilder.append(programName).append(" ").append(htmlize(Joiner.on(" ").join(toSynopsisUsage(sortOptions(command, OptionType.GLOBAL)))));
             options.addAll(command.getGlobalOptions());
             aBuilder.append(" ");
         }
         if (groupName != null) {
-            aBuilder.append(groupName).append(" ").append(htmlize(Joiner.on(" ").join(toSynopsisUsage(sortOptions(command.getGroupOptions())))));
+            aBuilder.append(groupName).append(" ").append(htmlize(Joiner.on(" ").join(toSynopsisUsage(sortOptions(command, OptionType.GROUP)))));
             options.addAll(command.getGroupOptions());
             aBuilder.append(" ");
         }
-        aBuilder.append(command.getName()).append(" ").append(htmlize(Joiner.on(" ").join(toSynopsisUsage(sortOptions(command.getCommandOptions())))));
+        aBuilder.append(command.getName()).append(" ").append(htmlize(Joiner.on(" ").join(toSynopsisUsage(sortOptions(command, OptionType.COMMAND)))));
         options.addAll(command.getCommandOptions());
 
         // command arguments (optional)
@@ -361,7 +404,7 @@ public class CommandUsage
         // OPTIONS
         //
         if (!options.isEmpty() || arguments != null) {
-            options = sortOptions(options);
+            options = sortOptions(command, programName != null, groupName != null, options);
 
             aBuilder.append(NEWLINE);
             aBuilder.append("<h1 class=\"text-info\">OPTIONS</h1>\n").append(NEWLINE);
@@ -471,14 +514,18 @@ public class CommandUsage
 
         aBuilder.append("</body>\n");
         aBuilder.append("</html>\n");
-
-        return aBuilder.toString();
     }
 
     public String usageMD(@Nullable String programName, @Nullable String groupName, CommandMetadata command) {
+        return UsageHelper.render(out -> usageMD(programName, groupName, command, out));
+    }
 
-        final StringBuilder aBuilder = new StringBuilder();
-
+    /**
+     * Write the help to the passed-in appendable, such as a buffered writer.
+     */
+    public void usageMD(@Nullable String programName, @Nullable String groupName, CommandMetadata command, Appendable aBuilder)
+            throws IOException
+    {
         // for jekyll to pick up these pages on the website
         aBuilder.append("---\n");
         aBuilder.append("layout: default\n");
@@ -501,16 +548,16 @@ public class CommandUsage
         aBuilder.append("## Usage\n`");
         List<OptionMetadata> options = newArrayList();
         if (programName != null) {
-            aBuilder.append(programName).append(" ").append(Joiner.on(" ").join(toSynopsisUsage(sortOptions(command.getGlobalOptions()))));
+            aBuilder.append(programName).append(" ").append(Joiner.on(" ").join(toSynopsisUsage(sortOptions(command, OptionType.GLOBAL))));
             options.addAll(command.getGlobalOptions());
             aBuilder.append(" ");
         }
         if (groupName != null) {
-            aBuilder.append(groupName).append(" ").append(Joiner.on(" ").join(toSynopsisUsage(sortOptions(command.getGroupOptions()))));
+            aBuilder.append(groupName).append(" ").append(Joiner.on(" ").join(toSynopsisUsage(sortOptions(command, OptionType.GROUP))));
             options.addAll(command.getGroupOptions());
             aBuilder.append(" ");
         }
-        aBuilder.append(command.getName()).append(" ").append((Joiner.on(" ").join(toSynopsisUsage(sortOptions(command.getCommandOptions())))));
+        aBuilder.append(command.getName()).append(" ").append((Joiner.on(" ").join(toSynopsisUsage(sortOptions(command, OptionType.COMMAND)))));
         options.addAll(command.getCommandOptions());
 
         ArgumentsMetadata arguments = command.getArguments();
@@ -521,7 +568,7 @@ public class CommandUsage
         aBuilder.append("`\n{: .fs-5}\n");
 
         if (!options.isEmpty() || arguments != null) {
-            options = sortOptions(options);
+            options = sortOptions(command, programName != null, groupName != null, options);
             aBuilder.append("## Options\n\n");
             aBuilder.append("Name, shorthand | Description \n");
             aBuilder.append("---|---\n");
@@ -572,8 +619,6 @@ public class CommandUsage
                 aBuilder.append(aText).append("\n```bash\n").append(aEx).append("\n```\n");
             }
         }
-
-        return aBuilder.toString();
     }
 
     private static String htmlize(final String theStr) {
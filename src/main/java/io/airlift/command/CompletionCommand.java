@@ -0,0 +1,38 @@
+package io.airlift.command;
+
+import io.airlift.command.model.GlobalMetadata;
+
+import javax.inject.Inject;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static com.google.common.collect.Lists.newArrayList;
+
+@Command(name = "completion", description = "Print a shell completion script")
+public class CompletionCommand
+        implements Runnable, Callable<Void>
+{
+    @Inject
+    public GlobalMetadata global;
+
+    @Option(name = "--suggest-command", title = "command",
+            description = "Command of this CLI the script calls to complete values it can not list itself")
+    public String suggestCommand;
+
+    @Arguments(title = "shell", description = "Shell to print the script for: bash (the default), zsh or fish")
+    public List<CompletionShell> shell = newArrayList();
+
+    @Override
+    public void run()
+    {
+        CompletionShell completionShell = shell.isEmpty() ? CompletionShell.BASH : shell.get(0);
+        System.out.print(new CompletionScript(suggestCommand).generate(global, completionShell));
+    }
+
+    @Override
+    public Void call()
+    {
+        run();
+        return null;
+    }
+}
@@ -0,0 +1,462 @@
+package io.airlift.command;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import io.airlift.command.model.CommandGroupMetadata;
+import io.airlift.command.model.CommandMetadata;
+import io.airlift.command.model.GlobalMetadata;
+import io.airlift.command.model.OptionMetadata;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates a standalone bash, zsh or fish completion script for a CLI, so completion runs in the shell without
+ * starting a JVM on every TAB.
+ * <p>
+ * The script embeds tables taken from the metadata: the words valid after each group and command, the arity and
+ * allowed values of every option, and the default commands.  It walks the words before the cursor the way the
+ * {@link Parser} does, skipping option values, to find the current group, command and option, and completes from the
+ * tables.  Values the tables can not list, such as file names, fall back to file completion, or to calling the
+ * suggest command of the CLI if one is given; the result of that call is cached until the words before the cursor
+ * change.  The {@code --name=value} and clustered short option forms are not recognized while walking.
+ */
+public class CompletionScript
+{
+    private final String suggestCommand;
+
+    public CompletionScript()
+    {
+        this(null);
+    }
+
+    /**
+     * @param suggestCommand name of the command of the CLI which prints suggestions for the words following it, such
+     * as {@link SuggestCommand}, or null to complete file names where the script can not list the values itself
+     */
+    public CompletionScript(String suggestCommand)
+    {
+        this.suggestCommand = suggestCommand;
+    }
+
+    public String generate(GlobalMetadata global, CompletionShell shell)
+    {
+        StringBuilder out = new StringBuilder();
+        generate(global, shell, out);
+        return out.toString();
+    }
+
+    public void generate(GlobalMetadata global, CompletionShell shell, StringBuilder out)
+    {
+        Preconditions.checkNotNull(global, "global is null");
+        Preconditions.checkNotNull(shell, "shell is null");
+        Preconditions.checkNotNull(out, "out is null");
+
+        Tables tables = new Tables(global);
+        switch (shell) {
+            case BASH:
+            case ZSH:
+                shellScript(global.getName(), tables, shell, out);
+                break;
+            case FISH:
+                fishScript(global.getName(), tables, out);
+                break;
+        }
+    }
+
+    //
+    // bash and zsh share the tables and most of the walk
+    //
+
+    private void shellScript(String name, Tables tables, CompletionShell shell, StringBuilder out)
+    {
+        String prefix = "_" + identifier(name) + "_";
+        boolean bash = shell == CompletionShell.BASH;
+
+        out.append("# ").append(bash ? "bash" : "zsh").append(" completion for ").append(name).append(", generated from its metadata\n");
+        out.append("# load it with: source <(").append(name).append(" completion ").append(bash ? "bash" : "zsh").append(")\n\n");
+
+        Map<String, String> words = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> entry : tables.words.entrySet()) {
+            words.put(entry.getKey(), "REPLY=" + shellQuote(Joiner.on(' ').join(entry.getValue())));
+        }
+        shellCase(out, prefix + "words", "\"$1|$2\"", words, "REPLY=''");
+
+        Map<String, String> arities = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : tables.arities.entrySet()) {
+            arities.put(entry.getKey(), "REPLY=" + entry.getValue());
+        }
+        shellCase(out, prefix + "arity", "\"$1|$2|$3\"", arities, "return 1");
+
+        Map<String, String> values = new LinkedHashMap<>();
+        for (Map.Entry<String, Set<String>> entry : tables.values.entrySet()) {
+            values.put(entry.getKey(), "REPLY=" + shellQuote(Joiner.on(' ').join(entry.getValue())));
+        }
+        shellCase(out, prefix + "values", "\"$1|$2|$3\"", values, "REPLY=''");
+
+        Map<String, String> groups = new LinkedHashMap<>();
+        for (String group : tables.groups) {
+            groups.put(group, "return 0");
+        }
+        shellCase(out, prefix + "group", "\"$1\"", groups, "return 1");
+
+        Map<String, String> commands = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : tables.commands.entrySet()) {
+            commands.put(entry.getKey(), "REPLY=" + shellQuote(entry.getValue()));
+        }
+        shellCase(out, prefix + "command", "\"$1|$2\"", commands, prefix + "default \"$1\"");
+
+        Map<String, String> defaults = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : tables.defaultCommands.entrySet()) {
+            defaults.put(entry.getKey(), "REPLY=" + shellQuote(entry.getValue()));
+        }
+        shellCase(out, prefix + "default", "\"$1\"", defaults, "return 1");
+
+        Map<String, String> arguments = new LinkedHashMap<>();
+        for (String command : tables.arguments) {
+            arguments.put(command, "return 0");
+        }
+        shellCase(out, prefix + "arguments", "\"$1|$2\"", arguments, "return 1");
+
+        // the word being completed and the words before it
+        String current = bash ? "${COMP_WORDS[COMP_CWORD]}" : "${words[CURRENT]}";
+        String first = bash ? "1" : "2";
+        String end = bash ? "COMP_CWORD" : "CURRENT";
+        String word = bash ? "${COMP_WORDS[i]}" : "${words[i]}";
+
+        out.append(prefix).append("fallback()\n{\n");
+        if (suggestCommand == null) {
+            out.append(bash ? "    COMPREPLY=($(compgen -f -- \"$cur\"))\n" : "    _files\n");
+        }
+        else {
+            String key = bash ? "${COMP_WORDS[*]:0:COMP_CWORD}" : "${words[1,CURRENT-1]}";
+            String program = bash ? "\"${COMP_WORDS[0]}\"" : "\"${words[1]}\"";
+            String suggestWords = bash ? "\"${COMP_WORDS[@]:1:COMP_CWORD-1}\"" : "\"${(@)words[2,CURRENT-1]}\"";
+            out.append("    local key=\"").append(key).append("\"\n");
+            out.append("    if [[ $key != \"$").append(prefix).append("suggest_key\" ]]; then\n");
+            out.append("        ").append(prefix).append("suggest_key=$key\n");
+            out.append("        ").append(prefix).append("suggest_reply=$(").append(program).append(' ').append(shellQuote(suggestCommand)).append(' ').append(suggestWords).append(" 2>/dev/null)\n");
+            out.append("    fi\n");
+            if (bash) {
+                out.append("    COMPREPLY=($(compgen -W \"$").append(prefix).append("suggest_reply\" -- \"$cur\"))\n");
+            }
+            else {
+                out.append("    compadd -- ${(f)").append(prefix).append("suggest_reply}\n");
+            }
+        }
+        out.append("}\n\n");
+
+        out.append(prefix).append("complete()\n{\n");
+        out.append("    local cur=\"").append(current).append("\" group='' command='' option='' remaining=0 arguments='' word REPLY\n");
+        out.append("    local -i i\n");
+        out.append("    for ((i = ").append(first).append("; i < ").append(end).append("; i++)); do\n");
+        out.append("        word=\"").append(word).append("\"\n");
+        out.append("        if ((remaining > 0)); then\n");
+        out.append("            remaining=$((remaining - 1))\n");
+        out.append("            continue\n");
+        out.append("        fi\n");
+        out.append("        [[ -n $arguments ]] && continue\n");
+        out.append("        if ").append(prefix).append("arity \"$group\" \"$command\" \"$word\"; then\n");
+        out.append("            option=$word\n");
+        out.append("            remaining=$REPLY\n");
+        out.append("        elif [[ -n $command ]]; then\n");
+        out.append("            [[ $word == -- ]] && arguments=1\n");
+        out.append("        elif [[ -z $group ]] && ").append(prefix).append("group \"$word\"; then\n");
+        out.append("            group=$word\n");
+        out.append("        elif ").append(prefix).append("command \"$group\" \"$word\"; then\n");
+        out.append("            command=$REPLY\n");
+        out.append("            # a word other than the command name selected the default command, and is its own option\n");
+        out.append("            if [[ $word != \"$command\" ]] && ").append(prefix).append("arity \"$group\" \"$command\" \"$word\"; then\n");
+        out.append("                option=$word\n");
+        out.append("                remaining=$REPLY\n");
+        out.append("            fi\n");
+        out.append("        fi\n");
+        out.append("    done\n\n");
+        out.append("    if ((remaining > 0)); then\n");
+        out.append("        ").append(prefix).append("values \"$group\" \"$command\" \"$option\"\n");
+        out.append("    elif [[ -n $arguments ]]; then\n");
+        out.append("        REPLY=''\n");
+        out.append("    elif [[ -n $command && $cur != -* ]] && ").append(prefix).append("arguments \"$group\" \"$command\"; then\n");
+        out.append("        REPLY=''\n");
+        out.append("    else\n");
+        out.append("        ").append(prefix).append("words \"$group\" \"$command\"\n");
+        out.append("    fi\n\n");
+        out.append("    if [[ -n $REPLY ]]; then\n");
+        out.append(bash ? "        COMPREPLY=($(compgen -W \"$REPLY\" -- \"$cur\"))\n" : "        compadd -- ${=REPLY}\n");
+        out.append("    else\n");
+        out.append("        ").append(prefix).append("fallback\n");
+        out.append("    fi\n");
+        out.append("}\n\n");
+
+        if (bash) {
+            out.append("complete -F ").append(prefix).append("complete ").append(shellQuote(name)).append('\n');
+        }
+        else {
+            out.append("compdef ").append(prefix).append("complete ").append(shellQuote(name)).append('\n');
+        }
+    }
+
+    private static void shellCase(StringBuilder out, String function, String subject, Map<String, String> statements, String otherwise)
+    {
+        out.append(function).append("()\n{\n");
+        out.append("    case ").append(subject).append(" in\n");
+        for (Map.Entry<String, String> entry : statements.entrySet()) {
+            out.append("        ").append(shellQuote(entry.getKey())).append(") ").append(entry.getValue()).append(" ;;\n");
+        }
+        out.append("        *) ").append(otherwise).append(" ;;\n");
+        out.append("    esac\n");
+        out.append("}\n\n");
+    }
+
+    private static String shellQuote(String value)
+    {
+        return "'" + value.replace("'", "'\\''") + "'";
+    }
+
+    //
+    // fish case patterns are wildcards even when quoted, so its tables are pairs of lists searched with contains
+    //
+
+    private void fishScript(String name, Tables tables, StringBuilder out)
+    {
+        String prefix = "__" + identifier(name) + "_";
+
+        out.append("# fish completion for ").append(name).append(", generated from its metadata\n");
+        out.append("# load it with: ").append(name).append(" completion fish | source\n\n");
+
+        List<String> words = new ArrayList<>();
+        for (List<String> scopeWords : tables.words.values()) {
+            words.add(Joiner.on(' ').join(scopeWords));
+        }
+        fishList(out, prefix + "word_keys", tables.words.keySet());
+        fishList(out, prefix + "word_values", words);
+
+        List<String> arities = new ArrayList<>();
+        for (Integer arity : tables.arities.values()) {
+            arities.add(String.valueOf(arity));
+        }
+        fishList(out, prefix + "arity_keys", tables.arities.keySet());
+        fishList(out, prefix + "arity_values", arities);
+
+        List<String> values = new ArrayList<>();
+        for (Set<String> optionValues : tables.values.values()) {
+            values.add(Joiner.on(' ').join(optionValues));
+        }
+        fishList(out, prefix + "value_keys", tables.values.keySet());
+        fishList(out, prefix + "value_values", values);
+
+        fishList(out, prefix + "groups", tables.groups);
+        fishList(out, prefix + "command_keys", tables.commands.keySet());
+        fishList(out, prefix + "command_values", tables.commands.values());
+        fishList(out, prefix + "default_keys", tables.defaultCommands.keySet());
+        fishList(out, prefix + "default_values", tables.defaultCommands.values());
+        fishList(out, prefix + "arguments", tables.arguments);
+        out.append('\n');
+
+        out.append("function ").append(prefix).append("arity\n");
+        out.append("    set -l index (contains -i -- \"$argv[1]|$argv[2]|$argv[3]\" $").append(prefix).append("arity_keys)\n");
+        out.append("    and echo $").append(prefix).append("arity_values[$index]\n");
+        out.append("end\n\n");
+
+        out.append("function ").append(prefix).append("command\n");
+        out.append("    set -l index (contains -i -- \"$argv[1]|$argv[2]\" $").append(prefix).append("command_keys)\n");
+        out.append("    if test -n \"$index\"\n");
+        out.append("        echo $").append(prefix).append("command_values[$index]\n");
+        out.append("        return 0\n");
+        out.append("    end\n");
+        out.append("    set index (contains -i -- \"$argv[1]\" $").append(prefix).append("default_keys)\n");
+        out.append("    and echo $").append(prefix).append("default_values[$index]\n");
+        out.append("end\n\n");
+
+        out.append("function ").append(prefix).append("fallback\n");
+        if (suggestCommand == null) {
+            out.append("    __fish_complete_path (commandline -ct)\n");
+        }
+        else {
+            out.append("    set -l tokens (commandline -opc)\n");
+            out.append("    set -l key (string join ' ' -- $tokens)\n");
+            out.append("    if test \"$key\" != \"$").append(prefix).append("suggest_key\"\n");
+            out.append("        set -l words $tokens\n");
+            out.append("        set -e words[1]\n");
+            out.append("        set -g ").append(prefix).append("suggest_key $key\n");
+            out.append("        set -g ").append(prefix).append("suggest_reply ($tokens[1] ").append(fishQuote(suggestCommand)).append(" $words 2>/dev/null)\n");
+            out.append("    end\n");
+            out.append("    printf '%s\\n' $").append(prefix).append("suggest_reply\n");
+        }
+        out.append("end\n\n");
+
+        out.append("function ").append(prefix).append("complete\n");
+        out.append("    set -l tokens (commandline -opc)\n");
+        out.append("    set -e tokens[1]\n");
+        out.append("    set -l group ''\n");
+        out.append("    set -l command ''\n");
+        out.append("    set -l option ''\n");
+        out.append("    set -l remaining 0\n");
+        out.append("    set -l arguments ''\n");
+        out.append("    for word in $tokens\n");
+        out.append("        if test $remaining -gt 0\n");
+        out.append("            set remaining (math $remaining - 1)\n");
+        out.append("            continue\n");
+        out.append("        end\n");
+        out.append("        test -n \"$arguments\"; and continue\n");
+        out.append("        if set -l arity (").append(prefix).append("arity \"$group\" \"$command\" \"$word\")\n");
+        out.append("            set option $word\n");
+        out.append("            set remaining $arity\n");
+        out.append("        else if test -n \"$command\"\n");
+        out.append("            test \"$word\" = '--'; and set arguments 1\n");
+        out.append("        else if test -z \"$group\"; and contains -- $word $").append(prefix).append("groups\n");
+        out.append("            set group $word\n");
+        out.append("        else if set -l found (").append(prefix).append("command \"$group\" \"$word\")\n");
+        out.append("            set command $found\n");
+        out.append("            # a word other than the command name selected the default command, and is its own option\n");
+        out.append("            if test \"$word\" != \"$command\"; and set -l arity (").append(prefix).append("arity \"$group\" \"$command\" \"$word\")\n");
+        out.append("                set option $word\n");
+        out.append("                set remaining $arity\n");
+        out.append("            end\n");
+        out.append("        end\n");
+        out.append("    end\n\n");
+        out.append("    set -l index\n");
+        out.append("    if test $remaining -gt 0\n");
+        out.append("        set index (contains -i -- \"$group|$command|$option\" $").append(prefix).append("value_keys)\n");
+        out.append("        and string split ' ' -- $").append(prefix).append("value_values[$index]\n");
+        out.append("        and return\n");
+        out.append("    else if test -z \"$arguments\"\n");
+        out.append("        if test -z \"$command\"; or string match -q -- '-*' (commandline -ct); or not contains -- \"$group|$command\" $").append(prefix).append("arguments\n");
+        out.append("            set index (contains -i -- \"$group|$command\" $").append(prefix).append("word_keys)\n");
+        out.append("            and string split ' ' -- $").append(prefix).append("word_values[$index]\n");
+        out.append("            and return\n");
+        out.append("        end\n");
+        out.append("    end\n");
+        out.append("    ").append(prefix).append("fallback\n");
+        out.append("end\n\n");
+
+        out.append("complete -c ").append(fishQuote(name)).append(" -f -a '(").append(prefix).append("complete)'\n");
+    }
+
+    private static void fishList(StringBuilder out, String variable, Iterable<String> values)
+    {
+        out.append("set -g ").append(variable);
+        for (String value : values) {
+            out.append(' ').append(fishQuote(value));
+        }
+        out.append('\n');
+    }
+
+    private static String fishQuote(String value)
+    {
+        return "'" + value.replace("\\", "\\\\").replace("'", "\\'") + "'";
+    }
+
+    private static String identifier(String name)
+    {
+        return name.replaceAll("[^A-Za-z0-9_]", "_");
+    }
+
+    /**
+     * The completion tables of a CLI.  Scopes are keyed by {@code group|command}, either of which may be empty, and
+     * options by {@code group|command|option}, so the same option name may behave differently in different scopes.
+     */
+    private static class Tables
+    {
+        // words completed in each scope, those not hidden
+        private final Map<String, List<String>> words = new LinkedHashMap<>();
+        private final Map<String, Integer> arities = new LinkedHashMap<>();
+        private final Map<String, Set<String>> values = new LinkedHashMap<>();
+        private final Set<String> groups = new LinkedHashSet<>();
+        // command of each group|word, and the default command of each group, the empty group being the global one
+        private final Map<String, String> commands = new LinkedHashMap<>();
+        private final Map<String, String> defaultCommands = new LinkedHashMap<>();
+        // scopes of the commands taking arguments
+        private final Set<String> arguments = new LinkedHashSet<>();
+
+        private Tables(GlobalMetadata global)
+        {
+            List<String> globalWords = new ArrayList<>();
+            for (CommandGroupMetadata group : global.getCommandGroups()) {
+                globalWords.add(group.getName());
+            }
+            for (CommandMetadata command : global.getDefaultGroupCommands()) {
+                if (!command.isHidden()) {
+                    globalWords.add(command.getName());
+                }
+            }
+            addOptions("||", global.getOptions(), globalWords);
+            addScope("|", globalWords);
+
+            for (CommandGroupMetadata group : global.getCommandGroups()) {
+                groups.add(group.getName());
+
+                List<String> groupWords = new ArrayList<>();
+                for (CommandMetadata command : group.getCommands()) {
+                    if (!command.isHidden()) {
+                        groupWords.add(command.getName());
+                    }
+                    commands.putIfAbsent(group.getName() + "|" + command.getName(), command.getName());
+                    addCommand(group.getName(), command);
+                }
+                addOptions(group.getName() + "||", group.getOptions(), groupWords);
+                addScope(group.getName() + "|", groupWords);
+
+                if (group.getDefaultCommand() != null) {
+                    defaultCommands.putIfAbsent(group.getName(), group.getDefaultCommand().getName());
+                    addCommand(group.getName(), group.getDefaultCommand());
+                }
+            }
+
+            for (CommandMetadata command : global.getDefaultGroupCommands()) {
+                commands.putIfAbsent("|" + command.getName(), command.getName());
+                addCommand("", command);
+            }
+            if (global.getDefaultCommand() != null) {
+                defaultCommands.putIfAbsent("", global.getDefaultCommand().getName());
+                addCommand("", global.getDefaultCommand());
+            }
+        }
+
+        private void addCommand(String group, CommandMetadata command)
+        {
+            String scope = group + "|" + command.getName();
+            if (words.containsKey(scope) || arguments.contains(scope)) {
+                return;
+            }
+
+            // after the command name only its own options are recognized, like the parser does
+            List<String> commandWords = new ArrayList<>();
+            addOptions(scope + "|", command.getCommandOptions(), commandWords);
+            if (command.getArguments() != null) {
+                commandWords.add("--");
+                arguments.add(scope);
+            }
+            addScope(scope, commandWords);
+        }
+
+        private void addOptions(String scope, List<OptionMetadata> options, List<String> scopeWords)
+        {
+            for (OptionMetadata option : options) {
+                for (String name : option.getOptions()) {
+                    if (arities.containsKey(scope + name)) {
+                        continue;
+                    }
+                    arities.put(scope + name, option.getArity());
+                    if (option.getAllowedValues() != null && !option.getAllowedValues().isEmpty()) {
+                        values.put(scope + name, option.getAllowedValues());
+                    }
+                    if (!option.isHidden()) {
+                        scopeWords.add(name);
+                    }
+                }
+            }
+        }
+
+        private void addScope(String scope, List<String> scopeWords)
+        {
+            if (!scopeWords.isEmpty()) {
+                words.put(scope, scopeWords);
+            }
+        }
+    }
+}
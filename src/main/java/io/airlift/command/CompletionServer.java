@@ -0,0 +1,494 @@
+package io.airlift.command;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.airlift.command.model.GlobalMetadata;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Answers completion requests for a CLI from a long running process, so a shell completing dynamic values pays for a
+ * socket round trip instead of starting a JVM on every TAB.  The metadata is loaded once, and each request is parsed
+ * and answered the way {@link SuggestCommand} answers its arguments.
+ * <p>
+ * On Java 16 and later the server listens on a Unix domain socket at the path given.  Otherwise it listens on an
+ * ephemeral loopback TCP port and writes the port number to a regular file at the path.  A request is the words after
+ * the program name, each followed by a NUL byte, and ended by a newline.  The response is the suggestions, one per
+ * line, after which the server closes the connection.  A connection is dropped when its request is not received, or
+ * its response not taken, within a few seconds, and at most a handful are answered at once, so stalled clients can
+ * not exhaust the threads of the server.  From bash, for instance:
+ * <pre>
+ * { printf '%s\0' remote add; echo; } | nc -U ~/.git-completion
+ * </pre>
+ * {@link #suggest(Path, List)} is the same client for Java.
+ */
+public class CompletionServer
+        implements Closeable
+{
+    // requests are a single command line, anything longer is not a completion client
+    private static final int MAX_REQUEST_BYTES = 64 * 1024;
+    private static final int THREADS = 4;
+    private static final int MAX_QUEUED_CONNECTIONS = 64;
+    private static final long REQUEST_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    // a port file holds a port number, anything longer is some other file
+    private static final int MAX_PORT_FILE_BYTES = 16;
+    // the file type bits of a unix mode, and the type of a socket
+    private static final int S_IFMT = 0170000;
+    private static final int S_IFSOCK = 0140000;
+
+    private final GlobalMetadata metadata;
+    private final Path path;
+    private final boolean unixDomainSockets;
+    private final long requestTimeoutMillis;
+    private final ThreadPoolExecutor executor;
+
+    private ServerSocketChannel channel;
+
+    public CompletionServer(GlobalMetadata metadata, Path path)
+    {
+        this(metadata, path, true);
+    }
+
+    @VisibleForTesting
+    CompletionServer(GlobalMetadata metadata, Path path, boolean unixDomainSockets)
+    {
+        this(metadata, path, unixDomainSockets, THREADS, REQUEST_TIMEOUT_MILLIS);
+    }
+
+    @VisibleForTesting
+    CompletionServer(GlobalMetadata metadata, Path path, boolean unixDomainSockets, int threads, long requestTimeoutMillis)
+    {
+        Preconditions.checkArgument(threads > 0, "threads must be positive");
+        Preconditions.checkArgument(requestTimeoutMillis > 0, "requestTimeoutMillis must be positive");
+        this.metadata = Preconditions.checkNotNull(metadata, "metadata is null");
+        this.path = Preconditions.checkNotNull(path, "path is null");
+        this.unixDomainSockets = unixDomainSockets;
+        this.requestTimeoutMillis = requestTimeoutMillis;
+
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(MAX_QUEUED_CONNECTIONS), new ThreadFactoryBuilder()
+                .setNameFormat("completion-server-%s")
+                .setDaemon(true)
+                .build());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Starts listening at the path, replacing a stale socket or port file left by a server which did not close.
+     *
+     * @return the address listened on
+     * @throws IOException if another server is listening at the path, something other than a socket or port file
+     * exists at the path, or the socket can not be bound
+     */
+    public synchronized SocketAddress bind()
+            throws IOException
+    {
+        Preconditions.checkState(channel == null, "server is already bound");
+
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        }
+        catch (NoSuchFileException e) {
+            attributes = null;
+        }
+        if (attributes != null) {
+            if (!isSocket(path, attributes) && !(attributes.isRegularFile() && readPort(path) >= 0)) {
+                throw new IOException(path + " is neither a completion server socket nor a port file");
+            }
+            if (isListening(path)) {
+                throw new IOException("A completion server is already listening at " + path);
+            }
+            Files.delete(path);
+        }
+
+        ServerSocketChannel channel = unixDomainSockets ? open(ServerSocketChannel.class) : null;
+        boolean unixDomainSocket = channel != null;
+        if (!unixDomainSocket) {
+            channel = ServerSocketChannel.open();
+        }
+        try {
+            if (unixDomainSocket) {
+                channel.bind(unixDomainAddress(path));
+            }
+            else {
+                channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+                int port = ((InetSocketAddress) channel.getLocalAddress()).getPort();
+                Files.write(path, String.valueOf(port).getBytes(UTF_8));
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            try {
+                channel.close();
+            }
+            catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        this.channel = channel;
+        return channel.getLocalAddress();
+    }
+
+    /**
+     * Answers requests on the calling thread until the server is closed, binding first if needed.
+     */
+    public void serve()
+            throws IOException
+    {
+        ServerSocketChannel channel;
+        synchronized (this) {
+            if (this.channel == null) {
+                bind();
+            }
+            channel = this.channel;
+        }
+
+        while (true) {
+            SocketChannel connection;
+            try {
+                connection = channel.accept();
+            }
+            catch (ClosedChannelException e) {
+                return;
+            }
+            try {
+                executor.execute(() -> answer(connection));
+            }
+            catch (RejectedExecutionException e) {
+                // too many connections waiting, or the server is closing
+                closeQuietly(connection);
+            }
+        }
+    }
+
+    /**
+     * Binds and answers requests on a daemon thread until the server is closed.
+     */
+    public void start()
+            throws IOException
+    {
+        bind();
+        Thread thread = new Thread(() -> {
+            try {
+                serve();
+            }
+            catch (IOException ignored) {
+                // the server socket failed, clients fall back to their own completion
+            }
+        }, "completion-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public synchronized void close()
+            throws IOException
+    {
+        executor.shutdownNow();
+        if (channel != null) {
+            channel.close();
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Answers the request of the connection, without blocking, so a client that stops sending or reading is dropped
+     * at the deadline.
+     */
+    private void answer(SocketChannel connection)
+    {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(requestTimeoutMillis);
+        try (Selector selector = Selector.open()) {
+            connection.configureBlocking(false);
+            SelectionKey key = connection.register(selector, SelectionKey.OP_READ);
+
+            List<String> arguments = readRequest(connection, key, deadline);
+            if (arguments == null) {
+                return;
+            }
+
+            Iterable<String> suggestions;
+            try {
+                suggestions = SuggestCommand.suggest(metadata, arguments);
+            }
+            catch (ParseException e) {
+                suggestions = ImmutableList.of();
+            }
+
+            StringBuilder response = new StringBuilder();
+            for (String suggestion : suggestions) {
+                response.append(suggestion).append('\n');
+            }
+            ByteBuffer buffer = UTF_8.encode(response.toString());
+            key.interestOps(SelectionKey.OP_WRITE);
+            while (buffer.hasRemaining()) {
+                if (connection.write(buffer) == 0 && !await(key, deadline)) {
+                    return;
+                }
+            }
+        }
+        catch (IOException ignored) {
+            // the client went away
+        }
+        finally {
+            closeQuietly(connection);
+        }
+    }
+
+    /**
+     * Returns the suggestions of the server listening at the path for the position after the arguments.
+     */
+    public static List<String> suggest(Path path, List<String> arguments)
+            throws IOException
+    {
+        Preconditions.checkNotNull(path, "path is null");
+        Preconditions.checkNotNull(arguments, "arguments is null");
+
+        ByteArrayOutputStream request = new ByteArrayOutputStream();
+        for (String argument : arguments) {
+            request.write(argument.getBytes(UTF_8));
+            request.write(0);
+        }
+        request.write('\n');
+
+        try (SocketChannel connection = connect(path)) {
+            Channels.newOutputStream(connection).write(request.toByteArray());
+
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            InputStream in = Channels.newInputStream(connection);
+            byte[] buffer = new byte[4096];
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                response.write(buffer, 0, read);
+            }
+            return Splitter.on('\n').omitEmptyStrings().splitToList(new String(response.toByteArray(), UTF_8));
+        }
+    }
+
+    /**
+     * Returns the NUL terminated words of the request, or null if it does not end with a newline before the deadline.
+     */
+    private static List<String> readRequest(SocketChannel connection, SelectionKey key, long deadline)
+            throws IOException
+    {
+        ByteArrayOutputStream request = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        while (true) {
+            int read = connection.read(buffer);
+            if (read < 0) {
+                return null;
+            }
+            if (read == 0) {
+                if (!await(key, deadline)) {
+                    return null;
+                }
+                continue;
+            }
+
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                if (b == '\n') {
+                    return words(request);
+                }
+                if (request.size() == MAX_REQUEST_BYTES) {
+                    return null;
+                }
+                request.write(b);
+            }
+            buffer.clear();
+        }
+    }
+
+    private static List<String> words(ByteArrayOutputStream request)
+    {
+        String words = new String(request.toByteArray(), UTF_8);
+        if (words.endsWith("\0")) {
+            words = words.substring(0, words.length() - 1);
+        }
+        if (words.isEmpty()) {
+            return ImmutableList.of();
+        }
+        return Splitter.on('\0').splitToList(words);
+    }
+
+    /**
+     * Waits for the channel of the key to be ready, and returns false once the deadline has passed or the server is
+     * closing.
+     */
+    private static boolean await(SelectionKey key, long deadline)
+            throws IOException
+    {
+        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remainingMillis <= 0 || Thread.currentThread().isInterrupted()) {
+            return false;
+        }
+        key.selector().select(remainingMillis);
+        key.selector().selectedKeys().clear();
+        return true;
+    }
+
+    private static void closeQuietly(SocketChannel connection)
+    {
+        try {
+            connection.close();
+        }
+        catch (IOException ignored) {
+        }
+    }
+
+    private static SocketChannel connect(Path path)
+            throws IOException
+    {
+        if (Files.isRegularFile(path)) {
+            int port = readPort(path);
+            if (port < 0) {
+                throw new IOException(path + " is not a completion server port file");
+            }
+            return SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        }
+
+        SocketChannel channel = open(SocketChannel.class);
+        if (channel == null) {
+            throw new IOException("Unix domain sockets are not supported by this Java runtime: " + path);
+        }
+        try {
+            channel.connect(unixDomainAddress(path));
+        }
+        catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    /**
+     * Returns the port a port file holds, or -1 if the whole content of the file is not a port number.
+     */
+    private static int readPort(Path path)
+            throws IOException
+    {
+        if (Files.size(path) > MAX_PORT_FILE_BYTES) {
+            return -1;
+        }
+        String content = new String(Files.readAllBytes(path), UTF_8).trim();
+        if (content.isEmpty() || content.length() > 5) {
+            return -1;
+        }
+        for (int i = 0; i < content.length(); i++) {
+            if (content.charAt(i) < '0' || content.charAt(i) > '9') {
+                return -1;
+            }
+        }
+        int port = Integer.parseInt(content);
+        return port > 0 && port <= 0xFFFF ? port : -1;
+    }
+
+    private static boolean isSocket(Path path, BasicFileAttributes attributes)
+    {
+        try {
+            int mode = (Integer) Files.getAttribute(path, "unix:mode", LinkOption.NOFOLLOW_LINKS);
+            return (mode & S_IFMT) == S_IFSOCK;
+        }
+        catch (UnsupportedOperationException | IllegalArgumentException | IOException e) {
+            // without the unix attributes a socket is only known to be neither a file, a directory nor a link
+            return attributes.isOther();
+        }
+    }
+
+    private static boolean isListening(Path path)
+    {
+        try {
+            connect(path).close();
+            return true;
+        }
+        catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    //
+    // Unix domain sockets arrived in Java 16, and this is compiled for Java 8, so they are reached reflectively
+    //
+
+    /**
+     * Opens a Unix domain socket channel of the type, or returns null if the runtime does not support them.
+     */
+    private static <T> T open(Class<T> type)
+            throws IOException
+    {
+        ProtocolFamily unix;
+        try {
+            unix = StandardProtocolFamily.valueOf("UNIX");
+        }
+        catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        try {
+            return type.cast(type.getMethod("open", ProtocolFamily.class).invoke(null, unix));
+        }
+        catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            // the platform does not support them
+            return null;
+        }
+        catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static SocketAddress unixDomainAddress(Path path)
+            throws IOException
+    {
+        try {
+            return (SocketAddress) Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", Path.class).invoke(null, path);
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IOException("Unix domain sockets are not supported by this Java runtime: " + path, e);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("CompletionServer");
+        sb.append("{path=").append(path);
+        sb.append(", unixDomainSockets=").append(unixDomainSockets);
+        sb.append('}');
+        return sb.toString();
+    }
+}
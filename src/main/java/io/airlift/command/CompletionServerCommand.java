@@ -0,0 +1,39 @@
+package io.airlift.command;
+
+import io.airlift.command.model.GlobalMetadata;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.concurrent.Callable;
+
+@Command(name = "completion-server", description = "Answer completion requests on a local socket until stopped")
+public class CompletionServerCommand
+        implements Runnable, Callable<Void>
+{
+    @Inject
+    public GlobalMetadata global;
+
+    @Option(name = "--socket", title = "path", required = true,
+            description = "Path of the Unix domain socket, or of the file holding the loopback port before Java 16")
+    public String socket;
+
+    @Override
+    public void run()
+    {
+        try (CompletionServer server = new CompletionServer(global, Paths.get(socket))) {
+            server.serve();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Void call()
+    {
+        run();
+        return null;
+    }
+}
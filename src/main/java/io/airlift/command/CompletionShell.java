@@ -0,0 +1,21 @@
+package io.airlift.command;
+
+import java.util.Locale;
+
+/**
+ * The shell {@link CompletionScript} generates a completion script for.
+ */
+public enum CompletionShell
+{
+    BASH,
+    ZSH,
+    FISH;
+
+    /**
+     * Returns the shell with the given name, ignoring case, so command line arguments such as {@code bash} convert.
+     */
+    public static CompletionShell fromString(String name)
+    {
+        return valueOf(name.toUpperCase(Locale.ENGLISH));
+    }
+}
@@ -0,0 +1,375 @@
+package io.airlift.command;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import io.airlift.command.model.ArgumentsMetadata;
+import io.airlift.command.model.CommandGroupMetadata;
+import io.airlift.command.model.CommandMetadata;
+import io.airlift.command.model.GlobalMetadata;
+import io.airlift.command.model.OptionMetadata;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Writes the help of a CLI, of each of its groups and of each of its commands to a file per page and format, rendering
+ * the pages in parallel on a {@link ForkJoinPool}.  The files are named after the page, such as {@code git.md},
+ * {@code git-remote.md} and {@code git-remote-add.md}.  The CLI and its groups have no HTML or RONN page, and hidden
+ * commands are left out, as in {@link Help#manual}.
+ * <p>
+ * Every export records a hash of the metadata each page is rendered from in a {@link #MANIFEST} file in the directory.
+ * An incremental export only renders the pages whose hash changed since, and deletes the files of the pages which no
+ * longer exist.  The hash covers the metadata and not the renderers, so export everything after upgrading airline.
+ */
+public final class DocumentationExporter
+{
+    public static final String MANIFEST = ".airline-docs";
+
+    // part of every page hash, change it when the pages of the same metadata change
+    private static final int VERSION = 1;
+
+    private final GlobalMetadata global;
+    private final int columnSize;
+
+    public DocumentationExporter(GlobalMetadata global)
+    {
+        this(global, HelpCache.DEFAULT_COLUMN_SIZE);
+    }
+
+    public DocumentationExporter(GlobalMetadata global, int columnSize)
+    {
+        Preconditions.checkArgument(columnSize > 0, "columnSize must be greater than 0");
+        this.global = Preconditions.checkNotNull(global, "global is null");
+        this.columnSize = columnSize;
+    }
+
+    /**
+     * Writes the pages in the formats to the directory, creating it if needed.  The pages are rendered on the pool,
+     * each straight to its file, and the manifest is written once all of them are.
+     *
+     * @param incremental whether to skip the pages whose metadata did not change since the last export
+     * @return the files written, in the order of the pages, which does not depend on the pool
+     */
+    public List<Path> export(Path directory, Set<UsageFormat> formats, boolean incremental, ForkJoinPool pool)
+            throws IOException
+    {
+        Preconditions.checkNotNull(directory, "directory is null");
+        Preconditions.checkNotNull(formats, "formats is null");
+        Preconditions.checkNotNull(pool, "pool is null");
+
+        Files.createDirectories(directory);
+        Map<String, String> previous = incremental ? readManifest(directory.resolve(MANIFEST)) : new HashMap<>();
+
+        List<Page> pages = pages(formats);
+        List<Path> written;
+        List<String> hashes;
+        try {
+            Map<CommandMetadata, HashCode> commandHashes = pool.submit(() -> pages.parallelStream()
+                    .map(page -> page.command)
+                    .filter(Objects::nonNull)
+                    .distinct()
+                    .collect(Collectors.toMap(command -> command, DocumentationExporter::hash))).join();
+            hashes = pages.stream()
+                    .map(page -> hash(page, commandHashes))
+                    .collect(Collectors.toList());
+
+            written = pool.submit(() -> pages.parallelStream()
+                    .map(page -> {
+                        Path file = directory.resolve(page.fileName);
+                        if (hashes.get(page.index).equals(previous.get(page.fileName)) && Files.exists(file)) {
+                            return null;
+                        }
+                        write(page, file);
+                        return file;
+                    })
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList())).join();
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        // the pages gone since the last export
+        Set<String> fileNames = new HashSet<>();
+        for (Page page : pages) {
+            fileNames.add(page.fileName);
+        }
+        for (String fileName : previous.keySet()) {
+            if (!fileNames.contains(fileName)) {
+                Files.deleteIfExists(directory.resolve(fileName));
+            }
+        }
+
+        StringBuilder manifest = new StringBuilder();
+        for (Page page : pages) {
+            manifest.append(hashes.get(page.index)).append('\t').append(page.fileName).append('\n');
+        }
+        Path temporary = directory.resolve(MANIFEST + ".tmp");
+        Files.write(temporary, manifest.toString().getBytes(UTF_8));
+        Files.move(temporary, directory.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING);
+
+        return written;
+    }
+
+    /**
+     * Returns the pages in the order of {@link Help#manual}, format by format.
+     */
+    private List<Page> pages(Set<UsageFormat> formats)
+    {
+        List<Page> pages = new ArrayList<>();
+        Set<String> fileNames = new HashSet<>();
+        for (UsageFormat format : UsageFormat.values()) {
+            if (!formats.contains(format)) {
+                continue;
+            }
+
+            boolean overviews = format == UsageFormat.TEXT || format == UsageFormat.MARKDOWN;
+            if (overviews) {
+                addPage(pages, fileNames, format, null, null);
+            }
+            for (CommandMetadata command : global.getDefaultGroupCommands()) {
+                if (!command.isHidden()) {
+                    addPage(pages, fileNames, format, null, command);
+                }
+            }
+            for (CommandGroupMetadata group : global.getCommandGroups()) {
+                if (overviews) {
+                    addPage(pages, fileNames, format, group, null);
+                }
+                for (CommandMetadata command : group.getCommands()) {
+                    if (!command.isHidden()) {
+                        addPage(pages, fileNames, format, group, command);
+                    }
+                }
+            }
+        }
+        return pages;
+    }
+
+    private void addPage(List<Page> pages, Set<String> fileNames, UsageFormat format, CommandGroupMetadata group, CommandMetadata command)
+    {
+        StringBuilder fileName = new StringBuilder(global.getName());
+        if (group != null) {
+            fileName.append('-').append(group.getName());
+        }
+        if (command != null) {
+            fileName.append('-').append(command.getName());
+        }
+        switch (format) {
+            case HTML:
+                fileName.append(".html");
+                break;
+            case RONN:
+                fileName.append(".ronn");
+                break;
+            case MARKDOWN:
+                fileName.append(".md");
+                break;
+            default:
+                fileName.append(".txt");
+        }
+
+        Preconditions.checkState(fileNames.add(fileName.toString()), "Two pages are written to %s", fileName);
+        pages.add(new Page(pages.size(), fileName.toString(), format, group, command));
+    }
+
+    private void write(Page page, Path file)
+    {
+        List<String> commandNames;
+        if (page.command != null) {
+            commandNames = page.group == null ?
+                    ImmutableList.of(page.command.getName()) :
+                    ImmutableList.of(page.group.getName(), page.command.getName());
+        }
+        else {
+            commandNames = ImmutableList.of(page.group == null ? global.getName() : page.group.getName());
+        }
+
+        try (Writer out = Files.newBufferedWriter(file, UTF_8)) {
+            Help.help(global, commandNames, page.format, columnSize, out);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Map<String, String> readManifest(Path manifest)
+            throws IOException
+    {
+        Map<String, String> hashes = new HashMap<>();
+        if (!Files.exists(manifest)) {
+            return hashes;
+        }
+        for (String line : Files.readAllLines(manifest, UTF_8)) {
+            int tab = line.indexOf('\t');
+            if (tab > 0) {
+                hashes.put(line.substring(tab + 1), line.substring(0, tab));
+            }
+        }
+        return hashes;
+    }
+
+    //
+    // The hash of a page covers the metadata it is rendered from: the CLI name and options on every page, the command
+    // and the options it accepts on a command page, a group and its commands on a group page, and everything on the
+    // page of the CLI.  Each command is hashed once, and the pages listing it hash its hash.
+    //
+
+    private String hash(Page page, Map<CommandMetadata, HashCode> commandHashes)
+    {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        hasher.putInt(VERSION);
+        putString(hasher, page.format.name());
+        hasher.putInt(columnSize);
+        putString(hasher, global.getName());
+        putOptions(hasher, global.getOptions());
+
+        if (page.command != null) {
+            putString(hasher, page.group == null ? null : page.group.getName());
+            hasher.putBytes(commandHashes.get(page.command).asBytes());
+        }
+        else if (page.group != null) {
+            putGroup(hasher, page.group, commandHashes);
+        }
+        else {
+            putString(hasher, global.getDescription());
+            putString(hasher, global.getNavOrder() == null ? null : String.valueOf(global.getNavOrder()));
+            hasher.putInt(global.getDefaultGroupCommands().size());
+            for (CommandMetadata command : global.getDefaultGroupCommands()) {
+                putCommand(hasher, command, commandHashes);
+            }
+            hasher.putInt(global.getCommandGroups().size());
+            for (CommandGroupMetadata group : global.getCommandGroups()) {
+                putGroup(hasher, group, commandHashes);
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+    private static void putGroup(Hasher hasher, CommandGroupMetadata group, Map<CommandMetadata, HashCode> commandHashes)
+    {
+        putString(hasher, group.getName());
+        putString(hasher, group.getDescription());
+        putString(hasher, group.getMarkdownDescription());
+        putString(hasher, group.getDefaultCommand() == null ? null : group.getDefaultCommand().getName());
+        putOptions(hasher, group.getOptions());
+        hasher.putInt(group.getCommands().size());
+        for (CommandMetadata command : group.getCommands()) {
+            putCommand(hasher, command, commandHashes);
+        }
+    }
+
+    private static void putCommand(Hasher hasher, CommandMetadata command, Map<CommandMetadata, HashCode> commandHashes)
+    {
+        // hidden commands have no page of their own, but the pages listing commands tell them apart
+        HashCode hash = commandHashes.get(command);
+        hasher.putBytes(hash != null ? hash.asBytes() : hash(command).asBytes());
+    }
+
+    private static HashCode hash(CommandMetadata command)
+    {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        putString(hasher, command.getName());
+        putString(hasher, command.getDescription());
+        putString(hasher, command.getDiscussion());
+        hasher.putBoolean(command.isHidden());
+        putStrings(hasher, command.getExamples());
+        putOptions(hasher, command.getAllOptions());
+
+        ArgumentsMetadata arguments = command.getArguments();
+        hasher.putBoolean(arguments != null);
+        if (arguments != null) {
+            putStrings(hasher, arguments.getTitle());
+            putString(hasher, arguments.getDescription());
+            putString(hasher, arguments.getUsage());
+            hasher.putBoolean(arguments.isRequired());
+            hasher.putBoolean(arguments.isMultiValued());
+        }
+        return hasher.hash();
+    }
+
+    private static void putOptions(Hasher hasher, List<OptionMetadata> options)
+    {
+        hasher.putInt(options.size());
+        for (OptionMetadata option : options) {
+            putString(hasher, option.getOptionType().name());
+            putStrings(hasher, option.getOptions());
+            putString(hasher, option.getTitle());
+            putString(hasher, option.getDescription());
+            hasher.putInt(option.getArity());
+            hasher.putBoolean(option.isRequired());
+            hasher.putBoolean(option.isHidden());
+            hasher.putBoolean(option.isMultiValued());
+            putStrings(hasher, option.getAllowedValues());
+        }
+    }
+
+    private static void putStrings(Hasher hasher, Iterable<String> values)
+    {
+        hasher.putBoolean(values != null);
+        if (values != null) {
+            for (String value : values) {
+                putString(hasher, value);
+            }
+            // the end of the list
+            hasher.putInt(-1);
+        }
+    }
+
+    private static void putString(Hasher hasher, String value)
+    {
+        if (value == null) {
+            hasher.putInt(-2);
+            return;
+        }
+        hasher.putInt(value.length());
+        hasher.putUnencodedChars(value);
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("DocumentationExporter");
+        sb.append("{global=").append(global.getName());
+        sb.append(", columnSize=").append(columnSize);
+        sb.append('}');
+        return sb.toString();
+    }
+
+    private static final class Page
+    {
+        private final int index;
+        private final String fileName;
+        private final UsageFormat format;
+        private final CommandGroupMetadata group;
+        private final CommandMetadata command;
+
+        private Page(int index, String fileName, UsageFormat format, CommandGroupMetadata group, CommandMetadata command)
+        {
+            this.index = index;
+            this.fileName = fileName;
+            this.format = format;
+            this.group = group;
+            this.command = command;
+        }
+    }
+}
@@ -11,7 +11,7 @@ import static com.google.common.collect.Iterables.concat;
 import static com.google.common.collect.Iterables.transform;
 
 public class GlobalSuggester
-    implements Suggester
+    implements PrefixSuggester
 {
     @Inject
     public GlobalMetadata metadata;
@@ -25,4 +25,10 @@ public class GlobalSuggester
                 concat(transform(metadata.getOptions(), OptionMetadata.optionsGetter()))
         );
     }
+
+    @Override
+    public Iterable<String> suggest(String prefix)
+    {
+        return metadata.getCompletions().complete(prefix);
+    }
 }
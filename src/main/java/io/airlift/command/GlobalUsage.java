@@ -9,10 +9,11 @@ import io.airlift.command.model.GlobalMetadata;
 import io.airlift.command.model.OptionMetadata;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Comparator;
 import java.util.List;
 
-import static com.google.common.collect.Lists.newArrayList;
 import static io.airlift.command.UsageHelper.DEFAULT_OPTION_COMPARATOR;
 
 public class GlobalUsage
@@ -42,9 +43,7 @@ public class GlobalUsage
      */
     public void usage(GlobalMetadata global)
     {
-        StringBuilder stringBuilder = new StringBuilder();
-        usage(global, stringBuilder);
-        System.out.println(stringBuilder);
+        UsageHelper.println(out -> usage(global, out));
     }
 
     /**
@@ -55,6 +54,20 @@ public class GlobalUsage
         usage(global, new UsagePrinter(out, columnSize));
     }
 
+    /**
+     * Write the help to the passed-in appendable, such as a buffered writer.
+     */
+    public void usage(GlobalMetadata global, Appendable out)
+            throws IOException
+    {
+        try {
+            usage(global, new UsagePrinter(out, columnSize));
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
     public void usage(GlobalMetadata global, UsagePrinter out)
     {
         //
@@ -83,12 +96,8 @@ public class GlobalUsage
         //
         // OPTIONS
         //
-        List<OptionMetadata> options = newArrayList(global.getOptions());
+        List<OptionMetadata> options = optionComparator != null ? global.getSortedOptions(optionComparator) : global.getOptions();
         if (!options.isEmpty()) {
-            if (optionComparator != null) {
-                options.sort(optionComparator);
-            }
-
             out.append("OPTIONS").newline();
 
             for (OptionMetadata option : options) {
@@ -142,13 +151,20 @@ public class GlobalUsage
     }
 
     public String usageMD(GlobalMetadata global) {
+        return UsageHelper.render(out -> usageMD(global, out));
+    }
+
+    /**
+     * Write the help to the passed-in appendable, such as a buffered writer.
+     */
+    public void usageMD(GlobalMetadata global, Appendable builder)
+            throws IOException
+    {
         List<CommandGroupMetadata> groups = ImmutableList.sortedCopyOf(Comparator.comparing(CommandGroupMetadata::getName),
                                                                        global.getCommandGroups());
         List<CommandMetadata> commands = ImmutableList.sortedCopyOf(Comparator.comparing(CommandMetadata::getName),
                                                                     global.getDefaultGroupCommands());
 
-        StringBuilder builder = new StringBuilder();
-
         // for jekyll to pick up these pages on the website
         builder.append("---\n");
         builder.append("layout: default\n");
@@ -159,7 +175,7 @@ public class GlobalUsage
                                 : global.getName();
         builder.append("title: ").append(friendlyName).append("\n");
         if (global.getNavOrder() != null) {
-            builder.append("nav_order: ").append(global.getNavOrder()).append("\n");
+            builder.append("nav_order: ").append(String.valueOf(global.getNavOrder())).append("\n");
         }
         builder.append("has_children: true\n");
         builder.append("has_toc: false\n");
@@ -213,7 +229,5 @@ public class GlobalUsage
                        .append(" |\n");
             }
         }
-
-        return builder.toString();
     }
 }
@@ -10,6 +10,8 @@ import io.airlift.command.model.CommandGroupMetadata;
 import io.airlift.command.model.CommandMetadata;
 import io.airlift.command.model.GlobalMetadata;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -39,9 +41,7 @@ public class GlobalUsageSummary
      */
     public void usage(GlobalMetadata global)
     {
-        StringBuilder stringBuilder = new StringBuilder();
-        usage(global, stringBuilder);
-        System.out.println(stringBuilder);
+        UsageHelper.println(out -> usage(global, out));
     }
 
     /**
@@ -52,6 +52,20 @@ public class GlobalUsageSummary
         usage(global, new UsagePrinter(out, columnSize));
     }
 
+    /**
+     * Write the help to the passed-in appendable, such as a buffered writer.
+     */
+    public void usage(GlobalMetadata global, Appendable out)
+            throws IOException
+    {
+        try {
+            usage(global, new UsagePrinter(out, columnSize));
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
     public void usage(GlobalMetadata global, UsagePrinter out)
     {
         //
@@ -10,7 +10,7 @@ import static com.google.common.collect.Iterables.concat;
 import static com.google.common.collect.Iterables.transform;
 
 public class GroupSuggester
-        implements Suggester
+        implements PrefixSuggester
 {
     @Inject
     public CommandGroupMetadata group;
@@ -23,4 +23,10 @@ public class GroupSuggester
                 concat(transform(group.getOptions(), OptionMetadata.optionsGetter()))
         );
     }
+
+    @Override
+    public Iterable<String> suggest(String prefix)
+    {
+        return group.getCompletions().complete(prefix);
+    }
 }
@@ -4,12 +4,16 @@
 
 package io.airlift.command;
 
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import io.airlift.command.model.CommandGroupMetadata;
 import io.airlift.command.model.CommandMetadata;
 import io.airlift.command.model.GlobalMetadata;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.concurrent.Callable;
 
@@ -17,21 +21,47 @@ import static com.google.common.collect.Lists.newArrayList;
 
 @Command(name = "help", description = "Display help information")
 public class Help implements Runnable, Callable<Void> {
+    /**
+     * @deprecated these flags are shared by every thread, pass a {@link UsageFormat} to
+     * {@link #help(GlobalMetadata, List, UsageFormat, StringBuilder)} or {@code --format} to the help command instead
+     */
+    @Deprecated
     public static boolean USAGE_AS_HTML = false;
+    /**
+     * @deprecated see {@link #USAGE_AS_HTML}
+     */
+    @Deprecated
     public static boolean USAGE_AS_RONN = false;
+    /**
+     * @deprecated see {@link #USAGE_AS_HTML}
+     */
+    @Deprecated
     public static boolean USAGE_AS_MD = false;
 
     @Inject
     @Nullable
     public GlobalMetadata global;
 
+    @Inject
+    @Nullable
+    public HelpCache helpCache;
+
+    @Option(name = "--format", title = "format", description = "Format of the help",
+            allowedValues = {"TEXT", "HTML", "RONN", "MARKDOWN"})
+    public UsageFormat format = legacyFormat();
+
     @Arguments
     public List<String> command = newArrayList();
 
     @Override
     public void run() throws UnsupportedOperationException
     {
-        help(global, command);
+        if (helpCache != null) {
+            System.out.println(helpCache.help(command, format));
+        }
+        else {
+            UsageHelper.println(out -> help(global, command, format, HelpCache.DEFAULT_COLUMN_SIZE, out));
+        }
     }
 
     @Override
@@ -43,9 +73,7 @@ public class Help implements Runnable, Callable<Void> {
 
     public static void help(CommandMetadata command) throws UnsupportedOperationException
     {
-        StringBuilder stringBuilder = new StringBuilder();
-        help(command, stringBuilder);
-        System.out.println(stringBuilder);
+        UsageHelper.println(out -> new CommandUsage().usage(null, null, command.getName(), command, out));
     }
 
     public static void help(CommandMetadata command, StringBuilder out) throws UnsupportedOperationException
@@ -55,15 +83,47 @@ public class Help implements Runnable, Callable<Void> {
 
     public static void help(GlobalMetadata global, List<String> commandNames) throws UnsupportedOperationException
     {
-        StringBuilder stringBuilder = new StringBuilder();
-        help(global, commandNames, stringBuilder);
-        System.out.println(stringBuilder);
+        UsageFormat format = legacyFormat();
+        UsageHelper.println(out -> help(global, commandNames, format, HelpCache.DEFAULT_COLUMN_SIZE, out));
     }
 
+    /**
+     * Renders the help in the format selected by the deprecated {@code USAGE_AS_*} flags, plain text unless one is set.
+     */
     public static void help(GlobalMetadata global, List<String> commandNames, StringBuilder out) throws UnsupportedOperationException
     {
+        help(global, commandNames, legacyFormat(), out);
+    }
+
+    public static void help(GlobalMetadata global, List<String> commandNames, UsageFormat format, StringBuilder out) throws UnsupportedOperationException
+    {
+        help(global, commandNames, format, HelpCache.DEFAULT_COLUMN_SIZE, out);
+    }
+
+    /**
+     * Renders the help wrapped at the column size.  The help of a {@link Cli} is cached by its {@link HelpCache}.
+     */
+    public static void help(GlobalMetadata global, List<String> commandNames, UsageFormat format, int columnSize, StringBuilder out) throws UnsupportedOperationException
+    {
+        try {
+            help(global, commandNames, format, columnSize, (Appendable) out);
+        }
+        catch (IOException e) {
+            // a string builder does not throw
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the help wrapped at the column size to the appendable, such as a buffered writer, as it is rendered.
+     */
+    public static void help(GlobalMetadata global, List<String> commandNames, UsageFormat format, int columnSize, Appendable out)
+            throws IOException, UnsupportedOperationException
+    {
+        Preconditions.checkNotNull(format, "format is null");
+
         if (commandNames.isEmpty()) {
-            new GlobalUsageSummary().usage(global, out);
+            new GlobalUsageSummary(columnSize).usage(global, out);
             return;
         }
 
@@ -71,84 +131,130 @@ public class Help implements Runnable, Callable<Void> {
 
         // main program?
         if (name.equals(global.getName())) {
-            if (USAGE_AS_HTML) {
+            if (format == UsageFormat.HTML) {
                 throw new UnsupportedOperationException("Global usage not supported in HTML format");
             }
-            else if (USAGE_AS_RONN) {
+            else if (format == UsageFormat.RONN) {
                 throw new UnsupportedOperationException("Global usage not supported in RONN format");
             }
-            else if (USAGE_AS_MD) {
-                out.append(new GlobalUsage().usageMD(global));
+            else if (format == UsageFormat.MARKDOWN) {
+                new GlobalUsage(columnSize).usageMD(global, out);
             }
             else {
-                new GlobalUsage().usage(global, out);
+                new GlobalUsage(columnSize).usage(global, out);
             }
             return;
         }
 
         // command in the default group?
-        for (CommandMetadata command : global.getDefaultGroupCommands()) {
-            if (name.equals(command.getName())) {
-                if (USAGE_AS_HTML) {
-                    out.append(new CommandUsage().usageHTML(global.getName(), null, command));
+        CommandMetadata command = global.getDefaultGroupCommand(name);
+        if (command != null) {
+            if (format == UsageFormat.HTML) {
+                new CommandUsage(columnSize).usageHTML(global.getName(), null, command, out);
+            }
+            else if (format == UsageFormat.RONN) {
+                new CommandUsage(columnSize).usageRonn(global.getName(), null, command, out);
+            }
+            else if (format == UsageFormat.MARKDOWN) {
+                new CommandUsage(columnSize).usageMD(global.getName(), null, command, out);
+            }
+            else {
+                new CommandUsage(columnSize).usage(global.getName(), null, command.getName(), command, out);
+            }
+            return;
+        }
+
+        // command in a group?
+        CommandGroupMetadata group = global.getCommandGroup(name);
+        if (group != null) {
+            // general group help or specific command help?
+            if (commandNames.size() == 1) {
+                if (format == UsageFormat.HTML) {
+                    throw new UnsupportedOperationException("Command group usage not supported in HTML format");
                 }
-                else if (USAGE_AS_RONN) {
-                    out.append(new CommandUsage().usageRonn(global.getName(), null, command));
+                else if (format == UsageFormat.RONN) {
+                    throw new UnsupportedOperationException("Command group usage not supported in RONN format");
                 }
-                else if (USAGE_AS_MD) {
-                    out.append(new CommandUsage().usageMD(global.getName(), null, command));
+                else if (format == UsageFormat.MARKDOWN) {
+                    new CommandGroupUsage(columnSize).usageMD(global, group, out);
                 }
                 else {
-                    new CommandUsage().usage(global.getName(), null, command.getName(), command, out);
+                    new CommandGroupUsage(columnSize).usage(global, group, out);
                 }
                 return;
             }
-        }
-
-        // command in a group?
-        for (CommandGroupMetadata group : global.getCommandGroups()) {
-            if (name.equals(group.getName())) {
-                // general group help or specific command help?
-                if (commandNames.size() == 1) {
-                    if (USAGE_AS_HTML) {
-                        throw new UnsupportedOperationException("Command group usage not supported in HTML format");
+            else {
+                String commandName = commandNames.get(1);
+                command = group.getCommand(commandName);
+                if (command != null) {
+                    if (format == UsageFormat.HTML) {
+                        new CommandUsage(columnSize).usageHTML(global.getName(), group.getName(), command, out);
                     }
-                    else if (USAGE_AS_RONN) {
-                        throw new UnsupportedOperationException("Command group usage not supported in RONN format");
+                    else if (format == UsageFormat.RONN) {
+                        new CommandUsage(columnSize).usageRonn(global.getName(), group.getName(), command, out);
                     }
-                    else if (USAGE_AS_MD) {
-                        out.append(new CommandGroupUsage().usageMD(global, group));
+                    else if (format == UsageFormat.MARKDOWN) {
+                        new CommandUsage(columnSize).usageMD(global.getName(), group.getName(), command, out);
                     }
                     else {
-                        new CommandGroupUsage().usage(global, group, out);
+                        new CommandUsage(columnSize).usage(global.getName(), group.getName(), command.getName(), command, out);
                     }
+
                     return;
                 }
-                else {
-                    String commandName = commandNames.get(1);
-                    for (CommandMetadata command : group.getCommands()) {
-                        if (commandName.equals(command.getName())) {
-                            if (USAGE_AS_HTML) {
-                                out.append(new CommandUsage().usageHTML(global.getName(), group.getName(), command));
-                            }
-                            else if (USAGE_AS_RONN) {
-                                out.append(new CommandUsage().usageRonn(global.getName(), group.getName(), command));
-                            }
-                            else if (USAGE_AS_MD) {
-                                out.append(new CommandUsage().usageMD(global.getName(), group.getName(), command));
-                            }
-                            else {
-                                new CommandUsage().usage(global.getName(), group.getName(), command.getName(), command, out);
-                            }
-
-                            return;
-                        }
-                    }
-                    throw new UnsupportedOperationException("Unknown command " + name + " " + commandName);
-                }
+                throw new UnsupportedOperationException("Unknown command " + name + " " + commandName);
             }
         }
 
         throw new UnsupportedOperationException("Unknown command " + name);
     }
+
+    /**
+     * Writes the help of the CLI, then of each command in the default group, then of each group followed by its
+     * commands, as one document.  Each page is written to the appendable as it is rendered, so the manual of a large
+     * CLI is produced in a single pass without being held in memory.  Hidden commands are left out, and so are the
+     * pages of the CLI and its groups in formats without them, HTML and RONN.
+     */
+    public static void manual(GlobalMetadata global, UsageFormat format, int columnSize, Appendable out)
+            throws IOException
+    {
+        Preconditions.checkNotNull(global, "global is null");
+        Preconditions.checkNotNull(format, "format is null");
+        Preconditions.checkNotNull(out, "out is null");
+
+        boolean overviews = format == UsageFormat.TEXT || format == UsageFormat.MARKDOWN;
+        if (overviews) {
+            help(global, ImmutableList.of(global.getName()), format, columnSize, out);
+        }
+        for (CommandMetadata command : global.getDefaultGroupCommands()) {
+            if (!command.isHidden()) {
+                help(global, ImmutableList.of(command.getName()), format, columnSize, out);
+            }
+        }
+        for (CommandGroupMetadata group : global.getCommandGroups()) {
+            if (overviews) {
+                help(global, ImmutableList.of(group.getName()), format, columnSize, out);
+            }
+            for (CommandMetadata command : group.getCommands()) {
+                if (!command.isHidden()) {
+                    help(global, ImmutableList.of(group.getName(), command.getName()), format, columnSize, out);
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static UsageFormat legacyFormat()
+    {
+        if (USAGE_AS_HTML) {
+            return UsageFormat.HTML;
+        }
+        else if (USAGE_AS_RONN) {
+            return UsageFormat.RONN;
+        }
+        else if (USAGE_AS_MD) {
+            return UsageFormat.MARKDOWN;
+        }
+        return UsageFormat.TEXT;
+    }
 }
@@ -0,0 +1,170 @@
+package io.airlift.command;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import io.airlift.command.model.CommandGroupMetadata;
+import io.airlift.command.model.CommandMetadata;
+import io.airlift.command.model.GlobalMetadata;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The rendered help of a CLI, by command, format and column size.  Help is rendered by {@link Help} the first time it
+ * is asked for and kept, so serving it again costs a lookup instead of sorting options and wrapping descriptions.
+ * Every {@link Cli} has one, which commands get with {@code @Inject HelpCache}.  Instances are safe to share between
+ * threads.
+ */
+public final class HelpCache
+{
+    public static final int DEFAULT_COLUMN_SIZE = 79;
+
+    private final GlobalMetadata global;
+    private final ConcurrentMap<Key, String> help = new ConcurrentHashMap<>();
+
+    public HelpCache(GlobalMetadata global)
+    {
+        this.global = Preconditions.checkNotNull(global, "global is null");
+    }
+
+    public String help(List<String> commandNames, UsageFormat format)
+    {
+        return help(commandNames, format, DEFAULT_COLUMN_SIZE);
+    }
+
+    /**
+     * Returns the help {@link Help#help(GlobalMetadata, List, UsageFormat, int, StringBuilder)} renders.
+     *
+     * @throws UnsupportedOperationException if a command is unknown, or its help is not supported in the format
+     */
+    public String help(List<String> commandNames, UsageFormat format, int columnSize)
+            throws UnsupportedOperationException
+    {
+        Preconditions.checkNotNull(commandNames, "commandNames is null");
+        Preconditions.checkNotNull(format, "format is null");
+        Preconditions.checkArgument(columnSize > 0, "columnSize must be greater than 0");
+
+        return help.computeIfAbsent(key(commandNames, format, columnSize), key -> {
+            StringBuilder out = new StringBuilder();
+            Help.help(global, key.commandNames, key.format, key.columnSize, out);
+            return out.toString();
+        });
+    }
+
+    /**
+     * Renders the help of the CLI, of every group and of every command in each of the formats on the pool, skipping
+     * the help not supported in a format.  Commands loaded lazily are loaded.
+     */
+    public void prewarm(Set<UsageFormat> formats, int columnSize, ForkJoinPool pool)
+    {
+        Preconditions.checkNotNull(formats, "formats is null");
+        Preconditions.checkNotNull(pool, "pool is null");
+
+        List<List<String>> allCommandNames = new ArrayList<>();
+        allCommandNames.add(ImmutableList.of());
+        for (CommandMetadata command : global.getDefaultGroupCommands()) {
+            allCommandNames.add(ImmutableList.of(command.getName()));
+        }
+        for (CommandGroupMetadata group : global.getCommandGroups()) {
+            for (CommandMetadata command : group.getCommands()) {
+                allCommandNames.add(ImmutableList.of(group.getName(), command.getName()));
+            }
+        }
+
+        List<Key> keys = new ArrayList<>();
+        for (UsageFormat format : formats) {
+            for (List<String> commandNames : allCommandNames) {
+                keys.add(key(commandNames, format, columnSize));
+            }
+            // the CLI and groups have no HTML or RONN help
+            if (format == UsageFormat.TEXT || format == UsageFormat.MARKDOWN) {
+                keys.add(key(ImmutableList.of(global.getName()), format, columnSize));
+                for (CommandGroupMetadata group : global.getCommandGroups()) {
+                    keys.add(key(ImmutableList.of(group.getName()), format, columnSize));
+                }
+            }
+        }
+
+        pool.submit(() -> keys.parallelStream().forEach(key -> help(key.commandNames, key.format, key.columnSize))).join();
+    }
+
+    /**
+     * Returns the number of help texts cached.
+     */
+    public int size()
+    {
+        return help.size();
+    }
+
+    /**
+     * Returns the key of the help, ignoring the names which do not change it, so any list of names costs at most one
+     * entry per command.
+     */
+    private Key key(List<String> commandNames, UsageFormat format, int columnSize)
+    {
+        if (commandNames.isEmpty()) {
+            // the summary is always text
+            return new Key(ImmutableList.of(), UsageFormat.TEXT, columnSize);
+        }
+
+        String name = commandNames.get(0);
+        if (commandNames.size() > 1 &&
+                !name.equals(global.getName()) &&
+                global.getDefaultGroupCommand(name) == null &&
+                global.getCommandGroup(name) != null) {
+            return new Key(ImmutableList.of(name, commandNames.get(1)), format, columnSize);
+        }
+        return new Key(ImmutableList.of(name), format, columnSize);
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("HelpCache");
+        sb.append("{global=").append(global.getName());
+        sb.append(", size=").append(help.size());
+        sb.append('}');
+        return sb.toString();
+    }
+
+    private static final class Key
+    {
+        private final List<String> commandNames;
+        private final UsageFormat format;
+        private final int columnSize;
+
+        private Key(List<String> commandNames, UsageFormat format, int columnSize)
+        {
+            this.commandNames = commandNames;
+            this.format = format;
+            this.columnSize = columnSize;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return columnSize == key.columnSize &&
+                    format == key.format &&
+                    commandNames.equals(key.commandNames);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(commandNames, format, columnSize);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package io.airlift.command;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.PeekingIterator;
+import io.airlift.command.ParseStateBuilder.Mark;
+import io.airlift.command.model.CommandGroupMetadata;
+import io.airlift.command.model.CommandMetadata;
+import io.airlift.command.model.GlobalMetadata;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Parses a command line that is edited one token at a time, as in an interactive shell completing on every
+ * keystroke.  The parser remembers its state at every token boundary it passed; when the line is updated it returns to
+ * the last boundary before the first changed token and parses only from there, so the cost of an update is
+ * proportional to the edit rather than to the length of the line.
+ * <p>
+ * Instances hold the line being edited and are not safe to share between threads.
+ */
+public class IncrementalParser
+{
+    private final GlobalMetadata metadata;
+    private final Parser parser;
+    private final ParseStateBuilder state = new ParseStateBuilder();
+    private final List<String> tokens = new ArrayList<>();
+    private final List<Checkpoint> checkpoints = new ArrayList<>();
+    private ParseState parseState;
+
+    public IncrementalParser(GlobalMetadata metadata)
+    {
+        this(metadata, new TypeConverter());
+    }
+
+    public IncrementalParser(GlobalMetadata metadata, TypeConverter typeConverter)
+    {
+        this.metadata = Preconditions.checkNotNull(metadata, "metadata is null");
+        this.parser = new Parser(Preconditions.checkNotNull(typeConverter, "typeConverter is null"));
+
+        state.pushContext(Context.GLOBAL);
+        checkpoints.add(new Checkpoint(0, 0, state.mark()));
+    }
+
+    /**
+     * Updates the parse to the given tokens, reusing the work done for the tokens they share with the previous
+     * update.  If a token can not be parsed the exception is thrown and the parser keeps the state before that token.
+     */
+    public IncrementalParser update(List<String> line)
+    {
+        Preconditions.checkNotNull(line, "line is null");
+
+        int unchanged = 0;
+        while (unchanged < tokens.size() && unchanged < line.size() && tokens.get(unchanged).equals(line.get(unchanged))) {
+            unchanged++;
+        }
+        if (unchanged == tokens.size() && unchanged == line.size()) {
+            return this;
+        }
+
+        // drop the checkpoints that depend on a changed token, including tokens the parser only looked ahead at
+        while (checkpoints.size() > 1 && lastCheckpoint().examined > unchanged) {
+            checkpoints.remove(checkpoints.size() - 1);
+        }
+        Checkpoint resumeFrom = lastCheckpoint();
+        state.rollback(resumeFrom.mark);
+
+        tokens.clear();
+        tokens.addAll(line);
+        parseState = null;
+
+        final Tokens input = new Tokens(resumeFrom.position);
+        try {
+            parser.resume(metadata, input, state, builder -> checkpoints.add(new Checkpoint(input.position, input.examined, builder.mark())));
+        }
+        catch (ParseException e) {
+            // forget the bad token, so the next update parses it again
+            Checkpoint last = lastCheckpoint();
+            state.rollback(last.mark);
+            tokens.subList(last.position, tokens.size()).clear();
+            throw e;
+        }
+        return this;
+    }
+
+    public List<String> getTokens()
+    {
+        return tokens;
+    }
+
+    public Context getLocation()
+    {
+        return state.getLocation();
+    }
+
+    public CommandGroupMetadata getGroup()
+    {
+        return state.getGroup();
+    }
+
+    public CommandMetadata getCommand()
+    {
+        return state.getCommand();
+    }
+
+    /**
+     * Returns the state of the whole line.  Unlike the other getters this copies everything parsed so far, so it is
+     * only built on request.
+     */
+    public ParseState getParseState()
+    {
+        if (parseState == null) {
+            parseState = state.build();
+        }
+        return parseState;
+    }
+
+    /**
+     * Returns the completions of the current position, as {@link SuggestCommand} would for the same tokens.
+     */
+    public Iterable<String> suggest()
+    {
+        return SuggestCommand.suggest(metadata, getLocation(), getGroup(), getCommand());
+    }
+
+    /**
+     * Returns the completions of the current position which start with the prefix, in sorted order.  The prefix is
+     * the partial token following the tokens of the last update.
+     */
+    public Iterable<String> suggest(String prefix)
+    {
+        Preconditions.checkNotNull(prefix, "prefix is null");
+
+        return SuggestCommand.suggest(metadata, getLocation(), getGroup(), getCommand(), prefix);
+    }
+
+    private Checkpoint lastCheckpoint()
+    {
+        return checkpoints.get(checkpoints.size() - 1);
+    }
+
+    private static class Checkpoint
+    {
+        // tokens consumed
+        private final int position;
+        // tokens the parser looked at, which may include tokens it peeked at without consuming
+        private final int examined;
+        private final Mark mark;
+
+        private Checkpoint(int position, int examined, Mark mark)
+        {
+            this.position = position;
+            this.examined = Math.max(position, examined);
+            this.mark = mark;
+        }
+    }
+
+    /**
+     * The tokens of the line from a position on, keeping track of how far the parser has looked.
+     */
+    private class Tokens
+            implements PeekingIterator<String>
+    {
+        private int position;
+        private int examined;
+
+        private Tokens(int position)
+        {
+            this.position = position;
+            this.examined = position;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return position < tokens.size();
+        }
+
+        @Override
+        public String peek()
+        {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            examined = Math.max(examined, position + 1);
+            return tokens.get(position);
+        }
+
+        @Override
+        public String next()
+        {
+            String token = peek();
+            position++;
+            return token;
+        }
+
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -25,15 +25,30 @@ import java.util.List;
 public class ParseArgumentsUnexpectedException extends ParseException
 {
     private final List<String> unparsedInput;
+    private final List<String> suggestions;
 
     ParseArgumentsUnexpectedException(List<String> unparsedInput)
+    {
+        this(unparsedInput, ImmutableList.<String>of());
+    }
+
+    ParseArgumentsUnexpectedException(List<String> unparsedInput, List<String> suggestions)
     {
         super("Found unexpected parameters: %s", unparsedInput);
         this.unparsedInput = ImmutableList.copyOf(unparsedInput);
+        this.suggestions = ImmutableList.copyOf(suggestions);
     }
 
     public List<String> getUnparsedInput()
     {
         return unparsedInput;
     }
+
+    /**
+     * Returns the names of the options closest to the first unparsed input, nearest first.
+     */
+    public List<String> getSuggestions()
+    {
+        return suggestions;
+    }
 }
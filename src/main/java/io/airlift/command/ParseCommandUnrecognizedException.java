@@ -25,15 +25,30 @@ import java.util.List;
 public class ParseCommandUnrecognizedException extends ParseException
 {
     private final List<String> unparsedInput;
+    private final List<String> suggestions;
 
     ParseCommandUnrecognizedException(List<String> unparsedInput)
+    {
+        this(unparsedInput, ImmutableList.<String>of());
+    }
+
+    ParseCommandUnrecognizedException(List<String> unparsedInput, List<String> suggestions)
     {
         super("Command '%s' not recognized", unparsedInput.get(0));
         this.unparsedInput = ImmutableList.copyOf(unparsedInput);
+        this.suggestions = ImmutableList.copyOf(suggestions);
     }
 
     public List<String> getUnparsedInput()
     {
         return unparsedInput;
     }
+
+    /**
+     * Returns the names of the commands or groups closest to the first unparsed input, nearest first.
+     */
+    public List<String> getSuggestions()
+    {
+        return suggestions;
+    }
 }
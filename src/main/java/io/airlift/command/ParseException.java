@@ -18,8 +18,12 @@
 
 package io.airlift.command;
 
+import java.util.function.Supplier;
+
 public class ParseException extends RuntimeException
 {
+    private static final ThreadLocal<boolean[]> STACKLESS = ThreadLocal.withInitial(() -> new boolean[1]);
+
     public ParseException(String string, Object... args)
     {
         super(String.format(string, args));
@@ -29,4 +33,30 @@ public class ParseException extends RuntimeException
     {
         super(String.format(string, args), cause);
     }
+
+    /**
+     * Runs the action with stack traces disabled for parse exceptions created on this thread, for callers that
+     * report parse errors as values and never print where they were thrown.
+     */
+    static <T> T withoutStackTraces(Supplier<T> action)
+    {
+        boolean[] stackless = STACKLESS.get();
+        boolean previous = stackless[0];
+        stackless[0] = true;
+        try {
+            return action.get();
+        }
+        finally {
+            stackless[0] = previous;
+        }
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace()
+    {
+        if (STACKLESS.get()[0]) {
+            return this;
+        }
+        return super.fillInStackTrace();
+    }
 }
@@ -0,0 +1,81 @@
+package io.airlift.command;
+
+import com.google.common.base.Preconditions;
+
+import java.util.List;
+
+/**
+ * The outcome of parsing one command line without throwing: either the parsed command or the {@link ParseException}
+ * describing why the command line is invalid.
+ */
+public class ParseResult<C>
+{
+    private final List<String> arguments;
+    private final C command;
+    private final ParseException error;
+
+    private ParseResult(List<String> arguments, C command, ParseException error)
+    {
+        this.arguments = arguments;
+        this.command = command;
+        this.error = error;
+    }
+
+    public static <C> ParseResult<C> success(List<String> arguments, C command)
+    {
+        Preconditions.checkNotNull(arguments, "arguments is null");
+        return new ParseResult<>(arguments, command, null);
+    }
+
+    public static <C> ParseResult<C> failure(List<String> arguments, ParseException error)
+    {
+        Preconditions.checkNotNull(arguments, "arguments is null");
+        Preconditions.checkNotNull(error, "error is null");
+        return new ParseResult<>(arguments, null, error);
+    }
+
+    /**
+     * Returns the command line that was parsed.
+     */
+    public List<String> getArguments()
+    {
+        return arguments;
+    }
+
+    public boolean isSuccess()
+    {
+        return error == null;
+    }
+
+    /**
+     * Returns the parsed command, or null if the command line is invalid.
+     */
+    public C getCommand()
+    {
+        return command;
+    }
+
+    /**
+     * Returns why the command line is invalid, or null if it was parsed.
+     */
+    public ParseException getError()
+    {
+        return error;
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("ParseResult");
+        sb.append("{arguments=").append(arguments);
+        if (error == null) {
+            sb.append(", command=").append(command);
+        }
+        else {
+            sb.append(", error=").append(error.getMessage());
+        }
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -1,13 +1,12 @@
 package io.airlift.command;
 
-import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ListMultimap;
 import io.airlift.command.model.CommandGroupMetadata;
 import io.airlift.command.model.CommandMetadata;
 import io.airlift.command.model.OptionMetadata;
 
+import java.util.Iterator;
 import java.util.List;
 
 public class ParseState
@@ -15,18 +14,21 @@ public class ParseState
     private final List<Context> locationStack;
     private final CommandGroupMetadata group;
     private final CommandMetadata command;
-    private final ListMultimap<OptionMetadata, Object> parsedOptions;
+    private final ParsedOptions parsedOptions;
     private final List<Object> parsedArguments;
     private final OptionMetadata currentOption;
     private final List<String> unparsedInput; 
+    private final Iterator<Object> argumentStream;
+    private volatile ListMultimap<OptionMetadata, Object> parsedOptionsMultimap;
 
     ParseState(CommandGroupMetadata group,
             CommandMetadata command,
-            ListMultimap<OptionMetadata, Object> parsedOptions,
+            ParsedOptions parsedOptions,
             List<Context> locationStack,
             List<Object> parsedArguments,
             OptionMetadata currentOption,
-            List<String> unparsedInput)
+            List<String> unparsedInput,
+            Iterator<Object> argumentStream)
     {
         this.group = group;
         this.command = command;
@@ -35,11 +37,12 @@ public class ParseState
         this.parsedArguments = parsedArguments;
         this.currentOption = currentOption;
         this.unparsedInput = unparsedInput;
+        this.argumentStream = argumentStream;
     }
 
     public static ParseState newInstance()
     {
-        return new ParseState(null, null, ArrayListMultimap.<OptionMetadata, Object>create(), ImmutableList.<Context>of(), ImmutableList.of(), null, ImmutableList.<String>of());
+        return new ParseState(null, null, new ParsedOptions(), ImmutableList.<Context>of(), ImmutableList.of(), null, ImmutableList.<String>of(), null);
     }
 
     public ParseState pushContext(Context location)
@@ -49,38 +52,36 @@ public class ParseState
                 .add(location)
                 .build();
 
-        return new ParseState(group, command, parsedOptions, locationStack, parsedArguments, currentOption, unparsedInput);
+        return new ParseState(group, command, parsedOptions, locationStack, parsedArguments, currentOption, unparsedInput, argumentStream);
     }
 
     public ParseState popContext()
     {
         ImmutableList<Context> locationStack = ImmutableList.copyOf(this.locationStack.subList(0, this.locationStack.size() - 1));
-        return new ParseState(group, command, parsedOptions, locationStack, parsedArguments, currentOption, unparsedInput);
+        return new ParseState(group, command, parsedOptions, locationStack, parsedArguments, currentOption, unparsedInput, argumentStream);
     }
 
     public ParseState withOptionValue(OptionMetadata option, Object value)
     {
-        ImmutableListMultimap<OptionMetadata, Object> newOptions = ImmutableListMultimap.<OptionMetadata, Object>builder()
-                .putAll(parsedOptions)
-                .put(option, value)
-                .build();
+        ParsedOptions newOptions = parsedOptions.copy();
+        newOptions.add(option, value);
 
-        return new ParseState(group, command, newOptions, locationStack, parsedArguments, currentOption, unparsedInput);
+        return new ParseState(group, command, newOptions, locationStack, parsedArguments, currentOption, unparsedInput, argumentStream);
     }
 
     public ParseState withGroup(CommandGroupMetadata group)
     {
-        return new ParseState(group, command, parsedOptions, locationStack, parsedArguments, currentOption, unparsedInput);
+        return new ParseState(group, command, parsedOptions, locationStack, parsedArguments, currentOption, unparsedInput, argumentStream);
     }
 
     public ParseState withCommand(CommandMetadata command)
     {
-        return new ParseState(group, command, parsedOptions, locationStack, parsedArguments, currentOption, unparsedInput);
+        return new ParseState(group, command, parsedOptions.withCommand(command), locationStack, parsedArguments, currentOption, unparsedInput, argumentStream);
     }
 
     public ParseState withOption(OptionMetadata option)
     {
-        return new ParseState(group, command, parsedOptions, locationStack, parsedArguments, option, unparsedInput);
+        return new ParseState(group, command, parsedOptions, locationStack, parsedArguments, option, unparsedInput, argumentStream);
     }
 
     public ParseState withArgument(Object argument)
@@ -90,7 +91,7 @@ public class ParseState
                 .add(argument)
                 .build();
 
-        return new ParseState(group, command, parsedOptions, locationStack, newArguments, currentOption, unparsedInput);
+        return new ParseState(group, command, parsedOptions, locationStack, newArguments, currentOption, unparsedInput, argumentStream);
     }
 
 
@@ -101,7 +102,7 @@ public class ParseState
                 .add(input)
                 .build();
 
-        return new ParseState(group, command, parsedOptions, locationStack, parsedArguments, currentOption, newUnparsedInput);
+        return new ParseState(group, command, parsedOptions, locationStack, parsedArguments, currentOption, newUnparsedInput, argumentStream);
     }
 
     @Override
@@ -138,16 +139,53 @@ public class ParseState
         return currentOption;
     }
 
+    /**
+     * Returns the option values parsed so far by option, boxed; {@link #getOptionValues()} returns them as parsed.
+     */
     public ListMultimap<OptionMetadata, Object> getParsedOptions()
+    {
+        ListMultimap<OptionMetadata, Object> multimap = parsedOptionsMultimap;
+        if (multimap == null) {
+            multimap = parsedOptions.asMultimap();
+            parsedOptionsMultimap = multimap;
+        }
+        return multimap;
+    }
+
+    /**
+     * Returns the option values parsed so far, in the order they were parsed, with the primitive ones unboxed.
+     */
+    public ParsedOptions getOptionValues()
     {
         return parsedOptions;
     }
 
+    /**
+     * Returns the arguments parsed so far; empty when the arguments are streamed, see {@link #getArguments()}.
+     */
     public List<Object> getParsedArguments()
     {
         return parsedArguments;
     }
 
+    /**
+     * Returns the arguments of the command.  When the arguments are bound to a streaming field, see
+     * {@link Accessor#isStreaming()}, they are not collected by the parser; the returned iterable instead converts them
+     * from the remaining input as it is iterated, and can only be iterated once.
+     */
+    public Iterable<Object> getArguments()
+    {
+        if (argumentStream == null) {
+            return parsedArguments;
+        }
+        return () -> argumentStream;
+    }
+
+    public boolean hasArguments()
+    {
+        return !parsedArguments.isEmpty() || (argumentStream != null && argumentStream.hasNext());
+    }
+
     public List<String> getUnparsedInput()
     {
         return unparsedInput;
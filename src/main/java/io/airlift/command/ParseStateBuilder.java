@@ -0,0 +1,216 @@
+package io.airlift.command;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import io.airlift.command.model.CommandGroupMetadata;
+import io.airlift.command.model.CommandMetadata;
+import io.airlift.command.model.OptionMetadata;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Mutable counterpart of {@link ParseState} used by the {@link Parser} while it consumes tokens.  Every transition
+ * updates the builder in place, so a parse is a single pass without copying the accumulated options, arguments or
+ * context stack per token.  The result is frozen into an immutable {@link ParseState} once, via {@link #build()}.
+ */
+class ParseStateBuilder
+{
+    private final List<Context> locationStack = new ArrayList<>();
+    private final ParsedOptions parsedOptions = new ParsedOptions();
+    private final List<Object> parsedArguments = new ArrayList<>();
+    private final List<String> unparsedInput = new ArrayList<>();
+    private CommandGroupMetadata group;
+    private CommandMetadata command;
+    private OptionMetadata currentOption;
+    private Iterator<Object> argumentStream;
+
+    /**
+     * Clears the builder so it can be reused for another parse.
+     */
+    public ParseStateBuilder reset()
+    {
+        locationStack.clear();
+        parsedOptions.truncate(0);
+        parsedOptions.bind(null);
+        parsedArguments.clear();
+        unparsedInput.clear();
+        group = null;
+        command = null;
+        currentOption = null;
+        argumentStream = null;
+        return this;
+    }
+
+    public ParseStateBuilder pushContext(Context location)
+    {
+        locationStack.add(location);
+        return this;
+    }
+
+    public ParseStateBuilder popContext()
+    {
+        locationStack.remove(locationStack.size() - 1);
+        return this;
+    }
+
+    public ParseStateBuilder withOptionValue(OptionMetadata option, Object value)
+    {
+        parsedOptions.add(option, value);
+        return this;
+    }
+
+    public ParseStateBuilder withIntValue(OptionMetadata option, int value)
+    {
+        parsedOptions.addInt(option, value);
+        return this;
+    }
+
+    public ParseStateBuilder withLongValue(OptionMetadata option, long value)
+    {
+        parsedOptions.addLong(option, value);
+        return this;
+    }
+
+    public ParseStateBuilder withDoubleValue(OptionMetadata option, double value)
+    {
+        parsedOptions.addDouble(option, value);
+        return this;
+    }
+
+    public ParseStateBuilder withBooleanValue(OptionMetadata option, boolean value)
+    {
+        parsedOptions.addBoolean(option, value);
+        return this;
+    }
+
+    public ParseStateBuilder withGroup(CommandGroupMetadata group)
+    {
+        this.group = group;
+        return this;
+    }
+
+    public ParseStateBuilder withCommand(CommandMetadata command)
+    {
+        this.command = command;
+        parsedOptions.bind(command);
+        return this;
+    }
+
+    public ParseStateBuilder withOption(OptionMetadata option)
+    {
+        this.currentOption = option;
+        return this;
+    }
+
+    public ParseStateBuilder withArgument(Object argument)
+    {
+        parsedArguments.add(argument);
+        return this;
+    }
+
+    /**
+     * Hands the rest of the input to the command as streamed arguments; no more input is parsed afterwards.
+     */
+    public ParseStateBuilder withArgumentStream(Iterator<Object> argumentStream)
+    {
+        this.argumentStream = argumentStream;
+        return this;
+    }
+
+    public boolean isStreamingArguments()
+    {
+        return argumentStream != null;
+    }
+
+    public ParseStateBuilder withUnparsedInput(String input)
+    {
+        unparsedInput.add(input);
+        return this;
+    }
+
+    public boolean hasUnparsedInput()
+    {
+        return !unparsedInput.isEmpty();
+    }
+
+    /**
+     * Records the current state so a later {@link #rollback(Mark)} can return to it.  Options, arguments and unparsed
+     * input are only ever appended, so a mark is a handful of sizes and is cheap to take after every token.
+     */
+    public Mark mark()
+    {
+        Preconditions.checkState(argumentStream == null, "can not mark a state streaming arguments");
+        return new Mark(ImmutableList.copyOf(locationStack), parsedOptions.size(), parsedArguments.size(), unparsedInput.size(), group, command, currentOption);
+    }
+
+    /**
+     * Undoes everything recorded since the mark was taken; the cost is proportional to what is undone.
+     */
+    public ParseStateBuilder rollback(Mark mark)
+    {
+        locationStack.clear();
+        locationStack.addAll(mark.locations);
+
+        parsedOptions.truncate(mark.options);
+        parsedOptions.bind(mark.command);
+        parsedArguments.subList(mark.arguments, parsedArguments.size()).clear();
+        unparsedInput.subList(mark.unparsedInput, unparsedInput.size()).clear();
+
+        group = mark.group;
+        command = mark.command;
+        currentOption = mark.currentOption;
+        argumentStream = null;
+        return this;
+    }
+
+    public Context getLocation()
+    {
+        return locationStack.get(locationStack.size() - 1);
+    }
+
+    public CommandGroupMetadata getGroup()
+    {
+        return group;
+    }
+
+    public CommandMetadata getCommand()
+    {
+        return command;
+    }
+
+    public ParseState build()
+    {
+        return new ParseState(group,
+                command,
+                parsedOptions.copy(),
+                ImmutableList.copyOf(locationStack),
+                ImmutableList.copyOf(parsedArguments),
+                currentOption,
+                ImmutableList.copyOf(unparsedInput),
+                argumentStream);
+    }
+
+    static final class Mark
+    {
+        private final List<Context> locations;
+        private final int options;
+        private final int arguments;
+        private final int unparsedInput;
+        private final CommandGroupMetadata group;
+        private final CommandMetadata command;
+        private final OptionMetadata currentOption;
+
+        private Mark(List<Context> locations, int options, int arguments, int unparsedInput, CommandGroupMetadata group, CommandMetadata command, OptionMetadata currentOption)
+        {
+            this.locations = locations;
+            this.options = options;
+            this.arguments = arguments;
+            this.unparsedInput = unparsedInput;
+            this.group = group;
+            this.command = command;
+            this.currentOption = currentOption;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package io.airlift.command;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of a batch parse, see {@link Cli#parseBatch(Iterable, ParseStatistics)}.  The counters are updated by every
+ * parsing thread without contention and can be read while the batch runs.
+ */
+public class ParseStatistics
+{
+    private final LongAdder parsed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder parseNanos = new LongAdder();
+    private final long startNanos = System.nanoTime();
+
+    void record(boolean success, long nanos)
+    {
+        if (success) {
+            parsed.increment();
+        }
+        else {
+            failed.increment();
+        }
+        parseNanos.add(nanos);
+    }
+
+    /**
+     * Returns the number of command lines parsed successfully.
+     */
+    public long getParsed()
+    {
+        return parsed.sum();
+    }
+
+    /**
+     * Returns the number of invalid command lines.
+     */
+    public long getFailed()
+    {
+        return failed.sum();
+    }
+
+    public long getTotal()
+    {
+        return getParsed() + getFailed();
+    }
+
+    /**
+     * Returns the time spent parsing, summed over all threads.
+     */
+    public long getParseTime(TimeUnit unit)
+    {
+        return unit.convert(parseNanos.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the time elapsed since these statistics were created.
+     */
+    public long getElapsedTime(TimeUnit unit)
+    {
+        return unit.convert(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the number of command lines parsed per second of elapsed time.
+     */
+    public double getThroughput()
+    {
+        long elapsedNanos = Math.max(1, System.nanoTime() - startNanos);
+        return getTotal() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("ParseStatistics");
+        sb.append("{parsed=").append(getParsed());
+        sb.append(", failed=").append(getFailed());
+        sb.append(", parseTime=").append(getParseTime(TimeUnit.MILLISECONDS)).append("ms");
+        sb.append(", throughput=").append(String.format("%.1f/s", getThroughput()));
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,331 @@
+package io.airlift.command;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ListMultimap;
+import io.airlift.command.model.CommandMetadata;
+import io.airlift.command.model.OptionMetadata;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The option values of a command line, in the order they were parsed.  A value of an option bound to an int, long,
+ * double or boolean field is kept unboxed in a primitive array, so parsing and injecting it allocates nothing; any
+ * other value is kept as the object converted by the {@link TypeConverter}, a list of them for an option of arity
+ * above one.  Once the command is known, each value records the ordinal of its option in the command, see
+ * {@link CommandMetadata#getOptionOrdinal(OptionMetadata)}, so the command is injected and validated without looking
+ * options up again.
+ * <p>
+ * Values are only ever appended while parsing, and the instance of a {@link ParseState} is not modified afterwards.
+ */
+public final class ParsedOptions
+{
+    private static final byte REFERENCE = 0;
+    private static final byte INT = 1;
+    private static final byte LONG = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte BOOLEAN = 4;
+
+    private OptionMetadata[] options;
+    private byte[] kinds;
+    private long[] primitives;
+    private Object[] values;
+    private int size;
+
+    // the command the values are parsed for, the ordinal of the option of each value in it, -1 when the command is not
+    // known yet or does not have the option, the ordinals with a value, and the number of values of options the
+    // command does not have
+    private CommandMetadata command;
+    private int[] ordinals;
+    private final BitSet seen;
+    private int unknown;
+
+    ParsedOptions()
+    {
+        this(8);
+    }
+
+    private ParsedOptions(int capacity)
+    {
+        options = new OptionMetadata[capacity];
+        kinds = new byte[capacity];
+        primitives = new long[capacity];
+        values = new Object[capacity];
+        ordinals = new int[capacity];
+        seen = new BitSet();
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public OptionMetadata getOption(int index)
+    {
+        Preconditions.checkElementIndex(index, size);
+        return options[index];
+    }
+
+    /**
+     * Returns the value at the index, boxing it if it is kept unboxed.
+     */
+    public Object getValue(int index)
+    {
+        Preconditions.checkElementIndex(index, size);
+        switch (kinds[index]) {
+            case INT:
+                return (int) primitives[index];
+            case LONG:
+                return primitives[index];
+            case DOUBLE:
+                return Double.longBitsToDouble(primitives[index]);
+            case BOOLEAN:
+                return primitives[index] != 0;
+            default:
+                return values[index];
+        }
+    }
+
+    /**
+     * Returns the command the values are parsed for, null when it is not known yet.
+     */
+    public CommandMetadata getCommand()
+    {
+        return command;
+    }
+
+    public boolean containsKey(OptionMetadata option)
+    {
+        if (command != null) {
+            int ordinal = command.getOptionOrdinal(option);
+            if (ordinal >= 0) {
+                return seen.get(ordinal);
+            }
+            if (unknown == 0) {
+                return false;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            if (options[i].equals(option)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether a value was parsed for the option with the ordinal in the command of the values.
+     */
+    boolean containsOrdinal(int ordinal)
+    {
+        return seen.get(ordinal);
+    }
+
+    /**
+     * Returns the ordinal of the option of the value at the index in the command, -1 if the command does not have the
+     * option.
+     */
+    int getOrdinal(int index, CommandMetadata command)
+    {
+        Preconditions.checkElementIndex(index, size);
+        if (command == this.command) {
+            return ordinals[index];
+        }
+        return command.getOptionOrdinal(options[index]);
+    }
+
+    /**
+     * Returns the index of the first value of an option the command of the values does not have, or -1.
+     */
+    int indexOfUnknownOption()
+    {
+        if (unknown != 0) {
+            for (int i = 0; i < size; i++) {
+                if (ordinals[i] < 0) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the values by option, boxed; the options are in the order of their first value.
+     */
+    public ListMultimap<OptionMetadata, Object> asMultimap()
+    {
+        ImmutableListMultimap.Builder<OptionMetadata, Object> multimap = ImmutableListMultimap.builder();
+        for (int i = 0; i < size; i++) {
+            multimap.put(options[i], getValue(i));
+        }
+        return multimap.build();
+    }
+
+    boolean isUnboxed(int index)
+    {
+        return kinds[index] != REFERENCE;
+    }
+
+    /**
+     * Sets the field of the accessor to the unboxed value at the index.
+     */
+    void inject(int index, Accessor accessor, Object commandInstance)
+    {
+        switch (kinds[index]) {
+            case INT:
+                accessor.setInt(commandInstance, (int) primitives[index]);
+                break;
+            case LONG:
+                accessor.setLong(commandInstance, primitives[index]);
+                break;
+            case DOUBLE:
+                accessor.setDouble(commandInstance, Double.longBitsToDouble(primitives[index]));
+                break;
+            case BOOLEAN:
+                accessor.setBoolean(commandInstance, primitives[index] != 0);
+                break;
+            default:
+                throw new IllegalStateException("value " + index + " is not unboxed");
+        }
+    }
+
+    void add(OptionMetadata option, Object value)
+    {
+        values[append(option, REFERENCE)] = value;
+    }
+
+    void addInt(OptionMetadata option, int value)
+    {
+        primitives[append(option, INT)] = value;
+    }
+
+    void addLong(OptionMetadata option, long value)
+    {
+        primitives[append(option, LONG)] = value;
+    }
+
+    void addDouble(OptionMetadata option, double value)
+    {
+        primitives[append(option, DOUBLE)] = Double.doubleToRawLongBits(value);
+    }
+
+    void addBoolean(OptionMetadata option, boolean value)
+    {
+        primitives[append(option, BOOLEAN)] = value ? 1 : 0;
+    }
+
+    /**
+     * Records the ordinals of the options of the values in the command; values added later record theirs as they
+     * are added.
+     */
+    void bind(CommandMetadata command)
+    {
+        if (command == this.command) {
+            return;
+        }
+        this.command = command;
+        for (int i = 0; i < size; i++) {
+            ordinals[i] = command == null ? -1 : command.getOptionOrdinal(options[i]);
+        }
+        markOrdinals();
+    }
+
+    /**
+     * Drops the values after the first {@code size} ones.
+     */
+    void truncate(int size)
+    {
+        Preconditions.checkPositionIndex(size, this.size);
+        if (size == this.size) {
+            return;
+        }
+        Arrays.fill(options, size, this.size, null);
+        Arrays.fill(values, size, this.size, null);
+        this.size = size;
+        markOrdinals();
+    }
+
+    /**
+     * Returns a copy of the values bound to the command.
+     */
+    ParsedOptions withCommand(CommandMetadata command)
+    {
+        if (command == this.command) {
+            return this;
+        }
+        ParsedOptions copy = copy();
+        copy.bind(command);
+        return copy;
+    }
+
+    /**
+     * Returns a copy holding the same values, which is not changed by later changes to this instance.
+     */
+    ParsedOptions copy()
+    {
+        ParsedOptions copy = new ParsedOptions(Math.max(size, 1));
+        System.arraycopy(options, 0, copy.options, 0, size);
+        System.arraycopy(kinds, 0, copy.kinds, 0, size);
+        System.arraycopy(primitives, 0, copy.primitives, 0, size);
+        System.arraycopy(values, 0, copy.values, 0, size);
+        System.arraycopy(ordinals, 0, copy.ordinals, 0, size);
+        copy.size = size;
+        copy.command = command;
+        copy.seen.or(seen);
+        copy.unknown = unknown;
+        return copy;
+    }
+
+    private int append(OptionMetadata option, byte kind)
+    {
+        Preconditions.checkNotNull(option, "option is null");
+        if (size == options.length) {
+            int capacity = size * 2;
+            options = Arrays.copyOf(options, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+            primitives = Arrays.copyOf(primitives, capacity);
+            values = Arrays.copyOf(values, capacity);
+            ordinals = Arrays.copyOf(ordinals, capacity);
+        }
+        int index = size++;
+        options[index] = option;
+        kinds[index] = kind;
+        values[index] = null;
+        if (command == null) {
+            ordinals[index] = -1;
+        }
+        else {
+            ordinals[index] = command.getOptionOrdinal(option);
+            markOrdinal(ordinals[index]);
+        }
+        return index;
+    }
+
+    private void markOrdinals()
+    {
+        seen.clear();
+        unknown = 0;
+        if (command != null) {
+            for (int i = 0; i < size; i++) {
+                markOrdinal(ordinals[i]);
+            }
+        }
+    }
+
+    private void markOrdinal(int ordinal)
+    {
+        if (ordinal >= 0) {
+            seen.set(ordinal);
+        }
+        else {
+            unknown++;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return asMultimap().toString();
+    }
+}
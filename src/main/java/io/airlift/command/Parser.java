@@ -1,6 +1,6 @@
 package io.airlift.command;
 
-import com.google.common.base.Splitter;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.PeekingIterator;
@@ -8,18 +8,28 @@ import io.airlift.command.model.ArgumentsMetadata;
 import io.airlift.command.model.CommandGroupMetadata;
 import io.airlift.command.model.CommandMetadata;
 import io.airlift.command.model.GlobalMetadata;
+import io.airlift.command.model.OptionIndex;
 import io.airlift.command.model.OptionMetadata;
 
-import java.util.List;
+import java.util.Iterator;
 import java.util.regex.Pattern;
 
-import static com.google.common.base.Predicates.compose;
-import static com.google.common.base.Predicates.equalTo;
-import static com.google.common.collect.Iterables.find;
-
 public class Parser
 {
     private static final Pattern SHORT_OPTIONS_PATTERN = Pattern.compile("-[^-].*");
+    private static final TypeConverter DEFAULT_TYPE_CONVERTER = new TypeConverter();
+
+    private final TypeConverter typeConverter;
+
+    public Parser()
+    {
+        this(DEFAULT_TYPE_CONVERTER);
+    }
+
+    public Parser(TypeConverter typeConverter)
+    {
+        this.typeConverter = Preconditions.checkNotNull(typeConverter, "typeConverter is null");
+    }
 
     // global> (option value*)* (group (option value*)*)? (command (option value* | arg)* '--'? args*)?
     public ParseState parse(GlobalMetadata metadata, String... params)
@@ -29,130 +39,158 @@ public class Parser
 
     public ParseState parse(GlobalMetadata metadata, Iterable<String> params)
     {
-        PeekingIterator<String> tokens = Iterators.peekingIterator(params.iterator());
+        return parse(metadata, params, new ParseStateBuilder());
+    }
+
+    /**
+     * Parses with the given builder, which is reset first; callers parsing many command lines on one thread reuse it.
+     */
+    ParseState parse(GlobalMetadata metadata, Iterable<String> params, ParseStateBuilder state)
+    {
+        state.reset().pushContext(Context.GLOBAL);
+        resume(metadata, Iterators.peekingIterator(params.iterator()), state, null);
+        return state.build();
+    }
 
-        ParseState state = ParseState.newInstance().pushContext(Context.GLOBAL);
+    /**
+     * Continues parsing from the position recorded in the builder, which must be between tokens rather than inside an
+     * option.  The listener, if any, is told each time the parse reaches another such position.
+     */
+    void resume(GlobalMetadata metadata, PeekingIterator<String> tokens, ParseStateBuilder state, CheckpointListener checkpoints)
+    {
+        if (state.getCommand() == null && state.hasUnparsedInput()) {
+            // no command matched, so the rest of the input is not parsed either
+            while (tokens.hasNext()) {
+                state.withUnparsedInput(tokens.next());
+            }
+            return;
+        }
 
-        // parse global options
-        state = parseOptions(tokens, state, metadata.getOptions());
+        Context location = state.getLocation();
+        Preconditions.checkArgument(location != Context.OPTION, "can not resume inside an option");
 
-        // parse group
-        if (tokens.hasNext()) {
-            CommandGroupMetadata group = find(metadata.getCommandGroups(), compose(equalTo(tokens.peek()), CommandGroupMetadata.nameGetter()), null);
-            if (group != null) {
-                tokens.next();
-                state = state.withGroup(group).pushContext(Context.GROUP);
+        if (location == Context.GLOBAL) {
+            // parse global options
+            parseOptions(tokens, state, metadata.getOptionIndex(), checkpoints);
 
-                state = parseOptions(tokens, state, state.getGroup().getOptions());
+            // parse group
+            if (tokens.hasNext()) {
+                CommandGroupMetadata group = metadata.getCommandGroup(tokens.peek());
+                if (group != null) {
+                    tokens.next();
+                    state.withGroup(group).pushContext(Context.GROUP);
+                    checkpoint(state, checkpoints);
+                    location = Context.GROUP;
+                }
             }
         }
 
-        // parse command
-        List<CommandMetadata> expectedCommands = metadata.getDefaultGroupCommands();
-        if (state.getGroup() != null) {
-            expectedCommands = state.getGroup().getCommands();
+        if (location == Context.GROUP) {
+            parseOptions(tokens, state, state.getGroup().getOptionIndex(), checkpoints);
         }
 
-        if (tokens.hasNext()) {
-            CommandMetadata command = find(expectedCommands,
-                                           compose(equalTo(tokens.peek()), CommandMetadata.nameGetter()),
-                                           state.getGroup() != null ? state.getGroup().getDefaultCommand() : null);
-
-            if (command == null && state.getGroup() == null && metadata.getDefaultCommand() != null) {
-                command = metadata.getDefaultCommand();
+        // parse command
+        if (location == Context.GLOBAL || location == Context.GROUP) {
+            if (!tokens.hasNext()) {
+                return;
             }
 
-            if (command == null) {
-                while (tokens.hasNext()) {
-                    state = state.withUnparsedInput(tokens.next());
+            CommandMetadata command;
+            if (state.getGroup() != null) {
+                command = state.getGroup().getCommand(tokens.peek());
+                if (command == null) {
+                    command = state.getGroup().getDefaultCommand();
                 }
             }
             else {
-                if (tokens.peek().equals(command.getName())) {
-                    tokens.next();
+                command = metadata.getDefaultGroupCommand(tokens.peek());
+                if (command == null) {
+                    command = metadata.getDefaultCommand();
                 }
+            }
 
-                state = state.withCommand(command).pushContext(Context.COMMAND);
-
+            if (command == null) {
                 while (tokens.hasNext()) {
-                    state = parseOptions(tokens, state, command.getCommandOptions());
-                    
-                    state = parseArgs(state, tokens, command.getArguments());
+                    state.withUnparsedInput(tokens.next());
                 }
+                return;
+            }
+
+            if (tokens.peek().equals(command.getName())) {
+                tokens.next();
             }
+
+            state.withCommand(command).pushContext(Context.COMMAND);
+            checkpoint(state, checkpoints);
+            location = Context.COMMAND;
         }
 
-        return state;
+        CommandMetadata command = state.getCommand();
+        if (location == Context.COMMAND) {
+            while (tokens.hasNext() && !state.isStreamingArguments()) {
+                parseOptions(tokens, state, command.getCommandOptionIndex(), checkpoints);
+
+                parseArgs(state, tokens, command.getArguments(), checkpoints);
+            }
+        }
+        else {
+            // past the '--' separator
+            while (tokens.hasNext()) {
+                parseArg(state, tokens, command.getArguments());
+                checkpoint(state, checkpoints);
+            }
+        }
     }
 
     public ParseState parseCommand(CommandMetadata command, Iterable<String> params)
     {
         PeekingIterator<String> tokens = Iterators.peekingIterator(params.iterator());
-        ParseState state = ParseState.newInstance().pushContext(Context.GLOBAL).withCommand(command);
+        ParseStateBuilder state = new ParseStateBuilder().pushContext(Context.GLOBAL).withCommand(command);
 
-        while (tokens.hasNext()) {
-            state = parseOptions(tokens, state, command.getCommandOptions());
+        while (tokens.hasNext() && !state.isStreamingArguments()) {
+            parseOptions(tokens, state, command.getCommandOptionIndex(), null);
 
-            state = parseArgs(state, tokens, command.getArguments());
+            parseArgs(state, tokens, command.getArguments(), null);
         }
-        return state;
+        return state.build();
     }
 
-    private ParseState parseOptions(PeekingIterator<String> tokens, ParseState state, List<OptionMetadata> allowedOptions)
+    private void parseOptions(PeekingIterator<String> tokens, ParseStateBuilder state, OptionIndex allowedOptions, CheckpointListener checkpoints)
     {
         while (tokens.hasNext()) {
             //
-            // Try to parse next option(s) using different styles.  If code matches it returns
-            // the next parser state, otherwise it returns null.
-
-            // Parse a simple option
-            ParseState nextState = parseSimpleOption(tokens, state, allowedOptions);
-            if (nextState != null) {
-                state = nextState;
-                continue;
-            }
-
-            // Parse GNU getopt long-form: --option=value
-            nextState = parseLongGnuGetOpt(tokens, state, allowedOptions);
-            if (nextState != null) {
-                state = nextState;
-                continue;
-            }
-
-            // Handle classic getopt syntax: -abc
-            nextState = parseClassicGetOpt(tokens, state, allowedOptions);
-            if (nextState != null) {
-                state = nextState;
+            // Try to parse next option(s) using different styles.  If code matches it updates
+            // the parser state and returns true, otherwise it leaves the state untouched.
+
+            // Parse a simple option, GNU getopt long-form (--option=value) or classic getopt syntax (-abc)
+            if (parseSimpleOption(tokens, state, allowedOptions)
+                    || parseLongGnuGetOpt(tokens, state, allowedOptions)
+                    || parseClassicGetOpt(tokens, state, allowedOptions)) {
+                checkpoint(state, checkpoints);
                 continue;
             }
 
             // did not match an option
             break;
         }
-
-        return state;
     }
 
-    private ParseState parseSimpleOption(PeekingIterator<String> tokens, ParseState state, List<OptionMetadata> allowedOptions)
+    private boolean parseSimpleOption(PeekingIterator<String> tokens, ParseStateBuilder state, OptionIndex allowedOptions)
     {
-        OptionMetadata option = findOption(allowedOptions, tokens.peek());
+        OptionMetadata option = allowedOptions.find(tokens.peek());
         if (option == null) {
-            return null;
+            return false;
         }
 
         tokens.next();
-        state = state.pushContext(Context.OPTION).withOption(option);
+        state.pushContext(Context.OPTION).withOption(option);
 
-        Object value;
         if (option.getArity() == 0) {
-            state = state.withOptionValue(option, Boolean.TRUE).popContext();
+            withFlag(state, option).popContext();
         }
         else if (option.getArity() == 1) {
             if (tokens.hasNext()) {
-                String tokenStr = tokens.next();
-                checkValidValue(option, tokenStr);
-                value = TypeConverter.newInstance().convert(option.getTitle(), option.getJavaType(), tokenStr);
-                state = state.withOptionValue(option, value).popContext();
+                withValue(state, option, tokens.next()).popContext();
             }
         }
         else {
@@ -165,74 +203,112 @@ public class Parser
             while (count < option.getArity() && tokens.hasNext() && !hasSeparator) {
             	String peekedToken = tokens.peek();
             	hasSeparator = peekedToken.equals("--");
-            	foundNextOption = findOption(allowedOptions, peekedToken) != null;
+            	foundNextOption = allowedOptions.find(peekedToken) != null;
             	
             	if (hasSeparator || foundNextOption) break;
                 String tokenStr = tokens.next();
                 checkValidValue(option, tokenStr);
-                values.add(TypeConverter.newInstance().convert(option.getTitle(), option.getJavaType(), tokenStr));
+                values.add(typeConverter.convert(option.getTitle(), option.getJavaType(), tokenStr));
                 ++count;
             }
 
             if (count == option.getArity() || hasSeparator || foundNextOption) {
-                state = state.withOptionValue(option, values.build()).popContext();
+                state.withOptionValue(option, values.build()).popContext();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records an option without a value, kept unboxed when it is bound to a boolean field.
+     */
+    private static ParseStateBuilder withFlag(ParseStateBuilder state, OptionMetadata option)
+    {
+        if (boolean.class.equals(option.getJavaType())) {
+            return state.withBooleanValue(option, true);
+        }
+        return state.withOptionValue(option, Boolean.TRUE);
+    }
+
+    /**
+     * Converts and records the value of an option of arity one; the value of an int, long, double or boolean field
+     * is kept unboxed.
+     */
+    private ParseStateBuilder withValue(ParseStateBuilder state, OptionMetadata option, String value)
+    {
+        checkValidValue(option, value);
+
+        String title = option.getTitle();
+        Class<?> type = option.getJavaType();
+        if (typeConverter.isUnboxed(type)) {
+            if (int.class.equals(type)) {
+                return state.withIntValue(option, typeConverter.convertInt(title, value));
+            }
+            if (long.class.equals(type)) {
+                return state.withLongValue(option, typeConverter.convertLong(title, value));
+            }
+            if (double.class.equals(type)) {
+                return state.withDoubleValue(option, typeConverter.convertDouble(title, value));
             }
+            return state.withBooleanValue(option, typeConverter.convertBoolean(title, value));
         }
-        return state;
+        return state.withOptionValue(option, typeConverter.convert(title, type, value));
     }
 
-    private ParseState parseLongGnuGetOpt(PeekingIterator<String> tokens, ParseState state, List<OptionMetadata> allowedOptions)
+    private boolean parseLongGnuGetOpt(PeekingIterator<String> tokens, ParseStateBuilder state, OptionIndex allowedOptions)
     {
-        List<String> parts = ImmutableList.copyOf(Splitter.on('=').limit(2).split(tokens.peek()));
-        if (parts.size() != 2) {
-            return null;
+        String token = tokens.peek();
+        int separator = token.indexOf('=');
+        if (separator == -1) {
+            return false;
         }
 
-        OptionMetadata option = findOption(allowedOptions, parts.get(0));
+        OptionMetadata option = allowedOptions.find(token.substring(0, separator));
         if (option == null || option.getArity() != 1) {
             // TODO: this is not exactly correct. It should be an error condition
-            return null;
+            return false;
         }
 
         // we have a match so consume the token
         tokens.next();
 
         // update state
-        state = state.pushContext(Context.OPTION).withOption(option);
-        checkValidValue(option, parts.get(1));
-        Object value = TypeConverter.newInstance().convert(option.getTitle(), option.getJavaType(), parts.get(1));
-        state = state.withOption(option).withOptionValue(option, value).popContext();
+        state.pushContext(Context.OPTION).withOption(option);
+        withValue(state, option, token.substring(separator + 1)).popContext();
 
-        return state;
+        return true;
     }
 
-    private ParseState parseClassicGetOpt(PeekingIterator<String> tokens, ParseState state, List<OptionMetadata> allowedOptions)
+    private boolean parseClassicGetOpt(PeekingIterator<String> tokens, ParseStateBuilder state, OptionIndex allowedOptions)
     {
         if (!SHORT_OPTIONS_PATTERN.matcher(tokens.peek()).matches()) {
-            return null;
+            return false;
         }
 
-        // remove leading dash from token
-        String remainingToken = tokens.peek().substring(1);
+        String token = tokens.peek();
 
-        ParseState nextState = state;
-        while (!remainingToken.isEmpty()) {
-            char tokenCharacter = remainingToken.charAt(0);
-
-            // is the current token character a single letter option?
-            OptionMetadata option = findOption(allowedOptions, "-" + tokenCharacter);
+        // the state is updated in place, so make sure the whole cluster is made of known options before touching it;
+        // the scan stops at the first option taking a value since the rest of the token is that value
+        for (int i = 1; i < token.length(); i++) {
+            OptionMetadata option = allowedOptions.findShort(token.charAt(i));
             if (option == null) {
-                return null;
+                return false;
+            }
+            if (option.getArity() != 0) {
+                break;
             }
+        }
 
-            nextState = nextState.pushContext(Context.OPTION).withOption(option);
+        // walk the characters after the leading dash
+        for (int i = 1; i < token.length(); i++) {
+            // is the current token character a single letter option?
+            OptionMetadata option = allowedOptions.findShort(token.charAt(i));
 
-            // remove current token character
-            remainingToken = remainingToken.substring(1);
+            state.pushContext(Context.OPTION).withOption(option);
 
-            // for no argument options, process the option and remove the character from the token
+            // for no argument options, process the option and move on to the next character
             if (option.getArity() == 0) {
-                nextState = nextState.withOptionValue(option, Boolean.TRUE).popContext();
+                withFlag(state, option).popContext();
                 continue;
             }
 
@@ -241,19 +317,14 @@ public class Parser
                 tokens.next();
 
                 // if current token has more characters, this is the value; otherwise it is the next token
-                if (!remainingToken.isEmpty()) {
-                    checkValidValue(option, remainingToken);
-                    Object value = TypeConverter.newInstance().convert(option.getTitle(), option.getJavaType(), remainingToken);
-                    nextState = nextState.withOptionValue(option, value).popContext();
+                if (i + 1 < token.length()) {
+                    withValue(state, option, token.substring(i + 1)).popContext();
                 }
                 else if (tokens.hasNext()) {
-                    String tokenStr = tokens.next();
-                    checkValidValue(option, tokenStr);
-                    Object value = TypeConverter.newInstance().convert(option.getTitle(), option.getJavaType(), tokenStr);
-                    nextState = nextState.withOptionValue(option, value).popContext();
+                    withValue(state, option, tokens.next()).popContext();
                 }
 
-                return nextState;
+                return true;
             }
 
             throw new UnsupportedOperationException("Short options style can not be used with option " + option.getAllowedValues());
@@ -262,7 +333,7 @@ public class Parser
         // consume the current token
         tokens.next();
 
-        return nextState;
+        return true;
     }
     
     /**
@@ -276,47 +347,89 @@ public class Parser
         throw new ParseOptionIllegalValueException(option.getTitle(), tokenStr, option.getAllowedValues());
     }
 
-    private ParseState parseArgs(ParseState state, PeekingIterator<String> tokens, ArgumentsMetadata arguments)
+    private void parseArgs(ParseStateBuilder state, PeekingIterator<String> tokens, ArgumentsMetadata arguments, CheckpointListener checkpoints)
     {
         if (tokens.hasNext()) {
-            if (tokens.peek().equals("--")) {
-                state = state.pushContext(Context.ARGS);
+            if (arguments != null && arguments.isStreaming()) {
+                // the first argument ends the options, everything after it is left to the command to convert as it reads
+                if (tokens.peek().equals("--")) {
+                    state.pushContext(Context.ARGS);
+                    tokens.next();
+                }
+                state.withArgumentStream(new ArgumentStream(tokens, arguments));
+            }
+            else if (tokens.peek().equals("--")) {
+                state.pushContext(Context.ARGS);
                 tokens.next();
+                checkpoint(state, checkpoints);
 
                 // consume all args
                 while (tokens.hasNext()) {
-                    state = parseArg(state, tokens, arguments);
+                    parseArg(state, tokens, arguments);
+                    checkpoint(state, checkpoints);
                 }
             }
             else {
-                state = parseArg(state, tokens, arguments);
+                parseArg(state, tokens, arguments);
+                checkpoint(state, checkpoints);
             }
         }
+    }
 
-        return state;
+    private static void checkpoint(ParseStateBuilder state, CheckpointListener checkpoints)
+    {
+        if (checkpoints != null && state.getLocation() != Context.OPTION && !state.isStreamingArguments()) {
+            checkpoints.reached(state);
+        }
     }
 
-    private ParseState parseArg(ParseState state, PeekingIterator<String> tokens, ArgumentsMetadata arguments)
+    private void parseArg(ParseStateBuilder state, PeekingIterator<String> tokens, ArgumentsMetadata arguments)
     {
         if (arguments != null) {
         	// TODO: check each title one by one? see: https://github.com/airlift/airline/issues/6
-            state = state.withArgument(TypeConverter.newInstance()
+            state.withArgument(typeConverter
             				.convert(arguments.getTitle().get(0), arguments.getJavaType(), tokens.next())); 
         }
         else {
-            state = state.withUnparsedInput(tokens.next());
+            state.withUnparsedInput(tokens.next());
         }
-        return state;
     }
 
-    private OptionMetadata findOption(List<OptionMetadata> options, String param)
+    /**
+     * Notified each time a parse reaches a position it can later be resumed from.
+     */
+    interface CheckpointListener
+    {
+        void reached(ParseStateBuilder state);
+    }
+
+    /**
+     * Converts the remaining input to arguments as the command iterates it.
+     */
+    private class ArgumentStream
+            implements Iterator<Object>
     {
-        for (OptionMetadata optionMetadata : options) {
-            if (optionMetadata.getOptions().contains(param)) {
-                return optionMetadata;
-            }
+        private final Iterator<String> tokens;
+        private final String title;
+        private final Class<?> type;
+
+        private ArgumentStream(Iterator<String> tokens, ArgumentsMetadata arguments)
+        {
+            this.tokens = tokens;
+            this.title = arguments.getTitle().get(0);
+            this.type = arguments.getJavaType();
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return tokens.hasNext();
         }
-        return null;
-    }
 
+        @Override
+        public Object next()
+        {
+            return typeConverter.convert(title, type, tokens.next());
+        }
+    }
 }
@@ -1,10 +1,18 @@
 package io.airlift.command;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.ListMultimap;
 import io.airlift.command.model.ArgumentsMetadata;
+import io.airlift.command.model.CommandMetadata;
 import io.airlift.command.model.OptionMetadata;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -12,15 +20,40 @@ import static com.google.common.collect.Iterables.concat;
 
 public class ParserUtil
 {
+    // no argument constructors resolved once per type; null when the type can not be instantiated that way
+    private static final ClassValue<MethodHandle> CONSTRUCTORS = new ClassValue<MethodHandle>()
+    {
+        @Override
+        protected MethodHandle computeValue(Class<?> type)
+        {
+            try {
+                return MethodHandles.lookup().unreflectConstructor(type.getConstructor()).asType(MethodType.methodType(Object.class));
+            }
+            catch (NoSuchMethodException | IllegalAccessException | SecurityException e) {
+                return null;
+            }
+        }
+    };
+
+    @SuppressWarnings("unchecked")
     public static <T> T createInstance(Class<T> type)
     {
         if (type != null) {
+            MethodHandle constructor = Modifier.isAbstract(type.getModifiers()) ? null : CONSTRUCTORS.get(type);
             try {
+                if (constructor != null) {
+                    return (T) (Object) constructor.invokeExact();
+                }
+                // let reflection report why the type can not be instantiated
                 return type.getConstructor().newInstance();
             }
             catch (Exception e) {
                 throw new ParseException(e, "Unable to create instance %s", type.getName());
             }
+            catch (Throwable e) {
+                Throwables.throwIfUnchecked(e);
+                throw new ParseException(new Exception(e), "Unable to create instance %s", type.getName());
+            }
         }
         return null;
     }
@@ -59,8 +92,109 @@ public class ParserUtil
             }
         }
   
+        injectArguments(commandInstance, arguments, parsedArguments, metadataInjection, bindings);
+        return commandInstance;
+    }
+    
+    
+    /**
+     * Creates an instance of the command and injects it with the parsed values, see
+     * {@link #injectOptions(Object, CommandMetadata, ParsedOptions, Iterable, Map)}.
+     */
+    public static <T> T createInstance(CommandMetadata command,
+            ParsedOptions parsedOptions,
+            Iterable<Object> parsedArguments,
+            Map<Class<?>, Object> bindings,
+            CommandFactory<T> commandFactory)
+    {
+        T commandInstance = commandFactory.createInstance(command.getType());
+
+        return injectOptions(commandInstance, command, parsedOptions, parsedArguments, bindings);
+    }
+
+    /**
+     * Injects the parsed option values, arguments and bound metadata into the command instance.  The values are
+     * grouped by the ordinal their option was given while parsing, and an option given once with an unboxed value is
+     * set without boxing it; options the command does not have are ignored.
+     */
+    public static <T> T injectOptions(T commandInstance,
+            CommandMetadata command,
+            ParsedOptions parsedOptions,
+            Iterable<Object> parsedArguments,
+            Map<Class<?>, Object> bindings)
+    {
+        List<OptionMetadata> options = command.getAllOptions();
+        int[] counts = new int[options.size()];
+        int[] lastValues = new int[options.size()];
+        for (int i = 0; i < parsedOptions.size(); i++) {
+            int ordinal = parsedOptions.getOrdinal(i, command);
+            if (ordinal >= 0) {
+                counts[ordinal]++;
+                lastValues[ordinal] = i;
+            }
+        }
+
+        for (int ordinal = 0; ordinal < counts.length; ordinal++) {
+            if (counts[ordinal] == 0) {
+                continue;
+            }
+
+            OptionMetadata option = options.get(ordinal);
+            if (counts[ordinal] == 1 && parsedOptions.isUnboxed(lastValues[ordinal])) {
+                for (Accessor accessor : option.getAccessors()) {
+                    parsedOptions.inject(lastValues[ordinal], accessor, commandInstance);
+                }
+                continue;
+            }
+
+            List<Object> values = new ArrayList<>(counts[ordinal]);
+            for (int i = 0; i <= lastValues[ordinal]; i++) {
+                if (parsedOptions.getOrdinal(i, command) == ordinal) {
+                    Object value = parsedOptions.getValue(i);
+                    if (option.getArity() > 1) {
+                        // the values of each occurrence are a collection
+                        Iterables.addAll(values, (Iterable<?>) value);
+                    }
+                    else {
+                        values.add(value);
+                    }
+                }
+            }
+            for (Accessor accessor : option.getAccessors()) {
+                accessor.addValues(commandInstance, values);
+            }
+        }
+
+        injectArguments(commandInstance, command.getArguments(), parsedArguments, command.getMetadataInjections(), bindings);
+        return commandInstance;
+    }
+
+    public static <T> T createInstance(Class<?> type,
+            Iterable<OptionMetadata> options,
+            ListMultimap<OptionMetadata, Object> parsedOptions,
+            ArgumentsMetadata arguments,
+            Iterable<Object> parsedArguments,
+            Iterable<Accessor> metadataInjection,
+            Map<Class<?>, Object> bindings,
+            CommandFactory<T> commandFactory)
+    {
+        // create the command instance
+        T commandInstance = (T) commandFactory.createInstance(type);
+
+        return injectOptions(commandInstance, options, parsedOptions, arguments, parsedArguments, metadataInjection, bindings);        
+    }
+
+    private static void injectArguments(Object commandInstance,
+            ArgumentsMetadata arguments,
+            Iterable<Object> parsedArguments,
+            Iterable<Accessor> metadataInjection,
+            Map<Class<?>, Object> bindings)
+    {
         // inject args
         if (arguments != null && parsedArguments != null) {
+            if (arguments.isStreaming() && arguments.getAccessors().size() > 1) {
+                throw new ParseException("Streamed arguments %s can only be bound to a single field", arguments.getTitle());
+            }
             for (Accessor accessor : arguments.getAccessors()) {
                 List<String> titles = arguments.getTitle();
 	            if (titles == null || titles.isEmpty()) {
@@ -79,23 +213,5 @@ public class ParserUtil
                 accessor.addValues(commandInstance, ImmutableList.of(injectee));
             }
         }
-  
-        return commandInstance;
-    }
-    
-    
-    public static <T> T createInstance(Class<?> type,
-            Iterable<OptionMetadata> options,
-            ListMultimap<OptionMetadata, Object> parsedOptions,
-            ArgumentsMetadata arguments,
-            Iterable<Object> parsedArguments,
-            Iterable<Accessor> metadataInjection,
-            Map<Class<?>, Object> bindings,
-            CommandFactory<T> commandFactory)
-    {
-        // create the command instance
-        T commandInstance = (T) commandFactory.createInstance(type);
-
-        return injectOptions(commandInstance, options, parsedOptions, arguments, parsedArguments, metadataInjection, bindings);        
     }
 }
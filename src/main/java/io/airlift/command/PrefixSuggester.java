@@ -0,0 +1,11 @@
+package io.airlift.command;
+
+/**
+ * A {@link Suggester} which can also complete a partial token itself, returning only the candidates starting with it
+ * in sorted order, rather than leaving the caller to filter every candidate.
+ */
+public interface PrefixSuggester
+        extends Suggester
+{
+    Iterable<String> suggest(String prefix);
+}
@@ -27,6 +27,7 @@ import io.airlift.command.model.OptionMetadata;
 
 import java.util.List;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static io.airlift.command.ParserUtil.createInstance;
 
@@ -38,12 +39,38 @@ public class SingleCommand<C>
     }
 
     private final CommandMetadata commandMetadata;
+    private final int argumentFileDepth;
+    private final SpellingSuggestions spellingSuggestions = new SpellingSuggestions();
 
     private SingleCommand(Class<C> command)
     {
         checkNotNull(command, "command is null");
 
         commandMetadata = MetadataLoader.loadCommand(command);
+        argumentFileDepth = 0;
+    }
+
+    private SingleCommand(CommandMetadata commandMetadata, int argumentFileDepth)
+    {
+        this.commandMetadata = commandMetadata;
+        this.argumentFileDepth = argumentFileDepth;
+    }
+
+    /**
+     * Returns a copy of this command which expands {@code @file} arguments, see {@link Cli.CliBuilder#withArgumentFiles()}.
+     */
+    public SingleCommand<C> withArgumentFiles()
+    {
+        return withArgumentFiles(ArgumentFiles.DEFAULT_MAX_DEPTH);
+    }
+
+    /**
+     * Returns a copy of this command which expands {@code @file} arguments, see {@link Cli.CliBuilder#withArgumentFiles(int)}.
+     */
+    public SingleCommand<C> withArgumentFiles(int maxDepth)
+    {
+        checkArgument(maxDepth > 0, "maxDepth must be greater than 0");
+        return new SingleCommand<C>(commandMetadata, maxDepth);
     }
 
     public CommandMetadata getCommandMetadata()
@@ -60,51 +87,102 @@ public class SingleCommand<C>
     {
         checkNotNull(args, "args is null");
         
-        Parser parser = new Parser();
-        ParseState state = parser.parseCommand(commandMetadata, args);
+        ParseState state = parseState(args);
         validate(state);
+        return createCommand(state);
+    }
+
+    public ParseResult<C> tryParse(String... args)
+    {
+        return tryParse(ImmutableList.copyOf(args));
+    }
 
+    /**
+     * Parses the command line like {@link #parse(Iterable)}, but returns an invalid command line as a
+     * {@link ParseResult} holding a stackless {@link ParseException} rather than throwing it.
+     */
+    public ParseResult<C> tryParse(Iterable<String> args)
+    {
+        checkNotNull(args, "args is null");
+
+        final List<String> commandLine = args instanceof List ? (List<String>) args : ImmutableList.copyOf(args);
+        return ParseException.withoutStackTraces(() -> {
+            try {
+                ParseState state = parseState(commandLine);
+                ParseException error = validationError(state);
+                if (error != null) {
+                    return ParseResult.failure(commandLine, error);
+                }
+                return ParseResult.success(commandLine, createCommand(state));
+            }
+            catch (ParseException e) {
+                return ParseResult.failure(commandLine, e);
+            }
+        });
+    }
+
+    private ParseState parseState(Iterable<String> args)
+    {
+        Parser parser = new Parser();
+        return parser.parseCommand(commandMetadata, argumentFileDepth > 0 ? ArgumentFiles.expand(args, argumentFileDepth) : args);
+    }
+
+    private C createCommand(ParseState state)
+    {
         CommandMetadata command = state.getCommand();
 
-        return createInstance(command.getType(),
-                command.getAllOptions(),
-                state.getParsedOptions(),
-                command.getArguments(),
-                state.getParsedArguments(),
-                command.getMetadataInjections(),
-                ImmutableMap.<Class<?>, Object>of(CommandMetadata.class, commandMetadata));
+        return createInstance(command,
+                state.getOptionValues(),
+                state.getArguments(),
+                ImmutableMap.<Class<?>, Object>of(CommandMetadata.class, commandMetadata),
+                new CommandFactoryDefault<C>());
     }
     
     private void validate(ParseState state)
+    {
+        ParseException error = validationError(state);
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Returns why the parsed command line is invalid, or null if it is valid.
+     */
+    private ParseException validationError(ParseState state)
     {
         CommandMetadata command = state.getCommand();
         if (command == null) {
             List<String> unparsedInput = state.getUnparsedInput();
             if (unparsedInput.isEmpty()) {
-                throw new ParseCommandMissingException();
+                return new ParseCommandMissingException();
             }
             else {
-                throw new ParseCommandUnrecognizedException(unparsedInput);
+                return new ParseCommandUnrecognizedException(unparsedInput);
             }
         }
 
         ArgumentsMetadata arguments = command.getArguments();
-        if (state.getParsedArguments().isEmpty() && arguments != null && arguments.isRequired()) {
-            throw new ParseArgumentsMissingException(arguments.getTitle());
+        if (!state.hasArguments() && arguments != null && arguments.isRequired()) {
+            return new ParseArgumentsMissingException(arguments.getTitle());
         }
         
         if (!state.getUnparsedInput().isEmpty()) {
-            throw new ParseArgumentsUnexpectedException(state.getUnparsedInput());
+            List<String> unparsedInput = state.getUnparsedInput();
+            return new ParseArgumentsUnexpectedException(unparsedInput, spellingSuggestions.suggestOptions(command, unparsedInput.get(0)));
         }
 
         if (state.getLocation() == Context.OPTION) {
-            throw new ParseOptionMissingValueException(state.getCurrentOption().getTitle());
+            return new ParseOptionMissingValueException(state.getCurrentOption().getTitle());
         }
 
-        for (OptionMetadata option : command.getAllOptions()) {
-            if (option.isRequired() && !state.getParsedOptions().containsKey(option)) {
-                throw new ParseOptionMissingException(option.getOptions().iterator().next());
+        List<OptionMetadata> allOptions = command.getAllOptions();
+        for (int ordinal = 0; ordinal < allOptions.size(); ordinal++) {
+            OptionMetadata option = allOptions.get(ordinal);
+            if (option.isRequired() && !state.getOptionValues().containsOrdinal(ordinal)) {
+                return new ParseOptionMissingException(option.getOptions().iterator().next());
             }
         }
+        return null;
     }
 }
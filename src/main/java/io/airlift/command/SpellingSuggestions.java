@@ -0,0 +1,93 @@
+package io.airlift.command;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.command.model.BkTree;
+import io.airlift.command.model.CommandGroupMetadata;
+import io.airlift.command.model.CommandMetadata;
+import io.airlift.command.model.GlobalMetadata;
+import io.airlift.command.model.OptionMetadata;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Finds the names closest to an unrecognized command or option, for the "did you mean" suggestions of parse errors.
+ * The names valid at a position are indexed the first time an error is reported there, and the index is kept for
+ * later errors.  Instances are safe to share between threads.
+ */
+final class SpellingSuggestions
+{
+    static final int MAX_SUGGESTIONS = 3;
+
+    // keyed by the group or CLI metadata the command names were taken from; the metadata is immutable and does not
+    // override equals, so there is one index per group of a CLI
+    private final ConcurrentMap<Object, BkTree> commandIndexes = new ConcurrentHashMap<>();
+
+    // keyed by the option names themselves rather than the command, whose metadata may be loaded again for every
+    // parse of a command instance
+    private final ConcurrentMap<List<String>, BkTree> optionIndexes = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the names of the commands of the group, or of the groups and default group commands if there is no
+     * group, closest to the token.
+     */
+    public List<String> suggestCommands(GlobalMetadata metadata, CommandGroupMetadata group, String token)
+    {
+        BkTree index;
+        if (group != null) {
+            index = commandIndexes.computeIfAbsent(group, key -> {
+                ImmutableList.Builder<String> names = ImmutableList.builder();
+                for (CommandMetadata command : group.getCommands()) {
+                    names.add(command.getName());
+                }
+                return new BkTree(names.build());
+            });
+        }
+        else {
+            index = commandIndexes.computeIfAbsent(metadata, key -> {
+                ImmutableList.Builder<String> names = ImmutableList.builder();
+                for (CommandGroupMetadata commandGroup : metadata.getCommandGroups()) {
+                    names.add(commandGroup.getName());
+                }
+                for (CommandMetadata command : metadata.getDefaultGroupCommands()) {
+                    names.add(command.getName());
+                }
+                return new BkTree(names.build());
+            });
+        }
+        return nearest(index, token);
+    }
+
+    /**
+     * Returns the names of the options of the command closest to the token, if the token looks like an option.
+     */
+    public List<String> suggestOptions(CommandMetadata command, String token)
+    {
+        if (!token.startsWith("-")) {
+            return ImmutableList.of();
+        }
+
+        ImmutableList.Builder<String> names = ImmutableList.builder();
+        for (OptionMetadata option : command.getAllOptions()) {
+            names.addAll(option.getOptions());
+        }
+        BkTree index = optionIndexes.computeIfAbsent(names.build(), BkTree::new);
+        return nearest(index, token);
+    }
+
+    /**
+     * Returns the number of indexes kept.
+     */
+    int size()
+    {
+        return commandIndexes.size() + optionIndexes.size();
+    }
+
+    private static List<String> nearest(BkTree index, String token)
+    {
+        // allow about one edit per three characters, so short names do not match everything
+        int maxDistance = Math.max(1, Math.min(3, token.length() / 3));
+        return index.nearest(token, maxDistance, MAX_SUGGESTIONS);
+    }
+}
@@ -4,6 +4,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 import io.airlift.command.model.CommandGroupMetadata;
 import io.airlift.command.model.CommandMetadata;
 import io.airlift.command.model.GlobalMetadata;
@@ -23,10 +24,10 @@ import static io.airlift.command.ParserUtil.createInstance;
 public class SuggestCommand
         implements Runnable, Callable<Void>
 {
-    private static final Map<Context, Class<? extends Suggester>> BUILTIN_SUGGESTERS = ImmutableMap.<Context, Class<? extends Suggester>>builder()
-            .put(Context.GLOBAL, GlobalSuggester.class)
-            .put(Context.GROUP, GroupSuggester.class)
-            .put(Context.COMMAND, CommandSuggester.class)
+    private static final Map<Context, SuggesterMetadata> BUILTIN_SUGGESTERS = ImmutableMap.<Context, SuggesterMetadata>builder()
+            .put(Context.GLOBAL, MetadataLoader.loadSuggester(GlobalSuggester.class))
+            .put(Context.GROUP, MetadataLoader.loadSuggester(GroupSuggester.class))
+            .put(Context.COMMAND, MetadataLoader.loadSuggester(CommandSuggester.class))
             .build();
 
     @Inject
@@ -37,39 +38,70 @@ public class SuggestCommand
 
     @VisibleForTesting
     public Iterable<String> generateSuggestions()
+    {
+        return suggest(metadata, arguments);
+    }
+
+    /**
+     * Returns the suggestions for the position after the arguments, which follow the program name.
+     */
+    static Iterable<String> suggest(GlobalMetadata metadata, Iterable<String> arguments)
     {
         Parser parser = new Parser();
         ParseState state = parser.parse(metadata, arguments);
 
-        Class<? extends Suggester> suggesterClass = BUILTIN_SUGGESTERS.get(state.getLocation());
-        if (suggesterClass != null) {
-            SuggesterMetadata suggesterMetadata = MetadataLoader.loadSuggester(suggesterClass);
+        return suggest(metadata, state.getLocation(), state.getGroup(), state.getCommand());
+    }
 
-            if (suggesterMetadata != null) {
-                ImmutableMap.Builder<Class<?>, Object> bindings = ImmutableMap.<Class<?>, Object>builder()
-                        .put(GlobalMetadata.class, metadata);
+    static Iterable<String> suggest(GlobalMetadata metadata, Context location, CommandGroupMetadata group, CommandMetadata command)
+    {
+        Suggester suggester = createSuggester(metadata, location, group, command);
+        if (suggester == null) {
+            return ImmutableList.of();
+        }
+        return suggester.suggest();
+    }
 
-                if (state.getGroup() != null) {
-                    bindings.put(CommandGroupMetadata.class, state.getGroup());
-                }
+    /**
+     * Returns the suggestions starting with the prefix, the partial token being completed.
+     */
+    static Iterable<String> suggest(GlobalMetadata metadata, Context location, CommandGroupMetadata group, CommandMetadata command, final String prefix)
+    {
+        Suggester suggester = createSuggester(metadata, location, group, command);
+        if (suggester == null) {
+            return ImmutableList.of();
+        }
+        if (suggester instanceof PrefixSuggester) {
+            return ((PrefixSuggester) suggester).suggest(prefix);
+        }
+        return Iterables.filter(suggester.suggest(), suggestion -> suggestion.startsWith(prefix));
+    }
 
-                if (state.getCommand() != null) {
-                    bindings.put(CommandMetadata.class, state.getCommand());
-                }
+    private static Suggester createSuggester(GlobalMetadata metadata, Context location, CommandGroupMetadata group, CommandMetadata command)
+    {
+        SuggesterMetadata suggesterMetadata = BUILTIN_SUGGESTERS.get(location);
+        if (suggesterMetadata == null) {
+            return null;
+        }
+
+        ImmutableMap.Builder<Class<?>, Object> bindings = ImmutableMap.<Class<?>, Object>builder()
+                .put(GlobalMetadata.class, metadata);
 
-                Suggester suggester = createInstance(suggesterMetadata.getSuggesterClass(),
-                        ImmutableList.<OptionMetadata>of(),
-                        null,
-                        null,
-                        null,
-                        suggesterMetadata.getMetadataInjections(),
-                        bindings.build());
+        if (group != null) {
+            bindings.put(CommandGroupMetadata.class, group);
+        }
 
-                return suggester.suggest();
-            }
+        if (command != null) {
+            bindings.put(CommandMetadata.class, command);
         }
 
-        return ImmutableList.of();
+        return createInstance(suggesterMetadata.getSuggesterClass(),
+                ImmutableList.<OptionMetadata>of(),
+                null,
+                null,
+                null,
+                suggesterMetadata.getMetadataInjections(),
+                bindings.build());
     }
 
     @Override
@@ -1,79 +1,337 @@
 package io.airlift.command;
 
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 
-import java.lang.reflect.Constructor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * Converts option and argument values from strings to the Java type of the field they are injected into.
+ * <p>
+ * The conversion for a type is resolved once, the first time that type is converted, and cached; later
+ * conversions of the same type only run the resolved conversion.  Types are converted, in order of preference, by
+ * a converter registered with {@link #withConverter(Class, Function)}, by the built in conversions for strings,
+ * primitives, their wrappers and {@link Path}, or by a static {@code fromString(String)} method, a static
+ * {@code valueOf(String)} method or a constructor taking a single string.  The parser converts the option values of
+ * int, long, double and boolean fields with the built in conversion without boxing them, unless a converter is
+ * registered for the type.
+ */
 public class TypeConverter
 {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    /**
+     * Returned by a built in conversion for a value it cannot convert, so rejected values are reported without
+     * throwing and catching an exception per candidate.
+     */
+    private static final Object NO_VALUE = new Object();
+
+    private final Map<Class<?>, Function<String, ?>> converters;
+
+    // a subclass may override convert, which then converts every value
+    private final boolean unboxing = getClass() == TypeConverter.class;
+
+    private final ClassValue<Conversion> conversions = new ClassValue<Conversion>()
+    {
+        @Override
+        protected Conversion computeValue(Class<?> type)
+        {
+            return resolve(type);
+        }
+    };
+
     public static TypeConverter newInstance()
     {
         return new TypeConverter();
     }
 
+    public TypeConverter()
+    {
+        this(ImmutableMap.<Class<?>, Function<String, ?>>of());
+    }
+
+    private TypeConverter(Map<Class<?>, Function<String, ?>> converters)
+    {
+        this.converters = converters;
+    }
+
+    /**
+     * Returns a copy of this converter which converts values of {@code type} with the given function, taking
+     * precedence over any built in conversion of that type.  A {@link ParseException} thrown by the function is
+     * reported as is; any other exception is reported as a {@link ParseOptionConversionException}.
+     */
+    public <T> TypeConverter withConverter(Class<T> type, Function<String, ? extends T> converter)
+    {
+        Preconditions.checkNotNull(type, "type is null");
+        Preconditions.checkNotNull(converter, "converter is null");
+
+        Map<Class<?>, Function<String, ?>> converters = Maps.newLinkedHashMap(this.converters);
+        converters.put(type, converter);
+        return new TypeConverter(ImmutableMap.copyOf(converters));
+    }
+
     public Object convert(String name, Class<?> type, String value)
     {
         Preconditions.checkNotNull(name, "name is null");
         Preconditions.checkNotNull(type, "type is null");
         Preconditions.checkNotNull(value, "value is null");
 
-        try {
-            if (String.class.isAssignableFrom(type)) {
-                return value;
-            }
-            else if (Boolean.class.isAssignableFrom(type) || Boolean.TYPE.isAssignableFrom(type)) {
-                return Boolean.valueOf(value);
-            }
-            else if (Byte.class.isAssignableFrom(type) || Byte.TYPE.isAssignableFrom(type)) {
-                return Byte.valueOf(value);
+        return conversions.get(type).convert(name, value);
+    }
+
+    /**
+     * Returns whether values of the type are converted by the built in conversion of a primitive int, long, double or
+     * boolean, which {@link #convertInt(String, String)} and the like run without boxing the converted value.
+     */
+    boolean isUnboxed(Class<?> type)
+    {
+        return unboxing && type.isPrimitive() && conversions.get(type).unboxed;
+    }
+
+    int convertInt(String name, String value)
+    {
+        if (isInteger(value)) {
+            try {
+                return Integer.parseInt(value);
             }
-            else if (Short.class.isAssignableFrom(type) || Short.TYPE.isAssignableFrom(type)) {
-                return Short.valueOf(value);
+            catch (NumberFormatException ignored) {
             }
-            else if (Integer.class.isAssignableFrom(type) || Integer.TYPE.isAssignableFrom(type)) {
-                return Integer.valueOf(value);
+        }
+        throw new ParseOptionConversionException(name, value, "int");
+    }
+
+    long convertLong(String name, String value)
+    {
+        if (isInteger(value)) {
+            try {
+                return Long.parseLong(value);
             }
-            else if (Long.class.isAssignableFrom(type) || Long.TYPE.isAssignableFrom(type)) {
-                return Long.valueOf(value);
+            catch (NumberFormatException ignored) {
             }
-            else if (Float.class.isAssignableFrom(type) || Float.TYPE.isAssignableFrom(type)) {
-                return Float.valueOf(value);
+        }
+        throw new ParseOptionConversionException(name, value, "long");
+    }
+
+    double convertDouble(String name, String value)
+    {
+        try {
+            return Double.parseDouble(value);
+        }
+        catch (NumberFormatException e) {
+            throw new ParseOptionConversionException(name, value, "double");
+        }
+    }
+
+    boolean convertBoolean(String name, String value)
+    {
+        return Boolean.parseBoolean(value);
+    }
+
+    private Conversion resolve(Class<?> type)
+    {
+        Function<String, ?> registered = converters.get(type);
+        if (registered != null) {
+            return new Conversion(type, ImmutableList.<Function<String, ?>>of(registered), true);
+        }
+
+        Function<String, ?> builtin = builtinConversion(type);
+        if (builtin != null) {
+            return new Conversion(type, ImmutableList.<Function<String, ?>>of(builtin), false);
+        }
+
+        ImmutableList.Builder<Function<String, ?>> candidates = ImmutableList.builder();
+
+        // Look for a static fromString(String) method
+        Function<String, ?> fromString = staticFactory(type, "fromString");
+        if (fromString != null) {
+            candidates.add(fromString);
+        }
+
+        // Look for a static valueOf(String) method (this covers enums which have a valueOf method)
+        if (type.isEnum()) {
+            candidates.add(enumConversion(type));
+        }
+        else {
+            Function<String, ?> valueOf = staticFactory(type, "valueOf");
+            if (valueOf != null) {
+                candidates.add(valueOf);
             }
-            else if (Double.class.isAssignableFrom(type) || Double.TYPE.isAssignableFrom(type)) {
-                return Double.valueOf(value);
+        }
+
+        // Look for a constructor taking a string
+        Function<String, ?> constructor = stringConstructor(type);
+        if (constructor != null) {
+            candidates.add(constructor);
+        }
+
+        return new Conversion(type, candidates.build(), false);
+    }
+
+    private static Function<String, ?> builtinConversion(Class<?> type)
+    {
+        if (String.class.equals(type)) {
+            return value -> value;
+        }
+        else if (Boolean.class.equals(type) || Boolean.TYPE.equals(type)) {
+            return Boolean::valueOf;
+        }
+        else if (Byte.class.equals(type) || Byte.TYPE.equals(type)) {
+            return value -> isInteger(value) ? Byte.valueOf(value) : NO_VALUE;
+        }
+        else if (Short.class.equals(type) || Short.TYPE.equals(type)) {
+            return value -> isInteger(value) ? Short.valueOf(value) : NO_VALUE;
+        }
+        else if (Integer.class.equals(type) || Integer.TYPE.equals(type)) {
+            return value -> isInteger(value) ? Integer.valueOf(value) : NO_VALUE;
+        }
+        else if (Long.class.equals(type) || Long.TYPE.equals(type)) {
+            return value -> isInteger(value) ? Long.valueOf(value) : NO_VALUE;
+        }
+        else if (Float.class.equals(type) || Float.TYPE.equals(type)) {
+            return Float::valueOf;
+        }
+        else if (Double.class.equals(type) || Double.TYPE.equals(type)) {
+            return Double::valueOf;
+        }
+        else if (Path.class.equals(type)) {
+            return value -> Paths.get(value);
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if the value is an optionally signed run of decimal digits, the only values the integer
+     * conversions can accept; a value that passes may still be out of range.
+     */
+    private static boolean isInteger(String value)
+    {
+        int start = 0;
+        if (!value.isEmpty() && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+            start = 1;
+        }
+        if (start == value.length()) {
+            return false;
+        }
+        for (int i = start; i < value.length(); i++) {
+            if (Character.digit(value.charAt(i), 10) < 0) {
+                return false;
             }
         }
-        catch (Exception ignored) {
+        return true;
+    }
+
+    private static Function<String, ?> enumConversion(Class<?> type)
+    {
+        ImmutableMap.Builder<String, Object> constants = ImmutableMap.builder();
+        for (Object constant : type.getEnumConstants()) {
+            constants.put(((Enum<?>) constant).name(), constant);
         }
+        Map<String, Object> constantsByName = constants.build();
+        return value -> {
+            Object constant = constantsByName.get(value);
+            return constant != null ? constant : NO_VALUE;
+        };
+    }
 
-        // Look for a static fromString(String) method
+    private static Function<String, ?> staticFactory(Class<?> type, String methodName)
+    {
+        Method method;
         try {
-            Method valueOf = type.getMethod("fromString", String.class);
-            if (valueOf.getReturnType().isAssignableFrom(type)) {
-                return valueOf.invoke(null, value);
-            }
-        } catch (Throwable ignored) {
+            method = type.getMethod(methodName, String.class);
+        }
+        catch (NoSuchMethodException | SecurityException e) {
+            return null;
+        }
+
+        if (!Modifier.isStatic(method.getModifiers()) || !method.getReturnType().isAssignableFrom(type)) {
+            return null;
         }
 
-        // Look for a static valueOf(String) method (this covers enums which have a valueOf method)
         try {
-            Method valueOf = type.getMethod("valueOf", String.class);
-            if (valueOf.getReturnType().isAssignableFrom(type)) {
-                return valueOf.invoke(null, value);
-            }
+            return invoker(LOOKUP.unreflect(method));
         }
-        catch (Throwable ignored) {
+        catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private static Function<String, ?> stringConstructor(Class<?> type)
+    {
+        if (Modifier.isAbstract(type.getModifiers())) {
+            return null;
         }
 
-        // Look for a constructor taking a string
         try {
-            Constructor<?> constructor = type.getConstructor(String.class);
-            return constructor.newInstance(value);
+            return invoker(LOOKUP.unreflectConstructor(type.getConstructor(String.class)));
+        }
+        catch (NoSuchMethodException | SecurityException | IllegalAccessException e) {
+            return null;
         }
-        catch (Throwable ignored) {
+    }
+
+    private static Function<String, ?> invoker(MethodHandle handle)
+    {
+        return value -> {
+            try {
+                return handle.invoke(value);
+            }
+            catch (RuntimeException | Error e) {
+                throw e;
+            }
+            catch (Throwable e) {
+                throw new IllegalArgumentException(e);
+            }
+        };
+    }
+
+    /**
+     * The resolved conversion of one type: the candidate conversions are tried in order and the first one that
+     * succeeds wins.
+     */
+    private static class Conversion
+    {
+        private final String typeName;
+        private final List<Function<String, ?>> candidates;
+        private final boolean registered;
+        private final boolean unboxed;
+
+        private Conversion(Class<?> type, List<Function<String, ?>> candidates, boolean registered)
+        {
+            this.typeName = type.getSimpleName();
+            this.candidates = candidates;
+            this.registered = registered;
+            this.unboxed = !registered && (int.class.equals(type) || long.class.equals(type) || double.class.equals(type) || boolean.class.equals(type));
         }
 
-        throw new ParseOptionConversionException(name, value, type.getSimpleName());
+        public Object convert(String name, String value)
+        {
+            for (Function<String, ?> candidate : candidates) {
+                try {
+                    Object converted = candidate.apply(value);
+                    if (converted != NO_VALUE) {
+                        return converted;
+                    }
+                }
+                catch (ParseException e) {
+                    if (registered) {
+                        throw e;
+                    }
+                }
+                catch (Exception ignored) {
+                }
+            }
+
+            throw new ParseOptionConversionException(name, value, typeName);
+        }
     }
 }
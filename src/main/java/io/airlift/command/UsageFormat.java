@@ -0,0 +1,13 @@
+package io.airlift.command;
+
+/**
+ * The format {@link Help} renders usage in.  Not every format supports every kind of usage; the global and group
+ * usage are not available as HTML or RONN.
+ */
+public enum UsageFormat
+{
+    TEXT,
+    HTML,
+    RONN,
+    MARKDOWN
+}
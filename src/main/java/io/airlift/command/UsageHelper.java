@@ -11,6 +11,12 @@ import io.airlift.command.model.CommandMetadata;
 import io.airlift.command.model.OptionMetadata;
 
 import javax.annotation.Nullable;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
@@ -26,15 +32,10 @@ public class UsageHelper
         @Override
         public int compare(OptionMetadata o1, OptionMetadata o2)
         {
-            String option1 = o1.getOptions().iterator().next();
-            option1 = option1.replaceFirst("^-+", "");
-
-            String option2 = o2.getOptions().iterator().next();
-            option2 = option2.replaceFirst("^-+", "");
-
+            // the first option names without leading dashes
             return ComparisonChain.start()
-                    .compare(option1.toLowerCase(), option2.toLowerCase())
-                    .compare(option2, option1) // print lower case letters before upper case
+                    .compare(o1.getLowerCaseSortName(), o2.getLowerCaseSortName())
+                    .compare(o2.getSortName(), o1.getSortName()) // print lower case letters before upper case
                     .compare(System.identityHashCode(o1), System.identityHashCode(o2))
                     .result();
         }
@@ -45,13 +46,34 @@ public class UsageHelper
         public int compare(CommandMetadata o1, CommandMetadata o2)
         {
             return ComparisonChain.start()
-                    .compare(o1.getName().toLowerCase(), o2.getName().toLowerCase())
+                    .compare(o1.getLowerCaseName(), o2.getLowerCaseName())
                     .compare(o2.getName(), o1.getName()) // print lower case letters before upper case
                     .compare(System.identityHashCode(o1), System.identityHashCode(o2))
                     .result();
         }
     };
 
+    /**
+     * Merges two lists sorted by the comparator into one, the first list first among equal elements.
+     */
+    static <T> List<T> merge(List<? extends T> first, List<? extends T> second, Comparator<? super T> comparator)
+    {
+        List<T> merged = new ArrayList<>(first.size() + second.size());
+        int i = 0;
+        int j = 0;
+        while (i < first.size() && j < second.size()) {
+            if (comparator.compare(first.get(i), second.get(j)) <= 0) {
+                merged.add(first.get(i++));
+            }
+            else {
+                merged.add(second.get(j++));
+            }
+        }
+        merged.addAll(first.subList(i, first.size()));
+        merged.addAll(second.subList(j, second.size()));
+        return merged;
+    }
+
     public static String toDescription(OptionMetadata option)
     {
         Set<String> options = option.getOptions();
@@ -247,4 +269,44 @@ public class UsageHelper
     	
     	return stringBuilder.toString();
     }
+
+    /**
+     * Returns what the usage writes, for the renderers returning strings.
+     */
+    static String render(UsageWriter usage)
+    {
+        StringBuilder out = new StringBuilder();
+        try {
+            usage.write(out);
+        }
+        catch (IOException e) {
+            // a string builder does not throw
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Writes the usage to standard output through a buffer, followed by a line separator, for the renderers
+     * displaying help on System.out.
+     */
+    static void println(UsageWriter usage)
+    {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+        try {
+            usage.write(out);
+            out.write(System.lineSeparator());
+            // flushed but not closed, which would close System.out
+            out.flush();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    interface UsageWriter
+    {
+        void write(Appendable out)
+                throws IOException;
+    }
 }
@@ -1,16 +1,26 @@
 package io.airlift.command;
 
-import com.google.common.base.Splitter;
+import com.google.common.base.CharMatcher;
 import com.google.common.base.Strings;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import static com.google.common.collect.Lists.newArrayList;
-
+/**
+ * Wraps words into lines of a maximum size, written straight to an {@link Appendable}, such as a buffered writer, so
+ * even a whole manual is printed in bounded memory.  An {@link IOException} of the appendable is thrown as an
+ * {@link UncheckedIOException}.  Words are found by scanning the text in place and written as ranges of it, and
+ * indentation is written from a shared run of spaces, so wrapping allocates nothing per word or line.
+ */
 public class UsagePrinter
 {
-    private final StringBuilder out;
+    private static final String SPACES = Strings.repeat(" ", 80);
+    private static final int COLUMN_SEPARATOR = 3;
+
+    private final Appendable out;
     private final int maxSize;
     private final int indent;
     private final int hangingIndent;
@@ -27,6 +37,21 @@ public class UsagePrinter
     }
 
     public UsagePrinter(StringBuilder out, int maxSize, int indent, int hangingIndent, AtomicInteger currentPosition)
+    {
+        this((Appendable) out, maxSize, indent, hangingIndent, currentPosition);
+    }
+
+    public UsagePrinter(Appendable out)
+    {
+        this(out, 79);
+    }
+
+    public UsagePrinter(Appendable out, int maxSize)
+    {
+        this(out, maxSize, 0, 0, new AtomicInteger());
+    }
+
+    public UsagePrinter(Appendable out, int maxSize, int indent, int hangingIndent, AtomicInteger currentPosition)
     {
         this.out = out;
         this.maxSize = maxSize;
@@ -47,41 +72,59 @@ public class UsagePrinter
 
     public UsagePrinter newline()
     {
-        out.append("\n");
+        write('\n');
         currentPosition.set(0);
         return this;
     }
 
     public UsagePrinter appendTable(Iterable<? extends Iterable<String>> table)
     {
-        List<Integer> columnSizes = newArrayList();
+        int[] columnSizes = new int[8];
         for (Iterable<String> row : table) {
             int column = 0;
             for (String value : row) {
-                while (column >= columnSizes.size()) {
-                    columnSizes.add(0);
+                if (column == columnSizes.length) {
+                    columnSizes = Arrays.copyOf(columnSizes, column * 2);
                 }
-                columnSizes.set(column, Math.max(value.length(), columnSizes.get(column)));
+                columnSizes[column] = Math.max(value.length(), columnSizes[column]);
                 column++;
             }
         }
 
         if (currentPosition.get() != 0) {
             currentPosition.set(0);
-            out.append("\n");
+            write('\n');
         }
 
         for (Iterable<String> row : table) {
+            // the line ends at the last non whitespace character of the row, the padding after it is trimmed
+            int lastColumn = -1;
+            int lastColumnEnd = 0;
             int column = 0;
-            StringBuilder line = new StringBuilder();
             for (String value : row) {
-                int columnSize = columnSizes.get(column);
-                line.append(value);
-                line.append(spaces(columnSize - value.length()));
-                line.append("   ");
+                int end = trimmedEnd(value);
+                if (end != 0) {
+                    lastColumn = column;
+                    lastColumnEnd = end;
+                }
                 column++;
             }
-            out.append(spaces(indent)).append(trimEnd(line.toString())).append("\n");
+
+            writeSpaces(indent);
+            column = 0;
+            for (String value : row) {
+                if (column > lastColumn) {
+                    break;
+                }
+                if (column == lastColumn) {
+                    write(value, 0, lastColumnEnd);
+                    break;
+                }
+                write(value, 0, value.length());
+                writeSpaces(columnSizes[column] - value.length() + COLUMN_SEPARATOR);
+                column++;
+            }
+            write('\n');
         }
 
         return this;
@@ -117,51 +160,134 @@ public class UsagePrinter
         if (value == null) {
             return this;
         }
-        return appendWords(Splitter.onPattern("\\s+").omitEmptyStrings().trimResults().split(String.valueOf(value)), avoidNewlines);
-    }
 
-    public UsagePrinter appendWords(Iterable<String> words, boolean avoidNewlines)
-    {
+        // the words are the runs of characters between regex whitespace, trimmed of any other whitespace
         int bracketCount = 0;
-        for (String word : words) {
-            if(null == word || "".equals(word))
-            {
-                continue;
+        int length = value.length();
+        int position = 0;
+        while (position < length) {
+            while (position < length && isSeparator(value.charAt(position))) {
+                position++;
             }
-            if (currentPosition.get() == 0) {
-                // beginning of line
-                out.append(spaces(indent));
-                currentPosition.getAndAdd((indent));
+            int start = position;
+            while (position < length && !isSeparator(value.charAt(position))) {
+                position++;
             }
-            else if (word.length() > maxSize || currentPosition.get() + word.length() <= maxSize || bracketCount > 0 || avoidNewlines) {
-                // between words
-                out.append(" ");
-                currentPosition.getAndIncrement();
+            int end = position;
+            while (start < end && CharMatcher.whitespace().matches(value.charAt(start))) {
+                start++;
             }
-            else {
-                // wrap line
-                out.append("\n").append(spaces(indent)).append(spaces(hangingIndent));
-                currentPosition.set(indent);
+            while (end > start && CharMatcher.whitespace().matches(value.charAt(end - 1))) {
+                end--;
             }
-
-            out.append(word);
-            currentPosition.getAndAdd((word.length()));
-            if (word.contains("{") || word.contains("[") || word.contains("<")) {
-                bracketCount++;
+            if (start < end) {
+                bracketCount = appendWord(value, start, end, avoidNewlines, bracketCount);
             }
-            if (word.contains("}") || word.contains("]") || word.contains(">")) {
-                bracketCount--;
+        }
+        return this;
+    }
+
+    public UsagePrinter appendWords(Iterable<String> words, boolean avoidNewlines)
+    {
+        int bracketCount = 0;
+        for (String word : words) {
+            if (!Strings.isNullOrEmpty(word)) {
+                bracketCount = appendWord(word, 0, word.length(), avoidNewlines, bracketCount);
             }
         }
         return this;
     }
 
-    private static String spaces(int count)
+    /**
+     * Appends the word between start and end of the value, wrapping the line before it unless it is inside brackets,
+     * and returns the bracket count after it.
+     */
+    private int appendWord(String value, int start, int end, boolean avoidNewlines, int bracketCount)
     {
-        StringBuilder result = new StringBuilder();
-        for (int i = 0; i < count; i++) {
-            result.append(" ");
+        int length = end - start;
+        if (currentPosition.get() == 0) {
+            // beginning of line
+            writeSpaces(indent);
+            currentPosition.getAndAdd(indent);
+        }
+        else if (length > maxSize || currentPosition.get() + length <= maxSize || bracketCount > 0 || avoidNewlines) {
+            // between words
+            write(' ');
+            currentPosition.getAndIncrement();
+        }
+        else {
+            // wrap line
+            write('\n');
+            writeSpaces(indent + hangingIndent);
+            currentPosition.set(indent);
+        }
+
+        write(value, start, end);
+        currentPosition.getAndAdd(length);
+
+        boolean opens = false;
+        boolean closes = false;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            opens |= c == '{' || c == '[' || c == '<';
+            closes |= c == '}' || c == ']' || c == '>';
+        }
+        if (opens) {
+            bracketCount++;
+        }
+        if (closes) {
+            bracketCount--;
+        }
+        return bracketCount;
+    }
+
+    private static boolean isSeparator(char c)
+    {
+        // the characters matched by \s in a regex
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static int trimmedEnd(String value)
+    {
+        int end = value.length();
+        while (end != 0 && Character.isWhitespace(value.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    private void writeSpaces(int count)
+    {
+        while (count > 0) {
+            int length = Math.min(count, SPACES.length());
+            write(SPACES, 0, length);
+            count -= length;
+        }
+    }
+
+    private void write(char value)
+    {
+        try {
+            out.append(value);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(String value, int start, int end)
+    {
+        try {
+            if (out instanceof Writer) {
+                // Writer.append(CharSequence, int, int) copies the range into a new string
+                ((Writer) out).write(value, start, end - start);
+            }
+            else {
+                out.append(value, start, end);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        return result.toString();
     }
 }
@@ -22,16 +22,28 @@ public class ArgumentsMetadata
     private final Set<Accessor> accessors;
 
     public ArgumentsMetadata(Iterable<String> titles, String description, String usage, boolean required, Iterable<Field> path)
+    {
+        this(titles, description, usage, required, ImmutableSet.of(new Accessor(checkPath(path))));
+    }
+
+    public ArgumentsMetadata(Iterable<String> titles, String description, String usage, boolean required, Set<Accessor> accessors)
     {
         Preconditions.checkNotNull(titles, "title is null");
-        Preconditions.checkNotNull(path, "path is null");
-        Preconditions.checkArgument(!Iterables.isEmpty(path), "path is empty");
+        Preconditions.checkNotNull(accessors, "accessors is null");
+        Preconditions.checkArgument(!accessors.isEmpty(), "accessors is empty");
 
         this.titles = ImmutableList.copyOf(titles);
         this.description = description;
         this.usage = usage;
         this.required = required;
-        this.accessors = ImmutableSet.of(new Accessor(path));
+        this.accessors = ImmutableSet.copyOf(accessors);
+    }
+
+    private static Iterable<Field> checkPath(Iterable<Field> path)
+    {
+        Preconditions.checkNotNull(path, "path is null");
+        Preconditions.checkArgument(!Iterables.isEmpty(path), "path is empty");
+        return path;
     }
 
     public ArgumentsMetadata(Iterable<ArgumentsMetadata> arguments)
@@ -86,6 +98,15 @@ public class ArgumentsMetadata
         return accessors.iterator().next().isMultiValued();
     }
 
+    /**
+     * Returns whether the arguments are streamed to the command rather than collected by the parser, see
+     * {@link Accessor#isStreaming()}.
+     */
+    public boolean isStreaming()
+    {
+        return accessors.iterator().next().isStreaming();
+    }
+
     public Class<?> getJavaType()
     {
         return accessors.iterator().next().getJavaType();
@@ -0,0 +1,159 @@
+package io.airlift.command.model;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable BK-tree over a set of names, for finding the names within a small edit distance of a misspelled one.
+ * Each child of a node is filed under its distance to the node, so by the triangle inequality a search for names within
+ * distance {@code t} of the query only descends into the children filed within {@code t} of the query's distance to
+ * the node, and visits a small part of the tree.  Distances are Levenshtein distances.
+ */
+public final class BkTree
+{
+    private final Node root;
+    private final int size;
+
+    public BkTree(Iterable<String> names)
+    {
+        Preconditions.checkNotNull(names, "names is null");
+
+        Node root = null;
+        int size = 0;
+        for (String name : ImmutableSortedSet.copyOf(names)) {
+            if (root == null) {
+                root = new Node(name);
+            }
+            else {
+                root.add(name);
+            }
+            size++;
+        }
+        this.root = root;
+        this.size = size;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns up to {@code limit} names within {@code maxDistance} of the name, nearest first and alphabetically among
+     * names at the same distance.
+     */
+    public List<String> nearest(String name, int maxDistance, int limit)
+    {
+        Preconditions.checkNotNull(name, "name is null");
+        Preconditions.checkArgument(maxDistance >= 0, "maxDistance is negative");
+        Preconditions.checkArgument(limit >= 0, "limit is negative");
+
+        if (root == null || limit == 0) {
+            return ImmutableList.of();
+        }
+
+        List<Match> matches = new ArrayList<>();
+        root.search(name, maxDistance, new int[name.length() + 1], new int[name.length() + 1], matches);
+
+        matches.sort(Comparator.<Match>comparingInt(match -> match.distance).thenComparing(match -> match.name));
+        ImmutableList.Builder<String> nearest = ImmutableList.builder();
+        for (Match match : matches.subList(0, Math.min(limit, matches.size()))) {
+            nearest.add(match.name);
+        }
+        return nearest.build();
+    }
+
+    /**
+     * Returns the Levenshtein distance between the strings, using the two rows of scratch space given, each one longer
+     * than {@code a}.
+     */
+    static int distance(String a, String b, int[] previous, int[] current)
+    {
+        for (int i = 0; i <= a.length(); i++) {
+            previous[i] = i;
+        }
+        for (int j = 1; j <= b.length(); j++) {
+            current[0] = j;
+            char c = b.charAt(j - 1);
+            for (int i = 1; i <= a.length(); i++) {
+                int substitution = previous[i - 1] + (a.charAt(i - 1) == c ? 0 : 1);
+                current[i] = Math.min(substitution, Math.min(previous[i], current[i - 1]) + 1);
+            }
+            int[] row = previous;
+            previous = current;
+            current = row;
+        }
+        return previous[a.length()];
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("BkTree");
+        sb.append("{size=").append(size);
+        sb.append('}');
+        return sb.toString();
+    }
+
+    private static class Node
+    {
+        private final String name;
+        // children[d] is the subtree of names at distance d from this one
+        private Node[] children = new Node[0];
+
+        private Node(String name)
+        {
+            this.name = name;
+        }
+
+        private void add(String name)
+        {
+            Node node = this;
+            while (true) {
+                int distance = distance(name, node.name, new int[name.length() + 1], new int[name.length() + 1]);
+                if (distance >= node.children.length) {
+                    node.children = Arrays.copyOf(node.children, distance + 1);
+                }
+                if (node.children[distance] == null) {
+                    node.children[distance] = new Node(name);
+                    return;
+                }
+                node = node.children[distance];
+            }
+        }
+
+        private void search(String query, int maxDistance, int[] previous, int[] current, List<Match> matches)
+        {
+            int distance = distance(query, name, previous, current);
+            if (distance <= maxDistance) {
+                matches.add(new Match(name, distance));
+            }
+
+            int last = Math.min(distance + maxDistance, children.length - 1);
+            for (int d = Math.max(1, distance - maxDistance); d <= last; d++) {
+                if (children[d] != null) {
+                    children[d].search(query, maxDistance, previous, current, matches);
+                }
+            }
+        }
+    }
+
+    private static class Match
+    {
+        private final String name;
+        private final int distance;
+
+        private Match(String name, int distance)
+        {
+            this.name = name;
+            this.distance = distance;
+        }
+    }
+}
@@ -1,19 +1,32 @@
 package io.airlift.command.model;
 
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.google.common.base.Function;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Lists;
+import com.google.common.collect.ImmutableMap;
 
+/**
+ * A group of commands.
+ */
 public class CommandGroupMetadata
 {
     private final String name;
     private final String description;
 	private final String markdownDescription;
 	private final List<OptionMetadata> options;
+    private final OptionIndex optionIndex;
     private final CommandMetadata defaultCommand;
     private final List<CommandMetadata> commands;
+    private final Map<String, CommandMetadata> commandsByName;
+    private final Supplier<PrefixTrie> completions = Suppliers.memoize(this::loadCompletions);
+    private final SortedViews<OptionMetadata> sortedOptions = new SortedViews<>(1);
+    private final SortedViews<CommandMetadata> sortedCommands = new SortedViews<>(1);
 
     public CommandGroupMetadata(String name, String description, String markdownDescription, Iterable<OptionMetadata> options, CommandMetadata defaultCommand, Iterable<CommandMetadata> commands)
     {
@@ -21,8 +34,15 @@ public class CommandGroupMetadata
         this.description = description;
         this.markdownDescription = markdownDescription;
 	    this.options = ImmutableList.copyOf(options);
+        this.optionIndex = MetadataLoader.loadOptionIndex(this.options);
         this.defaultCommand = defaultCommand;
-        this.commands = Lists.newArrayList(commands);
+        this.commands = ImmutableList.copyOf(commands);
+
+        Map<String, CommandMetadata> commandsByName = new LinkedHashMap<>();
+        for (CommandMetadata command : this.commands) {
+            commandsByName.putIfAbsent(command.getName(), command);
+        }
+        this.commandsByName = ImmutableMap.copyOf(commandsByName);
     }
 
     public String getName()
@@ -45,6 +65,40 @@ public class CommandGroupMetadata
         return options;
     }
 
+    /**
+     * Returns the options in the order of the comparator, sorted once for the comparator last asked for.
+     */
+    public List<OptionMetadata> getSortedOptions(Comparator<? super OptionMetadata> comparator)
+    {
+        return sortedOptions.get(0, comparator, this::getOptions);
+    }
+
+    public OptionIndex getOptionIndex()
+    {
+        return optionIndex;
+    }
+
+    /**
+     * Returns the command names and group option names, which complete a token following the group name.  The trie
+     * is built the first time it is requested.
+     */
+    public PrefixTrie getCompletions()
+    {
+        return completions.get();
+    }
+
+    private PrefixTrie loadCompletions()
+    {
+        ImmutableList.Builder<String> names = ImmutableList.builder();
+        for (CommandMetadata command : commands) {
+            names.add(command.getName());
+        }
+        for (OptionMetadata option : options) {
+            names.addAll(option.getOptions());
+        }
+        return new PrefixTrie(names.build());
+    }
+
     public CommandMetadata getDefaultCommand()
     {
         return defaultCommand;
@@ -52,15 +106,34 @@ public class CommandGroupMetadata
 
     public List<CommandMetadata> getCommands()
     {
-        return ImmutableList.copyOf(commands);
+        return commands;
     }
     
-    public void addCommand(CommandMetadata command)
+    /**
+     * Returns the commands in the order of the comparator, sorted once for the comparator last asked for.
+     */
+    public List<CommandMetadata> getSortedCommands(Comparator<? super CommandMetadata> comparator)
+    {
+        return sortedCommands.get(0, comparator, this::getCommands);
+    }
+
+    /**
+     * Returns the command of this group with the given name, or null if there is none.
+     */
+    public CommandMetadata getCommand(String name)
+    {
+        return commandsByName.get(name);
+    }
+
+    /**
+     * Returns a copy of this group which also contains the given command, or this group if it already contains it.
+     */
+    public CommandGroupMetadata withCommand(CommandMetadata command)
     {
-        if(!commands.contains(command))
-        {
-            commands.add(command);
+        if (commands.contains(command)) {
+            return this;
         }
+        return new CommandGroupMetadata(name, description, markdownDescription, options, defaultCommand, ImmutableList.<CommandMetadata>builder().addAll(commands).add(command).build());
     }
 
     @Override
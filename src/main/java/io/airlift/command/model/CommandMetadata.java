@@ -1,25 +1,45 @@
 package io.airlift.command.model;
 
 import com.google.common.base.Function;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 import io.airlift.command.Accessor;
 import io.airlift.command.Group;
+import io.airlift.command.OptionType;
 
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class CommandMetadata
 {
+    // the views of the options of one type, indexed by the ordinal of the type, then of the command options with the
+    // global options, the group options, or both
+    private static final int SORTED_WITH_GLOBAL = 3;
+    private static final int SORTED_WITH_GROUP = 4;
+    private static final int SORTED_WITH_BOTH = 5;
+
     private final String name;
+    private final String lowerCaseName;
     private final String description;
     private final boolean hidden;
     private final List<OptionMetadata> globalOptions;
     private final List<OptionMetadata> groupOptions;
     private final List<OptionMetadata> commandOptions;
+    private final List<OptionMetadata> allOptions;
+    private final Map<OptionMetadata, Integer> optionOrdinals;
+    private final OptionIndex commandOptionIndex;
     private final ArgumentsMetadata arguments;
     private final List<Accessor> metadataInjections;
     private final Class<?> type;
     private final List<String> groupNames;
     private final List<Group> groups;
+    private final Supplier<PrefixTrie> completions = Suppliers.memoize(this::loadCompletions);
+    private final SortedViews<OptionMetadata> sortedOptions = new SortedViews<>(6);
 
     private final List<String> examples;
     private final String discussion;
@@ -38,11 +58,15 @@ public class CommandMetadata
                            List<Group> groups)
     {
         this.name = name;
+        this.lowerCaseName = name == null ? null : name.toLowerCase();
         this.description = description;
         this.hidden = hidden;
         this.globalOptions = ImmutableList.copyOf(globalOptions);
         this.groupOptions = ImmutableList.copyOf(groupOptions);
         this.commandOptions = ImmutableList.copyOf(commandOptions);
+        this.allOptions = ImmutableList.<OptionMetadata>builder().addAll(this.globalOptions).addAll(this.groupOptions).addAll(this.commandOptions).build();
+        this.optionOrdinals = loadOptionOrdinals(allOptions);
+        this.commandOptionIndex = MetadataLoader.loadOptionIndex(this.commandOptions);
         this.arguments = arguments;
         this.metadataInjections = ImmutableList.copyOf(metadataInjections);
         this.type = type;
@@ -54,11 +78,44 @@ public class CommandMetadata
         this.groups = groups;
     }
 
+    /**
+     * Creates a command of which only the name, description and visibility are known up front; subclasses provide
+     * the rest of the metadata by overriding its getters.
+     */
+    protected CommandMetadata(String name, String description, boolean hidden)
+    {
+        this.name = name;
+        this.lowerCaseName = name == null ? null : name.toLowerCase();
+        this.description = description;
+        this.hidden = hidden;
+        this.globalOptions = null;
+        this.groupOptions = null;
+        this.commandOptions = null;
+        this.allOptions = null;
+        this.optionOrdinals = null;
+        this.commandOptionIndex = null;
+        this.arguments = null;
+        this.metadataInjections = null;
+        this.type = null;
+        this.discussion = null;
+        this.examples = null;
+        this.groupNames = null;
+        this.groups = null;
+    }
+
     public String getName()
     {
         return name;
     }
 
+    /**
+     * Returns the name in lower case, by which help lists the commands.
+     */
+    public String getLowerCaseName()
+    {
+        return lowerCaseName;
+    }
+
     public String getDescription()
     {
         return description;
@@ -71,8 +128,24 @@ public class CommandMetadata
 
     public List<OptionMetadata> getAllOptions()
     {
-        return ImmutableList.<OptionMetadata>builder().addAll(globalOptions).addAll(groupOptions).addAll(commandOptions).build();
+        if (allOptions != null) {
+            return allOptions;
+        }
+        return ImmutableList.<OptionMetadata>builder().addAll(getGlobalOptions()).addAll(getGroupOptions()).addAll(getCommandOptions()).build();
+    }
 
+    /**
+     * Returns the ordinal of the option, its position in {@link #getAllOptions()}, or -1 if the command does not have
+     * the option.  Options are matched by equality, so the merged instance of a global option finds the ordinal of
+     * the command's own.
+     */
+    public int getOptionOrdinal(OptionMetadata option)
+    {
+        if (optionOrdinals == null) {
+            return getAllOptions().indexOf(option);
+        }
+        Integer ordinal = optionOrdinals.get(option);
+        return ordinal == null ? -1 : ordinal;
     }
 
     public List<String> getExamples() {
@@ -98,6 +171,65 @@ public class CommandMetadata
         return commandOptions;
     }
 
+    /**
+     * Returns the options of the type in the order of the comparator.  The sorted options are kept for the comparator
+     * last asked for, so help rendered again does not sort them again.
+     */
+    public List<OptionMetadata> getSortedOptions(OptionType type, Comparator<? super OptionMetadata> comparator)
+    {
+        switch (type) {
+            case GLOBAL:
+                return sortedOptions.get(type.ordinal(), comparator, this::getGlobalOptions);
+            case GROUP:
+                return sortedOptions.get(type.ordinal(), comparator, this::getGroupOptions);
+            default:
+                return sortedOptions.get(type.ordinal(), comparator, this::getCommandOptions);
+        }
+    }
+
+    /**
+     * Returns the command options, with the global and group options if asked for, in the order of the comparator.
+     */
+    public List<OptionMetadata> getSortedOptions(boolean globalOptions, boolean groupOptions, Comparator<? super OptionMetadata> comparator)
+    {
+        if (globalOptions && groupOptions) {
+            return sortedOptions.get(SORTED_WITH_BOTH, comparator, this::getAllOptions);
+        }
+        if (globalOptions) {
+            return sortedOptions.get(SORTED_WITH_GLOBAL, comparator, () -> Iterables.concat(getGlobalOptions(), getCommandOptions()));
+        }
+        if (groupOptions) {
+            return sortedOptions.get(SORTED_WITH_GROUP, comparator, () -> Iterables.concat(getGroupOptions(), getCommandOptions()));
+        }
+        return getSortedOptions(OptionType.COMMAND, comparator);
+    }
+
+    public OptionIndex getCommandOptionIndex()
+    {
+        return commandOptionIndex;
+    }
+
+    /**
+     * Returns the command option names, and {@code --} if the command takes arguments, which complete a token
+     * following the command name.  The trie is built the first time it is requested.
+     */
+    public PrefixTrie getCompletions()
+    {
+        return completions.get();
+    }
+
+    private PrefixTrie loadCompletions()
+    {
+        ImmutableList.Builder<String> names = ImmutableList.builder();
+        for (OptionMetadata option : getCommandOptions()) {
+            names.addAll(option.getOptions());
+        }
+        if (getArguments() != null) {
+            names.add("--");
+        }
+        return new PrefixTrie(names.build());
+    }
+
     public ArgumentsMetadata getArguments()
     {
         return arguments;
@@ -128,16 +260,16 @@ public class CommandMetadata
     {
         final StringBuilder sb = new StringBuilder();
         sb.append("CommandMetadata");
-        sb.append("{name='").append(name).append('\'');
-        sb.append(", description='").append(description).append('\'');
-        sb.append(", discussion='").append(discussion).append('\'');
-        sb.append(", examples='").append(examples).append('\'');
-        sb.append(", globalOptions=").append(globalOptions);
-        sb.append(", groupOptions=").append(groupOptions);
-        sb.append(", commandOptions=").append(commandOptions);
-        sb.append(", arguments=").append(arguments);
-        sb.append(", metadataInjections=").append(metadataInjections);
-        sb.append(", type=").append(type);
+        sb.append("{name='").append(getName()).append('\'');
+        sb.append(", description='").append(getDescription()).append('\'');
+        sb.append(", discussion='").append(getDiscussion()).append('\'');
+        sb.append(", examples='").append(getExamples()).append('\'');
+        sb.append(", globalOptions=").append(getGlobalOptions());
+        sb.append(", groupOptions=").append(getGroupOptions());
+        sb.append(", commandOptions=").append(getCommandOptions());
+        sb.append(", arguments=").append(getArguments());
+        sb.append(", metadataInjections=").append(getMetadataInjections());
+        sb.append(", type=").append(getType());
         sb.append('}');
         return sb.toString();
     }
@@ -151,4 +283,13 @@ public class CommandMetadata
     {
         return CommandMetadata::getType;
     }
+
+    private static Map<OptionMetadata, Integer> loadOptionOrdinals(List<OptionMetadata> options)
+    {
+        Map<OptionMetadata, Integer> ordinals = new HashMap<>();
+        for (int i = 0; i < options.size(); i++) {
+            ordinals.putIfAbsent(options.get(i), i);
+        }
+        return ImmutableMap.copyOf(ordinals);
+    }
 }
@@ -0,0 +1,17 @@
+package io.airlift.command.model;
+
+/**
+ * Creates the {@link CommandMetadata} of a single command type without reflecting over its annotations.
+ * <p>
+ * Implementations are generated at compile time by the airline annotation processor, in the package of the command
+ * and named after its binary name plus {@link #CLASS_NAME_SUFFIX}, and are picked up by
+ * {@link MetadataLoader#loadCommand(Class)} when present.
+ */
+public interface CommandMetadataFactory
+{
+    String CLASS_NAME_SUFFIX = "_AirlineMetadata";
+
+    Class<?> getCommandType();
+
+    CommandMetadata createCommandMetadata();
+}
@@ -1,18 +1,32 @@
 package io.airlift.command.model;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * The metadata of a whole command line interface.
+ */
 public class GlobalMetadata
 {
     private final String name;
     private final Integer navOrder;
     private final String description;
     private final List<OptionMetadata> options;
+    private final OptionIndex optionIndex;
     private final CommandMetadata defaultCommand;
     private final List<CommandMetadata> defaultGroupCommands;
     private final List<CommandGroupMetadata> commandGroups;
+    private final Map<String, CommandMetadata> defaultGroupCommandsByName;
+    private final Map<String, CommandGroupMetadata> commandGroupsByName;
+    private final Supplier<PrefixTrie> completions = Suppliers.memoize(this::loadCompletions);
+    private final SortedViews<OptionMetadata> sortedOptions = new SortedViews<>(1);
 
     public GlobalMetadata(String name,
                           String description,
@@ -36,9 +50,23 @@ public class GlobalMetadata
         this.navOrder = navOrder;
         this.description = description;
         this.options = ImmutableList.copyOf(options);
+        this.optionIndex = MetadataLoader.loadOptionIndex(this.options);
         this.defaultCommand = defaultCommand;
         this.defaultGroupCommands = ImmutableList.copyOf(defaultGroupCommands);
         this.commandGroups = ImmutableList.copyOf(commandGroups);
+
+        // when names collide the first registration wins, which is what a linear search would find
+        Map<String, CommandMetadata> defaultGroupCommandsByName = new LinkedHashMap<>();
+        for (CommandMetadata command : this.defaultGroupCommands) {
+            defaultGroupCommandsByName.putIfAbsent(command.getName(), command);
+        }
+        this.defaultGroupCommandsByName = ImmutableMap.copyOf(defaultGroupCommandsByName);
+
+        Map<String, CommandGroupMetadata> commandGroupsByName = new LinkedHashMap<>();
+        for (CommandGroupMetadata group : this.commandGroups) {
+            commandGroupsByName.putIfAbsent(group.getName(), group);
+        }
+        this.commandGroupsByName = ImmutableMap.copyOf(commandGroupsByName);
     }
 
     public String getName()
@@ -56,6 +84,43 @@ public class GlobalMetadata
         return options;
     }
 
+    /**
+     * Returns the options in the order of the comparator, sorted once for the comparator last asked for.
+     */
+    public List<OptionMetadata> getSortedOptions(Comparator<? super OptionMetadata> comparator)
+    {
+        return sortedOptions.get(0, comparator, this::getOptions);
+    }
+
+    public OptionIndex getOptionIndex()
+    {
+        return optionIndex;
+    }
+
+    /**
+     * Returns the group names, default group command names and global option names, which complete the first token
+     * of a command line.  The trie is built the first time it is requested.
+     */
+    public PrefixTrie getCompletions()
+    {
+        return completions.get();
+    }
+
+    private PrefixTrie loadCompletions()
+    {
+        ImmutableList.Builder<String> names = ImmutableList.builder();
+        for (CommandGroupMetadata group : commandGroups) {
+            names.add(group.getName());
+        }
+        for (CommandMetadata command : defaultGroupCommands) {
+            names.add(command.getName());
+        }
+        for (OptionMetadata option : options) {
+            names.addAll(option.getOptions());
+        }
+        return new PrefixTrie(names.build());
+    }
+
     public CommandMetadata getDefaultCommand()
     {
         return defaultCommand;
@@ -69,11 +134,27 @@ public class GlobalMetadata
         return defaultGroupCommands;
     }
 
+    /**
+     * Returns the command of the default (command) group with the given name, or null if there is none.
+     */
+    public CommandMetadata getDefaultGroupCommand(String name)
+    {
+        return defaultGroupCommandsByName.get(name);
+    }
+
     public List<CommandGroupMetadata> getCommandGroups()
     {
         return commandGroups;
     }
 
+    /**
+     * Returns the command group with the given name, or null if there is none.
+     */
+    public CommandGroupMetadata getCommandGroup(String name)
+    {
+        return commandGroupsByName.get(name);
+    }
+
     @Override
     public String toString()
     {
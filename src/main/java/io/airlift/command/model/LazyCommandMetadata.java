@@ -0,0 +1,162 @@
+package io.airlift.command.model;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
+import io.airlift.command.Accessor;
+import io.airlift.command.Group;
+
+import java.util.List;
+
+/**
+ * A command of which only the name, and usually the description, visibility and the options it shares with the CLI
+ * and its group, are loaded up front.  The rest of the metadata is materialized the first time it is needed, which for
+ * a parse is only when the command is the one being invoked.
+ */
+class LazyCommandMetadata
+        extends CommandMetadata
+{
+    private final Supplier<CommandMetadata> metadata;
+    private final boolean summaryLoaded;
+    private final List<OptionMetadata> sharedGlobalOptions;
+    private final List<OptionMetadata> sharedGroupOptions;
+
+    LazyCommandMetadata(String name,
+            String description,
+            boolean hidden,
+            Iterable<OptionMetadata> sharedGlobalOptions,
+            Iterable<OptionMetadata> sharedGroupOptions,
+            Supplier<CommandMetadata> metadata)
+    {
+        super(name, description, hidden);
+        this.metadata = Suppliers.memoize(metadata);
+        this.summaryLoaded = true;
+        this.sharedGlobalOptions = ImmutableList.copyOf(sharedGlobalOptions);
+        this.sharedGroupOptions = ImmutableList.copyOf(sharedGroupOptions);
+    }
+
+    /**
+     * Creates a command known only by name; the description and visibility are materialized with the rest of the
+     * metadata.
+     */
+    LazyCommandMetadata(String name, Supplier<CommandMetadata> metadata)
+    {
+        super(name, null, false);
+        this.metadata = Suppliers.memoize(metadata);
+        this.summaryLoaded = false;
+        this.sharedGlobalOptions = ImmutableList.of();
+        this.sharedGroupOptions = ImmutableList.of();
+    }
+
+    /**
+     * Returns the global options read when the command was registered, without loading the rest of its metadata.
+     */
+    List<OptionMetadata> getSharedGlobalOptions()
+    {
+        return sharedGlobalOptions;
+    }
+
+    /**
+     * Returns the group options read when the command was registered, without loading the rest of its metadata.
+     */
+    List<OptionMetadata> getSharedGroupOptions()
+    {
+        return sharedGroupOptions;
+    }
+
+    @Override
+    public String getDescription()
+    {
+        return summaryLoaded ? super.getDescription() : metadata.get().getDescription();
+    }
+
+    @Override
+    public boolean isHidden()
+    {
+        return summaryLoaded ? super.isHidden() : metadata.get().isHidden();
+    }
+
+    @Override
+    public List<String> getExamples()
+    {
+        return metadata.get().getExamples();
+    }
+
+    @Override
+    public String getDiscussion()
+    {
+        return metadata.get().getDiscussion();
+    }
+
+    @Override
+    public List<OptionMetadata> getGlobalOptions()
+    {
+        return metadata.get().getGlobalOptions();
+    }
+
+    @Override
+    public List<OptionMetadata> getGroupOptions()
+    {
+        return metadata.get().getGroupOptions();
+    }
+
+    @Override
+    public List<OptionMetadata> getCommandOptions()
+    {
+        return metadata.get().getCommandOptions();
+    }
+
+    @Override
+    public List<OptionMetadata> getAllOptions()
+    {
+        return metadata.get().getAllOptions();
+    }
+
+    @Override
+    public int getOptionOrdinal(OptionMetadata option)
+    {
+        return metadata.get().getOptionOrdinal(option);
+    }
+
+    @Override
+    public OptionIndex getCommandOptionIndex()
+    {
+        return metadata.get().getCommandOptionIndex();
+    }
+
+    @Override
+    public PrefixTrie getCompletions()
+    {
+        return metadata.get().getCompletions();
+    }
+
+    @Override
+    public ArgumentsMetadata getArguments()
+    {
+        return metadata.get().getArguments();
+    }
+
+    @Override
+    public List<Accessor> getMetadataInjections()
+    {
+        return metadata.get().getMetadataInjections();
+    }
+
+    @Override
+    public Class<?> getType()
+    {
+        return metadata.get().getType();
+    }
+
+    @Override
+    public List<String> getGroupNames()
+    {
+        return metadata.get().getGroupNames();
+    }
+
+    @Override
+    public List<Group> getGroups()
+    {
+        return metadata.get().getGroups();
+    }
+}
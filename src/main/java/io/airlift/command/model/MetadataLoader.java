@@ -14,6 +14,7 @@ import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -24,18 +25,43 @@ import io.airlift.command.Arguments;
 import io.airlift.command.Command;
 import io.airlift.command.Group;
 import io.airlift.command.Groups;
+import io.airlift.command.HelpCache;
 import io.airlift.command.Option;
 import io.airlift.command.OptionType;
 import io.airlift.command.Suggester;
 
-import static com.google.common.base.Predicates.compose;
-import static com.google.common.base.Predicates.equalTo;
-import static com.google.common.collect.Iterables.find;
 import static com.google.common.collect.Iterables.transform;
 import static com.google.common.collect.Lists.newArrayList;
 
 public class MetadataLoader
 {
+    // Guice's @Inject is honoured like javax.inject's when Guice is on the class path; looked up once rather than per field
+    private static final Class<? extends Annotation> GUICE_INJECT = loadAnnotation("com.google.inject.Inject");
+
+    // the types bound by the parser, other @Inject fields are searched for injections of their own
+    private static final ImmutableSet<Class<?>> INJECTED_TYPES = ImmutableSet.<Class<?>>of(
+            GlobalMetadata.class,
+            CommandGroupMetadata.class,
+            CommandMetadata.class,
+            HelpCache.class);
+
+    private static final ClassValue<CommandMetadataFactory> GENERATED_FACTORIES = new ClassValue<CommandMetadataFactory>()
+    {
+        @Override
+        protected CommandMetadataFactory computeValue(Class<?> type)
+        {
+            try {
+                Class<?> factoryType = Class.forName(type.getName() + CommandMetadataFactory.CLASS_NAME_SUFFIX, true, type.getClassLoader());
+                CommandMetadataFactory factory = factoryType.asSubclass(CommandMetadataFactory.class).getConstructor().newInstance();
+                return type.equals(factory.getCommandType()) ? factory : null;
+            }
+            catch (ReflectiveOperationException | ClassCastException | LinkageError e) {
+                // no generated metadata for this type, fall back to reflection
+                return null;
+            }
+        }
+    };
+
     public static GlobalMetadata loadGlobal(String name,
                                             Integer navOrder, String description,
                                             CommandMetadata defaultCommand,
@@ -44,14 +70,14 @@ public class MetadataLoader
     {
         ImmutableList.Builder<OptionMetadata> globalOptionsBuilder = ImmutableList.builder();
         if (defaultCommand != null) {
-            globalOptionsBuilder.addAll(defaultCommand.getGlobalOptions());
+            globalOptionsBuilder.addAll(sharedGlobalOptions(defaultCommand));
         }
         for (CommandMetadata command : defaultGroupCommands) {
-            globalOptionsBuilder.addAll(command.getGlobalOptions());
+            globalOptionsBuilder.addAll(sharedGlobalOptions(command));
         }
         for (CommandGroupMetadata group : groups) {
             for (CommandMetadata command : group.getCommands()) {
-                globalOptionsBuilder.addAll(command.getGlobalOptions());
+                globalOptionsBuilder.addAll(sharedGlobalOptions(command));
             }
         }
         List<OptionMetadata> globalOptions = mergeOptionSet(globalOptionsBuilder.build());
@@ -62,42 +88,53 @@ public class MetadataLoader
     {
         ImmutableList.Builder<OptionMetadata> groupOptionsBuilder = ImmutableList.builder();
         if (defaultCommand != null) {
-            groupOptionsBuilder.addAll(defaultCommand.getGroupOptions());
+            groupOptionsBuilder.addAll(sharedGroupOptions(defaultCommand));
         }
         for (CommandMetadata command : commands) {
-            groupOptionsBuilder.addAll(command.getGroupOptions());
+            groupOptionsBuilder.addAll(sharedGroupOptions(command));
         }
         List<OptionMetadata> groupOptions = mergeOptionSet(groupOptionsBuilder.build());
         return new CommandGroupMetadata(name, description, markdownDescription, groupOptions, defaultCommand, commands);
     }
 
+    public static OptionIndex loadOptionIndex(Iterable<OptionMetadata> options)
+    {
+        return new OptionIndex(options);
+    }
+
     public static <T> ImmutableList<CommandMetadata> loadCommands(Iterable<Class<? extends T>> defaultCommands)
     {
         return ImmutableList.copyOf(Iterables.transform(defaultCommands, (Function<Class<?>, CommandMetadata>) MetadataLoader::loadCommand));
     }
 
+    /**
+     * Loads the metadata of a command.  If the airline annotation processor generated a {@link CommandMetadataFactory}
+     * for the command type it is used, otherwise the metadata is read from the annotations of the type.
+     */
     public static CommandMetadata loadCommand(Class<?> commandType)
     {
         if (commandType == null) {
             return null;
         }
-        
-        Command command = null;
-        List<Group> groups = Lists.newArrayList();
-        
-        for (Class<?> cls = commandType; command == null && !Object.class.equals(cls); cls = cls.getSuperclass()) {
-            command = cls.getAnnotation(Command.class);
-            
-            if(cls.isAnnotationPresent(Groups.class))
-            {
-                groups.addAll(Arrays.asList(cls.getAnnotation(Groups.class).value()));
-            }
-            if(cls.isAnnotationPresent(Group.class))
-            {
-                groups.add(cls.getAnnotation(Group.class));
-            }
+
+        CommandMetadataFactory factory = GENERATED_FACTORIES.get(commandType);
+        if (factory != null) {
+            return factory.createCommandMetadata();
         }
-        Preconditions.checkArgument(command != null, "Command %s is not annotated with @Command", commandType.getName());
+        return loadCommandFromAnnotations(commandType);
+    }
+
+    /**
+     * Loads the metadata of a command by reflecting over the annotations of the type, ignoring any generated
+     * {@link CommandMetadataFactory}.
+     */
+    public static CommandMetadata loadCommandFromAnnotations(Class<?> commandType)
+    {
+        if (commandType == null) {
+            return null;
+        }
+        
+        Command command = loadCommandAnnotation(commandType);
         String name = command.name();
         String description = command.description().isEmpty() ? null : command.description();
         List<String> groupNames = Arrays.asList(command.groupNames());
@@ -118,7 +155,146 @@ public class MetadataLoader
 	            injectionMetadata.metadataInjections,
 	            commandType,
 	            groupNames,
-	            groups);
+	            loadGroups(commandType));
+    }
+
+    /**
+     * Creates the metadata of a command of which only the {@code @Command} annotation and the global and group options
+     * are read up front; the command options and arguments are loaded the first time they are needed.
+     * <p>
+     * Lazily loaded commands are not placed into groups by their annotations, since that would require loading their
+     * metadata up front.
+     */
+    public static CommandMetadata loadCommandLazily(final Class<?> commandType)
+    {
+        Preconditions.checkNotNull(commandType, "commandType is null");
+
+        Command command = loadCommandAnnotation(commandType);
+        String description = command.description().isEmpty() ? null : command.description();
+        InjectionMetadata sharedOptions = loadSharedOptions(commandType);
+        return new LazyCommandMetadata(command.name(), description, command.hidden(), sharedOptions.globalOptions, sharedOptions.groupOptions, () -> loadCommand(commandType));
+    }
+
+    /**
+     * Creates the metadata of a command known only by name; the command type is not requested from the supplier
+     * until the command is invoked or its metadata, including its description, is otherwise needed.  Since its
+     * options are not known up front, the command contributes neither global nor group options to the CLI.
+     *
+     * @see #loadCommandLazily(Class)
+     */
+    public static CommandMetadata loadCommandLazily(final String name, final Supplier<? extends Class<?>> commandType)
+    {
+        Preconditions.checkNotNull(name, "name is null");
+        Preconditions.checkNotNull(commandType, "commandType is null");
+
+        return new LazyCommandMetadata(name, () -> {
+            Class<?> type = commandType.get();
+            Preconditions.checkState(type != null, "Command %s has no class", name);
+            CommandMetadata command = loadCommand(type);
+            Preconditions.checkState(name.equals(command.getName()),
+                    "Command %s is registered as %s but is named %s", type.getName(), name, command.getName());
+            return command;
+        });
+    }
+
+    static boolean isLazy(CommandMetadata command)
+    {
+        return command instanceof LazyCommandMetadata;
+    }
+
+    // lazily loaded commands are not loaded for their global and group options, they keep those read up front
+    private static List<OptionMetadata> sharedGlobalOptions(CommandMetadata command)
+    {
+        return isLazy(command) ? ((LazyCommandMetadata) command).getSharedGlobalOptions() : command.getGlobalOptions();
+    }
+
+    private static List<OptionMetadata> sharedGroupOptions(CommandMetadata command)
+    {
+        return isLazy(command) ? ((LazyCommandMetadata) command).getSharedGroupOptions() : command.getGroupOptions();
+    }
+
+    private static Command loadCommandAnnotation(Class<?> commandType)
+    {
+        Command command = null;
+        for (Class<?> cls = commandType; command == null && !Object.class.equals(cls); cls = cls.getSuperclass()) {
+            command = cls.getAnnotation(Command.class);
+        }
+        Preconditions.checkArgument(command != null, "Command %s is not annotated with @Command", commandType.getName());
+        return command;
+    }
+
+    /**
+     * Creates the metadata of a command from values read at compile time; this is the entry point used by the
+     * {@link CommandMetadataFactory} implementations generated by the airline annotation processor.
+     */
+    public static CommandMetadata loadCommand(Class<?> commandType,
+                                              String name,
+                                              String description,
+                                              String discussion,
+                                              List<String> examples,
+                                              boolean hidden,
+                                              List<String> groupNames,
+                                              Iterable<OptionMetadata> options,
+                                              Iterable<ArgumentsMetadata> arguments,
+                                              Iterable<Accessor> metadataInjections)
+    {
+        InjectionMetadata injectionMetadata = new InjectionMetadata();
+        for (OptionMetadata option : options) {
+            injectionMetadata.add(option);
+        }
+        Iterables.addAll(injectionMetadata.arguments, arguments);
+        Iterables.addAll(injectionMetadata.metadataInjections, metadataInjections);
+        injectionMetadata.compact();
+
+        return new CommandMetadata(
+                name,
+                description,
+                discussion,
+                examples,
+                hidden,
+                injectionMetadata.globalOptions,
+                injectionMetadata.groupOptions,
+                injectionMetadata.commandOptions,
+                Iterables.getFirst(injectionMetadata.arguments, null),
+                injectionMetadata.metadataInjections,
+                commandType,
+                groupNames,
+                loadGroups(commandType));
+    }
+
+    /**
+     * Returns the declared field of a type, made accessible; used by generated {@link CommandMetadataFactory}
+     * implementations to build option paths without scanning every field of the type.
+     */
+    public static Field field(Class<?> type, String name)
+    {
+        try {
+            Field field = type.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        }
+        catch (NoSuchFieldException e) {
+            throw new IllegalStateException(String.format("Field %s.%s no longer exists, the generated metadata is out of date", type.getName(), name), e);
+        }
+    }
+
+    static List<Group> loadGroups(Class<?> commandType)
+    {
+        List<Group> groups = Lists.newArrayList();
+        boolean found = false;
+        for (Class<?> cls = commandType; !found && !Object.class.equals(cls); cls = cls.getSuperclass()) {
+            found = cls.isAnnotationPresent(Command.class);
+
+            if(cls.isAnnotationPresent(Groups.class))
+            {
+                groups.addAll(Arrays.asList(cls.getAnnotation(Groups.class).value()));
+            }
+            if(cls.isAnnotationPresent(Group.class))
+            {
+                groups.add(cls.getAnnotation(Group.class));
+            }
+        }
+        return groups;
     }
 
     public static SuggesterMetadata loadSuggester(Class<? extends Suggester> suggesterClass)
@@ -136,6 +312,23 @@ public class MetadataLoader
     }
 
     public static void loadInjectionMetadata(Class<?> type, InjectionMetadata injectionMetadata, List<Field> fields)
+    {
+        loadInjectionMetadata(type, injectionMetadata, fields, false);
+    }
+
+    /**
+     * Loads the global and group options of a command, which the CLI and its groups need up front, without loading
+     * the command options, arguments and metadata injections.
+     */
+    private static InjectionMetadata loadSharedOptions(Class<?> commandType)
+    {
+        InjectionMetadata injectionMetadata = new InjectionMetadata();
+        loadInjectionMetadata(commandType, injectionMetadata, ImmutableList.of(), true);
+        injectionMetadata.compact();
+        return injectionMetadata;
+    }
+
+    private static void loadInjectionMetadata(Class<?> type, InjectionMetadata injectionMetadata, List<Field> fields, boolean sharedOptionsOnly)
     {
         if(type.isInterface())
         {
@@ -149,39 +342,27 @@ public class MetadataLoader
 
                 Inject injectAnnotation = field.getAnnotation(Inject.class);
                 if (injectAnnotation != null) {
-                    if (field.getType().equals(GlobalMetadata.class) ||
-                            field.getType().equals(CommandGroupMetadata.class) ||
-                            field.getType().equals(CommandMetadata.class)) {
-                        injectionMetadata.metadataInjections.add(new Accessor(path));
+                    if (INJECTED_TYPES.contains(field.getType())) {
+                        if (!sharedOptionsOnly) {
+                            injectionMetadata.metadataInjections.add(new Accessor(path));
+                        }
                     } else {
-                        loadInjectionMetadata(field.getType(), injectionMetadata, path);
+                        loadInjectionMetadata(field.getType(), injectionMetadata, path, sharedOptionsOnly);
                     }
                 }
 
-                try {
-                    @SuppressWarnings("unchecked")
-                    Annotation aGuiceInject = field.getAnnotation((Class<? extends Annotation>)Class.forName("com.google.inject.Inject"));
-                    if (aGuiceInject != null) {
-                        if (field.getType().equals(GlobalMetadata.class) ||
-                            field.getType().equals(CommandGroupMetadata.class) ||
-                            field.getType().equals(CommandMetadata.class)) {
+                if (GUICE_INJECT != null && field.getAnnotation(GUICE_INJECT) != null) {
+                    if (INJECTED_TYPES.contains(field.getType())) {
+                        if (!sharedOptionsOnly) {
                             injectionMetadata.metadataInjections.add(new Accessor(path));
-                        } else {
-                            loadInjectionMetadata(field.getType(), injectionMetadata, path);
                         }
+                    } else {
+                        loadInjectionMetadata(field.getType(), injectionMetadata, path, sharedOptionsOnly);
                     }
                 }
-                catch (ClassNotFoundException e) {
-                    // this is ok, means Guice is not on the class path, so probably not being used
-                    // and thus, ok that this did not work.
-                }
-                catch (ClassCastException e) {
-                    // ignore this too, we're doing some funky cross your fingers type reflect stuff to play
-                    // nicely with Guice
-                }
 
                 Option optionAnnotation = field.getAnnotation(Option.class);
-                if (optionAnnotation != null) {
+                if (optionAnnotation != null && !(sharedOptionsOnly && optionAnnotation.type() == OptionType.COMMAND)) {
                     OptionType optionType = optionAnnotation.type();
                     String name;
                     if (!optionAnnotation.title().isEmpty()) {
@@ -217,22 +398,11 @@ public class MetadataLoader
                         allowedValues = null;
                     }
 
-                    OptionMetadata optionMetadata = new OptionMetadata(optionType, options, name, description, arity, required, hidden, allowedValues, path);
-                    switch (optionType) {
-                        case GLOBAL:
-                            injectionMetadata.globalOptions.add(optionMetadata);
-                            break;
-                        case GROUP:
-                            injectionMetadata.groupOptions.add(optionMetadata);
-                            break;
-                        case COMMAND:
-                            injectionMetadata.commandOptions.add(optionMetadata);
-                            break;
-                    }
+                    injectionMetadata.add(new OptionMetadata(optionType, options, name, description, arity, required, hidden, allowedValues, path));
                 }
 
                 Arguments argumentsAnnotation = field.getAnnotation(Arguments.class);
-                if (field.isAnnotationPresent(Arguments.class)) {
+                if (!sharedOptionsOnly && argumentsAnnotation != null) {
                     ImmutableList.Builder<String> titlesBuilder = ImmutableList.builder();
                     
                     if (!(argumentsAnnotation.title().length == 1 && argumentsAnnotation.title()[0].isEmpty())) {
@@ -278,6 +448,17 @@ public class MetadataLoader
         return options;
     }
 
+    private static Class<? extends Annotation> loadAnnotation(String className)
+    {
+        try {
+            return Class.forName(className).asSubclass(Annotation.class);
+        }
+        catch (ClassNotFoundException | ClassCastException e) {
+            // this is ok, means Guice is not on the class path, so probably not being used
+            return null;
+        }
+    }
+
     private static <T> ImmutableList<T> concat(Iterable<T> iterable, T item)
     {
         return ImmutableList.<T>builder().addAll(iterable).add(item).build();
@@ -287,26 +468,34 @@ public class MetadataLoader
     {
         List<CommandMetadata> newCommands = new ArrayList<>();
 
+        // index the groups by name once rather than searching the group list for every group name of every command
+        Map<String, CommandGroupMetadata> commandGroupsByName = Maps.newHashMap();
+        for (CommandGroupMetadata group : commandGroups) {
+            commandGroupsByName.putIfAbsent(group.getName(), group);
+        }
+
         // first, create any groups explicitly annotated
-        createGroupsFromAnnotations(allCommands,newCommands,commandGroups,defaultCommandGroup);
+        createGroupsFromAnnotations(allCommands,newCommands,commandGroups,commandGroupsByName,defaultCommandGroup);
         
         for (CommandMetadata command : allCommands) {
+            if (isLazy(command)) {
+                continue;
+            }
             boolean added = false;
             
             //now add the command to any groupNames specified in the Command annotation
             for(String groupName : command.getGroupNames())
             {
-                CommandGroupMetadata group = find(commandGroups, compose(equalTo(groupName), CommandGroupMetadata.nameGetter()), null);
+                CommandGroupMetadata group = commandGroupsByName.get(groupName);
                 if (group != null) {
-                    group.addCommand(command);
+                    addCommand(commandGroups, commandGroupsByName, group, command);
                     added = true;
                 }
                 else
                 {
-                    ImmutableList.Builder<OptionMetadata> groupOptionsBuilder = ImmutableList.builder();
-                    groupOptionsBuilder.addAll(command.getGroupOptions());
 	                CommandGroupMetadata newGroup = loadCommandGroup(groupName, "", null, null, Collections.singletonList(command));
                     commandGroups.add(newGroup);
+                    commandGroupsByName.put(groupName, newGroup);
                     added = true;
                 }
             }
@@ -320,9 +509,19 @@ public class MetadataLoader
         allCommands.addAll(newCommands);
     }
 
-    private static void createGroupsFromAnnotations(List<CommandMetadata> allCommands, List<CommandMetadata> newCommands, List<CommandGroupMetadata> commandGroups, List<CommandMetadata> defaultCommandGroup)
+    private static void createGroupsFromAnnotations(List<CommandMetadata> allCommands, List<CommandMetadata> newCommands, List<CommandGroupMetadata> commandGroups, Map<String, CommandGroupMetadata> commandGroupsByName, List<CommandMetadata> defaultCommandGroup)
     {
+        Map<Class<?>, CommandMetadata> commandsByType = Maps.newHashMap();
+        for (CommandMetadata command : allCommands) {
+            if (!isLazy(command)) {
+                commandsByType.putIfAbsent(command.getType(), command);
+            }
+        }
+
         for (CommandMetadata command : allCommands) {
+            if (isLazy(command)) {
+                continue;
+            }
             boolean added = false;
 
             // first, create any groups explicitly annotated
@@ -335,7 +534,7 @@ public class MetadataLoader
                 if(!groupAnno.defaultCommand().equals(Group.DEFAULT.class))
                 {
                     defaultCommandClass = groupAnno.defaultCommand();
-                    defaultCommand = find(allCommands, compose(equalTo(defaultCommandClass), CommandMetadata.typeGetter()), null);
+                    defaultCommand = commandsByType.get(defaultCommandClass);
                     if(null == defaultCommand)
                     {
                         defaultCommand = loadCommand(defaultCommandClass);
@@ -348,7 +547,7 @@ public class MetadataLoader
                 CommandMetadata groupCommand;
                 for(Class commandClass : groupAnno.commands())
                 {
-                    groupCommand = find(allCommands, compose(equalTo(commandClass), CommandMetadata.typeGetter()), null);
+                    groupCommand = commandsByType.get(commandClass);
                     if(null == groupCommand)
                     {
                         groupCommand = loadCommand(commandClass);
@@ -357,14 +556,15 @@ public class MetadataLoader
                     }
                 }
 
-                CommandGroupMetadata groupMetadata = find(commandGroups, compose(equalTo(groupAnno.name()), CommandGroupMetadata.nameGetter()), null);
+                CommandGroupMetadata groupMetadata = commandGroupsByName.get(groupAnno.name());
                 if(null == groupMetadata)
                 {
 	                groupMetadata = loadCommandGroup(groupAnno.name(), groupAnno.description(), null, defaultCommand, groupCommands);
                     commandGroups.add(groupMetadata);
+                    commandGroupsByName.put(groupAnno.name(), groupMetadata);
                 }
 
-                groupMetadata.addCommand(command);
+                addCommand(commandGroups, commandGroupsByName, groupMetadata, command);
                 added = true;
             }
 
@@ -375,6 +575,19 @@ public class MetadataLoader
         }
     }
 
+    /**
+     * Replaces the group with a copy that also contains the command; the metadata is immutable once built so that a
+     * Cli can be shared between threads.
+     */
+    private static void addCommand(List<CommandGroupMetadata> commandGroups, Map<String, CommandGroupMetadata> commandGroupsByName, CommandGroupMetadata group, CommandMetadata command)
+    {
+        CommandGroupMetadata newGroup = group.withCommand(command);
+        if (newGroup != group) {
+            commandGroups.set(commandGroups.indexOf(group), newGroup);
+            commandGroupsByName.put(newGroup.getName(), newGroup);
+        }
+    }
+
     private static class InjectionMetadata
     {
         private List<OptionMetadata> globalOptions = newArrayList();
@@ -383,6 +596,21 @@ public class MetadataLoader
         private List<ArgumentsMetadata> arguments = newArrayList();
         private List<Accessor> metadataInjections = newArrayList();
 
+        private void add(OptionMetadata option)
+        {
+            switch (option.getOptionType()) {
+                case GLOBAL:
+                    globalOptions.add(option);
+                    break;
+                case GROUP:
+                    groupOptions.add(option);
+                    break;
+                case COMMAND:
+                    commandOptions.add(option);
+                    break;
+            }
+        }
+
         private void compact()
         {
             globalOptions = mergeOptionSet(globalOptions);
@@ -0,0 +1,569 @@
+package io.airlift.command.model;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import io.airlift.command.Accessor;
+import io.airlift.command.OptionType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Binary snapshot of a {@link GlobalMetadata}, so a CLI with many commands can start without loading and reflecting
+ * over every command class.
+ * <p>
+ * A snapshot holds a string table, a directory with the name, description and visibility of every command, the
+ * global metadata (global options and groups) and one record per command.  Reading a snapshot memory maps the file
+ * and decodes the global metadata and the directory only; the record of a command, and the command class itself, are
+ * only loaded when the rest of its metadata is first needed, which for a parse is only for the command invoked.  The
+ * fields of options and arguments are likewise only resolved when a value is injected into them.
+ * <p>
+ * A snapshot records class and field names, so it must be rewritten whenever the commands change.
+ */
+public class MetadataSnapshot
+{
+    private static final int MAGIC = 0x41524c4e;
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 12;
+    private static final int DIRECTORY_ENTRY_SIZE = 13;
+
+    private static final int NULL = -1;
+
+    private MetadataSnapshot()
+    {
+    }
+
+    public static void write(GlobalMetadata metadata, Path file)
+            throws IOException
+    {
+        Preconditions.checkNotNull(file, "file is null");
+
+        try (OutputStream out = Files.newOutputStream(file)) {
+            write(metadata, out);
+        }
+    }
+
+    public static void write(GlobalMetadata metadata, OutputStream out)
+            throws IOException
+    {
+        Preconditions.checkNotNull(metadata, "metadata is null");
+        Preconditions.checkNotNull(out, "out is null");
+
+        new Writer(metadata).write(out);
+    }
+
+    /**
+     * Reads a snapshot, loading command classes through the given class loader as they are needed.
+     */
+    public static GlobalMetadata read(Path file, ClassLoader classLoader)
+            throws IOException
+    {
+        Preconditions.checkNotNull(file, "file is null");
+        Preconditions.checkNotNull(classLoader, "classLoader is null");
+
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        return read(buffer, classLoader);
+    }
+
+    public static GlobalMetadata read(ByteBuffer buffer, ClassLoader classLoader)
+            throws IOException
+    {
+        Preconditions.checkNotNull(buffer, "buffer is null");
+        Preconditions.checkNotNull(classLoader, "classLoader is null");
+
+        return new Reader(buffer, classLoader).read();
+    }
+
+    private static class Writer
+    {
+        private final GlobalMetadata metadata;
+        private final Map<String, Integer> strings = new LinkedHashMap<>();
+        private final Map<CommandMetadata, Integer> commands = new IdentityHashMap<>();
+        private final List<CommandMetadata> commandList = new ArrayList<>();
+
+        private Writer(GlobalMetadata metadata)
+        {
+            this.metadata = metadata;
+
+            addCommand(metadata.getDefaultCommand());
+            for (CommandMetadata command : metadata.getDefaultGroupCommands()) {
+                addCommand(command);
+            }
+            for (CommandGroupMetadata group : metadata.getCommandGroups()) {
+                addCommand(group.getDefaultCommand());
+                for (CommandMetadata command : group.getCommands()) {
+                    addCommand(command);
+                }
+            }
+        }
+
+        private void addCommand(CommandMetadata command)
+        {
+            if (command != null && !commands.containsKey(command)) {
+                commands.put(command, commandList.size());
+                commandList.add(command);
+
+                // the directory is written after the string table, so its strings must be known up front
+                string(command.getName());
+                string(command.getDescription());
+            }
+        }
+
+        private void write(OutputStream out)
+                throws IOException
+        {
+            // encode the records first so the string table is complete before it is written
+            byte[] global = encode(this::writeGlobal);
+            List<byte[]> records = new ArrayList<>(commandList.size());
+            for (CommandMetadata command : commandList) {
+                records.add(encode(data -> writeCommand(data, command)));
+            }
+
+            List<byte[]> encodedStrings = new ArrayList<>(strings.size());
+            int stringTableSize = 4 + 4 * strings.size();
+            for (String string : strings.keySet()) {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                encodedStrings.add(bytes);
+                stringTableSize += 4 + bytes.length;
+            }
+            int directoryOffset = HEADER_SIZE + stringTableSize;
+
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeInt(directoryOffset);
+
+            // string table: offsets then length prefixed UTF-8 data
+            data.writeInt(strings.size());
+            int stringOffset = HEADER_SIZE + 4 + 4 * strings.size();
+            for (byte[] bytes : encodedStrings) {
+                data.writeInt(stringOffset);
+                stringOffset += 4 + bytes.length;
+            }
+            for (byte[] bytes : encodedStrings) {
+                data.writeInt(bytes.length);
+                data.write(bytes);
+            }
+
+            // directory: the eagerly loaded part of each command and the offset of the rest of it
+            int recordOffset = directoryOffset + 4 + DIRECTORY_ENTRY_SIZE * commandList.size() + global.length;
+            data.writeInt(commandList.size());
+            for (int i = 0; i < commandList.size(); i++) {
+                CommandMetadata command = commandList.get(i);
+                data.writeInt(string(command.getName()));
+                data.writeInt(string(command.getDescription()));
+                data.writeByte(command.isHidden() ? 1 : 0);
+                data.writeInt(recordOffset);
+                recordOffset += records.get(i).length;
+            }
+
+            data.write(global);
+            for (byte[] record : records) {
+                data.write(record);
+            }
+            data.flush();
+        }
+
+        private void writeGlobal(DataOutputStream data)
+                throws IOException
+        {
+            writeString(data, metadata.getName());
+            data.writeByte(metadata.getNavOrder() == null ? 0 : 1);
+            data.writeInt(metadata.getNavOrder() == null ? 0 : metadata.getNavOrder());
+            writeString(data, metadata.getDescription());
+            writeOptions(data, metadata.getOptions());
+            writeCommandReference(data, metadata.getDefaultCommand());
+            writeCommandReferences(data, metadata.getDefaultGroupCommands());
+
+            data.writeInt(metadata.getCommandGroups().size());
+            for (CommandGroupMetadata group : metadata.getCommandGroups()) {
+                writeString(data, group.getName());
+                writeString(data, group.getDescription());
+                writeString(data, group.getMarkdownDescription());
+                writeOptions(data, group.getOptions());
+                writeCommandReference(data, group.getDefaultCommand());
+                writeCommandReferences(data, group.getCommands());
+            }
+        }
+
+        private void writeCommand(DataOutputStream data, CommandMetadata command)
+                throws IOException
+        {
+            writeString(data, command.getType().getName());
+            writeString(data, command.getDiscussion());
+            writeStrings(data, command.getExamples());
+            writeStrings(data, command.getGroupNames());
+            writeOptions(data, command.getGlobalOptions());
+            writeOptions(data, command.getGroupOptions());
+            writeOptions(data, command.getCommandOptions());
+
+            ArgumentsMetadata arguments = command.getArguments();
+            data.writeByte(arguments == null ? 0 : 1);
+            if (arguments != null) {
+                writeStrings(data, arguments.getTitle());
+                writeString(data, arguments.getDescription());
+                writeString(data, arguments.getUsage());
+                data.writeByte(arguments.isRequired() ? 1 : 0);
+                writeAccessors(data, arguments.getAccessors());
+            }
+
+            writeAccessors(data, command.getMetadataInjections());
+        }
+
+        private void writeOptions(DataOutputStream data, List<OptionMetadata> options)
+                throws IOException
+        {
+            data.writeInt(options.size());
+            for (OptionMetadata option : options) {
+                data.writeByte(option.getOptionType().ordinal());
+                writeStrings(data, option.getOptions());
+                writeString(data, option.getTitle());
+                writeString(data, option.getDescription());
+                data.writeInt(option.getArity());
+                data.writeByte(option.isRequired() ? 1 : 0);
+                data.writeByte(option.isHidden() ? 1 : 0);
+                writeStrings(data, option.getAllowedValues());
+                writeAccessors(data, option.getAccessors());
+            }
+        }
+
+        private void writeAccessors(DataOutputStream data, Collection<Accessor> accessors)
+                throws IOException
+        {
+            data.writeInt(accessors.size());
+            for (Accessor accessor : accessors) {
+                writeString(data, accessor.getName());
+                data.writeByte(accessor.isMultiValued() ? 1 : 0);
+                data.writeInt(accessor.getFieldNames().size());
+                for (int i = 0; i < accessor.getFieldNames().size(); i++) {
+                    writeString(data, accessor.getDeclaringClassNames().get(i));
+                    writeString(data, accessor.getFieldNames().get(i));
+                }
+            }
+        }
+
+        private void writeCommandReferences(DataOutputStream data, List<CommandMetadata> commands)
+                throws IOException
+        {
+            data.writeInt(commands.size());
+            for (CommandMetadata command : commands) {
+                writeCommandReference(data, command);
+            }
+        }
+
+        private void writeCommandReference(DataOutputStream data, CommandMetadata command)
+                throws IOException
+        {
+            data.writeInt(command == null ? NULL : commands.get(command));
+        }
+
+        private void writeStrings(DataOutputStream data, Collection<String> values)
+                throws IOException
+        {
+            if (values == null) {
+                data.writeInt(NULL);
+                return;
+            }
+            data.writeInt(values.size());
+            for (String value : values) {
+                writeString(data, value);
+            }
+        }
+
+        private void writeString(DataOutputStream data, String value)
+                throws IOException
+        {
+            data.writeInt(string(value));
+        }
+
+        private int string(String value)
+        {
+            if (value == null) {
+                return NULL;
+            }
+            Integer index = strings.get(value);
+            if (index == null) {
+                index = strings.size();
+                strings.put(value, index);
+            }
+            return index;
+        }
+
+        private static byte[] encode(Encoder encoder)
+                throws IOException
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(bytes);
+            encoder.encode(data);
+            data.flush();
+            return bytes.toByteArray();
+        }
+    }
+
+    private interface Encoder
+    {
+        void encode(DataOutputStream data)
+                throws IOException;
+    }
+
+    private static class Reader
+    {
+        private static final OptionType[] OPTION_TYPES = OptionType.values();
+
+        private final ByteBuffer buffer;
+        private final ClassLoader classLoader;
+        private final int directory;
+        private final String[] strings;
+        private CommandMetadata[] commands;
+
+        private Reader(ByteBuffer buffer, ClassLoader classLoader)
+                throws IOException
+        {
+            this.buffer = buffer.duplicate();
+            this.classLoader = classLoader;
+
+            if (this.buffer.remaining() < HEADER_SIZE || this.buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a metadata snapshot");
+            }
+            if (this.buffer.getInt(4) != VERSION) {
+                throw new IOException("Unsupported metadata snapshot version " + this.buffer.getInt(4));
+            }
+
+            directory = this.buffer.getInt(8);
+            strings = new String[this.buffer.getInt(HEADER_SIZE)];
+        }
+
+        private GlobalMetadata read()
+        {
+            // strings are decoded on demand, so start with the directory
+            Cursor cursor = new Cursor(directory);
+
+            commands = new CommandMetadata[cursor.readInt()];
+            for (int i = 0; i < commands.length; i++) {
+                String name = cursor.readString();
+                String description = cursor.readString();
+                boolean hidden = cursor.readBoolean();
+                final int recordOffset = cursor.readInt();
+                // the snapshot records the global and group options with the CLI and its groups
+                commands[i] = new LazyCommandMetadata(name, description, hidden, ImmutableList.<OptionMetadata>of(), ImmutableList.<OptionMetadata>of(), new Supplier<CommandMetadata>()
+                {
+                    public CommandMetadata get()
+                    {
+                        return readCommand(name, description, hidden, recordOffset);
+                    }
+                });
+            }
+
+            String name = cursor.readString();
+            boolean hasNavOrder = cursor.readBoolean();
+            int navOrder = cursor.readInt();
+            String description = cursor.readString();
+            List<OptionMetadata> options = cursor.readOptions();
+            CommandMetadata defaultCommand = cursor.readCommandReference();
+            List<CommandMetadata> defaultGroupCommands = cursor.readCommandReferences();
+
+            int groupCount = cursor.readInt();
+            List<CommandGroupMetadata> groups = new ArrayList<>(groupCount);
+            for (int i = 0; i < groupCount; i++) {
+                groups.add(new CommandGroupMetadata(
+                        cursor.readString(),
+                        cursor.readString(),
+                        cursor.readString(),
+                        cursor.readOptions(),
+                        cursor.readCommandReference(),
+                        cursor.readCommandReferences()));
+            }
+
+            return new GlobalMetadata(name, hasNavOrder ? navOrder : null, description, options, defaultCommand, defaultGroupCommands, groups);
+        }
+
+        private CommandMetadata readCommand(String name, String description, boolean hidden, int offset)
+        {
+            Cursor cursor = new Cursor(offset);
+
+            String typeName = cursor.readString();
+            Class<?> type;
+            try {
+                type = Class.forName(typeName, false, classLoader);
+            }
+            catch (ClassNotFoundException e) {
+                throw new IllegalStateException(String.format("Command class %s of command %s does not exist, the metadata snapshot is out of date", typeName, name), e);
+            }
+
+            String discussion = cursor.readString();
+            List<String> examples = cursor.readStrings();
+            List<String> groupNames = cursor.readStrings();
+            List<OptionMetadata> globalOptions = cursor.readOptions();
+            List<OptionMetadata> groupOptions = cursor.readOptions();
+            List<OptionMetadata> commandOptions = cursor.readOptions();
+
+            ArgumentsMetadata arguments = null;
+            if (cursor.readBoolean()) {
+                arguments = new ArgumentsMetadata(
+                        cursor.readStrings(),
+                        cursor.readString(),
+                        cursor.readString(),
+                        cursor.readBoolean(),
+                        cursor.readAccessors());
+            }
+
+            Set<Accessor> metadataInjections = cursor.readAccessors();
+
+            return new CommandMetadata(
+                    name,
+                    description,
+                    discussion,
+                    examples == null ? null : Lists.newArrayList(examples),
+                    hidden,
+                    globalOptions,
+                    groupOptions,
+                    commandOptions,
+                    arguments,
+                    metadataInjections,
+                    type,
+                    groupNames,
+                    MetadataLoader.loadGroups(type));
+        }
+
+        private String string(int index)
+        {
+            if (index == NULL) {
+                return null;
+            }
+
+            // racy but benign: strings are immutable, so a string decoded twice is merely decoded twice
+            String string = strings[index];
+            if (string == null) {
+                int offset = buffer.getInt(HEADER_SIZE + 4 + 4 * index);
+                byte[] bytes = new byte[buffer.getInt(offset)];
+                ByteBuffer data = buffer.duplicate();
+                data.position(offset + 4);
+                data.get(bytes);
+                string = new String(bytes, StandardCharsets.UTF_8);
+                strings[index] = string;
+            }
+            return string;
+        }
+
+        /**
+         * Reads values sequentially from a position of the snapshot; the buffer itself is only read with absolute
+         * gets so cursors may be used concurrently.
+         */
+        private class Cursor
+        {
+            private int position;
+
+            private Cursor(int position)
+            {
+                this.position = position;
+            }
+
+            private int readInt()
+            {
+                int value = buffer.getInt(position);
+                position += 4;
+                return value;
+            }
+
+            private boolean readBoolean()
+            {
+                return buffer.get(position++) != 0;
+            }
+
+            private String readString()
+            {
+                return string(readInt());
+            }
+
+            private List<String> readStrings()
+            {
+                int count = readInt();
+                if (count == NULL) {
+                    return null;
+                }
+                ImmutableList.Builder<String> values = ImmutableList.builder();
+                for (int i = 0; i < count; i++) {
+                    values.add(readString());
+                }
+                return values.build();
+            }
+
+            private List<OptionMetadata> readOptions()
+            {
+                int count = readInt();
+                ImmutableList.Builder<OptionMetadata> options = ImmutableList.builder();
+                for (int i = 0; i < count; i++) {
+                    options.add(new OptionMetadata(
+                            OPTION_TYPES[buffer.get(position++)],
+                            readStrings(),
+                            readString(),
+                            readString(),
+                            readInt(),
+                            readBoolean(),
+                            readBoolean(),
+                            readStrings(),
+                            readAccessors()));
+                }
+                return options.build();
+            }
+
+            private Set<Accessor> readAccessors()
+            {
+                int count = readInt();
+                ImmutableSet.Builder<Accessor> accessors = ImmutableSet.builder();
+                for (int i = 0; i < count; i++) {
+                    String name = readString();
+                    boolean multiValued = readBoolean();
+                    int length = readInt();
+                    List<String> declaringClassNames = new ArrayList<>(length);
+                    List<String> fieldNames = new ArrayList<>(length);
+                    for (int j = 0; j < length; j++) {
+                        declaringClassNames.add(readString());
+                        fieldNames.add(readString());
+                    }
+                    accessors.add(new Accessor(name, declaringClassNames, fieldNames, multiValued, classLoader));
+                }
+                return accessors.build();
+            }
+
+            private CommandMetadata readCommandReference()
+            {
+                int index = readInt();
+                return index == NULL ? null : commands[index];
+            }
+
+            private List<CommandMetadata> readCommandReferences()
+            {
+                int count = readInt();
+                List<CommandMetadata> references = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    references.add(readCommandReference());
+                }
+                return references;
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package io.airlift.command.model;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable index from option name to {@link OptionMetadata} over one set of options, so the parser can resolve a
+ * token without scanning the option list.  Single character options ({@code -x}) are additionally kept in a table
+ * indexed by the character itself, which lets clustered short options ({@code -xvf}) be resolved without building a
+ * string per character.
+ */
+public class OptionIndex
+{
+    private static final int SHORT_OPTION_TABLE_SIZE = 128;
+
+    private final List<OptionMetadata> options;
+    private final Map<String, OptionMetadata> optionsByName;
+    private final OptionMetadata[] shortOptions = new OptionMetadata[SHORT_OPTION_TABLE_SIZE];
+
+    public OptionIndex(Iterable<OptionMetadata> options)
+    {
+        this.options = ImmutableList.copyOf(options);
+
+        Map<String, OptionMetadata> optionsByName = new LinkedHashMap<>();
+        for (OptionMetadata option : this.options) {
+            for (String name : option.getOptions()) {
+                // first definition wins, like the linear scan this index replaces
+                if (optionsByName.containsKey(name)) {
+                    continue;
+                }
+                optionsByName.put(name, option);
+
+                if (name.length() == 2 && name.charAt(0) == '-' && name.charAt(1) < SHORT_OPTION_TABLE_SIZE) {
+                    shortOptions[name.charAt(1)] = option;
+                }
+            }
+        }
+        this.optionsByName = ImmutableMap.copyOf(optionsByName);
+    }
+
+    public List<OptionMetadata> getOptions()
+    {
+        return options;
+    }
+
+    /**
+     * Returns the option named exactly {@code name} (including its leading dashes), or null if there is none.
+     */
+    public OptionMetadata find(String name)
+    {
+        return optionsByName.get(name);
+    }
+
+    /**
+     * Returns the option named {@code -c}, or null if there is none.
+     */
+    public OptionMetadata findShort(char c)
+    {
+        if (c < SHORT_OPTION_TABLE_SIZE) {
+            return shortOptions[c];
+        }
+        return optionsByName.get("-" + c);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "OptionIndex" + optionsByName.keySet();
+    }
+}
@@ -25,6 +25,8 @@ public class OptionMetadata
     private final boolean hidden;
     private final Set<String> allowedValues;
     private final Set<Accessor> accessors;
+    private final String sortName;
+    private final String lowerCaseSortName;
 
     public OptionMetadata(OptionType optionType,
             Iterable<String> options,
@@ -35,13 +37,26 @@ public class OptionMetadata
             boolean hidden,
             Iterable<String> allowedValues,
             Iterable<Field> path)
+    {
+        this(optionType, options, title, description, arity, required, hidden, allowedValues, ImmutableSet.of(new Accessor(checkPath(path))));
+    }
+
+    public OptionMetadata(OptionType optionType,
+            Iterable<String> options,
+            String title,
+            String description,
+            int arity,
+            boolean required,
+            boolean hidden,
+            Iterable<String> allowedValues,
+            Set<Accessor> accessors)
     {
         Preconditions.checkNotNull(optionType, "optionType is null");
         Preconditions.checkNotNull(options, "options is null");
         Preconditions.checkArgument(!Iterables.isEmpty(options), "options is empty");
         Preconditions.checkNotNull(title, "title is null");
-        Preconditions.checkNotNull(path, "path is null");
-        Preconditions.checkArgument(!Iterables.isEmpty(path), "path is empty");
+        Preconditions.checkNotNull(accessors, "accessors is null");
+        Preconditions.checkArgument(!accessors.isEmpty(), "accessors is empty");
 
         this.optionType = optionType;
         this.options = ImmutableSet.copyOf(options);
@@ -58,7 +73,16 @@ public class OptionMetadata
             this.allowedValues = null;
         }
 
-        this.accessors = ImmutableSet.of(new Accessor(path));
+        this.accessors = ImmutableSet.copyOf(accessors);
+        this.sortName = sortName(this.options);
+        this.lowerCaseSortName = sortName.toLowerCase();
+    }
+
+    private static Iterable<Field> checkPath(Iterable<Field> path)
+    {
+        Preconditions.checkNotNull(path, "path is null");
+        Preconditions.checkArgument(!Iterables.isEmpty(path), "path is empty");
+        return path;
     }
 
     public OptionMetadata(Iterable<OptionMetadata> options)
@@ -89,6 +113,18 @@ public class OptionMetadata
             accessors.addAll(other.getAccessors());
         }
         this.accessors = ImmutableSet.copyOf(accessors);
+        this.sortName = option.sortName;
+        this.lowerCaseSortName = option.lowerCaseSortName;
+    }
+
+    private static String sortName(Set<String> options)
+    {
+        String name = options.iterator().next();
+        int start = 0;
+        while (start < name.length() && name.charAt(start) == '-') {
+            start++;
+        }
+        return name.substring(start);
     }
 
     public OptionType getOptionType()
@@ -141,6 +177,19 @@ public class OptionMetadata
         return accessors;
     }
 
+    /**
+     * Returns the first name of the option without its leading dashes, by which help lists the options.
+     */
+    public String getSortName()
+    {
+        return sortName;
+    }
+
+    public String getLowerCaseSortName()
+    {
+        return lowerCaseSortName;
+    }
+
     public Set<String> getAllowedValues()
     {
         return allowedValues;
@@ -0,0 +1,150 @@
+package io.airlift.command.model;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.primitives.Ints;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Immutable prefix trie over a set of names, for completing a partial token.  The names are kept sorted, so the names
+ * below any node of the trie are a contiguous range of them; {@link #complete(String)} walks the prefix down the trie
+ * and returns that range as a view, in time proportional to the length of the prefix and not to the number of names.
+ * <p>
+ * Nodes and edges are stored in flat arrays, and a node with a single name below it is not expanded any further.
+ */
+public final class PrefixTrie
+{
+    private final List<String> names;
+
+    // names below node n are names[from[n], to[n])
+    private final int[] from;
+    private final int[] to;
+
+    // edges of node n are [firstEdge[n], firstEdge[n + 1]), sorted by label
+    private final int[] firstEdge;
+    private final char[] labels;
+    private final int[] targets;
+
+    public PrefixTrie(Iterable<String> names)
+    {
+        Preconditions.checkNotNull(names, "names is null");
+        this.names = ImmutableSortedSet.copyOf(names).asList();
+
+        List<Integer> from = new ArrayList<>();
+        List<Integer> to = new ArrayList<>();
+        List<Integer> firstEdge = new ArrayList<>();
+        StringBuilder labels = new StringBuilder();
+        List<Integer> targets = new ArrayList<>();
+
+        // nodes are numbered and expanded breadth first, which keeps the edges of each node together
+        Deque<Integer> depths = new ArrayDeque<>();
+        from.add(0);
+        to.add(this.names.size());
+        depths.add(0);
+        for (int node = 0; node < from.size(); node++) {
+            int depth = depths.remove();
+            firstEdge.add(targets.size());
+
+            int start = from.get(node);
+            int end = to.get(node);
+            if (end - start <= 1) {
+                continue;
+            }
+
+            // the name ending at this node, if any, sorts first
+            int i = start;
+            if (this.names.get(i).length() == depth) {
+                i++;
+            }
+            while (i < end) {
+                char label = this.names.get(i).charAt(depth);
+                int j = i + 1;
+                while (j < end && this.names.get(j).charAt(depth) == label) {
+                    j++;
+                }
+
+                labels.append(label);
+                targets.add(from.size());
+                from.add(i);
+                to.add(j);
+                depths.add(depth + 1);
+                i = j;
+            }
+        }
+        firstEdge.add(targets.size());
+
+        this.from = Ints.toArray(from);
+        this.to = Ints.toArray(to);
+        this.firstEdge = Ints.toArray(firstEdge);
+        this.labels = labels.toString().toCharArray();
+        this.targets = Ints.toArray(targets);
+    }
+
+    /**
+     * Returns all names, sorted.
+     */
+    public List<String> getNames()
+    {
+        return names;
+    }
+
+    /**
+     * Returns the names starting with the prefix, sorted.
+     */
+    public List<String> complete(String prefix)
+    {
+        Preconditions.checkNotNull(prefix, "prefix is null");
+
+        int node = 0;
+        for (int depth = 0; depth < prefix.length(); depth++) {
+            if (to[node] - from[node] <= 1) {
+                // a single name is left, it either matches the rest of the prefix or it does not
+                if (to[node] == from[node] || !names.get(from[node]).startsWith(prefix)) {
+                    return ImmutableList.of();
+                }
+                break;
+            }
+
+            node = child(node, prefix.charAt(depth));
+            if (node < 0) {
+                return ImmutableList.of();
+            }
+        }
+        return names.subList(from[node], to[node]);
+    }
+
+    private int child(int node, char label)
+    {
+        int low = firstEdge[node];
+        int high = firstEdge[node + 1] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (labels[middle] < label) {
+                low = middle + 1;
+            }
+            else if (labels[middle] > label) {
+                high = middle - 1;
+            }
+            else {
+                return targets[middle];
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("PrefixTrie");
+        sb.append("{names=").append(names);
+        sb.append(", nodes=").append(from.length);
+        sb.append('}');
+        return sb.toString();
+    }
+}
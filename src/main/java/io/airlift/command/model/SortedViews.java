@@ -0,0 +1,62 @@
+package io.airlift.command.model;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Sorted copies of the lists of a metadata node, such as its options, kept for the comparator last asked for, so the
+ * help of a node rendered again does not sort them again.  Comparators are told apart by identity, and asking for
+ * another comparator drops the copies sorted by the previous one.  Safe to share between threads; threads racing for
+ * a copy may both sort it.
+ */
+final class SortedViews<T>
+{
+    private final int size;
+    private volatile Views<T> views;
+
+    SortedViews(int size)
+    {
+        this.size = size;
+    }
+
+    List<T> get(int view, Comparator<? super T> comparator, Supplier<? extends Iterable<? extends T>> values)
+    {
+        Preconditions.checkNotNull(comparator, "comparator is null");
+
+        Views<T> current = views;
+        if (current == null || current.comparator != comparator) {
+            current = new Views<>(comparator, size);
+            views = current;
+        }
+
+        List<T> sorted = current.sorted.get(view);
+        if (sorted == null) {
+            List<T> list = new ArrayList<>();
+            for (T value : values.get()) {
+                list.add(value);
+            }
+            list.sort(comparator);
+            sorted = ImmutableList.copyOf(list);
+            current.sorted.set(view, sorted);
+        }
+        return sorted;
+    }
+
+    private static final class Views<T>
+    {
+        private final Comparator<? super T> comparator;
+        private final AtomicReferenceArray<List<T>> sorted;
+
+        private Views(Comparator<? super T> comparator, int size)
+        {
+            this.comparator = comparator;
+            this.sorted = new AtomicReferenceArray<>(size);
+        }
+    }
+}
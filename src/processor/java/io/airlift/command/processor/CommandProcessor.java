@@ -0,0 +1,510 @@
+package io.airlift.command.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Annotation processor which reads the {@code @Command}, {@code @Option}, {@code @Arguments} and {@code @Inject}
+ * annotations of every command at compile time and generates a {@code CommandMetadataFactory} for it, so the
+ * metadata can be created at runtime without scanning the fields of the command.
+ * <p>
+ * Commands which can not be referenced from generated code (local classes, private classes, or fields declared by
+ * inaccessible types) and commands with invalid definitions are skipped; those are loaded by reflection as before,
+ * which also reports any error in their definition.
+ * <p>
+ * The processor only depends on the JDK: annotations are read by name so it can run without airline on the
+ * processor path.
+ */
+public class CommandProcessor
+        extends AbstractProcessor
+{
+    private static final String COMMAND = "io.airlift.command.Command";
+    private static final String OPTION = "io.airlift.command.Option";
+    private static final String ARGUMENTS = "io.airlift.command.Arguments";
+    private static final List<String> INJECT = Collections.unmodifiableList(Arrays.asList("javax.inject.Inject", "com.google.inject.Inject"));
+    private static final List<String> METADATA_TYPES = Collections.unmodifiableList(Arrays.asList(
+            "io.airlift.command.model.GlobalMetadata",
+            "io.airlift.command.model.CommandGroupMetadata",
+            "io.airlift.command.model.CommandMetadata",
+            "io.airlift.command.HelpCache"));
+
+    private static final String CLASS_NAME_SUFFIX = "_AirlineMetadata";
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes()
+    {
+        return Collections.singleton(COMMAND);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion()
+    {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
+    {
+        TypeElement commandAnnotation = processingEnv.getElementUtils().getTypeElement(COMMAND);
+        if (commandAnnotation == null) {
+            return false;
+        }
+
+        for (TypeElement type : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(commandAnnotation))) {
+            if (!isReferenceable(type, packageOf(type))) {
+                continue;
+            }
+
+            try {
+                CommandModel command = readCommand(type);
+                if (command != null) {
+                    write(command);
+                }
+            }
+            catch (InvalidDefinitionException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                        "Not generating metadata for " + type.getQualifiedName() + ": " + e.getMessage(),
+                        e.element);
+            }
+            catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Unable to write metadata for " + type.getQualifiedName() + ": " + e.getMessage(),
+                        type);
+            }
+        }
+
+        // other processors may be interested in @Command too
+        return false;
+    }
+
+    private CommandModel readCommand(TypeElement type)
+    {
+        AnnotationMirror command = findAnnotation(type, COMMAND);
+        Map<String, Object> values = values(command);
+
+        CommandModel model = new CommandModel(type, packageOf(type));
+        model.name = (String) values.get("name");
+        model.description = emptyToNull((String) values.get("description"));
+        model.discussion = emptyToNull((String) values.get("discussion"));
+        model.examples = strings(values.get("examples"));
+        model.hidden = (Boolean) values.get("hidden");
+        model.groupNames = strings(values.get("groupNames"));
+
+        if (!readFields(type, model, Collections.<FieldModel>emptyList())) {
+            return null;
+        }
+        return model;
+    }
+
+    /**
+     * Mirrors the field walk of {@code MetadataLoader.loadInjectionMetadata}; returns false if a field on one of the
+     * paths can not be referenced from the generated code.
+     */
+    private boolean readFields(TypeElement type, CommandModel model, List<FieldModel> parentPath)
+    {
+        if (type.getKind().isInterface()) {
+            return true;
+        }
+
+        for (TypeElement cls = type; cls != null && !cls.getQualifiedName().contentEquals("java.lang.Object"); cls = superclass(cls)) {
+            for (VariableElement field : ElementFilter.fieldsIn(cls.getEnclosedElements())) {
+                List<FieldModel> path = new ArrayList<>(parentPath);
+                path.add(new FieldModel(cls, field.getSimpleName().toString()));
+
+                for (String inject : INJECT) {
+                    if (findAnnotation(field, inject) == null) {
+                        continue;
+                    }
+                    if (!isReferenceable(cls, model.packageName)) {
+                        return false;
+                    }
+
+                    TypeMirror fieldType = processingEnv.getTypeUtils().erasure(field.asType());
+                    if (METADATA_TYPES.contains(fieldType.toString())) {
+                        model.metadataInjections.add(path);
+                    }
+                    else {
+                        Element fieldTypeElement = processingEnv.getTypeUtils().asElement(fieldType);
+                        if (!(fieldTypeElement instanceof TypeElement) || !readFields((TypeElement) fieldTypeElement, model, path)) {
+                            return false;
+                        }
+                    }
+                }
+
+                AnnotationMirror option = findAnnotation(field, OPTION);
+                if (option != null) {
+                    if (!isReferenceable(cls, model.packageName)) {
+                        return false;
+                    }
+                    model.options.add(readOption(field, values(option), path));
+                }
+
+                AnnotationMirror arguments = findAnnotation(field, ARGUMENTS);
+                if (arguments != null) {
+                    if (!isReferenceable(cls, model.packageName)) {
+                        return false;
+                    }
+                    model.arguments.add(readArguments(field, values(arguments), path));
+                }
+            }
+        }
+        return true;
+    }
+
+    private OptionModel readOption(VariableElement field, Map<String, Object> values, List<FieldModel> path)
+    {
+        OptionModel option = new OptionModel();
+        option.type = values.get("type").toString();
+        option.title = (String) values.get("title");
+        if (option.title.isEmpty()) {
+            option.title = field.getSimpleName().toString();
+        }
+        option.names = strings(values.get("name"));
+        option.description = (String) values.get("description");
+        option.required = (Boolean) values.get("required");
+        option.hidden = (Boolean) values.get("hidden");
+        option.allowedValues = strings(values.get("allowedValues"));
+        option.path = path;
+
+        int arity = (Integer) values.get("arity");
+        if (arity < 0 && arity != Integer.MIN_VALUE) {
+            throw new InvalidDefinitionException(field, "Invalid arity for option " + option.title);
+        }
+        if (arity >= 0) {
+            option.arity = arity;
+        }
+        else {
+            TypeMirror fieldType = field.asType();
+            boolean isBoolean = fieldType.getKind() == TypeKind.BOOLEAN || fieldType.toString().equals("java.lang.Boolean");
+            option.arity = isBoolean ? 0 : 1;
+        }
+        return option;
+    }
+
+    private ArgumentsModel readArguments(VariableElement field, Map<String, Object> values, List<FieldModel> path)
+    {
+        ArgumentsModel arguments = new ArgumentsModel();
+        arguments.titles = strings(values.get("title"));
+        if (arguments.titles.size() == 1 && arguments.titles.get(0).isEmpty()) {
+            arguments.titles = Collections.singletonList(field.getSimpleName().toString());
+        }
+        arguments.description = (String) values.get("description");
+        arguments.usage = (String) values.get("usage");
+        arguments.required = (Boolean) values.get("required");
+        arguments.path = path;
+        return arguments;
+    }
+
+    private void write(CommandModel command)
+            throws IOException
+    {
+        String binaryName = processingEnv.getElementUtils().getBinaryName(command.type).toString();
+        String className = binaryName.substring(binaryName.lastIndexOf('.') + 1) + CLASS_NAME_SUFFIX;
+        String qualifiedName = command.packageName.isEmpty() ? className : command.packageName + "." + className;
+        String commandType = command.type.getQualifiedName() + ".class";
+
+        try (Writer out = processingEnv.getFiler().createSourceFile(qualifiedName, command.type).openWriter()) {
+            if (!command.packageName.isEmpty()) {
+                out.write("package " + command.packageName + ";\n\n");
+            }
+            out.write("import io.airlift.command.Accessor;\n");
+            out.write("import io.airlift.command.OptionType;\n");
+            out.write("import io.airlift.command.model.ArgumentsMetadata;\n");
+            out.write("import io.airlift.command.model.CommandMetadata;\n");
+            out.write("import io.airlift.command.model.CommandMetadataFactory;\n");
+            out.write("import io.airlift.command.model.MetadataLoader;\n");
+            out.write("import io.airlift.command.model.OptionMetadata;\n");
+            out.write("\n");
+            out.write("import java.util.Arrays;\n");
+            out.write("\n");
+            out.write("/**\n");
+            out.write(" * Generated by " + getClass().getName() + " from {@link " + command.type.getQualifiedName() + "}, do not edit.\n");
+            out.write(" */\n");
+            out.write("public final class " + className + "\n");
+            out.write("        implements CommandMetadataFactory\n");
+            out.write("{\n");
+            out.write("    @Override\n");
+            out.write("    public Class<?> getCommandType()\n");
+            out.write("    {\n");
+            out.write("        return " + commandType + ";\n");
+            out.write("    }\n");
+            out.write("\n");
+            out.write("    @Override\n");
+            out.write("    public CommandMetadata createCommandMetadata()\n");
+            out.write("    {\n");
+            out.write("        return MetadataLoader.loadCommand(" + commandType + ",\n");
+            out.write("                " + literal(command.name) + ",\n");
+            out.write("                " + literal(command.description) + ",\n");
+            out.write("                " + literal(command.discussion) + ",\n");
+            out.write("                " + (command.examples.isEmpty() ? "null" : list(command.examples)) + ",\n");
+            out.write("                " + command.hidden + ",\n");
+            out.write("                " + list(command.groupNames) + ",\n");
+            out.write("                Arrays.<OptionMetadata>asList(");
+            String separator = "";
+            for (OptionModel option : command.options) {
+                out.write(separator + "\n                        new OptionMetadata(OptionType." + option.type + ", "
+                        + list(option.names) + ", "
+                        + literal(option.title) + ", "
+                        + literal(option.description) + ", "
+                        + option.arity + ", "
+                        + option.required + ", "
+                        + option.hidden + ", "
+                        + (option.allowedValues.isEmpty() ? "null" : list(option.allowedValues)) + ", "
+                        + path(option.path) + ")");
+                separator = ",";
+            }
+            out.write("),\n");
+            out.write("                Arrays.<ArgumentsMetadata>asList(");
+            separator = "";
+            for (ArgumentsModel arguments : command.arguments) {
+                out.write(separator + "\n                        new ArgumentsMetadata("
+                        + list(arguments.titles) + ", "
+                        + literal(arguments.description) + ", "
+                        + literal(arguments.usage) + ", "
+                        + arguments.required + ", "
+                        + path(arguments.path) + ")");
+                separator = ",";
+            }
+            out.write("),\n");
+            out.write("                Arrays.<Accessor>asList(");
+            separator = "";
+            for (List<FieldModel> path : command.metadataInjections) {
+                out.write(separator + "\n                        new Accessor(" + path(path) + ")");
+                separator = ",";
+            }
+            out.write("));\n");
+            out.write("    }\n");
+            out.write("}\n");
+        }
+    }
+
+    //
+    // Helpers for reading the annotations and writing the generated source
+    //
+
+    private static AnnotationMirror findAnnotation(Element element, String annotationType)
+    {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationType)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private Map<String, Object> values(AnnotationMirror mirror)
+    {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : processingEnv.getElementUtils().getElementValuesWithDefaults(mirror).entrySet()) {
+            values.put(entry.getKey().getSimpleName().toString(), entry.getValue().getValue());
+        }
+        return values;
+    }
+
+    private static List<String> strings(Object value)
+    {
+        List<String> strings = new ArrayList<>();
+        for (Object item : (List<?>) value) {
+            strings.add((String) ((AnnotationValue) item).getValue());
+        }
+        return strings;
+    }
+
+    private static TypeElement superclass(TypeElement type)
+    {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        return (TypeElement) ((DeclaredType) superclass).asElement();
+    }
+
+    private static String packageOf(Element element)
+    {
+        while (!(element instanceof PackageElement)) {
+            element = element.getEnclosingElement();
+        }
+        return ((PackageElement) element).getQualifiedName().toString();
+    }
+
+    /**
+     * Can the type be named by a class literal in generated code in the given package?
+     */
+    private static boolean isReferenceable(TypeElement type, String packageName)
+    {
+        boolean samePackage = packageOf(type).equals(packageName);
+        for (Element element = type; element instanceof TypeElement; element = element.getEnclosingElement()) {
+            TypeElement current = (TypeElement) element;
+            if (current.getNestingKind() == NestingKind.LOCAL || current.getNestingKind() == NestingKind.ANONYMOUS) {
+                return false;
+            }
+            Set<Modifier> modifiers = current.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE) || (!samePackage && !modifiers.contains(Modifier.PUBLIC))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String path(List<FieldModel> path)
+    {
+        StringBuilder out = new StringBuilder("Arrays.asList(");
+        for (int i = 0; i < path.size(); i++) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            FieldModel field = path.get(i);
+            out.append("MetadataLoader.field(").append(field.declaringType.getQualifiedName()).append(".class, ").append(literal(field.name)).append(")");
+        }
+        return out.append(")").toString();
+    }
+
+    private static String list(List<String> values)
+    {
+        StringBuilder out = new StringBuilder("Arrays.<String>asList(");
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            out.append(literal(values.get(i)));
+        }
+        return out.append(")").toString();
+    }
+
+    private static String literal(String value)
+    {
+        if (value == null) {
+            return "null";
+        }
+
+        StringBuilder out = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c > 0x7e) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    }
+                    else {
+                        out.append(c);
+                    }
+            }
+        }
+        return out.append('"').toString();
+    }
+
+    private static String emptyToNull(String value)
+    {
+        return value.isEmpty() ? null : value;
+    }
+
+    //
+    // Compile time model of a command
+    //
+
+    private static class CommandModel
+    {
+        private final TypeElement type;
+        private final String packageName;
+        private String name;
+        private String description;
+        private String discussion;
+        private List<String> examples;
+        private boolean hidden;
+        private List<String> groupNames;
+        private final List<OptionModel> options = new ArrayList<>();
+        private final List<ArgumentsModel> arguments = new ArrayList<>();
+        private final List<List<FieldModel>> metadataInjections = new ArrayList<>();
+
+        private CommandModel(TypeElement type, String packageName)
+        {
+            this.type = type;
+            this.packageName = packageName;
+        }
+    }
+
+    private static class OptionModel
+    {
+        private String type;
+        private List<String> names;
+        private String title;
+        private String description;
+        private int arity;
+        private boolean required;
+        private boolean hidden;
+        private List<String> allowedValues;
+        private List<FieldModel> path;
+    }
+
+    private static class ArgumentsModel
+    {
+        private List<String> titles;
+        private String description;
+        private String usage;
+        private boolean required;
+        private List<FieldModel> path;
+    }
+
+    private static class FieldModel
+    {
+        private final TypeElement declaringType;
+        private final String name;
+
+        private FieldModel(TypeElement declaringType, String name)
+        {
+            this.declaringType = declaringType;
+            this.name = name;
+        }
+    }
+
+    private static class InvalidDefinitionException
+            extends RuntimeException
+    {
+        private final Element element;
+
+        private InvalidDefinitionException(Element element, String message)
+        {
+            super(message);
+            this.element = element;
+        }
+    }
+}
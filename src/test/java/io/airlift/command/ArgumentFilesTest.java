@@ -0,0 +1,103 @@
+package io.airlift.command;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.command.Git.RemoteAdd;
+import io.airlift.command.args.ArgsArityString;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class ArgumentFilesTest
+{
+    @Test
+    public void argumentsAreReadFromFile()
+            throws IOException
+    {
+        Path file = argumentFile("# the remote to add\n" +
+                "remote add\t-t master\r\n" +
+                "'origin' \"git@github.com:airlift/airline.git\"\n");
+        try {
+            Cli.CliBuilder<Runnable> builder = Cli.<Runnable>builder("git")
+                    .withArgumentFiles();
+            builder.withGroup("remote")
+                    .withCommand(RemoteAdd.class);
+
+            RemoteAdd remoteAdd = (RemoteAdd) builder.build().parse("-v", "@" + file);
+            Assert.assertTrue(remoteAdd.verbose);
+            Assert.assertEquals(remoteAdd.branch, "master");
+            Assert.assertEquals(remoteAdd.remote, ImmutableList.of("origin", "git@github.com:airlift/airline.git"));
+        }
+        finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void quotingIsShellLike()
+            throws IOException
+    {
+        Path file = argumentFile("'a b' \"c \\\"d\\\" \\e\" f\\ g h\\\nI '' j#k 'l'\"m\" # the end\n  ");
+        try {
+            ArgsArityString args = SingleCommand.singleCommand(ArgsArityString.class).withArgumentFiles().parse("@" + file);
+            Assert.assertEquals(args.rest, ImmutableList.of("a b", "c \"d\" \\e", "f g", "hI", "", "j#k", "lm"));
+        }
+        finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void argumentFilesAreDisabledByDefault()
+    {
+        ArgsArityString args = SingleCommand.singleCommand(ArgsArityString.class).parse("@file");
+        Assert.assertEquals(args.rest, ImmutableList.of("@file"));
+    }
+
+    @Test
+    public void nestingIsLimited()
+            throws IOException
+    {
+        Path inner = argumentFile("c");
+        Path outer = argumentFile("a @" + inner + " b");
+        try {
+            ArgsArityString args = SingleCommand.singleCommand(ArgsArityString.class).withArgumentFiles(2).parse("@" + outer, "d");
+            Assert.assertEquals(args.rest, ImmutableList.of("a", "c", "b", "d"));
+
+            try {
+                SingleCommand.singleCommand(ArgsArityString.class).withArgumentFiles(1).parse("@" + outer);
+                Assert.fail("expected the nested argument file to be rejected");
+            }
+            catch (ParseException expected) {
+            }
+        }
+        finally {
+            Files.delete(outer);
+            Files.delete(inner);
+        }
+    }
+
+    @Test(expectedExceptions = ParseException.class, expectedExceptionsMessageRegExp = "Unterminated quote .*")
+    public void unterminatedQuotesAreRejected()
+            throws IOException
+    {
+        Path file = argumentFile("'a");
+        try {
+            SingleCommand.singleCommand(ArgsArityString.class).withArgumentFiles().parse("@" + file);
+        }
+        finally {
+            Files.delete(file);
+        }
+    }
+
+    private static Path argumentFile(String content)
+            throws IOException
+    {
+        Path file = Files.createTempFile("args", ".txt");
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,127 @@
+package io.airlift.command;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.command.Cli.CliBuilder;
+import io.airlift.command.Git.Add;
+import io.airlift.command.Git.RemoteAdd;
+import io.airlift.command.Git.RemoteShow;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+public class BatchParseTest
+{
+    @Test
+    public void invalidCommandLinesDoNotEndTheBatch()
+    {
+        List<List<String>> commandLines = ImmutableList.<List<String>>of(
+                ImmutableList.of("add", "-i", "A.java"),
+                ImmutableList.of("remote", "add", "-t"),
+                ImmutableList.of("remote", "show", "origin"));
+
+        ParseStatistics statistics = new ParseStatistics();
+        List<ParseResult<Runnable>> results = git().parseBatch(commandLines, statistics).collect(Collectors.toList());
+
+        Assert.assertEquals(results.size(), 3);
+        Assert.assertTrue(results.get(0).isSuccess());
+        Assert.assertTrue(((Add) results.get(0).getCommand()).interactive);
+
+        Assert.assertFalse(results.get(1).isSuccess());
+        Assert.assertNull(results.get(1).getCommand());
+        Assert.assertTrue(results.get(1).getError() instanceof ParseOptionMissingValueException);
+        Assert.assertEquals(results.get(1).getArguments(), commandLines.get(1));
+
+        Assert.assertEquals(((RemoteShow) results.get(2).getCommand()).remote, "origin");
+
+        Assert.assertEquals(statistics.getParsed(), 2);
+        Assert.assertEquals(statistics.getFailed(), 1);
+        Assert.assertEquals(statistics.getTotal(), 3);
+    }
+
+    @Test
+    public void failingCommandLinesDoNotEndTheBatch()
+    {
+        Cli<Runnable> parser = Cli.<Runnable>builder("draw")
+                .withCommands(Point.class)
+                .build();
+
+        // a cluster of short options can not end with an option taking two values
+        List<List<String>> commandLines = ImmutableList.<List<String>>of(
+                ImmutableList.of("point", "-vp", "1", "2"),
+                ImmutableList.of("point", "-v", "-p", "1", "2"));
+
+        List<ParseResult<Runnable>> results = parser.parseBatch(commandLines).collect(Collectors.toList());
+
+        Assert.assertEquals(results.size(), 2);
+        Assert.assertFalse(results.get(0).isSuccess());
+        Assert.assertTrue(results.get(0).getError().getCause() instanceof UnsupportedOperationException);
+
+        Point point = (Point) results.get(1).getCommand();
+        Assert.assertTrue(point.verbose);
+        Assert.assertEquals(point.coordinates, ImmutableList.of("1", "2"));
+    }
+
+    @Test
+    public void parallelBatch()
+    {
+        List<List<String>> commandLines = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            commandLines.add(i % 10 == 0 ? ImmutableList.of("remote", "add", "origin", "-t") : ImmutableList.of("remote", "add", "-t", "branch-" + i, "origin"));
+        }
+
+        ConcurrentLinkedQueue<ParseResult<Runnable>> results = new ConcurrentLinkedQueue<>();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ParseStatistics statistics = git().parseBatch(commandLines, pool, results::add);
+            Assert.assertEquals(statistics.getParsed(), 9000);
+            Assert.assertEquals(statistics.getFailed(), 1000);
+        }
+        finally {
+            pool.shutdown();
+        }
+
+        Assert.assertEquals(results.size(), 10000);
+        for (ParseResult<Runnable> result : results) {
+            if (result.isSuccess()) {
+                Assert.assertEquals(((RemoteAdd) result.getCommand()).branch, result.getArguments().get(3));
+            }
+            else {
+                Assert.assertTrue(result.getError() instanceof ParseOptionMissingValueException);
+            }
+        }
+    }
+
+    @Command(name = "point")
+    public static class Point
+            implements Runnable
+    {
+        @Option(name = "-v")
+        public boolean verbose;
+
+        @Option(name = "-p", arity = 2)
+        public List<String> coordinates;
+
+        @Override
+        public void run()
+        {
+        }
+    }
+
+    private static Cli<Runnable> git()
+    {
+        CliBuilder<Runnable> builder = Cli.<Runnable>builder("git")
+                .withDefaultCommand(Help.class)
+                .withCommands(Help.class, Add.class);
+
+        builder.withGroup("remote")
+                .withDefaultCommand(RemoteShow.class)
+                .withCommands(RemoteShow.class, RemoteAdd.class);
+
+        return builder.build();
+    }
+}
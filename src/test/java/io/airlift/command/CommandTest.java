@@ -25,6 +25,8 @@ import io.airlift.command.args.Args2;
 import io.airlift.command.args.ArgsArityString;
 import io.airlift.command.args.ArgsBooleanArity;
 import io.airlift.command.args.ArgsBooleanArity0;
+import io.airlift.command.args.ArgsConverter;
+import io.airlift.command.args.ArgsConverter.HostAndPort;
 import io.airlift.command.args.ArgsEnum;
 import io.airlift.command.args.ArgsInherited;
 import io.airlift.command.args.ArgsMultipleUnparsed;
@@ -43,6 +45,7 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.math.BigDecimal;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.List;
 
@@ -372,6 +375,38 @@ public class CommandTest
         singleCommandParser(ArgsEnum.class).parse("-choice", "A");
     }
 
+    public void pathArgs()
+    {
+        ArgsConverter args = singleCommandParser(ArgsConverter.class).parse("ArgsConverter", "-path", "/tmp/file.txt");
+        Assert.assertEquals(args.path, Paths.get("/tmp/file.txt"));
+    }
+
+    public void registeredConverter()
+    {
+        Cli<ArgsConverter> parser = Cli.<ArgsConverter>builder("parser")
+                .withCommand(ArgsConverter.class)
+                .withTypeConverter(HostAndPort.class, value -> {
+                    int separator = value.lastIndexOf(':');
+                    return new HostAndPort(value.substring(0, separator), Integer.parseInt(value.substring(separator + 1)));
+                })
+                .build();
+
+        ArgsConverter args = parser.parse("ArgsConverter", "-address", "localhost:8080");
+        Assert.assertEquals(args.address.host, "localhost");
+        Assert.assertEquals(args.address.port, 8080);
+    }
+
+    @Test(expectedExceptions = ParseOptionConversionException.class)
+    public void registeredConverterFail()
+    {
+        Cli<ArgsConverter> parser = Cli.<ArgsConverter>builder("parser")
+                .withCommand(ArgsConverter.class)
+                .withTypeConverter(HostAndPort.class, value -> new HostAndPort(value, Integer.parseInt(value)))
+                .build();
+
+        parser.parse("ArgsConverter", "-address", "localhost");
+    }
+
     @Test(expectedExceptions = ParseException.class)
     public void shouldThrowIfUnknownOption()
     {
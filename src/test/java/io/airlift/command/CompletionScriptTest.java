@@ -0,0 +1,91 @@
+package io.airlift.command;
+
+import io.airlift.command.Cli.CliBuilder;
+import io.airlift.command.Git.Add;
+import io.airlift.command.Git.RemoteAdd;
+import io.airlift.command.Git.RemoteShow;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import static io.airlift.command.CompletionShell.BASH;
+import static io.airlift.command.CompletionShell.FISH;
+import static io.airlift.command.CompletionShell.ZSH;
+
+public class CompletionScriptTest
+{
+    @Test
+    public void bash()
+    {
+        String script = new CompletionScript().generate(git().getMetadata(), BASH);
+
+        assertContains(script, "        '|') REPLY='remote help add log completion -v' ;;\n");
+        assertContains(script, "        'remote|') REPLY='show add' ;;\n");
+        assertContains(script, "        'remote|add') REPLY='-t --' ;;\n");
+        assertContains(script, "        'remote|add|-t') REPLY=1 ;;\n");
+        assertContains(script, "        '|log|--format') REPLY='oneline full' ;;\n");
+        assertContains(script, "        'remote') REPLY='show' ;;\n");
+        assertContains(script, "        '') REPLY='help' ;;\n");
+        assertContains(script, "    COMPREPLY=($(compgen -f -- \"$cur\"))\n");
+        assertContains(script, "complete -F _git_complete 'git'\n");
+    }
+
+    @Test
+    public void zsh()
+    {
+        String script = new CompletionScript("suggest").generate(git().getMetadata(), ZSH);
+
+        assertContains(script, "        'remote|show|-n') REPLY=0 ;;\n");
+        assertContains(script, "_git_suggest_reply=$(\"${words[1]}\" 'suggest' \"${(@)words[2,CURRENT-1]}\" 2>/dev/null)\n");
+        assertContains(script, "compdef _git_complete 'git'\n");
+    }
+
+    @Test
+    public void fish()
+    {
+        String script = new CompletionScript().generate(git().getMetadata(), FISH);
+
+        assertContains(script, "set -g __git_word_keys '|' 'remote|show' 'remote|add' 'remote|' ");
+        assertContains(script, "set -g __git_groups 'remote'\n");
+        assertContains(script, "set -g __git_default_keys 'remote' ''\n");
+        assertContains(script, "complete -c 'git' -f -a '(__git_complete)'\n");
+    }
+
+    @Test
+    public void command()
+    {
+        CompletionCommand command = (CompletionCommand) git().parse("completion", "--suggest-command", "suggest", "fish");
+        Assert.assertEquals(command.suggestCommand, "suggest");
+        Assert.assertEquals(command.shell.get(0), FISH);
+    }
+
+    private static void assertContains(String script, String expected)
+    {
+        Assert.assertTrue(script.contains(expected), "Expected script to contain <" + expected + ">:\n" + script);
+    }
+
+    private static Cli<Runnable> git()
+    {
+        CliBuilder<Runnable> builder = Cli.<Runnable>builder("git")
+                .withDefaultCommand(Help.class)
+                .withCommands(Help.class, Add.class, Log.class, CompletionCommand.class);
+
+        builder.withGroup("remote")
+                .withDefaultCommand(RemoteShow.class)
+                .withCommands(RemoteShow.class, RemoteAdd.class);
+
+        return builder.build();
+    }
+
+    @Command(name = "log", description = "Show commit logs")
+    public static class Log
+            implements Runnable
+    {
+        @Option(name = "--format", description = "Format of the log", allowedValues = {"oneline", "full"})
+        public String format;
+
+        @Override
+        public void run()
+        {
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package io.airlift.command;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.command.Cli.CliBuilder;
+import io.airlift.command.Git.Add;
+import io.airlift.command.Git.RemoteAdd;
+import io.airlift.command.Git.RemoteShow;
+import io.airlift.command.model.GlobalMetadata;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class CompletionServerTest
+{
+    @Test
+    public void unixDomainSocket()
+            throws IOException
+    {
+        assertAnswers(true);
+    }
+
+    @Test
+    public void loopbackFallback()
+            throws IOException
+    {
+        assertAnswers(false);
+    }
+
+    @Test
+    public void alreadyListening()
+            throws IOException
+    {
+        Path path = Files.createTempDirectory("completion").resolve("git");
+        try (CompletionServer server = new CompletionServer(git(), path, false)) {
+            server.start();
+            try (CompletionServer other = new CompletionServer(git(), path, false)) {
+                other.bind();
+                Assert.fail("Expected IOException");
+            }
+            catch (IOException e) {
+                Assert.assertEquals(e.getMessage(), "A completion server is already listening at " + path);
+            }
+        }
+    }
+
+    @Test
+    public void stalePortFileIsReplaced()
+            throws IOException
+    {
+        Path path = Files.createTempDirectory("completion").resolve("git");
+        Files.write(path, "1\n".getBytes(UTF_8));
+        try (CompletionServer server = new CompletionServer(git(), path, false)) {
+            server.start();
+            Assert.assertEquals(CompletionServer.suggest(path, ImmutableList.of("remote")), ImmutableList.of("show", "add"));
+        }
+    }
+
+    @Test
+    public void otherFilesAreKept()
+            throws IOException
+    {
+        Path path = Files.createTempDirectory("completion").resolve("bashrc");
+        Files.write(path, "alias ll='ls -l'\n".getBytes(UTF_8));
+        try (CompletionServer server = new CompletionServer(git(), path, false)) {
+            server.bind();
+            Assert.fail("Expected IOException");
+        }
+        catch (IOException e) {
+            Assert.assertEquals(e.getMessage(), path + " is neither a completion server socket nor a port file");
+        }
+        Assert.assertEquals(new String(Files.readAllBytes(path), UTF_8), "alias ll='ls -l'\n");
+    }
+
+    @Test
+    public void stalledClientIsDropped()
+            throws IOException
+    {
+        GlobalMetadata metadata = git();
+        Path path = Files.createTempDirectory("completion").resolve("git");
+        try (CompletionServer server = new CompletionServer(metadata, path, false, 1, 200)) {
+            server.start();
+
+            // holds the only thread without ever sending a newline, until the server drops it
+            int port = Integer.parseInt(new String(Files.readAllBytes(path), UTF_8).trim());
+            try (SocketChannel stalled = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port))) {
+                Assert.assertEquals(CompletionServer.suggest(path, ImmutableList.of("remote")), ImmutableList.of("show", "add"));
+                Assert.assertEquals(stalled.read(ByteBuffer.allocate(1)), -1);
+            }
+        }
+    }
+
+    private static void assertAnswers(boolean unixDomainSockets)
+            throws IOException
+    {
+        GlobalMetadata metadata = git();
+        Path path = Files.createTempDirectory("completion").resolve("git");
+        try (CompletionServer server = new CompletionServer(metadata, path, unixDomainSockets)) {
+            server.start();
+
+            Assert.assertEquals(CompletionServer.suggest(path, ImmutableList.of()),
+                    ImmutableList.copyOf(SuggestCommand.suggest(metadata, ImmutableList.of())));
+            Assert.assertEquals(CompletionServer.suggest(path, ImmutableList.of("remote")), ImmutableList.of("show", "add"));
+            Assert.assertEquals(CompletionServer.suggest(path, ImmutableList.of("remote", "add")),
+                    ImmutableList.copyOf(SuggestCommand.suggest(metadata, ImmutableList.of("remote", "add"))));
+        }
+        Assert.assertFalse(Files.exists(path));
+    }
+
+    private static GlobalMetadata git()
+    {
+        CliBuilder<Runnable> builder = Cli.<Runnable>builder("git")
+                .withCommands(Help.class, Add.class, CompletionServerCommand.class);
+
+        builder.withGroup("remote")
+                .withDefaultCommand(RemoteShow.class)
+                .withCommands(RemoteShow.class, RemoteAdd.class);
+
+        return builder.build().getMetadata();
+    }
+}
@@ -0,0 +1,81 @@
+package io.airlift.command;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.command.Cli.CliBuilder;
+import io.airlift.command.Git.Add;
+import io.airlift.command.Git.RemoteAdd;
+import io.airlift.command.Git.RemoteShow;
+import io.airlift.command.model.CommandGroupMetadata;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ConcurrentParseTest
+{
+    @Test
+    public void sharedCliParsesConcurrently()
+            throws Exception
+    {
+        final Cli<Runnable> parser = git();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                final String branch = "branch-" + i;
+                futures.add(executor.submit(new Callable<Void>()
+                {
+                    @Override
+                    public Void call()
+                    {
+                        for (int j = 0; j < 100; j++) {
+                            RemoteAdd remoteAdd = (RemoteAdd) parser.parse("-v", "remote", "add", "-t", branch, "origin");
+                            Assert.assertTrue(remoteAdd.verbose);
+                            Assert.assertEquals(remoteAdd.branch, branch);
+                            Assert.assertEquals(remoteAdd.remote, ImmutableList.of("origin"));
+
+                            StringBuilder out = new StringBuilder();
+                            Help.help(parser.getMetadata(), ImmutableList.of("remote", "add"), UsageFormat.MARKDOWN, out);
+                            Assert.assertTrue(out.toString().startsWith("---\n"));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void groupCommandsAreImmutable()
+    {
+        CommandGroupMetadata remote = git().getMetadata().getCommandGroup("remote");
+        remote.getCommands().clear();
+    }
+
+    private static Cli<Runnable> git()
+    {
+        CliBuilder<Runnable> builder = Cli.<Runnable>builder("git")
+                .withDescription("the stupid content tracker")
+                .withDefaultCommand(Help.class)
+                .withCommands(Help.class, Add.class);
+
+        builder.withGroup("remote")
+                .withDescription("Manage set of tracked repositories")
+                .withDefaultCommand(RemoteShow.class)
+                .withCommands(RemoteShow.class, RemoteAdd.class);
+
+        return builder.build();
+    }
+}
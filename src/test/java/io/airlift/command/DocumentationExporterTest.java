@@ -0,0 +1,101 @@
+package io.airlift.command;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.command.Cli.CliBuilder;
+import io.airlift.command.Git.Add;
+import io.airlift.command.Git.RemoteAdd;
+import io.airlift.command.Git.RemoteShow;
+import io.airlift.command.model.GlobalMetadata;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class DocumentationExporterTest
+{
+    @Test
+    public void exportsEveryPage()
+            throws IOException
+    {
+        GlobalMetadata git = git("the stupid content tracker", true).build().getMetadata();
+        Path directory = Files.createTempDirectory("docs");
+
+        List<Path> written = new DocumentationExporter(git, 60).export(directory, EnumSet.of(UsageFormat.MARKDOWN, UsageFormat.HTML), false, new ForkJoinPool(4));
+
+        Assert.assertEquals(fileNames(written), ImmutableList.of(
+                "git-help.html", "git-add.html", "git-remote-show.html", "git-remote-add.html",
+                "git.md", "git-help.md", "git-add.md", "git-remote.md", "git-remote-show.md", "git-remote-add.md"));
+
+        StringBuilder expected = new StringBuilder();
+        Help.help(git, ImmutableList.of("remote", "add"), UsageFormat.HTML, 60, expected);
+        Assert.assertEquals(new String(Files.readAllBytes(directory.resolve("git-remote-add.html")), UTF_8), expected.toString());
+
+        expected = new StringBuilder();
+        Help.help(git, ImmutableList.of("git"), UsageFormat.MARKDOWN, 60, expected);
+        Assert.assertEquals(new String(Files.readAllBytes(directory.resolve("git.md")), UTF_8), expected.toString());
+    }
+
+    @Test
+    public void exportsChangedPages()
+            throws IOException
+    {
+        Path directory = Files.createTempDirectory("docs");
+        EnumSet<UsageFormat> formats = EnumSet.of(UsageFormat.TEXT);
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        GlobalMetadata git = git("the stupid content tracker", true).build().getMetadata();
+        Assert.assertEquals(new DocumentationExporter(git).export(directory, formats, true, pool).size(), 6);
+        Assert.assertEquals(new DocumentationExporter(git).export(directory, formats, true, pool), ImmutableList.of());
+
+        // only the page of the CLI shows its description
+        git = git("the information manager from hell", true).build().getMetadata();
+        Assert.assertEquals(fileNames(new DocumentationExporter(git).export(directory, formats, true, pool)), ImmutableList.of("git.txt"));
+
+        // a missing file is written again
+        Files.delete(directory.resolve("git-add.txt"));
+        Assert.assertEquals(fileNames(new DocumentationExporter(git).export(directory, formats, true, pool)), ImmutableList.of("git-add.txt"));
+
+        // a removed command changes the pages listing it, and its file is deleted
+        git = git("the information manager from hell", false).build().getMetadata();
+        Assert.assertEquals(fileNames(new DocumentationExporter(git).export(directory, formats, true, pool)), ImmutableList.of("git.txt", "git-remote.txt"));
+        Assert.assertFalse(Files.exists(directory.resolve("git-remote-add.txt")));
+
+        // everything without incremental
+        Assert.assertEquals(new DocumentationExporter(git).export(directory, formats, false, pool).size(), 5);
+    }
+
+    private static List<String> fileNames(List<Path> files)
+    {
+        List<String> fileNames = new ArrayList<>();
+        for (Path file : files) {
+            fileNames.add(file.getFileName().toString());
+        }
+        return fileNames;
+    }
+
+    private static CliBuilder<Runnable> git(String description, boolean remoteAdd)
+    {
+        CliBuilder<Runnable> builder = Cli.<Runnable>builder("git")
+                .withDescription(description)
+                .withDefaultCommand(Help.class)
+                .withCommands(Help.class, Add.class);
+
+        builder.withGroup("remote")
+                .withDescription("Manage set of tracked repositories")
+                .withDefaultCommand(RemoteShow.class)
+                .withCommands(RemoteShow.class);
+        if (remoteAdd) {
+            builder.withGroup("remote").withCommand(RemoteAdd.class);
+        }
+
+        return builder;
+    }
+}
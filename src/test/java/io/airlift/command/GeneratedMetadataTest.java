@@ -0,0 +1,61 @@
+package io.airlift.command;
+
+import io.airlift.command.ParametersDelegateTest.CombinedAndNestedDelegates;
+import io.airlift.command.args.Args1;
+import io.airlift.command.args.ArgsInherited;
+import io.airlift.command.args.ArgsPrivate;
+import io.airlift.command.args.ArgsRequired;
+import io.airlift.command.command.CommandWithGroupsAnnotation;
+import io.airlift.command.model.CommandMetadata;
+import io.airlift.command.model.CommandMetadataFactory;
+import io.airlift.command.model.MetadataLoader;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class GeneratedMetadataTest
+{
+    @DataProvider
+    public Object[][] commands()
+    {
+        return new Object[][] {
+                new Object[] {Args1.class},
+                new Object[] {ArgsInherited.class},
+                new Object[] {ArgsPrivate.class},
+                new Object[] {ArgsRequired.class},
+                new Object[] {CombinedAndNestedDelegates.class},
+                new Object[] {CommandWithGroupsAnnotation.class},
+                new Object[] {Git.RemoteShow.class},
+        };
+    }
+
+    @Test(dataProvider = "commands")
+    public void generatedMetadataMatchesAnnotations(Class<?> commandType)
+            throws Exception
+    {
+        Class<?> factoryType = Class.forName(commandType.getName() + CommandMetadataFactory.CLASS_NAME_SUFFIX);
+        CommandMetadataFactory factory = (CommandMetadataFactory) factoryType.getConstructor().newInstance();
+        Assert.assertEquals(factory.getCommandType(), commandType);
+
+        CommandMetadata generated = factory.createCommandMetadata();
+        CommandMetadata reflected = MetadataLoader.loadCommandFromAnnotations(commandType);
+        Assert.assertEquals(generated.toString(), reflected.toString());
+        Assert.assertEquals(generated.getGroupNames(), reflected.getGroupNames());
+        Assert.assertEquals(generated.getGroups(), reflected.getGroups());
+    }
+
+    @Test
+    public void localCommandsAreLoadedByReflection()
+    {
+        @Command(name = "local")
+        class Local
+        {
+            @Option(name = "-v")
+            public boolean verbose;
+        }
+
+        CommandMetadata command = MetadataLoader.loadCommand(Local.class);
+        Assert.assertEquals(command.getName(), "local");
+        Assert.assertEquals(command.getCommandOptions().size(), 1);
+    }
+}
@@ -0,0 +1,88 @@
+package io.airlift.command;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.command.Cli.CliBuilder;
+import io.airlift.command.Git.Add;
+import io.airlift.command.Git.RemoteAdd;
+import io.airlift.command.Git.RemoteShow;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public class HelpCacheTest
+{
+    @Test
+    public void rendersLikeHelp()
+    {
+        Cli<Runnable> git = git().build();
+        HelpCache cache = git.getHelpCache();
+
+        for (List<String> commandNames : ImmutableList.<List<String>>of(
+                ImmutableList.of(),
+                ImmutableList.of("git"),
+                ImmutableList.of("add"),
+                ImmutableList.of("remote"),
+                ImmutableList.of("remote", "add"))) {
+            StringBuilder expected = new StringBuilder();
+            Help.help(git.getMetadata(), commandNames, UsageFormat.MARKDOWN, 40, expected);
+            Assert.assertEquals(cache.help(commandNames, UsageFormat.MARKDOWN, 40), expected.toString());
+        }
+    }
+
+    @Test
+    public void cachesPerCommand()
+    {
+        HelpCache cache = git().build().getHelpCache();
+
+        String help = cache.help(ImmutableList.of("remote", "add"), UsageFormat.TEXT);
+        Assert.assertSame(cache.help(ImmutableList.of("remote", "add", "origin"), UsageFormat.TEXT), help);
+        cache.help(ImmutableList.of("remote", "add"), UsageFormat.TEXT, 40);
+        Assert.assertEquals(cache.size(), 2);
+
+        try {
+            cache.help(ImmutableList.of("remote", "rename"), UsageFormat.TEXT);
+            Assert.fail("Expected UnsupportedOperationException");
+        }
+        catch (UnsupportedOperationException e) {
+            Assert.assertEquals(e.getMessage(), "Unknown command remote rename");
+        }
+        Assert.assertEquals(cache.size(), 2);
+    }
+
+    @Test
+    public void prewarm()
+    {
+        Cli<Runnable> git = git().withPrewarmedHelp(UsageFormat.TEXT, UsageFormat.HTML).build();
+
+        // summary, help, add, remote show and remote add in both formats, and the CLI and remote group in text
+        Assert.assertEquals(git.getHelpCache().size(), 1 + 4 * 2 + 2);
+
+        HelpCache cache = new HelpCache(git.getMetadata());
+        cache.prewarm(EnumSet.of(UsageFormat.MARKDOWN), 60, ForkJoinPool.commonPool());
+        Assert.assertEquals(cache.size(), 1 + 4 + 2);
+    }
+
+    @Test
+    public void injected()
+    {
+        Cli<Runnable> git = git().build();
+        Help help = (Help) git.parse("help", "remote");
+        Assert.assertSame(help.helpCache, git.getHelpCache());
+    }
+
+    private static CliBuilder<Runnable> git()
+    {
+        CliBuilder<Runnable> builder = Cli.<Runnable>builder("git")
+                .withDefaultCommand(Help.class)
+                .withCommands(Help.class, Add.class);
+
+        builder.withGroup("remote")
+                .withDefaultCommand(RemoteShow.class)
+                .withCommands(RemoteShow.class, RemoteAdd.class);
+
+        return builder;
+    }
+}
@@ -34,10 +34,16 @@ import io.airlift.command.args.GlobalOptionsHidden;
 import io.airlift.command.args.OptionsHidden;
 import io.airlift.command.args.OptionsRequired;
 import io.airlift.command.command.CommandRemove;
+import io.airlift.command.model.GlobalMetadata;
 
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.List;
+
 import static io.airlift.command.Cli.buildCli;
 import static io.airlift.command.SingleCommand.singleCommand;
 
@@ -420,6 +426,284 @@ public class HelpTest
         }
     }
 
+    public void testHelpCommandFormat()
+    {
+        Cli<Runnable> gitParser = Cli.<Runnable>builder("git")
+                                     .withDescription("the stupid content tracker")
+                                     .withDefaultCommand(Help.class)
+                                     .withCommands(Help.class, Add.class)
+                                     .build();
+
+        Help help = (Help) gitParser.parse("help", "--format", "MARKDOWN", "add");
+        Assert.assertEquals(help.format, UsageFormat.MARKDOWN);
+        Assert.assertEquals(help.command, ImmutableList.of("add"));
+
+        Assert.assertEquals(((Help) gitParser.parse("help", "add")).format, UsageFormat.TEXT);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testGitMdFormat()
+    {
+        CliBuilder<Runnable> builder = Cli.<Runnable>builder("git")
+                                          .withDescription("the stupid content tracker")
+                                          .withDefaultCommand(Help.class)
+                                          .withCommands(Help.class, Add.class);
+
+        builder.withGroup("remote")
+               .withDescription("Manage set of tracked repositories")
+               .withMarkdownDescription("Commands for managing tracked repositories. Read more about [Remote Management](../../git/with-it).")
+               .withDefaultCommand(RemoteShow.class)
+               .withCommands(RemoteShow.class, RemoteAdd.class);
+
+        Cli<Runnable> gitParser = builder.build();
+
+        StringBuilder out = new StringBuilder();
+
+        Help.help(gitParser.getMetadata(), ImmutableList.of("git"), UsageFormat.MARKDOWN, out);
+        Assert.assertEquals(out.toString(),
+                            "---\n" +
+                            "layout: default\n" +
+                            "title: git\n" +
+                            "has_children: true\n" +
+                            "has_toc: false\n" +
+                            "description: This chapter contains details of all git CLI commands.\n" +
+                            "---\n" +
+                            "\n" +
+                            "# git\n" +
+                            "\n" +
+                            "the stupid content tracker\n" +
+                            "\n" +
+                            "Below you'll find all command groups in the `git` client. Select any of the command groups in the table below to view the specific commands in that command group.\n" +
+                            "\n" +
+                            "| Command Group | Description |\n" +
+                            "|---------------|-------------|\n" +
+                            "| [`remote`](./remote) | Manage set of tracked repositories |\n");
+
+        out = new StringBuilder();
+        Help.help(gitParser.getMetadata(), ImmutableList.of("add"), UsageFormat.MARKDOWN, out);
+        Assert.assertEquals(out.toString(),
+                            "---\n" +
+                            "layout: default\n" +
+                            "title: null add\n" +
+                            "grand_parent: Stardog Admin CLI Reference\n" +
+                            "parent: null\n" +
+                            "description: 'Add file contents to the index'\n" +
+                            "---\n" +
+                            "\n" +
+                            "#  `git null add` \n" +
+                            "## Description\n" +
+                            "Add file contents to the index\n" +
+                            "## Usage\n" +
+                            "`git [ -v ] add [ -i ] [--] [ <patterns>... ]`\n" +
+                            "{: .fs-5}\n" +
+                            "## Options\n" +
+                            "\n" +
+                            "Name, shorthand | Description \n" +
+                            "---|---\n" +
+                            "`-i` | Add modified contents interactively.\n" +
+                            "`-v` | Verbose mode\n" +
+                            "`--` | This option can be used to separate command-line options from the list of argument(s). (Useful when an argument might be mistaken for a command-line option)\n" +
+                            "`<patterns>` | Patterns of files to be added\n");
+
+        out = new StringBuilder();
+        Help.help(gitParser.getMetadata(), ImmutableList.of("remote"), UsageFormat.MARKDOWN, out);
+        Assert.assertEquals(out.toString(),
+                            "---\n" +
+                            "layout: default\n" +
+                            "title: remote\n" +
+                            "parent: Stardog Admin CLI Reference\n" +
+                            "has_children: true\n" +
+                            "has_toc: false\n" +
+                            "description: This page contains the commands available in the git remote command group.\n" +
+                            "---\n" +
+                            "\n" +
+                            "# `remote`\n" +
+                            "\n" +
+                            "Commands for managing tracked repositories. Read more about [Remote Management](../../git/with-it).\n" +
+                            "\n" +
+                            "\n" +
+                            "Select any of the commands to view their manual page.\n" +
+                            "\n" +
+                            "| Command | Description |\n" +
+                            "|---------|-------------|\n" +
+                            "| [`remote add`](./remote-add) | Adds a remote |\n" +
+                            "| [`remote show`](./remote-show) | Gives some information about the remote <name> |\n");
+
+        out = new StringBuilder();
+        Help.help(gitParser.getMetadata(), ImmutableList.of("remote", "add"), UsageFormat.MARKDOWN, out);
+        Assert.assertEquals(out.toString(),
+                            "---\n" +
+                            "layout: default\n" +
+                            "title: remote add\n" +
+                            "grand_parent: Stardog Admin CLI Reference\n" +
+                            "parent: remote\n" +
+                            "description: 'Adds a remote'\n" +
+                            "---\n" +
+                            "\n" +
+                            "#  `git remote add` \n" +
+                            "## Description\n" +
+                            "Adds a remote\n" +
+                            "## Usage\n" +
+                            "`git [ -v ] remote  add [ -t <branch> ] [--] [ <name> <url>... ]`\n" +
+                            "{: .fs-5}\n" +
+                            "## Options\n" +
+                            "\n" +
+                            "Name, shorthand | Description \n" +
+                            "---|---\n" +
+                            "`-t <branch>` | Track only a specific branch\n" +
+                            "`-v` | Verbose mode\n" +
+                            "`--` | This option can be used to separate command-line options from the list of argument(s). (Useful when an argument might be mistaken for a command-line option)\n" +
+                            "`<name> <url>` | Name and URL of remote repository to add\n"
+        );
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testGitHtmlFormat()
+    {
+        CliBuilder<Runnable> builder = Cli.<Runnable>builder("git")
+                                          .withDescription("the stupid content tracker")
+                                          .withDefaultCommand(Help.class)
+                                          .withCommands(Help.class, Add.class);
+
+        builder.withGroup("remote")
+               .withDescription("Manage set of tracked repositories")
+               .withDefaultCommand(RemoteShow.class)
+               .withCommands(RemoteShow.class, RemoteAdd.class);
+
+        Cli<Runnable> gitParser = builder.build();
+
+        StringBuilder out = new StringBuilder();
+        Help.help(gitParser.getMetadata(), ImmutableList.of("add"), UsageFormat.HTML, out);
+        Assert.assertEquals(out.toString(),
+                            "<html>\n" +
+                            "<head>\n" +
+                            "<link href=\"css/bootstrap.min.css\" rel=\"stylesheet\" media=\"screen\">\n" +
+                            "</head>\n" +
+                            "<style>\n" +
+                            "    body { margin: 50px; }\n" +
+                            "</style>\n" +
+                            "<body>\n" +
+                            "<hr/>\n" +
+                            "<h1 class=\"text-info\">git null add Manual Page\n" +
+                            "<hr/>\n" +
+                            "<h1 class=\"text-info\">NAME</h1>\n" +
+                            "<br/>\n" +
+                            "<div class=\"row\"><div class=\"span8 offset1\">git null add &mdash;Add file contents to the index</div>\n" +
+                            "</div>\n" +
+                            "<br/>\n" +
+                            "<h1 class=\"text-info\">SYNOPSIS</h1>\n" +
+                            "<br/>\n" +
+                            "<div class=\"row\">\n" +
+                            "<div class=\"span8 offset1\">\n" +
+                            "git [ -v ] add [ -i ] [--] [ &lt;patterns&gt;... ]</div>\n" +
+                            "</div>\n" +
+                            "<br/>\n" +
+                            "<h1 class=\"text-info\">OPTIONS</h1>\n" +
+                            "<br/>\n" +
+                            "<div class=\"row\">\n" +
+                            "<div class=\"span8 offset1\">\n" +
+                            "-i</div>\n" +
+                            "</div>\n" +
+                            "<div class=\"row\">\n" +
+                            "<div class=\"span8 offset2\">\n" +
+                            "Add modified contents interactively.</div>\n" +
+                            "</div>\n" +
+                            "<div class=\"row\">\n" +
+                            "<div class=\"span8 offset1\">\n" +
+                            "-v</div>\n" +
+                            "</div>\n" +
+                            "<div class=\"row\">\n" +
+                            "<div class=\"span8 offset2\">\n" +
+                            "Verbose mode</div>\n" +
+                            "</div>\n" +
+                            "<div class=\"row\">\n" +
+                            "<div class=\"span8 offset1\">\n" +
+                            "--\n" +
+                            "</div>\n" +
+                            "</div>\n" +
+                            "<div class=\"row\">\n" +
+                            "<div class=\"span8 offset2\">\n" +
+                            "This option can be used to separate command-line options from the list of argument, (useful when arguments might be mistaken for command-line options\n" +
+                            "</div>\n" +
+                            "</div>\n" +
+                            "<div class=\"row\">\n" +
+                            "<div class=\"span8 offset1\">\n" +
+                            "&lt;patterns&gt;</div>\n" +
+                            "</div>\n" +
+                            "<div class=\"row\">\n" +
+                            "<div class=\"span8 offset2\">\n" +
+                            "Patterns of files to be added</div>\n" +
+                            "</div>\n" +
+                            "</body>\n" +
+                            "</html>\n");
+
+        out = new StringBuilder();
+        Help.help(gitParser.getMetadata(), ImmutableList.of("remote", "add"), UsageFormat.HTML, out);
+        Assert.assertEquals(out.toString(),
+                            "<html>\n" +
+                            "<head>\n" +
+                            "<link href=\"css/bootstrap.min.css\" rel=\"stylesheet\" media=\"screen\">\n" +
+                            "</head>\n" +
+                            "<style>\n" +
+                            "    body { margin: 50px; }\n" +
+                            "</style>\n" +
+                            "<body>\n" +
+                            "<hr/>\n" +
+                            "<h1 class=\"text-info\">git remote add Manual Page\n" +
+                            "<hr/>\n" +
+                            "<h1 class=\"text-info\">NAME</h1>\n" +
+                            "<br/>\n" +
+                            "<div class=\"row\"><div class=\"span8 offset1\">git remote add &mdash;Adds a remote</div>\n" +
+                            "</div>\n" +
+                            "<br/>\n" +
+                            "<h1 class=\"text-info\">SYNOPSIS</h1>\n" +
+                            "<br/>\n" +
+                            "<div class=\"row\">\n" +
+                            "<div class=\"span8 offset1\">\n" +
+                            "git [ -v ] remote  add [ -t &lt;branch&gt; ] [--] [ &lt;name&gt; &lt;url&gt;... ]</div>\n" +
+                            "</div>\n" +
+                            "<br/>\n" +
+                            "<h1 class=\"text-info\">OPTIONS</h1>\n" +
+                            "<br/>\n" +
+                            "<div class=\"row\">\n" +
+                            "<div class=\"span8 offset1\">\n" +
+                            "-t &lt;branch&gt;</div>\n" +
+                            "</div>\n" +
+                            "<div class=\"row\">\n" +
+                            "<div class=\"span8 offset2\">\n" +
+                            "Track only a specific branch</div>\n" +
+                            "</div>\n" +
+                            "<div class=\"row\">\n" +
+                            "<div class=\"span8 offset1\">\n" +
+                            "-v</div>\n" +
+                            "</div>\n" +
+                            "<div class=\"row\">\n" +
+                            "<div class=\"span8 offset2\">\n" +
+                            "Verbose mode</div>\n" +
+                            "</div>\n" +
+                            "<div class=\"row\">\n" +
+                            "<div class=\"span8 offset1\">\n" +
+                            "--\n" +
+                            "</div>\n" +
+                            "</div>\n" +
+                            "<div class=\"row\">\n" +
+                            "<div class=\"span8 offset2\">\n" +
+                            "This option can be used to separate command-line options from the list of argument, (useful when arguments might be mistaken for command-line options\n" +
+                            "</div>\n" +
+                            "</div>\n" +
+                            "<div class=\"row\">\n" +
+                            "<div class=\"span8 offset1\">\n" +
+                            "&lt;name&gt; &lt;url&gt;</div>\n" +
+                            "</div>\n" +
+                            "<div class=\"row\">\n" +
+                            "<div class=\"span8 offset2\">\n" +
+                            "Name and URL of remote repository to add</div>\n" +
+                            "</div>\n" +
+                            "</body>\n" +
+                            "</html>\n"
+        );
+    }
+
     @Test
     public void testArgs1()
     {
@@ -838,6 +1122,98 @@ public class HelpTest
                 "\n");
     }
 
+    @Test
+    public void testStreaming()
+            throws IOException
+    {
+        GlobalMetadata git = streamingGit();
+        for (UsageFormat format : UsageFormat.values()) {
+            for (List<String> commandNames : ImmutableList.<List<String>>of(ImmutableList.of("add"), ImmutableList.of("remote", "add"))) {
+                StringBuilder expected = new StringBuilder();
+                Help.help(git, commandNames, format, 60, expected);
+
+                StringWriter out = new StringWriter();
+                Help.help(git, commandNames, format, 60, out);
+                Assert.assertEquals(out.toString(), expected.toString());
+            }
+        }
+    }
+
+    @Test
+    public void testManual()
+            throws IOException
+    {
+        GlobalMetadata git = streamingGit();
+
+        StringBuilder expected = new StringBuilder();
+        for (List<String> commandNames : ImmutableList.<List<String>>of(
+                ImmutableList.of("git"),
+                ImmutableList.of("help"),
+                ImmutableList.of("add"),
+                ImmutableList.of("remote"),
+                ImmutableList.of("remote", "show"),
+                ImmutableList.of("remote", "add"))) {
+            Help.help(git, commandNames, UsageFormat.MARKDOWN, expected);
+        }
+        StringWriter out = new StringWriter();
+        Help.manual(git, UsageFormat.MARKDOWN, 79, out);
+        Assert.assertEquals(out.toString(), expected.toString());
+
+        // no pages for the CLI and its groups in HTML
+        expected = new StringBuilder();
+        for (List<String> commandNames : ImmutableList.<List<String>>of(
+                ImmutableList.of("help"),
+                ImmutableList.of("add"),
+                ImmutableList.of("remote", "show"),
+                ImmutableList.of("remote", "add"))) {
+            Help.help(git, commandNames, UsageFormat.HTML, expected);
+        }
+        out = new StringWriter();
+        Help.manual(git, UsageFormat.HTML, 79, out);
+        Assert.assertEquals(out.toString(), expected.toString());
+    }
+
+    @Test(expectedExceptions = IOException.class, expectedExceptionsMessageRegExp = "disk full")
+    public void testStreamingFailure()
+            throws IOException
+    {
+        Writer full = new Writer()
+        {
+            @Override
+            public void write(char[] buffer, int offset, int length)
+                    throws IOException
+            {
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public void flush()
+            {
+            }
+
+            @Override
+            public void close()
+            {
+            }
+        };
+        Help.help(streamingGit(), ImmutableList.of("remote", "add"), UsageFormat.TEXT, 79, full);
+    }
+
+    private static GlobalMetadata streamingGit()
+    {
+        CliBuilder<Runnable> builder = Cli.<Runnable>builder("git")
+                .withDescription("the stupid content tracker")
+                .withDefaultCommand(Help.class)
+                .withCommands(Help.class, Add.class);
+
+        builder.withGroup("remote")
+                .withDescription("Manage set of tracked repositories")
+                .withDefaultCommand(RemoteShow.class)
+                .withCommands(RemoteShow.class, RemoteAdd.class);
+
+        return builder.build().getMetadata();
+    }
+
     @Test
     public void testUnknownCommand() {
         CliBuilder<Object> builder = Cli.builder("test")
@@ -0,0 +1,115 @@
+package io.airlift.command;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import io.airlift.command.Cli.CliBuilder;
+import io.airlift.command.Git.Add;
+import io.airlift.command.Git.RemoteAdd;
+import io.airlift.command.Git.RemoteShow;
+import io.airlift.command.args.Args1;
+import io.airlift.command.args.ArgsArityString;
+import io.airlift.command.model.GlobalMetadata;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static com.google.common.collect.Lists.newArrayList;
+
+public class IncrementalParserTest
+{
+    private static final Splitter SPACE = Splitter.on(' ');
+
+    @Test
+    public void typingMatchesFullParse()
+    {
+        GlobalMetadata git = git();
+        assertTyping(git, "-v remote add -t master origin git://example.com/repo.git");
+        assertTyping(git, "remote -v show -n origin");
+        assertTyping(git, "add -i -- -v remote file");
+        assertTyping(git, "commit -m message");
+
+        GlobalMetadata arity = Cli.<ArgsArityString>builder("test").withCommand(ArgsArityString.class).build().getMetadata();
+        assertTyping(arity, "ArgsArityString -pairs a -pairs b c -pairs d -- e");
+    }
+
+    @Test
+    public void editingMatchesFullParse()
+    {
+        GlobalMetadata git = git();
+        IncrementalParser parser = new IncrementalParser(git);
+
+        assertUpdate(parser, git, "remote add -t master origin");
+        assertUpdate(parser, git, "remote show -t master origin");
+        assertUpdate(parser, git, "remote show");
+        assertUpdate(parser, git, "add remote show");
+        assertUpdate(parser, git, "");
+        assertUpdate(parser, git, "remote add -t master origin");
+    }
+
+    @Test
+    public void suggest()
+    {
+        IncrementalParser parser = new IncrementalParser(git());
+
+        Assert.assertEquals(newArrayList(parser.update(ImmutableList.of("remote")).suggest()), newArrayList("show", "add"));
+        Assert.assertEquals(parser.getLocation(), Context.GROUP);
+
+        Assert.assertEquals(newArrayList(parser.update(ImmutableList.of("remote", "add")).suggest()), newArrayList("-t", "--"));
+        Assert.assertEquals(parser.getCommand().getName(), "add");
+    }
+
+    @Test
+    public void invalidTokenIsParsedAgain()
+    {
+        GlobalMetadata metadata = Cli.<Args1>builder("test").withCommand(Args1.class).build().getMetadata();
+        IncrementalParser parser = new IncrementalParser(metadata);
+
+        try {
+            parser.update(ImmutableList.of("Args1", "-log", "x"));
+            Assert.fail("Expected ParseOptionConversionException");
+        }
+        catch (ParseOptionConversionException expected) {
+        }
+        Assert.assertEquals(parser.getTokens(), ImmutableList.of("Args1"));
+
+        assertUpdate(parser, metadata, "Args1 -log 3 file");
+    }
+
+    private static void assertTyping(GlobalMetadata metadata, String line)
+    {
+        IncrementalParser parser = new IncrementalParser(metadata);
+
+        // type the line a character at a time, then delete it again
+        for (int i = 0; i <= line.length(); i++) {
+            assertUpdate(parser, metadata, line.substring(0, i));
+        }
+        for (int i = line.length(); i >= 0; i--) {
+            assertUpdate(parser, metadata, line.substring(0, i));
+        }
+    }
+
+    private static void assertUpdate(IncrementalParser parser, GlobalMetadata metadata, String line)
+    {
+        List<String> tokens = line.isEmpty() ? ImmutableList.<String>of() : SPACE.splitToList(line);
+
+        ParseState expected = new Parser().parse(metadata, tokens);
+        ParseState actual = parser.update(tokens).getParseState();
+
+        Assert.assertEquals(actual.toString(), expected.toString(), line);
+        Assert.assertEquals(parser.getLocation(), expected.getLocation(), line);
+    }
+
+    private static GlobalMetadata git()
+    {
+        CliBuilder<Runnable> builder = Cli.<Runnable>builder("git")
+                .withDefaultCommand(Help.class)
+                .withCommands(Help.class, Add.class);
+
+        builder.withGroup("remote")
+                .withDefaultCommand(RemoteShow.class)
+                .withCommands(RemoteShow.class, RemoteAdd.class);
+
+        return builder.build().getMetadata();
+    }
+}
@@ -0,0 +1,115 @@
+package io.airlift.command;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.command.Cli.CliBuilder;
+import io.airlift.command.Git.Add;
+import io.airlift.command.Git.RemoteAdd;
+import io.airlift.command.Git.RemoteShow;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LazyCommandLoadingTest
+{
+    @Test
+    public void onlyInvokedCommandIsLoaded()
+    {
+        AtomicInteger addLoads = new AtomicInteger();
+        AtomicInteger showLoads = new AtomicInteger();
+
+        CliBuilder<Runnable> builder = Cli.<Runnable>builder("git")
+                .withDefaultCommand(Help.class)
+                .withCommand(Help.class)
+                .withCommand("add", () -> {
+                    addLoads.incrementAndGet();
+                    return Add.class;
+                });
+
+        builder.withGroup("remote")
+                .withCommand("show", () -> {
+                    showLoads.incrementAndGet();
+                    return RemoteShow.class;
+                })
+                .withCommand("add", RemoteAdd.class.getName());
+
+        Cli<Runnable> parser = builder.build();
+        Assert.assertEquals(addLoads.get(), 0);
+        Assert.assertEquals(showLoads.get(), 0);
+
+        Add add = (Add) parser.parse("add", "-i", "A.java");
+        Assert.assertTrue(add.interactive);
+        Assert.assertEquals(add.patterns, ImmutableList.of("A.java"));
+
+        RemoteAdd remoteAdd = (RemoteAdd) parser.parse("remote", "add", "-t", "master", "origin");
+        Assert.assertEquals(remoteAdd.branch, "master");
+        Assert.assertEquals(remoteAdd.remote, ImmutableList.of("origin"));
+
+        parser.parse("add", "B.java");
+        Assert.assertEquals(addLoads.get(), 1);
+        Assert.assertEquals(showLoads.get(), 0);
+    }
+
+    @Test
+    public void lazyLoadingMatchesEagerLoading()
+    {
+        Cli<Runnable> eager = git(false);
+        Cli<Runnable> lazy = git(true);
+
+        RemoteAdd remoteAdd = (RemoteAdd) lazy.parse("remote", "add", "-t", "master", "origin");
+        Assert.assertEquals(remoteAdd.branch, "master");
+
+        Assert.assertEquals(lazy.getMetadata().getOptions(), eager.getMetadata().getOptions());
+
+        for (ImmutableList<String> command : ImmutableList.of(ImmutableList.<String>of(), ImmutableList.of("add"), ImmutableList.of("remote", "add"))) {
+            StringBuilder expected = new StringBuilder();
+            Help.help(eager.getMetadata(), command, expected);
+
+            StringBuilder actual = new StringBuilder();
+            Help.help(lazy.getMetadata(), command, actual);
+
+            Assert.assertEquals(actual.toString(), expected.toString());
+        }
+    }
+
+    @Test
+    public void lazyCommandsContributeGlobalOptions()
+    {
+        Runnable eager = git(false).parse("-v", "add", "A.java");
+        Runnable lazy = git(true).parse("-v", "add", "A.java");
+
+        Assert.assertEquals(lazy.getClass(), eager.getClass());
+        Assert.assertEquals(lazy.getClass(), Add.class);
+        Assert.assertTrue(((Add) lazy).verbose);
+        Assert.assertEquals(((Add) lazy).patterns, ((Add) eager).patterns);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = ".*registered as plus but is named add")
+    public void registeredNameMustMatchCommand()
+    {
+        Cli.<Runnable>builder("git")
+                .withCommand("plus", () -> Add.class)
+                .build()
+                .parse("plus");
+    }
+
+    private static Cli<Runnable> git(boolean lazyLoading)
+    {
+        CliBuilder<Runnable> builder = Cli.<Runnable>builder("git")
+                .withDescription("the stupid content tracker")
+                .withDefaultCommand(Help.class)
+                .withCommands(Help.class,
+                        Add.class);
+
+        builder.withGroup("remote")
+                .withDescription("Manage set of tracked repositories")
+                .withDefaultCommand(RemoteShow.class)
+                .withCommands(RemoteShow.class,
+                        RemoteAdd.class);
+
+        if (lazyLoading) {
+            builder.withLazyLoading();
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,181 @@
+package io.airlift.command;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.command.Cli.CliBuilder;
+import io.airlift.command.Git.Add;
+import io.airlift.command.Git.RemoteAdd;
+import io.airlift.command.Git.RemoteShow;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class MetadataSnapshotTest
+{
+    private static Cli<Runnable> git()
+    {
+        CliBuilder<Runnable> builder = Cli.<Runnable>builder("git")
+                .withDescription("the stupid content tracker")
+                .withDefaultCommand(Help.class)
+                .withCommands(Help.class,
+                        Add.class);
+
+        builder.withGroup("remote")
+                .withDescription("Manage set of tracked repositories")
+                .withDefaultCommand(RemoteShow.class)
+                .withCommands(RemoteShow.class,
+                        RemoteAdd.class);
+
+        return builder.build();
+    }
+
+    @Test
+    public void parseFromSnapshot()
+            throws IOException
+    {
+        Path snapshot = Files.createTempFile("airline", ".snapshot");
+        try {
+            git().writeSnapshot(snapshot);
+
+            Cli<Runnable> parser = Cli.fromSnapshot(snapshot);
+
+            RemoteAdd remoteAdd = (RemoteAdd) parser.parse("-v", "remote", "add", "-t", "master", "origin", "git@github.com:airlift/airline.git");
+            Assert.assertTrue(remoteAdd.verbose);
+            Assert.assertEquals(remoteAdd.branch, "master");
+            Assert.assertEquals(remoteAdd.remote, ImmutableList.of("origin", "git@github.com:airlift/airline.git"));
+
+            RemoteShow remoteShow = (RemoteShow) parser.parse("remote", "-n", "origin");
+            Assert.assertTrue(remoteShow.noQuery);
+            Assert.assertEquals(remoteShow.remote, "origin");
+
+            Add add = (Add) parser.parse("add", "-i", "A.java");
+            Assert.assertTrue(add.interactive);
+            Assert.assertEquals(add.patterns, ImmutableList.of("A.java"));
+        }
+        finally {
+            Files.delete(snapshot);
+        }
+    }
+
+    @Test
+    public void helpFromSnapshot()
+            throws IOException
+    {
+        Path snapshot = Files.createTempFile("airline", ".snapshot");
+        try {
+            Cli<Runnable> git = git();
+            git.writeSnapshot(snapshot);
+
+            Cli<Runnable> parser = Cli.fromSnapshot(snapshot);
+
+            for (String command : new String[] {"add", "remote"}) {
+                StringBuilder expected = new StringBuilder();
+                Help.help(git.getMetadata(), ImmutableList.of(command), expected);
+
+                StringBuilder actual = new StringBuilder();
+                Help.help(parser.getMetadata(), ImmutableList.of(command), actual);
+
+                Assert.assertEquals(actual.toString(), expected.toString());
+            }
+
+            StringBuilder expected = new StringBuilder();
+            Help.help(git.getMetadata(), Collections.<String>emptyList(), expected);
+
+            StringBuilder actual = new StringBuilder();
+            Help.help(parser.getMetadata(), Collections.<String>emptyList(), actual);
+
+            Assert.assertEquals(actual.toString(), expected.toString());
+        }
+        finally {
+            Files.delete(snapshot);
+        }
+    }
+
+    @Test
+    public void buildFromSnapshot()
+            throws IOException
+    {
+        Path snapshot = Files.createTempFile("airline", ".snapshot");
+        Path arguments = Files.createTempFile("airline", ".args");
+        try {
+            git().writeSnapshot(snapshot);
+            Files.write(arguments, "remote add -t master origin".getBytes(UTF_8));
+
+            Cli<Runnable> parser = Cli.<Runnable>builder("git")
+                    .fromSnapshot(snapshot)
+                    .withTypeConverter(String.class, value -> value.toUpperCase(Locale.ENGLISH))
+                    .withArgumentFiles()
+                    .withPrewarmedHelp(UsageFormat.TEXT)
+                    .build();
+            Assert.assertTrue(parser.getHelpCache().size() > 0);
+
+            RemoteAdd remoteAdd = (RemoteAdd) parser.parse("@" + arguments);
+            Assert.assertEquals(remoteAdd.branch, "MASTER");
+            Assert.assertEquals(remoteAdd.remote, ImmutableList.of("ORIGIN"));
+        }
+        finally {
+            Files.delete(snapshot);
+            Files.delete(arguments);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void snapshotHoldsTheCommands()
+            throws IOException
+    {
+        Path snapshot = Files.createTempFile("airline", ".snapshot");
+        try {
+            git().writeSnapshot(snapshot);
+
+            Cli.<Runnable>builder("git")
+                    .fromSnapshot(snapshot)
+                    .withCommand(Add.class)
+                    .build();
+        }
+        finally {
+            Files.delete(snapshot);
+        }
+    }
+
+    @Test
+    public void onlyInvokedCommandIsLoaded()
+            throws IOException
+    {
+        Path snapshot = Files.createTempFile("airline", ".snapshot");
+        try {
+            git().writeSnapshot(snapshot);
+
+            final Set<String> loaded = new HashSet<>();
+            ClassLoader classLoader = new ClassLoader(getClass().getClassLoader())
+            {
+                @Override
+                protected Class<?> loadClass(String name, boolean resolve)
+                        throws ClassNotFoundException
+                {
+                    loaded.add(name);
+                    return super.loadClass(name, resolve);
+                }
+            };
+
+            Cli<Runnable> parser = Cli.fromSnapshot(snapshot, classLoader);
+            Assert.assertTrue(loaded.isEmpty(), "classes loaded before parsing: " + loaded);
+
+            parser.parse("remote", "add", "origin", "git@github.com:airlift/airline.git");
+            Assert.assertTrue(loaded.contains(RemoteAdd.class.getName()));
+            Assert.assertFalse(loaded.contains(RemoteShow.class.getName()));
+            Assert.assertFalse(loaded.contains(Add.class.getName()));
+            Assert.assertFalse(loaded.contains(Help.class.getName()));
+        }
+        finally {
+            Files.delete(snapshot);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package io.airlift.command;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.command.Cli.CliBuilder;
+import io.airlift.command.Git.Add;
+import io.airlift.command.Git.RemoteAdd;
+import io.airlift.command.Git.RemoteShow;
+import io.airlift.command.ParseStateBuilder.Mark;
+import io.airlift.command.model.CommandMetadata;
+import io.airlift.command.model.GlobalMetadata;
+import io.airlift.command.model.MetadataLoader;
+import io.airlift.command.model.OptionMetadata;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+public class ParsedOptionsTest
+{
+    @Test
+    public void primitivesAreUnboxed()
+    {
+        CommandMetadata command = MetadataLoader.loadCommand(Primitives.class);
+        ParseState state = new Parser().parseCommand(command, ImmutableList.of(
+                "-v", "--count", "42", "--size=-7", "-r1.5", "--enabled", "true", "--boxed", "3", "--list", "1", "--list", "2"));
+
+        ParsedOptions parsedOptions = state.getOptionValues();
+        Assert.assertEquals(parsedOptions.size(), 8);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(parsedOptions.isUnboxed(i), parsedOptions.getOption(i).getTitle());
+        }
+        Assert.assertFalse(parsedOptions.isUnboxed(5));
+        Assert.assertEquals(parsedOptions.getValue(1), 42);
+        Assert.assertEquals(parsedOptions.getValue(2), -7L);
+        Assert.assertEquals(parsedOptions.getValue(3), 1.5);
+        Assert.assertEquals(state.getParsedOptions().values(), ImmutableList.<Object>of(true, 42, -7L, 1.5, true, 3, 1, 2));
+
+        Primitives primitives = ParserUtil.injectOptions(new Primitives(), command, parsedOptions, state.getArguments(), null);
+        Assert.assertTrue(primitives.verbose);
+        Assert.assertEquals(primitives.count, 42);
+        Assert.assertEquals(primitives.size, -7L);
+        Assert.assertEquals(primitives.ratio, 1.5);
+        Assert.assertTrue(primitives.enabled);
+        Assert.assertEquals(primitives.boxed, Integer.valueOf(3));
+        Assert.assertEquals(primitives.list, ImmutableList.of(1, 2));
+    }
+
+    @Test
+    public void injectsLikeTheMultimap()
+    {
+        CommandMetadata command = MetadataLoader.loadCommand(Primitives.class);
+        ParseState state = new Parser().parseCommand(command, ImmutableList.of("--count", "1", "--ratio", "2", "-v"));
+
+        Primitives expected = ParserUtil.injectOptions(new Primitives(),
+                command.getAllOptions(),
+                state.getParsedOptions(),
+                command.getArguments(),
+                state.getArguments(),
+                command.getMetadataInjections(),
+                null);
+        Primitives actual = ParserUtil.injectOptions(new Primitives(), command, state.getOptionValues(), state.getArguments(), null);
+        Assert.assertEquals(actual.count, expected.count);
+        Assert.assertEquals(actual.ratio, expected.ratio);
+        Assert.assertEquals(actual.verbose, expected.verbose);
+    }
+
+    @Test
+    public void recordsOrdinalsOfTheCommand()
+    {
+        CliBuilder<Runnable> builder = Cli.<Runnable>builder("git")
+                .withCommands(Help.class, Add.class);
+        builder.withGroup("remote")
+                .withCommands(RemoteShow.class, RemoteAdd.class);
+        GlobalMetadata git = builder.build().getMetadata();
+        CommandMetadata remoteAdd = git.getCommandGroup("remote").getCommand("add");
+        CommandMetadata add = findCommand(git, "add");
+        OptionMetadata verbose = git.getOptions().get(0);
+        OptionMetadata track = remoteAdd.getCommandOptions().get(0);
+
+        // the global option is parsed before the command is known
+        ParseStateBuilder builderState = new ParseStateBuilder();
+        ParseState state = new Parser().parse(git, ImmutableList.of("-v", "remote", "add", "-t", "main", "origin"), builderState);
+        ParsedOptions parsedOptions = state.getOptionValues();
+        Assert.assertSame(parsedOptions.getCommand(), remoteAdd);
+        Assert.assertEquals(parsedOptions.getOrdinal(0, remoteAdd), remoteAdd.getOptionOrdinal(verbose));
+        Assert.assertEquals(parsedOptions.getOrdinal(1, remoteAdd), remoteAdd.getOptionOrdinal(track));
+        Assert.assertTrue(parsedOptions.containsKey(verbose));
+        Assert.assertTrue(parsedOptions.containsOrdinal(remoteAdd.getOptionOrdinal(track)));
+        Assert.assertEquals(parsedOptions.indexOfUnknownOption(), -1);
+
+        // another command does not have -t
+        ParsedOptions rebound = state.withCommand(add).getOptionValues();
+        Assert.assertSame(rebound.getCommand(), add);
+        Assert.assertTrue(rebound.containsKey(verbose));
+        Assert.assertTrue(rebound.containsKey(track));
+        Assert.assertEquals(rebound.indexOfUnknownOption(), 1);
+        Assert.assertSame(parsedOptions.getCommand(), remoteAdd);
+
+        // rolling back drops the ordinals of the dropped values
+        builderState.reset().pushContext(Context.GLOBAL).withOptionValue(verbose, Boolean.TRUE);
+        Mark mark = builderState.mark();
+        builderState.withCommand(remoteAdd).withOptionValue(track, "main");
+        builderState.rollback(mark);
+        ParsedOptions rolledBack = builderState.build().getOptionValues();
+        Assert.assertNull(rolledBack.getCommand());
+        Assert.assertEquals(rolledBack.size(), 1);
+        Assert.assertTrue(rolledBack.containsKey(verbose));
+        Assert.assertFalse(rolledBack.containsKey(track));
+    }
+
+    @Test
+    public void registeredConverterIsUsed()
+    {
+        Primitives primitives = Cli.<Primitives>builder("test")
+                .withTypeConverter(int.class, value -> Integer.parseInt(value, 16))
+                .withCommand(Primitives.class)
+                .build()
+                .parse("primitives", "--count", "ff");
+        Assert.assertEquals(primitives.count, 255);
+    }
+
+    @Test(expectedExceptions = ParseOptionConversionException.class, expectedExceptionsMessageRegExp = ".*count.*int.*")
+    public void invalidInt()
+    {
+        SingleCommand.singleCommand(Primitives.class).parse("--count", "99999999999");
+    }
+
+    @Test(expectedExceptions = ParseException.class, expectedExceptionsMessageRegExp = "Maximum of one argument allowed.*")
+    public void repeatedPrimitive()
+    {
+        SingleCommand.singleCommand(Primitives.class).parse("--count", "1", "--count", "2");
+    }
+
+    private static CommandMetadata findCommand(GlobalMetadata global, String name)
+    {
+        for (CommandMetadata command : global.getDefaultGroupCommands()) {
+            if (command.getName().equals(name)) {
+                return command;
+            }
+        }
+        throw new AssertionError("no command " + name);
+    }
+
+    @Command(name = "primitives")
+    public static class Primitives
+    {
+        @Option(name = "-v")
+        public boolean verbose;
+
+        @Option(name = "--count")
+        public int count;
+
+        @Option(name = "--size")
+        public long size;
+
+        @Option(name = {"-r", "--ratio"})
+        public double ratio;
+
+        @Option(name = "--enabled", arity = 1)
+        public boolean enabled;
+
+        @Option(name = "--boxed")
+        public Integer boxed;
+
+        @Option(name = "--list")
+        public List<Integer> list;
+    }
+}
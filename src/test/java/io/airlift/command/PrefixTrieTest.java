@@ -0,0 +1,100 @@
+package io.airlift.command;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Ordering;
+import io.airlift.command.Cli.CliBuilder;
+import io.airlift.command.Git.Add;
+import io.airlift.command.Git.RemoteAdd;
+import io.airlift.command.Git.RemoteShow;
+import io.airlift.command.model.GlobalMetadata;
+import io.airlift.command.model.PrefixTrie;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static com.google.common.collect.Lists.newArrayList;
+
+public class PrefixTrieTest
+{
+    @Test
+    public void complete()
+    {
+        PrefixTrie trie = new PrefixTrie(ImmutableList.of("remote", "rebase", "-v", "--verbose", "add", "re", "remote"));
+
+        Assert.assertEquals(trie.getNames(), ImmutableList.of("--verbose", "-v", "add", "re", "rebase", "remote"));
+        Assert.assertEquals(trie.complete(""), trie.getNames());
+        Assert.assertEquals(trie.complete("re"), ImmutableList.of("re", "rebase", "remote"));
+        Assert.assertEquals(trie.complete("rem"), ImmutableList.of("remote"));
+        Assert.assertEquals(trie.complete("remote"), ImmutableList.of("remote"));
+        Assert.assertEquals(trie.complete("remotes"), ImmutableList.of());
+        Assert.assertEquals(trie.complete("-"), ImmutableList.of("--verbose", "-v"));
+        Assert.assertEquals(trie.complete("x"), ImmutableList.of());
+        Assert.assertEquals(new PrefixTrie(ImmutableList.<String>of()).complete("a"), ImmutableList.of());
+    }
+
+    @Test
+    public void matchesFiltering()
+    {
+        Random random = new Random(42);
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            names.add(randomName(random));
+        }
+        PrefixTrie trie = new PrefixTrie(names);
+
+        for (int i = 0; i < 2000; i++) {
+            String prefix = randomName(random);
+            prefix = prefix.substring(0, random.nextInt(prefix.length() + 1));
+
+            List<String> expected = new ArrayList<>();
+            for (String name : new TreeSet<>(names)) {
+                if (name.startsWith(prefix)) {
+                    expected.add(name);
+                }
+            }
+            Assert.assertEquals(trie.complete(prefix), expected, prefix);
+        }
+    }
+
+    @Test
+    public void suggestPrefix()
+    {
+        IncrementalParser parser = new IncrementalParser(git());
+
+        Assert.assertEquals(newArrayList(parser.update(ImmutableList.<String>of()).suggest("")), newArrayList("-v", "add", "help", "remote"));
+        Assert.assertEquals(newArrayList(parser.suggest("re")), newArrayList("remote"));
+        Assert.assertEquals(newArrayList(parser.update(ImmutableList.of("remote")).suggest("s")), newArrayList("show"));
+        Assert.assertEquals(newArrayList(parser.update(ImmutableList.of("remote", "add")).suggest("-")), newArrayList("--", "-t"));
+
+        for (String suggestion : parser.update(ImmutableList.<String>of()).suggest()) {
+            Assert.assertTrue(Ordering.natural().isOrdered(parser.suggest(suggestion.substring(0, 1))));
+        }
+    }
+
+    private static String randomName(Random random)
+    {
+        // a small alphabet, so names share long prefixes
+        char[] name = new char[1 + random.nextInt(8)];
+        for (int i = 0; i < name.length; i++) {
+            name[i] = "-abc".charAt(random.nextInt(4));
+        }
+        return new String(name);
+    }
+
+    private static GlobalMetadata git()
+    {
+        CliBuilder<Runnable> builder = Cli.<Runnable>builder("git")
+                .withDefaultCommand(Help.class)
+                .withCommands(Help.class, Add.class);
+
+        builder.withGroup("remote")
+                .withDefaultCommand(RemoteShow.class)
+                .withCommands(RemoteShow.class, RemoteAdd.class);
+
+        return builder.build().getMetadata();
+    }
+}
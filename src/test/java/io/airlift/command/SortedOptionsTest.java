@@ -0,0 +1,103 @@
+package io.airlift.command;
+
+import com.google.common.collect.ComparisonChain;
+import com.google.common.collect.ImmutableList;
+import io.airlift.command.Cli.CliBuilder;
+import io.airlift.command.Git.RemoteAdd;
+import io.airlift.command.Git.RemoteShow;
+import io.airlift.command.model.CommandMetadata;
+import io.airlift.command.model.GlobalMetadata;
+import io.airlift.command.model.MetadataLoader;
+import io.airlift.command.model.OptionMetadata;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static io.airlift.command.UsageHelper.DEFAULT_OPTION_COMPARATOR;
+
+public class SortedOptionsTest
+{
+    // the comparator before the sort names were precomputed
+    private static final Comparator<OptionMetadata> REGEX_COMPARATOR = (o1, o2) -> {
+        String option1 = o1.getOptions().iterator().next().replaceFirst("^-+", "");
+        String option2 = o2.getOptions().iterator().next().replaceFirst("^-+", "");
+        return ComparisonChain.start()
+                .compare(option1.toLowerCase(), option2.toLowerCase())
+                .compare(option2, option1)
+                .compare(System.identityHashCode(o1), System.identityHashCode(o2))
+                .result();
+    };
+
+    @Test
+    public void sortsByName()
+    {
+        CommandMetadata command = MetadataLoader.loadCommand(Sorted.class);
+
+        List<OptionMetadata> sorted = command.getSortedOptions(OptionType.COMMAND, DEFAULT_OPTION_COMPARATOR);
+        Assert.assertEquals(names(sorted), ImmutableList.of("-a", "--alpha", "--Alpha", "--beta", "-c", "-C"));
+        Assert.assertSame(command.getSortedOptions(OptionType.COMMAND, DEFAULT_OPTION_COMPARATOR), sorted);
+
+        List<OptionMetadata> shuffled = new ArrayList<>(command.getCommandOptions());
+        Collections.shuffle(shuffled, new Random(42));
+        shuffled.sort(REGEX_COMPARATOR);
+        Assert.assertEquals(shuffled, sorted);
+
+        Assert.assertEquals(names(command.getSortedOptions(OptionType.COMMAND, DEFAULT_OPTION_COMPARATOR.reversed())),
+                ImmutableList.of("-C", "-c", "--beta", "--Alpha", "--alpha", "-a"));
+    }
+
+    @Test
+    public void sortsGlobalAndGroupOptions()
+    {
+        CliBuilder<Runnable> builder = Cli.<Runnable>builder("git")
+                .withCommand(Help.class);
+        builder.withGroup("remote")
+                .withCommands(RemoteShow.class, RemoteAdd.class);
+        GlobalMetadata global = builder.build().getMetadata();
+        CommandMetadata remoteAdd = global.getCommandGroup("remote").getCommand("add");
+
+        Assert.assertEquals(names(remoteAdd.getSortedOptions(OptionType.GLOBAL, DEFAULT_OPTION_COMPARATOR)), ImmutableList.of("-v"));
+        Assert.assertEquals(names(remoteAdd.getSortedOptions(true, false, DEFAULT_OPTION_COMPARATOR)), ImmutableList.of("-t", "-v"));
+        Assert.assertEquals(names(remoteAdd.getSortedOptions(false, false, DEFAULT_OPTION_COMPARATOR)), ImmutableList.of("-t"));
+        Assert.assertEquals(names(global.getSortedOptions(DEFAULT_OPTION_COMPARATOR)), ImmutableList.of("-v"));
+
+        Assert.assertEquals(UsageHelper.merge(ImmutableList.of(1, 4, 6), ImmutableList.of(2, 3, 7, 8), Comparator.<Integer>naturalOrder()),
+                ImmutableList.of(1, 2, 3, 4, 6, 7, 8));
+    }
+
+    private static List<String> names(List<OptionMetadata> options)
+    {
+        List<String> names = new ArrayList<>();
+        for (OptionMetadata option : options) {
+            names.add(option.getOptions().iterator().next());
+        }
+        return names;
+    }
+
+    @Command(name = "sorted")
+    public static class Sorted
+    {
+        @Option(name = "--beta")
+        public boolean beta;
+
+        @Option(name = "-C")
+        public boolean upperC;
+
+        @Option(name = "--Alpha")
+        public boolean upperAlpha;
+
+        @Option(name = "-a")
+        public boolean a;
+
+        @Option(name = "-c")
+        public boolean c;
+
+        @Option(name = "--alpha")
+        public boolean alpha;
+    }
+}
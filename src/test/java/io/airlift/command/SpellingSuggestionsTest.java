@@ -0,0 +1,142 @@
+package io.airlift.command;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.command.Cli.CliBuilder;
+import io.airlift.command.Git.Add;
+import io.airlift.command.Git.RemoteAdd;
+import io.airlift.command.Git.RemoteShow;
+import io.airlift.command.model.BkTree;
+import io.airlift.command.model.CommandMetadata;
+import io.airlift.command.model.MetadataLoader;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static io.airlift.command.SingleCommand.singleCommand;
+
+public class SpellingSuggestionsTest
+{
+    @Test
+    public void nearest()
+    {
+        BkTree tree = new BkTree(ImmutableList.of("remote", "rebase", "reset", "add", "status", "stash"));
+
+        Assert.assertEquals(tree.nearest("remtoe", 2, 3), ImmutableList.of("remote"));
+        Assert.assertEquals(tree.nearest("stat", 2, 3), ImmutableList.of("stash", "status"));
+        Assert.assertEquals(tree.nearest("stat", 2, 1), ImmutableList.of("stash"));
+        Assert.assertEquals(tree.nearest("add", 0, 3), ImmutableList.of("add"));
+        Assert.assertEquals(tree.nearest("xyz", 1, 3), ImmutableList.of());
+        Assert.assertEquals(new BkTree(ImmutableList.<String>of()).nearest("add", 1, 3), ImmutableList.of());
+    }
+
+    @Test
+    public void nearestMatchesExhaustiveSearch()
+    {
+        Random random = new Random(42);
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            names.add(randomName(random));
+        }
+        BkTree tree = new BkTree(names);
+
+        for (int i = 0; i < 500; i++) {
+            String query = randomName(random);
+            List<String> expected = new ArrayList<>();
+            for (int distance = 0; distance <= 2; distance++) {
+                for (String name : new TreeSet<>(names)) {
+                    if (levenshtein(query, name) == distance) {
+                        expected.add(name);
+                    }
+                }
+            }
+            Assert.assertEquals(tree.nearest(query, 2, 5), expected.subList(0, Math.min(5, expected.size())), query);
+        }
+    }
+
+    @Test
+    public void unrecognizedCommand()
+    {
+        Cli<Runnable> git = git();
+        try {
+            git.parse("remtoe");
+            Assert.fail("Expected ParseCommandUnrecognizedException");
+        }
+        catch (ParseCommandUnrecognizedException e) {
+            Assert.assertEquals(e.getMessage(), "Command 'remtoe' not recognized");
+            Assert.assertEquals(e.getSuggestions(), ImmutableList.of("remote"));
+        }
+
+        ParseResult<Runnable> result = git.tryParse("halp");
+        Assert.assertEquals(((ParseCommandUnrecognizedException) result.getError()).getSuggestions(), ImmutableList.of("help"));
+    }
+
+    @Test
+    public void unexpectedOption()
+    {
+        try {
+            singleCommand(Ping.class).parse("--cuont", "3");
+            Assert.fail("Expected ParseArgumentsUnexpectedException");
+        }
+        catch (ParseArgumentsUnexpectedException e) {
+            Assert.assertEquals(e.getSuggestions(), ImmutableList.of("--count"));
+        }
+
+        ParseResult<Ping> result = singleCommand(Ping.class).tryParse("count");
+        Assert.assertEquals(((ParseArgumentsUnexpectedException) result.getError()).getSuggestions(), ImmutableList.of());
+    }
+
+    @Test
+    public void reloadedCommandsShareTheirOptionIndex()
+    {
+        // Cli.parse(commandInstance, ...) loads the metadata of the instance for every parse
+        SpellingSuggestions suggestions = new SpellingSuggestions();
+        for (int i = 0; i < 100; i++) {
+            CommandMetadata command = MetadataLoader.loadCommand(Add.class);
+            Assert.assertEquals(suggestions.suggestOptions(command, "-ii"), ImmutableList.of("-i"));
+        }
+        Assert.assertEquals(suggestions.size(), 1);
+    }
+
+    private static String randomName(Random random)
+    {
+        char[] name = new char[1 + random.nextInt(6)];
+        for (int i = 0; i < name.length; i++) {
+            name[i] = "abcd".charAt(random.nextInt(4));
+        }
+        return new String(name);
+    }
+
+    private static int levenshtein(String a, String b)
+    {
+        int[][] distances = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            for (int j = 0; j <= b.length(); j++) {
+                if (i == 0 || j == 0) {
+                    distances[i][j] = i + j;
+                }
+                else {
+                    int substitution = distances[i - 1][j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                    distances[i][j] = Math.min(substitution, Math.min(distances[i - 1][j], distances[i][j - 1]) + 1);
+                }
+            }
+        }
+        return distances[a.length()][b.length()];
+    }
+
+    private static Cli<Runnable> git()
+    {
+        // without a default command, so unknown commands are not taken as its arguments
+        CliBuilder<Runnable> builder = Cli.<Runnable>builder("git")
+                .withCommands(Help.class, Add.class);
+
+        builder.withGroup("remote")
+                .withDefaultCommand(RemoteShow.class)
+                .withCommands(RemoteShow.class, RemoteAdd.class);
+
+        return builder.build();
+    }
+}
@@ -0,0 +1,105 @@
+package io.airlift.command;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class StreamingArgumentsTest
+{
+    @Command(name = "sum")
+    public static class Sum
+    {
+        @Option(name = "-v")
+        public boolean verbose;
+
+        @Arguments(required = true)
+        public Iterator<Integer> numbers;
+    }
+
+    @Command(name = "join")
+    public static class Join
+    {
+        @Option(name = "-s")
+        public String separator = ",";
+
+        @Arguments
+        public Stream<String> words;
+    }
+
+    @Command(name = "collect")
+    public static class Collect
+    {
+        public final List<Long> collected = new ArrayList<>();
+
+        @Arguments
+        public Consumer<? super Long> values = collected::add;
+    }
+
+    @Test
+    public void iteratorIsConvertedLazily()
+    {
+        Sum sum = SingleCommand.singleCommand(Sum.class).parse("-v", "1", "2", "x");
+        Assert.assertTrue(sum.verbose);
+        Assert.assertEquals(sum.numbers.next(), (Integer) 1);
+        Assert.assertEquals(sum.numbers.next(), (Integer) 2);
+
+        // the bad value is only converted when the command reaches it
+        try {
+            sum.numbers.next();
+            Assert.fail("expected a conversion error");
+        }
+        catch (ParseOptionConversionException expected) {
+        }
+    }
+
+    @Test
+    public void optionsEndAtTheFirstArgument()
+    {
+        Join join = SingleCommand.singleCommand(Join.class).parse("-s", "+", "a", "-s", "--", "b");
+        Assert.assertEquals(join.separator, "+");
+        Assert.assertEquals(join.words.collect(Collectors.toList()), ImmutableList.of("a", "-s", "--", "b"));
+
+        join = SingleCommand.singleCommand(Join.class).parse("--", "-s", "c");
+        Assert.assertEquals(join.separator, ",");
+        Assert.assertEquals(join.words.collect(Collectors.toList()), ImmutableList.of("-s", "c"));
+    }
+
+    @Test
+    public void noArgumentsStreamNothing()
+    {
+        Join join = SingleCommand.singleCommand(Join.class).parse("-s", "+");
+        Assert.assertEquals(join.words.count(), 0L);
+    }
+
+    @Test(expectedExceptions = ParseArgumentsMissingException.class)
+    public void requiredArgumentsMustBeGiven()
+    {
+        SingleCommand.singleCommand(Sum.class).parse("-v");
+    }
+
+    @Test
+    public void consumerReceivesEveryArgument()
+    {
+        Collect collect = SingleCommand.singleCommand(Collect.class).parse("1", "2", "3");
+        Assert.assertEquals(collect.collected, ImmutableList.of(1L, 2L, 3L));
+    }
+
+    @Test
+    public void cliStreamsArguments()
+    {
+        Cli<Object> cli = Cli.builder("tool")
+                .withCommands(Sum.class, Join.class)
+                .build();
+
+        Sum sum = (Sum) cli.parse(ImmutableList.of("sum", "4", "5", "6"));
+        Assert.assertEquals(Lists.newArrayList(sum.numbers), ImmutableList.of(4, 5, 6));
+    }
+}
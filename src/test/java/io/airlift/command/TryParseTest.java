@@ -0,0 +1,90 @@
+package io.airlift.command;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.command.args.Args1;
+import io.airlift.command.args.ArgsEnum;
+import io.airlift.command.args.ArgsEnum.ChoiceType;
+import io.airlift.command.args.ArgsRequired;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import static io.airlift.command.SingleCommand.singleCommand;
+
+public class TryParseTest
+{
+    @Test
+    public void success()
+    {
+        ParseResult<Args1> result = cli(Args1.class).tryParse("Args1", "-log", "-3", "-long", "+42", "a", "b");
+
+        Assert.assertTrue(result.isSuccess());
+        Assert.assertNull(result.getError());
+        Assert.assertEquals(result.getCommand().verbose.intValue(), -3);
+        Assert.assertEquals(result.getCommand().l, 42L);
+        Assert.assertEquals(result.getCommand().parameters.size(), 2);
+    }
+
+    @Test
+    public void validationErrorsAreReturned()
+    {
+        ParseResult<ArgsRequired> result = cli(ArgsRequired.class).tryParse("ArgsRequired");
+
+        Assert.assertFalse(result.isSuccess());
+        Assert.assertNull(result.getCommand());
+        Assert.assertTrue(result.getError() instanceof ParseArgumentsMissingException);
+        Assert.assertEquals(((ParseArgumentsMissingException) result.getError()).getArgumentTitle(), ImmutableList.of("parameters"));
+    }
+
+    @Test
+    public void parserErrorsAreReturned()
+    {
+        ParseResult<Args1> result = cli(Args1.class).tryParse("Args1", "-log");
+
+        Assert.assertTrue(result.getError() instanceof ParseOptionMissingValueException);
+    }
+
+    @Test
+    public void conversionErrorsAreReturned()
+    {
+        ParseResult<Args1> result = cli(Args1.class).tryParse("Args1", "-long", "12x");
+        Assert.assertTrue(result.getError() instanceof ParseOptionConversionException);
+        Assert.assertEquals(((ParseOptionConversionException) result.getError()).getValue(), "12x");
+
+        result = cli(Args1.class).tryParse("Args1", "-long", "-");
+        Assert.assertTrue(result.getError() instanceof ParseOptionConversionException);
+    }
+
+    @Test
+    public void enumConversion()
+    {
+        Assert.assertEquals(cli(ArgsEnum.class).tryParse("ArgsEnum", "-choice", "TWO").getCommand().choice, ChoiceType.TWO);
+        Assert.assertTrue(cli(ArgsEnum.class).tryParse("ArgsEnum", "-choice", "FOUR").getError() instanceof ParseOptionConversionException);
+    }
+
+    @Test
+    public void errorsHaveNoStackTrace()
+    {
+        ParseResult<ArgsRequired> result = cli(ArgsRequired.class).tryParse("ArgsRequired");
+        Assert.assertEquals(result.getError().getStackTrace().length, 0);
+
+        try {
+            cli(ArgsRequired.class).parse("ArgsRequired");
+            Assert.fail("Expected ParseArgumentsMissingException");
+        }
+        catch (ParseArgumentsMissingException expected) {
+            Assert.assertTrue(expected.getStackTrace().length > 0);
+        }
+    }
+
+    @Test
+    public void singleCommandTryParse()
+    {
+        Assert.assertTrue(singleCommand(ArgsRequired.class).tryParse().getError() instanceof ParseArgumentsMissingException);
+        Assert.assertEquals(singleCommand(ArgsRequired.class).tryParse("a").getCommand().parameters.size(), 1);
+    }
+
+    private static <T> Cli<T> cli(Class<T> type)
+    {
+        return Cli.<T>builder("test").withCommand(type).build();
+    }
+}
@@ -0,0 +1,76 @@
+package io.airlift.command;
+
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import java.io.StringWriter;
+
+import static org.testng.Assert.assertEquals;
+
+public class UsagePrinterTest
+{
+    @Test
+    public void testWrapping()
+    {
+        StringBuilder out = new StringBuilder();
+        new UsagePrinter(out, 20)
+                .newIndentedPrinter(4)
+                .newPrinterWithHangingIndent(2)
+                .append("  the\tquick \u00A0brown\u00A0 fox\r\njumps over the   lazy dog ")
+                .newline();
+
+        assertEquals(out.toString(), "" +
+                "    the quick brown\n" +
+                "      fox jumps over\n" +
+                "      the lazy dog\n");
+    }
+
+    @Test
+    public void testBrackets()
+    {
+        StringBuilder out = new StringBuilder();
+        new UsagePrinter(out, 12)
+                .append("usage: git [-v | --verbose] <command> [<args>]")
+                .newline();
+
+        assertEquals(out.toString(), "" +
+                "usage: git\n" +
+                "[-v | --verbose]\n" +
+                "<command>\n" +
+                "[<args>]\n");
+    }
+
+    @Test
+    public void testWords()
+    {
+        StringBuilder out = new StringBuilder();
+        new UsagePrinter(out, 10)
+                .appendWords(ImmutableList.of("git", "", "remote", "add origin"))
+                .newline();
+
+        assertEquals(out.toString(), "" +
+                "git remote\n" +
+                "add origin\n");
+    }
+
+    @Test
+    public void testTable()
+    {
+        StringWriter out = new StringWriter();
+        new UsagePrinter(out)
+                .append("commands:")
+                .newIndentedPrinter(4)
+                .appendTable(ImmutableList.of(
+                        ImmutableList.of("add", "Add file contents "),
+                        ImmutableList.of("remote", ""),
+                        ImmutableList.of("", " "),
+                        ImmutableList.of("help", "Display help", "")));
+
+        assertEquals(out.toString(), "" +
+                "commands:\n" +
+                "    add      Add file contents\n" +
+                "    remote\n" +
+                "    \n" +
+                "    help     Display help\n");
+    }
+}
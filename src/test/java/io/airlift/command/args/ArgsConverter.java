@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.airlift.command.args;
+
+import io.airlift.command.Command;
+import io.airlift.command.Option;
+
+import java.nio.file.Path;
+
+/**
+ * Test built in and registered type conversions.
+ */
+@Command(name = "ArgsConverter")
+public class ArgsConverter
+{
+    public static class HostAndPort
+    {
+        public final String host;
+        public final int port;
+
+        public HostAndPort(String host, int port)
+        {
+            this.host = host;
+            this.port = port;
+        }
+    }
+
+    @Option(name = "-path", description = "Path parameter")
+    public Path path;
+
+    @Option(name = "-address", description = "Address parameter")
+    public HostAndPort address;
+}